@@ -5,6 +5,7 @@ import android.util.Log;
 import net.gini.android.DocumentTaskManager;
 import net.gini.android.models.SpecificExtraction;
 import net.gini.android.vision.Document;
+import net.gini.android.vision.document.MultiPageDocument;
 import net.gini.android.vision.internal.camera.api.UIExecutor;
 
 import java.util.Map;
@@ -33,7 +34,7 @@ public class DocumentAnalyzer {
 
     synchronized void analyze(Document document) {
         mDocumentTaskManager
-                .createDocument(document.getData(), null, null)
+                .createDocument(getDataToUpload(document), null, null)
                 .onSuccessTask(
                         new Continuation<net.gini.android.models.Document, Task<net.gini.android.models.Document>>() {
                             @Override
@@ -95,6 +96,18 @@ public class DocumentAnalyzer {
                         });
     }
 
+    private static byte[] getDataToUpload(Document document) {
+        if (document instanceof MultiPageDocument) {
+            // This version of the Gini API SDK can't combine several documents into one, so
+            // only the first page is analyzed
+            final MultiPageDocument multiPageDocument = (MultiPageDocument) document;
+            Log.d("gini-api", "Analyzing the first of " + multiPageDocument.getPageCount()
+                    + " pages");
+            return multiPageDocument.getDocuments().get(0).getData();
+        }
+        return document.getData();
+    }
+
     private synchronized void publishResult() {
         mUIExecutor.runOnUiThread(new Runnable() {
             @Override
@@ -0,0 +1,107 @@
+package net.gini.android.vision.internal.autocapture;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.support.annotation.NonNull;
+import android.support.test.runner.AndroidJUnit4;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class AutoCaptureDetectorTest {
+
+    private static final Size FRAME_SIZE = new Size(64, 48);
+    private static final long NEVER_STEADY_MS = Long.MAX_VALUE;
+
+    private RecordingFrameScorer mFrameScorer;
+    private AutoCaptureDetector mDetector;
+
+    @Before
+    public void setUp() {
+        mFrameScorer = new RecordingFrameScorer();
+        mDetector = new AutoCaptureDetector(mFrameScorer,
+                new AutoCaptureTrigger(0, Float.MAX_VALUE, NEVER_STEADY_MS));
+        mDetector.setListener(new AutoCaptureDetector.Listener() {
+            @Override
+            public void onCaptureReady() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mDetector.release();
+    }
+
+    @Test
+    public void should_measureMotion_betweenFramesWhileArmed() throws Exception {
+        mDetector.arm();
+
+        scoreFrame();
+        scoreFrame();
+
+        assertThat(mFrameScorer.mMotions).containsExactly(FrameScorer.UNKNOWN_MOTION, 0f)
+                .inOrder();
+    }
+
+    @Test
+    public void should_forgetPreviousFrame_whenArmedAgain() throws Exception {
+        mDetector.arm();
+        scoreFrame();
+        mDetector.disarm();
+
+        mDetector.arm();
+        scoreFrame();
+
+        assertThat(mFrameScorer.mMotions).containsExactly(FrameScorer.UNKNOWN_MOTION,
+                FrameScorer.UNKNOWN_MOTION).inOrder();
+    }
+
+    @Test
+    public void should_skipFrames_whileDisarmed() {
+        assertThat(mDetector.detect(createFrame(), FRAME_SIZE)).isFalse();
+    }
+
+    private void scoreFrame() throws InterruptedException {
+        final CountDownLatch scored = mFrameScorer.expectScore();
+        assertThat(mDetector.detect(createFrame(), FRAME_SIZE)).isTrue();
+        assertThat(scored.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @NonNull
+    private static byte[] createFrame() {
+        final byte[] frame = new byte[FRAME_SIZE.width * FRAME_SIZE.height * 3 / 2];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (i % 251);
+        }
+        return frame;
+    }
+
+    private static class RecordingFrameScorer extends FrameScorer {
+
+        final List<Float> mMotions = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch mScored = new CountDownLatch(0);
+
+        CountDownLatch expectScore() {
+            mScored = new CountDownLatch(1);
+            return mScored;
+        }
+
+        @Override
+        void score(@NonNull final byte[] luma, final int width, final int height) {
+            super.score(luma, width, height);
+            mMotions.add(getMotion());
+            mScored.countDown();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static android.support.test.InstrumentationRegistry.getTargetContext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static net.gini.android.vision.test.Helpers.prepareLooper;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.graphics.Rect;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.support.annotation.NonNull;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SdkSuppress(minSdkVersion = 21)
+@RunWith(AndroidJUnit4.class)
+public class Camera2ControllerTest {
+
+    private ActivityTestRule<NoOpActivity> mIntentsTestRule = new ActivityTestRule<>(
+            NoOpActivity.class, true, false);
+
+    private Camera2Controller mCameraController;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        prepareLooper();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mCameraController != null) {
+            mCameraController.close();
+        }
+    }
+
+    @Test
+    public void should_useLargestPictureResolution() {
+        mCameraController = createController(launchNoOpActivity(), new Camera2DeviceFake());
+        mCameraController.open().join();
+
+        assertThat(mCameraController.getPictureSize()).isEqualTo(new Size(4032, 3024));
+    }
+
+    @Test
+    public void should_limitPreviewResolution_withSimilarAspectRatio_asPictureSize() {
+        mCameraController = createController(launchNoOpActivity(), new Camera2DeviceFake());
+        mCameraController.open().join();
+
+        assertThat(mCameraController.getPreviewSize()).isEqualTo(new Size(1920, 1440));
+    }
+
+    @Test
+    public void should_useLowResolutionStream_forPreviewFrames() {
+        mCameraController = createController(launchNoOpActivity(), new Camera2DeviceFake());
+        mCameraController.open().join();
+
+        assertThat(mCameraController.getPreviewFrameSize()).isEqualTo(new Size(640, 480));
+    }
+
+    @Test
+    public void should_allocatePreviewBuffers_forPreviewFrameSize() {
+        mCameraController = createController(launchNoOpActivity(), new Camera2DeviceFake());
+        mCameraController.enablePreviewBufferPool(3);
+        mCameraController.open().join();
+
+        final PreviewBufferPool bufferPool = mCameraController.getPreviewBufferPool();
+        assertThat(bufferPool).isNotNull();
+        final byte[] buffer = bufferPool.acquire();
+        assertThat(buffer).isNotNull();
+        assertThat(buffer.length).isEqualTo(640 * 480 * 3 / 2);
+    }
+
+    @Test
+    public void should_completeFocus_withDeviceResult() {
+        final Camera2DeviceFake cameraDevice = new Camera2DeviceFake();
+        cameraDevice.setFocusResult(false);
+        mCameraController = createController(launchNoOpActivity(), cameraDevice);
+        mCameraController.open().join();
+
+        final boolean focused = mCameraController.focus().join();
+
+        assertThat(focused).isFalse();
+        assertThat(cameraDevice.getAutoFocusCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_failToStartPreview_whenNotOpen() {
+        mCameraController = createController(launchNoOpActivity(), new Camera2DeviceFake());
+
+        assertThat(mCameraController.startPreview().isCompletedExceptionally()).isTrue();
+    }
+
+    @Test
+    public void should_closeDevice() throws InterruptedException {
+        final Camera2DeviceFake cameraDevice = new Camera2DeviceFake();
+        mCameraController = createController(launchNoOpActivity(), cameraDevice);
+        mCameraController.open().join();
+        assertThat(cameraDevice.isOpen()).isTrue();
+
+        mCameraController.close();
+        // Closing happens asynchronously on the camera thread
+        Thread.sleep(200);
+
+        assertThat(cameraDevice.isOpen()).isFalse();
+    }
+
+    @Test
+    public void should_mapTapToActiveArrayCoordinates_forPortraitPreview() {
+        final MeteringRectangle focusArea = Camera2Controller.calculateFocusArea(
+                0, 0, 1080, 1440, 90, new Rect(0, 0, 4000, 3000));
+
+        // Top-left of the portrait view is the bottom-left of the landscape sensor
+        assertThat(focusArea.getX()).isEqualTo(0);
+        assertThat(focusArea.getY()).isEqualTo(3000 - focusArea.getHeight());
+    }
+
+    @Test
+    public void should_centerFocusArea_onTapPoint() {
+        final MeteringRectangle focusArea = Camera2Controller.calculateFocusArea(
+                540, 720, 1080, 1440, 90, new Rect(0, 0, 4000, 3000));
+
+        assertThat(focusArea.getX() + focusArea.getWidth() / 2).isEqualTo(2000);
+        assertThat(focusArea.getY() + focusArea.getHeight() / 2).isEqualTo(1500);
+        assertThat(focusArea.getMeteringWeight()).isEqualTo(
+                MeteringRectangle.METERING_WEIGHT_MAX);
+    }
+
+    private Camera2Controller createController(@NonNull final Activity activity,
+            @NonNull final Camera2DeviceFake cameraDevice) {
+        return new Camera2Controller(activity) {
+            @NonNull
+            @Override
+            protected Camera2Device createCameraDevice() {
+                return cameraDevice;
+            }
+        };
+    }
+
+    private NoOpActivity launchNoOpActivity() {
+        final Intent intent = new Intent(getTargetContext(),
+                NoOpActivity.class);
+        return mIntentsTestRule.launchActivity(intent);
+    }
+}
@@ -0,0 +1,111 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+import android.view.Surface;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Camera2 device stand-in which completes all requests immediately and records them.
+ */
+@RequiresApi(21)
+public class Camera2DeviceFake implements Camera2Device {
+
+    private final Characteristics mCharacteristics;
+    private boolean mFocusResult = true;
+    private boolean mOpen;
+    private boolean mRepeating;
+    private int mAutoFocusCount;
+    private final List<RequestSettings> mRepeatingRequests = new ArrayList<>();
+    private List<Surface> mSessionOutputs = new ArrayList<>();
+
+    public Camera2DeviceFake() {
+        this(true);
+    }
+
+    public Camera2DeviceFake(final boolean continuousFocusSupported) {
+        mCharacteristics = new Characteristics(
+                Arrays.asList(new Size(4032, 3024), new Size(1920, 1080), new Size(640, 480)),
+                Arrays.asList(new Size(2560, 1920), new Size(1920, 1440), new Size(1920, 1080),
+                        new Size(1280, 960)),
+                Arrays.asList(new Size(1280, 960), new Size(640, 480), new Size(320, 240)),
+                90, continuousFocusSupported, true, true, 1, new Rect(0, 0, 4032, 3024));
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Characteristics> open(@NonNull final Handler handler) {
+        mOpen = true;
+        return CompletableFuture.completedFuture(mCharacteristics);
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> createSession(@NonNull final List<Surface> outputs) {
+        mSessionOutputs = new ArrayList<>(outputs);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void setRepeatingRequest(@NonNull final RequestSettings settings) {
+        mRepeating = true;
+        mRepeatingRequests.add(settings);
+    }
+
+    @Override
+    public void stopRepeating() {
+        mRepeating = false;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Boolean> autoFocus(@NonNull final RequestSettings settings) {
+        mAutoFocusCount++;
+        return CompletableFuture.completedFuture(mFocusResult);
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> capture(@NonNull final RequestSettings settings) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+        mOpen = false;
+        mRepeating = false;
+    }
+
+    public void setFocusResult(final boolean focusResult) {
+        mFocusResult = focusResult;
+    }
+
+    public boolean isOpen() {
+        return mOpen;
+    }
+
+    public boolean isRepeating() {
+        return mRepeating;
+    }
+
+    public int getAutoFocusCount() {
+        return mAutoFocusCount;
+    }
+
+    public List<RequestSettings> getRepeatingRequests() {
+        return mRepeatingRequests;
+    }
+
+    public List<Surface> getSessionOutputs() {
+        return mSessionOutputs;
+    }
+}
@@ -12,6 +12,7 @@ import android.view.View;
 
 import net.gini.android.vision.internal.camera.photo.Photo;
 import net.gini.android.vision.internal.camera.photo.PhotoFactory;
+import net.gini.android.vision.internal.documentdetection.Quad;
 import net.gini.android.vision.internal.util.Size;
 
 import jersey.repackaged.jsr166e.CompletableFuture;
@@ -25,6 +26,8 @@ import jersey.repackaged.jsr166e.CompletableFuture;
 public class CameraControllerFake implements CameraInterface {
 
     private static final Size DEFAULT_PREVIEW_SIZE = new Size(900, 1200);
+    // Futures complete on the UI thread like with the real controllers
+    private final UIExecutor mUIExecutor = new UIExecutor();
     private Photo mPhoto;
     private Camera.PreviewCallback mPreviewCallback;
     private Size mPreviewSize = DEFAULT_PREVIEW_SIZE;
@@ -33,7 +36,7 @@ public class CameraControllerFake implements CameraInterface {
     @NonNull
     @Override
     public CompletableFuture<Void> open() {
-        return CompletableFuture.completedFuture(null);
+        return completeOnUiThread(null);
     }
 
     @Override
@@ -45,13 +48,13 @@ public class CameraControllerFake implements CameraInterface {
     @Override
     public CompletableFuture<Void> startPreview(@NonNull final SurfaceHolder surfaceHolder) {
         mSurfaceHolder = surfaceHolder;
-        return CompletableFuture.completedFuture(null);
+        return completeOnUiThread(null);
     }
 
     @NonNull
     @Override
     public CompletableFuture<Void> startPreview() {
-        return CompletableFuture.completedFuture(null);
+        return completeOnUiThread(null);
     }
 
     @Override
@@ -78,13 +81,24 @@ public class CameraControllerFake implements CameraInterface {
     @NonNull
     @Override
     public CompletableFuture<Boolean> focus() {
-        return CompletableFuture.completedFuture(true);
+        return completeOnUiThread(true);
     }
 
     @NonNull
     @Override
-    public CompletableFuture<Photo> takePicture() {
-        return CompletableFuture.completedFuture(mPhoto);
+    public CompletableFuture<Photo> takePicture(@Nullable final Quad documentQuad) {
+        return completeOnUiThread(mPhoto);
+    }
+
+    private <T> CompletableFuture<T> completeOnUiThread(final T value) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                future.complete(value);
+            }
+        });
+        return future;
     }
 
     @NonNull
@@ -105,6 +119,12 @@ public class CameraControllerFake implements CameraInterface {
         return mPreviewSize;
     }
 
+    @NonNull
+    @Override
+    public Size getPreviewFrameSize() {
+        return mPreviewSize;
+    }
+
     @Nullable
     public Camera.PreviewCallback getPreviewCallback() {
         return mPreviewCallback;
@@ -115,6 +135,17 @@ public class CameraControllerFake implements CameraInterface {
         mPreviewCallback = previewCallback;
     }
 
+    @Override
+    public void enablePreviewBufferPool(final int bufferCount) {
+
+    }
+
+    @Nullable
+    @Override
+    public PreviewBufferPool getPreviewBufferPool() {
+        return null;
+    }
+
     @Override
     public int getCameraRotation() {
         return 0;
@@ -9,6 +9,8 @@ import static net.gini.android.vision.test.PermissionsHelper.grantCameraPermissi
 
 import android.content.Intent;
 import android.hardware.Camera;
+import android.os.Looper;
+import android.support.annotation.Nullable;
 import android.support.test.rule.ActivityTestRule;
 import android.support.test.runner.AndroidJUnit4;
 
@@ -20,6 +22,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
 @RunWith(AndroidJUnit4.class)
 public class CameraControllerTest {
 
@@ -85,6 +93,69 @@ public class CameraControllerTest {
         assertThat(usedSize.height).isEqualTo(largestSize.height);
     }
 
+    @Test
+    public void should_openCamera_onCameraThread_inCameraThreadMode() {
+        final AtomicReference<Looper> openLooper = new AtomicReference<>();
+        mCameraController = new CameraController(createNoOpActivity(), true) {
+            @Nullable
+            @Override
+            protected Camera openCamera() {
+                openLooper.set(Looper.myLooper());
+                return super.openCamera();
+            }
+        };
+        mCameraController.open().join();
+
+        assertThat(openLooper.get()).isNotNull();
+        assertThat(openLooper.get()).isNotEqualTo(Looper.getMainLooper());
+        assertThat(openLooper.get()).isEqualTo(mCameraController.getCameraLooper());
+    }
+
+    @Test
+    public void should_completeFutures_onUiThread_inCameraThreadMode()
+            throws InterruptedException {
+        mCameraController = new CameraController(createNoOpActivity(), true);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicReference<Boolean> openedOnUiThread = new AtomicReference<>();
+        final AtomicReference<Boolean> focusedOnUiThread = new AtomicReference<>();
+        mCameraController.open().handle(new CompletableFuture.BiFun<Void, Throwable, Void>() {
+            @Override
+            public Void apply(final Void aVoid, final Throwable throwable) {
+                openedOnUiThread.set(Looper.myLooper() == Looper.getMainLooper());
+                latch.countDown();
+                mCameraController.focus().handle(
+                        new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+                            @Override
+                            public Void apply(final Boolean focused,
+                                    final Throwable throwable) {
+                                focusedOnUiThread.set(
+                                        Looper.myLooper() == Looper.getMainLooper());
+                                latch.countDown();
+                                return null;
+                            }
+                        });
+                return null;
+            }
+        });
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(openedOnUiThread.get()).isTrue();
+        assertThat(focusedOnUiThread.get()).isTrue();
+    }
+
+    @Test
+    public void should_reopenCamera_afterClose_inCameraThreadMode() {
+        mCameraController = new CameraController(createNoOpActivity(), true);
+        mCameraController.open().join();
+        final Looper firstCameraLooper = mCameraController.getCameraLooper();
+
+        mCameraController.close();
+        mCameraController.open().join();
+
+        assertThat(mCameraController.getCamera()).isNotNull();
+        assertThat(mCameraController.getCameraLooper()).isNotEqualTo(firstCameraLooper);
+    }
+
     @Test
     @Ignore
     public void should_useContinuousFocusMode_ifAvailable() {
@@ -20,14 +20,14 @@ public class ExifTest {
         final Exif.RequiredTags requiredTags = Exif.readRequiredTags(testJpeg);
 
         // When
-        final Exif exif = Exif.builder(testJpeg).setRequiredTags(requiredTags).build();
+        final Exif exif = Exif.builder().setRequiredTags(requiredTags).build();
 
         // Then
         final byte[] outJpeg = exif.writeToJpeg(testJpeg);
         final Exif.RequiredTags outRequiredTags = Exif.readRequiredTags(outJpeg);
 
-        assertThat((String[]) outRequiredTags.make.getValue()).asList().contains("Lenovo");
-        assertThat((String[]) outRequiredTags.model.getValue()).asList().contains(
+        assertThat(outRequiredTags.make.getStringValues()).asList().contains("Lenovo");
+        assertThat(outRequiredTags.model.getStringValues()).asList().contains(
                 "Lenovo TAB 2 A10-70F");
     }
 }
\ No newline at end of file
@@ -82,4 +82,51 @@ public class PhotoEditTest {
 
     }
 
+    @Test
+    public void should_collapseRotations() throws Exception {
+        // Given
+        final Photo photo = getPhoto();
+        final PhotoEdit photoEdit = photo.edit();
+        // When
+        photoEdit.rotateTo(90);
+        photo.edit().rotateTo(180);
+        photo.edit().rotateTo(270);
+        // Then
+        assertThat(photoEdit.mPhotoModifiers).hasSize(1);
+        assertThat(photo.getRotationForDisplay()).isEqualTo(0);
+        assertThat(photoEdit.hasPendingEdits()).isTrue();
+
+        photoEdit.apply();
+
+        assertThat(photoEdit.hasPendingEdits()).isFalse();
+        assertThat(photo.getRotationForDisplay()).isEqualTo(270);
+        assertAbout(photo()).that(photo).hasRotationDeltaInUserComment(270);
+    }
+
+    @Test
+    public void should_replaceCompressionModifier_withCompressionToSize() throws Exception {
+        // Given
+        final Photo photo = getPhoto();
+        final PhotoEdit photoEdit = new PhotoEdit(photo);
+        // When
+        photoEdit.compressBy(30)
+                .compressToSize(100000, 80);
+        // Then
+        assertThat(photoEdit.mPhotoModifiers).hasSize(1);
+        final PhotoCompressionModifier modifier =
+                (PhotoCompressionModifier) photoEdit.mPhotoModifiers.get(0);
+        assertThat(modifier.getQuality()).isEqualTo(80);
+        assertThat(modifier.getMaxBytes()).isEqualTo(100000);
+    }
+
+    @Test
+    public void should_compressToSize() throws Exception {
+        // Given
+        final Photo photo = getPhoto();
+        // When
+        photo.edit().compressToSize(50000).apply();
+        // Then
+        assertThat(photo.getData().length).isAtMost(50000);
+    }
+
 }
\ No newline at end of file
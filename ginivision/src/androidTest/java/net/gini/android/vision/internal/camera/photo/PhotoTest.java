@@ -11,6 +11,7 @@ import android.support.test.runner.AndroidJUnit4;
 
 import net.gini.android.vision.document.DocumentFactory;
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.documentdetection.Quad;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -237,4 +238,21 @@ public class PhotoTest {
         // Then
         assertAbout(photo()).that(photo).hasRotationDeltaInUserComment(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_keepDocumentQuad_inDocument() {
+        // Given
+        final Quad quad = new Quad(new float[]{0.1f, 0.1f, 0.9f, 0.1f, 0.9f, 0.9f, 0.1f, 0.9f});
+        MutablePhoto photo =
+                (MutablePhoto) PhotoFactory.newPhotoFromJpeg(TEST_JPEG, 0, "portrait", "photo",
+                        "camera", quad);
+        // When
+        photo.edit().compressBy(50).apply();
+        ImageDocument document = doParcelingRoundTrip(
+                (ImageDocument) DocumentFactory.newDocumentFromPhoto(photo),
+                ImageDocument.CREATOR);
+        // Then
+        assertThat(document.getDocumentQuad()).isEqualTo(quad);
+        assertThat(PhotoFactory.newPhotoFromDocument(document).getDocumentQuad()).isEqualTo(quad);
+    }
+}
@@ -0,0 +1,105 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 21)
+public class BitmapPoolTest {
+
+    @Test
+    public void should_reuseSmallestFittingBitmap() {
+        final BitmapPool bitmapPool = new BitmapPool(3);
+        final Bitmap large = createBitmap(200, 200);
+        final Bitmap small = createBitmap(100, 100);
+        final Bitmap tooSmall = createBitmap(10, 10);
+        bitmapPool.release(large);
+        bitmapPool.release(small);
+        bitmapPool.release(tooSmall);
+
+        final Bitmap bitmap = bitmapPool.acquire(50, 80);
+
+        assertThat(bitmap).isSameAs(small);
+    }
+
+    @Test
+    public void should_reconfigureReusedBitmap_toRequestedSize() {
+        final BitmapPool bitmapPool = new BitmapPool(1);
+        final Bitmap pooled = createBitmap(100, 100);
+        pooled.eraseColor(Color.BLACK);
+        bitmapPool.release(pooled);
+
+        final Bitmap bitmap = bitmapPool.acquire(80, 50);
+
+        assertThat(bitmap).isSameAs(pooled);
+        assertThat(bitmap.getWidth()).isEqualTo(80);
+        assertThat(bitmap.getHeight()).isEqualTo(50);
+        assertThat(bitmap.getPixel(0, 0)).isEqualTo(Color.WHITE);
+    }
+
+    @Test
+    public void should_createBitmap_ifNoneFits() {
+        final BitmapPool bitmapPool = new BitmapPool(1);
+        final Bitmap pooled = createBitmap(10, 10);
+        bitmapPool.release(pooled);
+
+        final Bitmap bitmap = bitmapPool.acquire(100, 100);
+
+        assertThat(bitmap).isNotSameAs(pooled);
+        assertThat(bitmap.getWidth()).isEqualTo(100);
+        assertThat(bitmap.getHeight()).isEqualTo(100);
+    }
+
+    @Test
+    public void should_ignoreDuplicateRelease() {
+        final BitmapPool bitmapPool = new BitmapPool(2);
+        final Bitmap pooled = createBitmap(100, 100);
+        bitmapPool.release(pooled);
+        bitmapPool.release(pooled);
+
+        final Bitmap first = bitmapPool.acquire(100, 100);
+        final Bitmap second = bitmapPool.acquire(100, 100);
+
+        assertThat(first).isSameAs(pooled);
+        assertThat(second).isNotSameAs(pooled);
+        assertThat(pooled.isRecycled()).isFalse();
+    }
+
+    @Test
+    public void should_recycleReleasedBitmap_whenPoolIsFull() {
+        final BitmapPool bitmapPool = new BitmapPool(1);
+        final Bitmap pooled = createBitmap(100, 100);
+        final Bitmap overflow = createBitmap(100, 100);
+
+        bitmapPool.release(pooled);
+        bitmapPool.release(overflow);
+
+        assertThat(pooled.isRecycled()).isFalse();
+        assertThat(overflow.isRecycled()).isTrue();
+    }
+
+    @Test
+    public void should_recycleBitmaps_whenCleared() {
+        final BitmapPool bitmapPool = new BitmapPool(1);
+        final Bitmap pooled = createBitmap(100, 100);
+        final Bitmap releasedLate = createBitmap(100, 100);
+        bitmapPool.release(pooled);
+
+        bitmapPool.clear();
+        bitmapPool.release(releasedLate);
+
+        assertThat(pooled.isRecycled()).isTrue();
+        assertThat(releasedLate.isRecycled()).isTrue();
+    }
+
+    private static Bitmap createBitmap(final int width, final int height) {
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+}
@@ -0,0 +1,177 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.runner.AndroidJUnit4;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 21)
+public class PdfPageLoaderTest {
+
+    private static final Size PAGE_SIZE = new Size(400, 400);
+
+    private FakeRenderer mRenderer;
+    private PdfPageLoader mPdfPageLoader;
+    private final List<Bitmap> mRenderedPages = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mRenderer = new FakeRenderer();
+        mPdfPageLoader = new PdfPageLoader(mRenderer, PAGE_SIZE, new PdfPageLoader.Listener() {
+            @Override
+            public void onPageRendered(final int pageIndex, @NonNull final Bitmap bitmap) {
+                mRenderedPages.add(bitmap);
+            }
+        });
+    }
+
+    @Test
+    public void should_keepRenderedPage_whileShown() {
+        mPdfPageLoader.showPage(0);
+        final Bitmap page = mRenderer.finish(0);
+
+        assertThat(mPdfPageLoader.getBitmap(0)).isSameAs(page);
+        assertThat(mRenderedPages).containsExactly(page);
+    }
+
+    @Test
+    public void should_cancelRender_whenPageIsHidden() {
+        mPdfPageLoader.showPage(0);
+
+        mPdfPageLoader.hidePage(0);
+
+        assertThat(mRenderer.mRequests.get(0).mCancellationToken.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void should_notKeepPage_whenRenderFinishesAfterHidePage() {
+        mPdfPageLoader.showPage(0);
+        mPdfPageLoader.hidePage(0);
+
+        final Bitmap page = mRenderer.finish(0);
+
+        assertThat(mPdfPageLoader.getBitmap(0)).isNull();
+        assertThat(mRenderedPages).isEmpty();
+        // The bitmap went back to the pool
+        assertThat(mRenderer.acquireFromPool(0)).isSameAs(page);
+    }
+
+    @Test
+    public void should_releasePageToPool_whenHidden() {
+        mPdfPageLoader.showPage(0);
+        final Bitmap page = mRenderer.finish(0);
+
+        mPdfPageLoader.hidePage(0);
+
+        assertThat(mPdfPageLoader.getBitmap(0)).isNull();
+        assertThat(mRenderer.acquireFromPool(0)).isSameAs(page);
+    }
+
+    @Test
+    public void should_keepNewRender_whenPageIsShownAgain_beforeOldRenderFinished() {
+        mPdfPageLoader.showPage(0);
+        mPdfPageLoader.hidePage(0);
+        mPdfPageLoader.showPage(0);
+
+        mRenderer.finish(0);
+        final Bitmap page = mRenderer.finish(1);
+
+        assertThat(mPdfPageLoader.getBitmap(0)).isSameAs(page);
+        assertThat(mRenderedPages).containsExactly(page);
+    }
+
+    @Test
+    public void should_recyclePages_andCloseRenderer_whenClosed() {
+        mPdfPageLoader.showPage(0);
+        final Bitmap page = mRenderer.finish(0);
+
+        mPdfPageLoader.close();
+
+        assertThat(page.isRecycled()).isTrue();
+        assertThat(mRenderer.mClosed).isTrue();
+    }
+
+    private static class RenderRequest {
+
+        final Size mTargetSize;
+        final BitmapPool mBitmapPool;
+        final CancellationToken mCancellationToken;
+        final AsyncCallback<Bitmap> mCallback;
+
+        RenderRequest(final Size targetSize, final BitmapPool bitmapPool,
+                final CancellationToken cancellationToken,
+                final AsyncCallback<Bitmap> callback) {
+            mTargetSize = targetSize;
+            mBitmapPool = bitmapPool;
+            mCancellationToken = cancellationToken;
+            mCallback = callback;
+        }
+    }
+
+    /**
+     * Delivers the rendered bitmaps like a renderer ignoring the cancellation.
+     */
+    private static class FakeRenderer implements Renderer {
+
+        final List<RenderRequest> mRequests = new ArrayList<>();
+        boolean mClosed;
+
+        Bitmap finish(final int requestIndex) {
+            final RenderRequest request = mRequests.get(requestIndex);
+            final Bitmap bitmap = acquireFromPool(requestIndex);
+            request.mCallback.onSuccess(bitmap);
+            return bitmap;
+        }
+
+        Bitmap acquireFromPool(final int requestIndex) {
+            final RenderRequest request = mRequests.get(requestIndex);
+            return request.mBitmapPool.acquire(request.mTargetSize.width,
+                    request.mTargetSize.height);
+        }
+
+        @Override
+        public void toBitmap(@NonNull final Size targetSize,
+                @NonNull final CancellationToken cancellationToken,
+                @NonNull final AsyncCallback<Bitmap> asyncCallback) {
+        }
+
+        @Override
+        public void getPageCount(@NonNull final CancellationToken cancellationToken,
+                @NonNull final AsyncCallback<Integer> asyncCallback) {
+        }
+
+        @Override
+        public int getPageCount() {
+            return 1;
+        }
+
+        @Override
+        public void renderPage(final int pageIndex, @NonNull final Size targetSize,
+                @NonNull final BitmapPool bitmapPool, @NonNull final Priority priority,
+                @NonNull final CancellationToken cancellationToken,
+                @NonNull final AsyncCallback<Bitmap> asyncCallback) {
+            mRequests.add(new RenderRequest(targetSize, bitmapPool, cancellationToken,
+                    asyncCallback));
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+}
@@ -46,6 +46,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -602,13 +604,19 @@ public class ReviewScreenTest {
 
         final ReviewActivityTestSpy activity = mActivityTestRule.getCurrentActivity();
 
+        final CountDownLatch shouldAnalyzeLatch = new CountDownLatch(1);
+
         activity.setListenerHook(new ReviewActivityTestSpy.ListenerHook() {
             @Override
             public void onShouldAnalyzeDocument(@NonNull final Document document) {
                 documentToAnalyzeAfterOrientationChange.set(document);
+                shouldAnalyzeLatch.countDown();
             }
         });
 
+        // A rotation which wasn't applied before the orientation change is applied first
+        shouldAnalyzeLatch.await(PAUSE_DURATION_LONG, TimeUnit.MILLISECONDS);
+
         assertAbout(document()).that(
                 documentToAnalyzeAfterOrientationChange.get()).hasRotationDeltaInUserComment(180);
         assertThat(documentToAnalyzeAfterOrientationChange.get().getRotationForDisplay()).isEqualTo(
@@ -59,7 +59,7 @@ public class Helpers {
         }
     }
 
-    private static byte[] inputStreamToByteArray(final InputStream inputStream) throws IOException {
+    public static byte[] inputStreamToByteArray(final InputStream inputStream) throws IOException {
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         byte[] bytes;
         try {
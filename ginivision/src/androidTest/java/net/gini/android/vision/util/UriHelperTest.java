@@ -18,6 +18,9 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * Created by Alpar Szotyori on 28.11.2017.
@@ -123,4 +126,32 @@ public class UriHelperTest {
         assertThat(filename).isEqualTo(TEST_FILE);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void should_getBytes_forContentUri() throws Exception {
+        // Given
+        final Uri contentUri = getTestFileContentUri();
+        // When
+        final byte[] bytes = UriHelper.getBytesFromUri(contentUri,
+                InstrumentationRegistry.getTargetContext());
+        // Then
+        assertThat(bytes).isEqualTo(Helpers.getTestJpeg());
+    }
+
+    @Test
+    public void should_openChannel_forContentUri() throws Exception {
+        // Given
+        final Uri contentUri = getTestFileContentUri();
+        // When
+        final ReadableByteChannel channel = UriHelper.openChannelFromUri(contentUri,
+                InstrumentationRegistry.getTargetContext());
+        // Then
+        final InputStream inputStream = Channels.newInputStream(channel);
+        try {
+            assertThat(Helpers.inputStreamToByteArray(inputStream))
+                    .isEqualTo(Helpers.getTestJpeg());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+}
@@ -118,6 +118,11 @@ public interface Document extends Parcelable {
         /**
          * The document is a payment QR Code.
          */
-        QRCode
+        QRCode,
+        /**
+         * The document consists of several images captured in one session. See {@link
+         * net.gini.android.vision.document.MultiPageDocument}.
+         */
+        MULTI_PAGE
     }
 }
@@ -3,12 +3,13 @@ package net.gini.android.vision;
 import android.content.Context;
 
 import net.gini.android.vision.document.ImageDocument;
-import net.gini.android.vision.internal.camera.photo.PhotoFactory;
+import net.gini.android.vision.internal.document.DocumentPayload;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 
 /**
@@ -99,7 +100,17 @@ public final class GiniVisionDebug {
             return;
         }
         final File jpegFile = new File(giniVisionDir, jpegFilename);
-        PhotoFactory.newPhotoFromDocument((ImageDocument) document).saveToFile(jpegFile);
+        final DocumentPayload payload = document.getPayload();
+        if (payload == null) {
+            LOG.error("Document has no data to write to file {}", jpegFilename);
+            return;
+        }
+        try {
+            payload.writeTo(jpegFile);
+        } catch (final IOException e) {
+            LOG.error("Failed to write document to {}", jpegFile.getAbsolutePath(), e);
+            return;
+        }
         LOG.debug("Document written to {}", jpegFile.getAbsolutePath());
     }
 
@@ -35,17 +35,27 @@ public class GiniVisionFeatureConfiguration implements Parcelable {
     private final DocumentImportEnabledFileTypes mDocumentImportEnabledFileTypes;
     private final boolean mFileImportEnabled;
     private final boolean mQRCodeScanningEnabled;
+    private final PictureResolutionPolicy mPictureResolutionPolicy;
+    private final boolean mAutoCaptureEnabled;
+    private final boolean mDocumentDetectionEnabled;
 
     protected GiniVisionFeatureConfiguration(final Parcel in) {
         mDocumentImportEnabledFileTypes = (DocumentImportEnabledFileTypes) in.readSerializable();
         mFileImportEnabled = in.readByte() != 0;
         mQRCodeScanningEnabled = in.readByte() != 0;
+        mPictureResolutionPolicy = in.readParcelable(
+                PictureResolutionPolicy.class.getClassLoader());
+        mAutoCaptureEnabled = in.readByte() != 0;
+        mDocumentDetectionEnabled = in.readByte() != 0;
     }
 
     protected GiniVisionFeatureConfiguration(final Builder builder) {
         mDocumentImportEnabledFileTypes = builder.getDocumentImportEnabledFileTypes();
         mFileImportEnabled = builder.isFileImportEnabled();
         mQRCodeScanningEnabled = builder.isQRCodeScanningEnabled();
+        mPictureResolutionPolicy = builder.getPictureResolutionPolicy();
+        mAutoCaptureEnabled = builder.isAutoCaptureEnabled();
+        mDocumentDetectionEnabled = builder.isDocumentDetectionEnabled();
     }
 
     /**
@@ -64,6 +74,9 @@ public class GiniVisionFeatureConfiguration implements Parcelable {
         parcel.writeSerializable(mDocumentImportEnabledFileTypes);
         parcel.writeByte((byte) (mFileImportEnabled ? 1 : 0));
         parcel.writeByte((byte) (mQRCodeScanningEnabled ? 1 : 0));
+        parcel.writeParcelable(mPictureResolutionPolicy, i);
+        parcel.writeByte((byte) (mAutoCaptureEnabled ? 1 : 0));
+        parcel.writeByte((byte) (mDocumentDetectionEnabled ? 1 : 0));
     }
 
     /**
@@ -117,6 +130,46 @@ public class GiniVisionFeatureConfiguration implements Parcelable {
         return mQRCodeScanningEnabled;
     }
 
+    /**
+     * <p>
+     *     Retrieve the policy for selecting the camera's picture resolution.
+     * </p>
+     * <p>
+     *     The largest picture resolution is used by default.
+     * </p>
+     * @return the picture resolution policy
+     */
+    @NonNull
+    public PictureResolutionPolicy getPictureResolutionPolicy() {
+        return mPictureResolutionPolicy;
+    }
+
+    /**
+     * <p>
+     *     Find out whether automatic capture has been enabled.
+     * </p>
+     * <p>
+     *     Disabled by default.
+     * </p>
+     * @return {@code true} if automatic capture was enabled
+     */
+    public boolean isAutoCaptureEnabled() {
+        return mAutoCaptureEnabled;
+    }
+
+    /**
+     * <p>
+     *     Find out whether document detection has been enabled.
+     * </p>
+     * <p>
+     *     Disabled by default.
+     * </p>
+     * @return {@code true} if document detection was enabled
+     */
+    public boolean isDocumentDetectionEnabled() {
+        return mDocumentDetectionEnabled;
+    }
+
     /**
      * <p>
      *     Feature configuration builder.
@@ -128,6 +181,10 @@ public class GiniVisionFeatureConfiguration implements Parcelable {
                 DocumentImportEnabledFileTypes.NONE;
         private boolean mFileImportEnabled;
         private boolean mQRCodeScanningEnabled;
+        private PictureResolutionPolicy mPictureResolutionPolicy =
+                PictureResolutionPolicy.largest();
+        private boolean mAutoCaptureEnabled;
+        private boolean mDocumentDetectionEnabled;
 
         protected Builder() {
         }
@@ -204,6 +261,74 @@ public class GiniVisionFeatureConfiguration implements Parcelable {
             mQRCodeScanningEnabled = qrCodeScanningEnabled;
             return this;
         }
+
+        @NonNull
+        private PictureResolutionPolicy getPictureResolutionPolicy() {
+            return mPictureResolutionPolicy;
+        }
+
+        /**
+         * <p>
+         *     Set the policy for selecting the camera's picture resolution. It is also used by
+         *     the {@link net.gini.android.vision.requirements.GiniVisionRequirements} to estimate
+         *     the memory needed for the pictures.
+         * </p>
+         * <p>
+         *     The largest picture resolution is used by default.
+         * </p>
+         * @param pictureResolutionPolicy the picture resolution policy
+         * @return the {@link Builder} instance
+         */
+        @NonNull
+        public Builder setPictureResolutionPolicy(
+                @NonNull final PictureResolutionPolicy pictureResolutionPolicy) {
+            mPictureResolutionPolicy = pictureResolutionPolicy;
+            return this;
+        }
+
+        private boolean isAutoCaptureEnabled() {
+            return mAutoCaptureEnabled;
+        }
+
+        /**
+         * <p>
+         *     Enable/disable automatic capture. When enabled, the Camera Screen takes a picture
+         *     as soon as the document in the camera preview is sharp and the device is held
+         *     steady. The camera trigger button can still be used.
+         * </p>
+         * <p>
+         *     Disabled by default.
+         * </p>
+         * @param autoCaptureEnabled {@code true} to enable automatic capture
+         * @return the {@link Builder} instance
+         */
+        @NonNull
+        public Builder setAutoCaptureEnabled(final boolean autoCaptureEnabled) {
+            mAutoCaptureEnabled = autoCaptureEnabled;
+            return this;
+        }
+
+        private boolean isDocumentDetectionEnabled() {
+            return mDocumentDetectionEnabled;
+        }
+
+        /**
+         * <p>
+         *     Enable/disable document detection. When enabled, the Camera Screen outlines the
+         *     document detected in the camera preview and the document's corners are attached to
+         *     the picture taken.
+         * </p>
+         * <p>
+         *     Disabled by default.
+         * </p>
+         * @param documentDetectionEnabled {@code true} to enable document detection
+         * @return the {@link Builder} instance
+         */
+        @NonNull
+        public Builder setDocumentDetectionEnabled(final boolean documentDetectionEnabled) {
+            mDocumentDetectionEnabled = documentDetectionEnabled;
+            return this;
+        }
     }
 
 }
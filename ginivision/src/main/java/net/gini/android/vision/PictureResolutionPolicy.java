@@ -0,0 +1,244 @@
+package net.gini.android.vision;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ *     Determines which of the camera's picture resolutions is used to take pictures.
+ * </p>
+ * <p>
+ *     Larger pictures need more memory for processing and take longer to upload. On devices with
+ *     high resolution cameras you can limit the picture size with one of these policies. The
+ *     preview resolution is always selected to match the picture's aspect ratio.
+ * </p>
+ * <p>
+ *     The policy is set with {@link GiniVisionFeatureConfiguration.Builder#setPictureResolutionPolicy(PictureResolutionPolicy)}.
+ *     By default the largest picture resolution is used.
+ * </p>
+ */
+public final class PictureResolutionPolicy implements Parcelable {
+
+    /**
+     * @exclude
+     */
+    public static final Creator<PictureResolutionPolicy> CREATOR =
+            new Creator<PictureResolutionPolicy>() {
+                @Override
+                public PictureResolutionPolicy createFromParcel(final Parcel in) {
+                    return new PictureResolutionPolicy(in);
+                }
+
+                @Override
+                public PictureResolutionPolicy[] newArray(final int size) {
+                    return new PictureResolutionPolicy[size];
+                }
+            };
+
+    /**
+     * The kinds of picture resolution policies.
+     */
+    public enum Type {
+        /**
+         * The largest picture resolution.
+         */
+        LARGEST,
+        /**
+         * The largest picture resolution within a megapixel range.
+         */
+        MEGAPIXEL_RANGE,
+        /**
+         * The largest picture resolution whose decoded bitmap fits into a byte budget.
+         */
+        MEMORY_BUDGET,
+        /**
+         * The smallest picture resolution with at least the requested megapixels.
+         */
+        MIN_MEGAPIXELS
+    }
+
+    private static final PictureResolutionPolicy LARGEST =
+            new PictureResolutionPolicy(Type.LARGEST, 0, 0, 0);
+
+    private final Type mType;
+    private final float mMinMegapixels;
+    private final float mMaxMegapixels;
+    private final long mMaxBytes;
+
+    /**
+     * <p>
+     *     Use the largest picture resolution. This is the default.
+     * </p>
+     *
+     * @return the policy
+     */
+    @NonNull
+    public static PictureResolutionPolicy largest() {
+        return LARGEST;
+    }
+
+    /**
+     * <p>
+     *     Use the largest picture resolution between the minimum and maximum megapixels.
+     * </p>
+     * <p>
+     *     If no resolution is in the range, then the smallest resolution above the range is used.
+     *     If there is none above, then the largest resolution is used.
+     * </p>
+     *
+     * @param minMegapixels the minimum megapixels
+     * @param maxMegapixels the maximum megapixels
+     * @return the policy
+     * @throws IllegalArgumentException if the minimum is negative or larger than the maximum
+     */
+    @NonNull
+    public static PictureResolutionPolicy megapixelRange(final float minMegapixels,
+            final float maxMegapixels) {
+        if (minMegapixels < 0 || minMegapixels > maxMegapixels) {
+            throw new IllegalArgumentException(String.format(Locale.US,
+                    "Invalid megapixel range: %.1f - %.1f", minMegapixels, maxMegapixels));
+        }
+        return new PictureResolutionPolicy(Type.MEGAPIXEL_RANGE, minMegapixels, maxMegapixels,
+                0);
+    }
+
+    /**
+     * <p>
+     *     Use the largest picture resolution which can be decoded into an ARGB_8888 bitmap with at
+     *     most the given number of bytes.
+     * </p>
+     * <p>
+     *     If every resolution exceeds the budget, then the smallest resolution is used.
+     * </p>
+     *
+     * @param maxBytes the maximum bytes of the decoded picture
+     * @return the policy
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    @NonNull
+    public static PictureResolutionPolicy memoryBudget(final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + maxBytes);
+        }
+        return new PictureResolutionPolicy(Type.MEMORY_BUDGET, 0, 0, maxBytes);
+    }
+
+    /**
+     * <p>
+     *     Use the smallest picture resolution with at least the given megapixels and the same
+     *     aspect ratio as the camera sensor, which is also the preview's aspect ratio.
+     * </p>
+     * <p>
+     *     If no resolution is large enough, then the largest resolution is used.
+     * </p>
+     *
+     * @param minMegapixels the minimum megapixels, for example 8
+     * @return the policy
+     * @throws IllegalArgumentException if the minimum is negative
+     */
+    @NonNull
+    public static PictureResolutionPolicy minMegapixels(final float minMegapixels) {
+        if (minMegapixels < 0) {
+            throw new IllegalArgumentException("Invalid minimum megapixels: " + minMegapixels);
+        }
+        return new PictureResolutionPolicy(Type.MIN_MEGAPIXELS, minMegapixels, 0, 0);
+    }
+
+    private PictureResolutionPolicy(final Type type, final float minMegapixels,
+            final float maxMegapixels, final long maxBytes) {
+        mType = type;
+        mMinMegapixels = minMegapixels;
+        mMaxMegapixels = maxMegapixels;
+        mMaxBytes = maxBytes;
+    }
+
+    private PictureResolutionPolicy(final Parcel in) {
+        mType = (Type) in.readSerializable();
+        mMinMegapixels = in.readFloat();
+        mMaxMegapixels = in.readFloat();
+        mMaxBytes = in.readLong();
+    }
+
+    /**
+     * @exclude
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @exclude
+     */
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        dest.writeSerializable(mType);
+        dest.writeFloat(mMinMegapixels);
+        dest.writeFloat(mMaxMegapixels);
+        dest.writeLong(mMaxBytes);
+    }
+
+    @NonNull
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * @return the minimum megapixels for {@link Type#MEGAPIXEL_RANGE} and {@link
+     * Type#MIN_MEGAPIXELS}, otherwise 0
+     */
+    public float getMinMegapixels() {
+        return mMinMegapixels;
+    }
+
+    /**
+     * @return the maximum megapixels for {@link Type#MEGAPIXEL_RANGE}, otherwise 0
+     */
+    public float getMaxMegapixels() {
+        return mMaxMegapixels;
+    }
+
+    /**
+     * @return the maximum decoded bytes for {@link Type#MEMORY_BUDGET}, otherwise 0
+     */
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final PictureResolutionPolicy that = (PictureResolutionPolicy) o;
+        return mType == that.mType
+                && Float.compare(that.mMinMegapixels, mMinMegapixels) == 0
+                && Float.compare(that.mMaxMegapixels, mMaxMegapixels) == 0
+                && mMaxBytes == that.mMaxBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mType.hashCode();
+        result = 31 * result + Float.floatToIntBits(mMinMegapixels);
+        result = 31 * result + Float.floatToIntBits(mMaxMegapixels);
+        result = 31 * result + (int) (mMaxBytes ^ (mMaxBytes >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PictureResolutionPolicy{"
+                + "type=" + mType
+                + ", minMegapixels=" + mMinMegapixels
+                + ", maxMegapixels=" + mMaxMegapixels
+                + ", maxBytes=" + mMaxBytes
+                + '}';
+    }
+}
@@ -15,6 +15,7 @@ import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewPager;
 import android.support.v4.view.ViewPropertyAnimatorCompat;
 import android.support.v4.view.ViewPropertyAnimatorListenerAdapter;
 import android.text.TextUtils;
@@ -33,12 +34,20 @@ import net.gini.android.vision.Document;
 import net.gini.android.vision.GiniVisionError;
 import net.gini.android.vision.R;
 import net.gini.android.vision.document.GiniVisionDocument;
+import net.gini.android.vision.document.MultiPageDocument;
 import net.gini.android.vision.document.PdfDocument;
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.ParcelableMemoryCache;
+import net.gini.android.vision.internal.document.DocumentPayload;
 import net.gini.android.vision.internal.document.DocumentRenderer;
 import net.gini.android.vision.internal.document.DocumentRendererFactory;
+import net.gini.android.vision.internal.pdf.PdfTileSource;
+import net.gini.android.vision.internal.tiles.RegionDecoderTileSource;
+import net.gini.android.vision.internal.tiles.TileSource;
 import net.gini.android.vision.internal.ui.ErrorSnackbar;
 import net.gini.android.vision.internal.ui.FragmentImplCallback;
+import net.gini.android.vision.internal.ui.TiledTouchImageView;
 import net.gini.android.vision.internal.util.Size;
 import net.gini.android.vision.util.UriHelper;
 
@@ -76,7 +85,9 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
     private DocumentRenderer mDocumentRenderer;
     private final GiniVisionDocument mDocument;
     private final String mDocumentAnalysisErrorMessage;
-    private ImageView mImageDocument;
+    private TiledTouchImageView mImageDocument;
+    private ViewPager mPdfPagesPager;
+    private PdfPagesAdapter mPdfPagesAdapter;
     private RelativeLayout mLayoutRoot;
     private AnalysisFragmentListener mListener = NO_OP_LISTENER;
     private ProgressBar mProgressActivity;
@@ -90,6 +101,7 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
     private static final int HINT_START_DELAY = 5000;
     private static final int HINT_CYCLE_INTERVAL = 4000;
     private boolean mStopped;
+    private CancellationToken mCancellationToken = new CancellationToken();
 
 
     AnalysisFragmentImpl(final FragmentImplCallback fragment, final Document document,
@@ -154,6 +166,8 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
             return;
         }
         forcePortraitOrientationOnPhones(activity);
+        ParcelableMemoryCache.getInstance().init(activity);
+        DocumentPayload.init(activity);
         mDocumentRenderer = DocumentRendererFactory.fromDocument(mDocument, activity);
         mHints = generateRandomHintsList();
     }
@@ -168,22 +182,26 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
     private final Handler mHandler = new Handler(Looper.getMainLooper());
 
     public void onDestroy() {
+        if (mDocumentRenderer != null) {
+            mDocumentRenderer.close();
+        }
         mImageDocument = null; // NOPMD
         stopScanAnimation();
     }
 
     public void onStart() {
         mStopped = false;
+        mCancellationToken = new CancellationToken();
         final Activity activity = mFragment.getActivity();
         if (activity == null) {
             return;
         }
         startScanAnimation();
         LOG.debug("Loading document data");
-        mDocument.loadData(activity,
-                new AsyncCallback<byte[]>() {
+        mDocument.loadData(activity, mCancellationToken,
+                new AsyncCallback<DocumentPayload>() {
                     @Override
-                    public void onSuccess(final byte[] result) {
+                    public void onSuccess(final DocumentPayload result) {
                         LOG.debug("Document data loaded");
                         if (mStopped) {
                             return;
@@ -302,6 +320,8 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
 
     void onStop() {
         mStopped = true;
+        mCancellationToken.cancel();
+        hidePdfPages();
         mHandler.removeCallbacks(mHintCycleRunnable);
         if (mHintAnimation != null) {
             mHintAnimation.cancel();
@@ -351,6 +371,7 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
     private void bindViews(@NonNull final View view) {
         mLayoutRoot = view.findViewById(R.id.gv_layout_root);
         mImageDocument = view.findViewById(R.id.gv_image_picture);
+        mPdfPagesPager = view.findViewById(R.id.gv_pdf_pages);
         mProgressActivity = view.findViewById(R.id.gv_progress_activity);
         mHintImageView = view.findViewById(R.id.gv_analysis_hint_image);
         mHintTextView = view.findViewById(R.id.gv_analysis_hint_text);
@@ -410,17 +431,37 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
     private void showDocument() {
         LOG.debug("Rendering the document");
         final Size previewSize = new Size(mImageDocument.getWidth(), mImageDocument.getHeight());
-        mDocumentRenderer.toBitmap(previewSize, new DocumentRenderer.Callback() {
-            @Override
-            public void onBitmapReady(@Nullable final Bitmap bitmap, final int rotationForDisplay) {
-                LOG.debug("Document rendered");
-                if (mStopped) {
-                    return;
-                }
-                rotateDocumentImageView(rotationForDisplay);
-                mImageDocument.setImageBitmap(bitmap);
-            }
-        });
+        mDocumentRenderer.toBitmap(previewSize, mCancellationToken,
+                new DocumentRenderer.Callback() {
+                    @Override
+                    public void onBitmapReady(@Nullable final Bitmap bitmap,
+                            final int rotationForDisplay) {
+                        LOG.debug("Document rendered");
+                        if (mStopped) {
+                            return;
+                        }
+                        rotateDocumentImageView(rotationForDisplay);
+                        mImageDocument.setImageBitmap(bitmap);
+                        if (bitmap != null) {
+                            mImageDocument.setTileSource(createTileSource());
+                        }
+                    }
+                });
+    }
+
+    @Nullable
+    private TileSource createTileSource() {
+        final Activity activity = mFragment.getActivity();
+        if (activity == null) {
+            return null;
+        }
+        if (mDocument instanceof PdfDocument) {
+            return PdfTileSource.fromDocument((PdfDocument) mDocument, activity);
+        }
+        final GiniVisionDocument shownDocument = mDocument instanceof MultiPageDocument
+                ? ((MultiPageDocument) mDocument).getDocuments().get(0) : mDocument;
+        final DocumentPayload payload = shownDocument.getPayload();
+        return payload != null ? new RegionDecoderTileSource(payload) : null;
     }
 
     private void showPdfInfoForPdfDocument() {
@@ -442,7 +483,7 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
             mPdfPageCountTextView.setVisibility(View.VISIBLE);
             mPdfPageCountTextView.setText("");
 
-            mDocumentRenderer.getPageCount(new AsyncCallback<Integer>() {
+            mDocumentRenderer.getPageCount(mCancellationToken, new AsyncCallback<Integer>() {
                 @Override
                 public void onSuccess(final Integer result) {
                     if (result > 0) {
@@ -450,6 +491,9 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
                         final String pageCountString = activity.getResources().getQuantityString(
                                 R.plurals.gv_analysis_pdf_pages, result, result);
                         mPdfPageCountTextView.setText(pageCountString);
+                        if (result > 1) {
+                            showPdfPages(activity, pdfDocument, result);
+                        }
                     } else {
                         mPdfPageCountTextView.setVisibility(View.GONE);
                     }
@@ -463,6 +507,30 @@ class AnalysisFragmentImpl implements AnalysisFragmentInterface {
         }
     }
 
+    private void showPdfPages(@NonNull final Activity activity,
+            @NonNull final PdfDocument pdfDocument, final int pageCount) {
+        if (mPdfPagesAdapter != null) {
+            return;
+        }
+        LOG.debug("Showing {} pdf pages", pageCount);
+        final Size pageSize = new Size(mImageDocument.getWidth(), mImageDocument.getHeight());
+        mPdfPagesAdapter = new PdfPagesAdapter(pdfDocument, activity, pageSize, pageCount);
+        mPdfPagesPager.setAdapter(mPdfPagesAdapter);
+        mPdfPagesPager.setVisibility(View.VISIBLE);
+        mImageDocument.setVisibility(View.GONE);
+    }
+
+    private void hidePdfPages() {
+        if (mPdfPagesAdapter == null) {
+            return;
+        }
+        mPdfPagesPager.setAdapter(null);
+        mPdfPagesPager.setVisibility(View.GONE);
+        mImageDocument.setVisibility(View.VISIBLE);
+        mPdfPagesAdapter.close();
+        mPdfPagesAdapter = null; // NOPMD
+    }
+
     @Nullable
     private String getPdfFilename(final Activity activity, final PdfDocument pdfDocument) {
         final Uri uri = pdfDocument.getUri();
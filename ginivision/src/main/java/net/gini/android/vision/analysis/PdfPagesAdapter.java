@@ -0,0 +1,79 @@
+package net.gini.android.vision.analysis;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.v4.view.PagerAdapter;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import net.gini.android.vision.document.PdfDocument;
+import net.gini.android.vision.internal.pdf.PdfPageLoader;
+import net.gini.android.vision.internal.util.Size;
+
+/**
+ * Shows the pages of a pdf in a pager. Pages are shown as thumbnails until they were rendered at
+ * display resolution.
+ */
+class PdfPagesAdapter extends PagerAdapter implements PdfPageLoader.Listener {
+
+    private final int mPageCount;
+    private final PdfPageLoader mPageLoader;
+    private final SparseArray<ImageView> mPageViews = new SparseArray<>();
+
+    PdfPagesAdapter(@NonNull final PdfDocument document, @NonNull final Context context,
+            @NonNull final Size pageSize, final int pageCount) {
+        mPageCount = pageCount;
+        mPageLoader = new PdfPageLoader(document, context, pageSize, this);
+        mPageLoader.start(pageCount);
+    }
+
+    @Override
+    public int getCount() {
+        return mPageCount;
+    }
+
+    @Override
+    public Object instantiateItem(final ViewGroup container, final int position) {
+        final ImageView pageView = new ImageView(container.getContext());
+        pageView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        pageView.setImageBitmap(mPageLoader.getBitmap(position));
+        container.addView(pageView, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        mPageViews.put(position, pageView);
+        mPageLoader.showPage(position);
+        return pageView;
+    }
+
+    @Override
+    public void destroyItem(final ViewGroup container, final int position, final Object object) {
+        final ImageView pageView = (ImageView) object;
+        container.removeView(pageView);
+        pageView.setImageDrawable(null);
+        mPageViews.remove(position);
+        mPageLoader.hidePage(position);
+    }
+
+    @Override
+    public boolean isViewFromObject(final View view, final Object object) {
+        return view == object;
+    }
+
+    @Override
+    public void onPageRendered(final int pageIndex, @NonNull final Bitmap bitmap) {
+        final ImageView pageView = mPageViews.get(pageIndex);
+        if (pageView != null) {
+            pageView.setImageBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Must be called after the adapter was removed from the pager.
+     */
+    void close() {
+        mPageViews.clear();
+        mPageLoader.close();
+    }
+}
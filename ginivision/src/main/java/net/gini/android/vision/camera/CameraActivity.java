@@ -122,6 +122,11 @@ import java.util.ArrayList;
  *         <b>Document corner guides:</b> via the color resource named {@code gv_camera_preview_corners}
  *     </li>
  *     <li>
+ *         <b>Detected document outline:</b> via the color resource named {@code
+ *         gv_camera_document_outline} and the dimension resource named {@code
+ *         gv_camera_document_outline_width}
+ *     </li>
+ *     <li>
  *         <b>Camera trigger button:</b> via images for mdpi, hdpi, xhdpi, xxhdpi, xxxhdpi named {@code
  *         gv_camera_trigger_default.png} and {@code gv_camera_trigger_pressed.png}
  *     </li>
@@ -744,6 +749,21 @@ public class CameraActivity extends AppCompatActivity implements CameraFragmentL
         mFragment.showError(message, duration);
     }
 
+    @Override
+    public void startMultiPageSession() {
+        mFragment.startMultiPageSession();
+    }
+
+    @Override
+    public void finishMultiPageSession() {
+        mFragment.finishMultiPageSession();
+    }
+
+    @Override
+    public void cancelMultiPageSession() {
+        mFragment.cancelMultiPageSession();
+    }
+
     private void clearMemory() {
         mDocument = null; // NOPMD
     }
@@ -130,6 +130,24 @@ public class CameraFragmentCompat extends Fragment implements CameraFragmentInte
         mFragmentImpl.onStop();
     }
 
+    /**
+     * @exclude
+     */
+    @Override
+    public void onSaveInstanceState(final Bundle outState) {
+        super.onSaveInstanceState(outState);
+        mFragmentImpl.onSaveInstanceState(outState);
+    }
+
+    /**
+     * @exclude
+     */
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mFragmentImpl.onDestroy();
+    }
+
     @Override
     public void onActivityResult(final int requestCode, final int resultCode, final Intent data) {
         final boolean handled = mFragmentImpl.onActivityResult(requestCode, resultCode, data);
@@ -224,6 +242,21 @@ public class CameraFragmentCompat extends Fragment implements CameraFragmentInte
         mFragmentImpl.showError(message, duration);
     }
 
+    @Override
+    public void startMultiPageSession() {
+        mFragmentImpl.startMultiPageSession();
+    }
+
+    @Override
+    public void finishMultiPageSession() {
+        mFragmentImpl.finishMultiPageSession();
+    }
+
+    @Override
+    public void cancelMultiPageSession() {
+        mFragmentImpl.cancelMultiPageSession();
+    }
+
     @Override
     public void requestPermission(@NonNull final String permission,
             @NonNull final PermissionRequestListener listener) {
@@ -47,13 +47,23 @@ import net.gini.android.vision.GiniVisionFeatureConfiguration;
 import net.gini.android.vision.R;
 import net.gini.android.vision.document.DocumentFactory;
 import net.gini.android.vision.document.GiniVisionDocument;
+import net.gini.android.vision.document.MultiPageDocument;
 import net.gini.android.vision.document.QRCodeDocument;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.autocapture.AutoCaptureDetector;
+import net.gini.android.vision.internal.camera.api.Camera2Controller;
 import net.gini.android.vision.internal.camera.api.CameraController;
 import net.gini.android.vision.internal.camera.api.CameraException;
 import net.gini.android.vision.internal.camera.api.CameraInterface;
+import net.gini.android.vision.internal.camera.api.PreviewBufferPool;
 import net.gini.android.vision.internal.camera.api.UIExecutor;
+import net.gini.android.vision.internal.camera.photo.ParcelableMemoryCache;
 import net.gini.android.vision.internal.camera.photo.Photo;
 import net.gini.android.vision.internal.camera.view.CameraPreviewSurface;
+import net.gini.android.vision.internal.camera.view.DocumentOutlineView;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.documentdetection.DocumentDetector;
+import net.gini.android.vision.internal.documentdetection.Quad;
 import net.gini.android.vision.internal.fileimport.FileChooserActivity;
 import net.gini.android.vision.internal.permission.PermissionRequestListener;
 import net.gini.android.vision.internal.qrcode.PaymentQRCodeData;
@@ -82,6 +92,7 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
     static final int DEFAULT_ANIMATION_DURATION = 200;
     private static final long HIDE_QRCODE_DETECTED_POPUP_DELAY_MS = 10000;
     private static final long DIFFERENT_QRCODE_DETECTED_POPUP_DELAY_MS = 200;
+    private static final int PREVIEW_BUFFER_COUNT = 3;
     private static final Logger LOG = LoggerFactory.getLogger(CameraFragmentImpl.class);
 
     private static final CameraFragmentListener NO_OP_LISTENER = new CameraFragmentListener() {
@@ -117,7 +128,13 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
     private CameraFragmentListener mListener = NO_OP_LISTENER;
     private final UIExecutor mUIExecutor = new UIExecutor();
     private CameraInterface mCameraController;
-    private PaymentQRCodeReader mPaymentQRCodeReader;
+    // The detectors are read by the preview callback on the camera thread
+    private volatile PaymentQRCodeReader mPaymentQRCodeReader;
+    private volatile AutoCaptureDetector mAutoCaptureDetector;
+    private volatile DocumentDetector mDocumentDetector;
+    // Rotation of the preview frames, updated when the preview is started
+    private volatile int mCameraRotation;
+    private DocumentOutlineView mDocumentOutline;
 
     private RelativeLayout mLayoutRoot;
     private CameraPreviewSurface mCameraPreview;
@@ -143,6 +160,11 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
 
     private CompletableFuture<SurfaceHolder> mSurfaceCreatedFuture = new CompletableFuture<>();
     private boolean mIsTakingPicture;
+    private MultiPageSession mMultiPageSession;
+    // Waiting for its pages to be compressed
+    private MultiPageSession mFinishingMultiPageSession;
+    // Finishing waits for the picture being taken to be added as the last page
+    private boolean mFinishMultiPageSessionRequested;
 
     private boolean mImportDocumentButtonEnabled;
 
@@ -276,6 +298,11 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
             return;
         }
         forcePortraitOrientationOnPhones(activity);
+        ParcelableMemoryCache.getInstance().init(activity);
+        DocumentPayload.init(activity);
+        if (savedInstanceState != null) {
+            mMultiPageSession = MultiPageSession.restore(savedInstanceState);
+        }
     }
 
     View onCreateView(final LayoutInflater inflater, final ViewGroup container,
@@ -293,6 +320,12 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
             return;
         }
         initViews();
+        if (mGiniVisionFeatureConfiguration.isAutoCaptureEnabled()) {
+            initAutoCaptureDetector();
+        }
+        if (mGiniVisionFeatureConfiguration.isDocumentDetectionEnabled()) {
+            initDocumentDetector();
+        }
         initCameraController(activity);
         if (mGiniVisionFeatureConfiguration.isQRCodeScanningEnabled()) {
             mHideQRCodeDetectedPopupRunnable = new HideQRCodeDetectedRunnable();
@@ -343,8 +376,10 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
             @Override
             public void onResult(final boolean isAvailable) {
                 if (isAvailable) {
-                    mPaymentQRCodeReader = PaymentQRCodeReader.newInstance(qrCodeDetectorTask);
-                    mPaymentQRCodeReader.setListener(CameraFragmentImpl.this);
+                    final PaymentQRCodeReader paymentQRCodeReader =
+                            PaymentQRCodeReader.newInstance(qrCodeDetectorTask);
+                    paymentQRCodeReader.setListener(CameraFragmentImpl.this);
+                    mPaymentQRCodeReader = paymentQRCodeReader;
                 } else {
                     LOG.warn(
                             "QRCode detector dependencies are not yet available. QRCode detection is disabled.");
@@ -359,6 +394,57 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
         });
     }
 
+    private void initAutoCaptureDetector() {
+        if (mAutoCaptureDetector != null) {
+            return;
+        }
+        final AutoCaptureDetector autoCaptureDetector = AutoCaptureDetector.newInstance();
+        autoCaptureDetector.setListener(new AutoCaptureDetector.Listener() {
+            @Override
+            public void onCaptureReady() {
+                // Only take pictures when the user could do it with the trigger button
+                if (mInterfaceHidden || !mButtonCameraTrigger.isEnabled()) {
+                    LOG.info("Will not take picture automatically: camera trigger unavailable");
+                    armAutoCapture();
+                    return;
+                }
+                LOG.info("Taking picture automatically");
+                takePicture();
+            }
+        });
+        mAutoCaptureDetector = autoCaptureDetector;
+    }
+
+    private void initDocumentDetector() {
+        if (mDocumentDetector != null) {
+            return;
+        }
+        final DocumentDetector documentDetector = DocumentDetector.newInstance();
+        documentDetector.setListener(new DocumentDetector.Listener() {
+            @Override
+            public void onQuadDetected(@Nullable final Quad quad) {
+                // The preview is displayed rotated by the camera rotation
+                mDocumentOutline.setQuad(quad != null ? quad.rotate(mCameraRotation) : null);
+            }
+        });
+        mDocumentDetector = documentDetector;
+        mDocumentOutline.setVisibility(View.VISIBLE);
+    }
+
+    private void armAutoCapture() {
+        final AutoCaptureDetector autoCaptureDetector = mAutoCaptureDetector;
+        if (autoCaptureDetector != null) {
+            autoCaptureDetector.arm();
+        }
+    }
+
+    private void disarmAutoCapture() {
+        final AutoCaptureDetector autoCaptureDetector = mAutoCaptureDetector;
+        if (autoCaptureDetector != null) {
+            autoCaptureDetector.disarm();
+        }
+    }
+
     @VisibleForTesting
     PaymentQRCodeReader getPaymentQRCodeReader() {
         return mPaymentQRCodeReader;
@@ -428,6 +514,8 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
     }
 
     private void startPreview(final SurfaceHolder holder) {
+        // The camera is open and the display rotation can't change without restarting the preview
+        mCameraRotation = mCameraController.getCameraRotation();
         mCameraController.startPreview(holder)
                 .handle(new CompletableFuture.BiFun<Void, Throwable, Void>() {
                     @Override
@@ -435,6 +523,8 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
                         if (throwable != null) {
                             handleError(GiniVisionError.ErrorCode.CAMERA_NO_PREVIEW,
                                     "Cannot start preview", throwable);
+                        } else {
+                            armAutoCapture();
                         }
                         return null;
                     }
@@ -531,14 +621,50 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
         clearQRCodeDetectedPopUpAnimation();
     }
 
+    void onSaveInstanceState(@NonNull final Bundle outState) {
+        // A finishing session is restored as a running one
+        final MultiPageSession session = mMultiPageSession != null ? mMultiPageSession
+                : mFinishingMultiPageSession;
+        if (session != null) {
+            session.saveState(outState);
+        }
+    }
+
+    void onDestroy() {
+        // Pending compressions must not call back into the destroyed fragment, the pages were
+        // saved in the instance state, if the fragment is recreated
+        if (mMultiPageSession != null) {
+            mMultiPageSession.cancel();
+            mMultiPageSession = null; // NOPMD
+        }
+        if (mFinishingMultiPageSession != null) {
+            mFinishingMultiPageSession.cancel();
+            mFinishingMultiPageSession = null; // NOPMD
+        }
+        mFinishMultiPageSessionRequested = false;
+    }
+
     private void closeCamera() {
         LOG.info("Closing camera");
-        if (mPaymentQRCodeReader != null) {
-            mPaymentQRCodeReader.release();
-            mPaymentQRCodeReader = null; // NOPMD
+        // Remove the callback first to stop handing frames to the detectors being released
+        mCameraController.setPreviewCallback(null);
+        final PaymentQRCodeReader paymentQRCodeReader = mPaymentQRCodeReader;
+        mPaymentQRCodeReader = null; // NOPMD
+        if (paymentQRCodeReader != null) {
+            paymentQRCodeReader.release();
+        }
+        final AutoCaptureDetector autoCaptureDetector = mAutoCaptureDetector;
+        mAutoCaptureDetector = null; // NOPMD
+        if (autoCaptureDetector != null) {
+            autoCaptureDetector.release();
+        }
+        final DocumentDetector documentDetector = mDocumentDetector;
+        mDocumentDetector = null; // NOPMD
+        if (documentDetector != null) {
+            documentDetector.release();
         }
+        mDocumentOutline.setQuad(null);
         mCameraController.disableTapToFocus(mCameraPreview);
-        mCameraController.setPreviewCallback(null);
         mCameraController.stopPreview();
         mCameraController.close();
         LOG.info("Camera closed");
@@ -548,6 +674,7 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
         mLayoutRoot = view.findViewById(R.id.gv_root);
         mCameraPreview = view.findViewById(R.id.gv_camera_preview);
         mImageCorners = view.findViewById(R.id.gv_image_corners);
+        mDocumentOutline = view.findViewById(R.id.gv_document_outline);
         mCameraFocusIndicator = view.findViewById(R.id.gv_camera_focus_indicator);
         mButtonCameraTrigger = view.findViewById(R.id.gv_button_camera_trigger);
         final ViewStub stubNoPermission = view.findViewById(R.id.gv_stub_camera_no_permission);
@@ -585,30 +712,7 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
         mButtonCameraTrigger.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(final View v) {
-                LOG.info("Taking picture");
-                if (!mCameraController.isPreviewRunning()) {
-                    LOG.info("Will not take picture: preview must be running");
-                    return;
-                }
-                if (mIsTakingPicture) {
-                    LOG.info("Already taking a picture");
-                    return;
-                }
-                mIsTakingPicture = true;
-                mCameraController.takePicture()
-                        .handle(new CompletableFuture.BiFun<Photo, Throwable, Void>() {
-                            @Override
-                            public Void apply(final Photo photo, final Throwable throwable) {
-                                mUIExecutor.runOnUiThread(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        mIsTakingPicture = false;
-                                        callListener(photo, throwable);
-                                    }
-                                });
-                                return null;
-                            }
-                        });
+                takePicture();
             }
         });
         mButtonImportDocument.setOnClickListener(new View.OnClickListener() {
@@ -878,6 +982,65 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
                 duration).show();
     }
 
+    @Override
+    public void startMultiPageSession() {
+        if (mMultiPageSession != null) {
+            LOG.warn("Multi-page session already started");
+            return;
+        }
+        LOG.info("Start multi-page session");
+        mMultiPageSession = new MultiPageSession();
+        mFinishMultiPageSessionRequested = false;
+    }
+
+    @Override
+    public void finishMultiPageSession() {
+        if (mMultiPageSession == null) {
+            LOG.warn("Cannot finish multi-page session: no session started");
+            return;
+        }
+        if (mIsTakingPicture) {
+            LOG.info("Finishing multi-page session after the picture was taken");
+            mFinishMultiPageSessionRequested = true;
+            return;
+        }
+        final MultiPageSession session = mMultiPageSession;
+        mMultiPageSession = null; // NOPMD
+        mFinishMultiPageSessionRequested = false;
+        LOG.info("Finish multi-page session with {} pages", session.getPageCount());
+        if (session.isProcessing()) {
+            showActivityIndicatorAndDisableInteraction();
+        }
+        mFinishingMultiPageSession = session;
+        session.finish(new AsyncCallback<MultiPageDocument>() {
+            @Override
+            public void onSuccess(final MultiPageDocument result) {
+                mFinishingMultiPageSession = null; // NOPMD
+                hideActivityIndicatorAndEnableInteraction();
+                mListener.onDocumentAvailable(result);
+            }
+
+            @Override
+            public void onError(final Exception exception) {
+                mFinishingMultiPageSession = null; // NOPMD
+                hideActivityIndicatorAndEnableInteraction();
+                handleError(GiniVisionError.ErrorCode.CAMERA_SHOT_FAILED,
+                        "Failed to finish multi-page session", exception);
+            }
+        });
+    }
+
+    @Override
+    public void cancelMultiPageSession() {
+        if (mMultiPageSession == null) {
+            return;
+        }
+        LOG.info("Cancel multi-page session");
+        mMultiPageSession.cancel();
+        mMultiPageSession = null; // NOPMD
+        mFinishMultiPageSessionRequested = false;
+    }
+
     private void enableInteraction() {
         if (mCameraPreview == null
                 || mButtonImportDocument == null
@@ -927,24 +1090,85 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
                 }, R.string.gv_document_import_close_error);
     }
 
+    private void takePicture() {
+        LOG.info("Taking picture");
+        if (!mCameraController.isPreviewRunning()) {
+            LOG.info("Will not take picture: preview must be running");
+            return;
+        }
+        if (mIsTakingPicture) {
+            LOG.info("Already taking a picture");
+            return;
+        }
+        mIsTakingPicture = true;
+        disarmAutoCapture();
+        final DocumentDetector documentDetector = mDocumentDetector;
+        final Quad documentQuad = documentDetector != null
+                ? documentDetector.getLatestQuad() : null;
+        mCameraController.takePicture(documentQuad)
+                .handle(new CompletableFuture.BiFun<Photo, Throwable, Void>() {
+                    @Override
+                    public Void apply(final Photo photo, final Throwable throwable) {
+                        mUIExecutor.runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                mIsTakingPicture = false;
+                                callListener(photo, throwable);
+                                if (mFinishMultiPageSessionRequested) {
+                                    finishMultiPageSession();
+                                }
+                            }
+                        });
+                        return null;
+                    }
+                });
+    }
+
     @UiThread
     private void callListener(final Photo photo, final Throwable throwable) {
         if (throwable != null) {
             handleError(GiniVisionError.ErrorCode.CAMERA_SHOT_FAILED, "Failed to take picture",
                     throwable);
-            mCameraController.startPreview();
+            restartPreviewAfterFailedPicture();
         } else {
             if (photo != null) {
                 LOG.info("Picture taken");
-                mListener.onDocumentAvailable(DocumentFactory.newDocumentFromPhoto(photo));
+                if (mMultiPageSession != null) {
+                    addPageToMultiPageSession(photo);
+                } else {
+                    mListener.onDocumentAvailable(DocumentFactory.newDocumentFromPhoto(photo));
+                }
             } else {
                 handleError(GiniVisionError.ErrorCode.CAMERA_SHOT_FAILED,
                         "Failed to take picture: no picture from the camera", null);
-                mCameraController.startPreview();
+                restartPreviewAfterFailedPicture();
             }
         }
     }
 
+    private void addPageToMultiPageSession(@NonNull final Photo photo) {
+        mMultiPageSession.addPage(photo);
+        LOG.info("Page {} added to the multi-page session", mMultiPageSession.getPageCount());
+        if (!mFinishMultiPageSessionRequested) {
+            // The preview was restarted after the picture was taken
+            armAutoCapture();
+        }
+    }
+
+    private void restartPreviewAfterFailedPicture() {
+        mCameraRotation = mCameraController.getCameraRotation();
+        mCameraController.startPreview()
+                .handle(new CompletableFuture.BiFun<Void, Throwable, Void>() {
+                    @Override
+                    public Void apply(final Void aVoid, final Throwable throwable) {
+                        if (throwable == null) {
+                            armAutoCapture();
+                        }
+                        return null;
+                    }
+                });
+    }
+
     private void setSurfaceViewCallback() {
         mCameraPreview.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
@@ -978,6 +1202,7 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
 
     private void showDocumentCornerGuidesAnimated() {
         mImageCorners.animate().alpha(1.0f);
+        mDocumentOutline.animate().alpha(1.0f);
     }
 
     @Deprecated
@@ -991,6 +1216,7 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
 
     private void hideDocumentCornerGuidesAnimated() {
         mImageCorners.animate().alpha(0.0f);
+        mDocumentOutline.animate().alpha(0.0f);
     }
 
     @Deprecated
@@ -1155,16 +1381,45 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
             LOG.debug("CameraController created");
             mCameraController = createCameraController(activity);
         }
-        if (mGiniVisionFeatureConfiguration.isQRCodeScanningEnabled()) {
-            final int rotation = mCameraController.getCameraRotation();
+        if (mGiniVisionFeatureConfiguration.isQRCodeScanningEnabled()
+                || mGiniVisionFeatureConfiguration.isAutoCaptureEnabled()
+                || mGiniVisionFeatureConfiguration.isDocumentDetectionEnabled()) {
+            mCameraController.enablePreviewBufferPool(PREVIEW_BUFFER_COUNT);
             mCameraController.setPreviewCallback(new Camera.PreviewCallback() {
                 @Override
                 public void onPreviewFrame(final byte[] data, final Camera camera) {
-                    if (mPaymentQRCodeReader == null) {
+                    final PreviewBufferPool bufferPool =
+                            mCameraController.getPreviewBufferPool();
+                    // The auto capture and document detectors copy what they need, they don't
+                    // keep the frame
+                    final AutoCaptureDetector autoCaptureDetector = mAutoCaptureDetector;
+                    boolean processed = autoCaptureDetector != null
+                            && autoCaptureDetector.detect(data,
+                            mCameraController.getPreviewFrameSize());
+                    final DocumentDetector documentDetector = mDocumentDetector;
+                    if (documentDetector != null) {
+                        processed |= documentDetector.detect(data,
+                                mCameraController.getPreviewFrameSize());
+                    }
+                    final PaymentQRCodeReader paymentQRCodeReader = mPaymentQRCodeReader;
+                    if (paymentQRCodeReader == null) {
+                        if (bufferPool != null) {
+                            if (processed) {
+                                bufferPool.recycle(data);
+                            } else {
+                                bufferPool.drop(data);
+                            }
+                        }
                         return;
                     }
-                    mPaymentQRCodeReader.readFromImage(data, mCameraController.getPreviewSize(),
-                            rotation);
+                    if (bufferPool != null) {
+                        paymentQRCodeReader.readFromImage(data,
+                                mCameraController.getPreviewFrameSize(), mCameraRotation,
+                                bufferPool);
+                    } else {
+                        paymentQRCodeReader.readFromImage(data,
+                                mCameraController.getPreviewFrameSize(), mCameraRotation);
+                    }
                 }
             });
         }
@@ -1172,7 +1427,14 @@ class CameraFragmentImpl implements CameraFragmentInterface, PaymentQRCodeReader
 
     @NonNull
     protected CameraInterface createCameraController(final Activity activity) {
-        return new CameraController(activity);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && Camera2Controller.isSupported(activity)) {
+            LOG.info("Using the Camera2 API");
+            return new Camera2Controller(activity,
+                    mGiniVisionFeatureConfiguration.getPictureResolutionPolicy());
+        }
+        return new CameraController(activity, true,
+                mGiniVisionFeatureConfiguration.getPictureResolutionPolicy());
     }
 
     private void handleError(final GiniVisionError.ErrorCode errorCode,
@@ -2,6 +2,8 @@ package net.gini.android.vision.camera;
 
 import android.support.annotation.NonNull;
 
+import net.gini.android.vision.Document;
+
 /**
  * <p>
  *     Methods which both Camera Fragments must implement.
@@ -124,4 +126,41 @@ public interface CameraFragmentInterface {
      * @param duration how long should the error message be shown in ms
      */
     void showError(@NonNull String message, int duration);
+
+    /**
+     * <p>
+     *     Call this method to capture a document with several pages.
+     * </p>
+     * <p>
+     *     Pictures taken afterwards are added as pages and the camera stays open for the next
+     *     page. The pages are compressed in the background while the user captures the next
+     *     one.
+     * </p>
+     * <p>
+     *     Call {@link CameraFragmentInterface#finishMultiPageSession()} when all pages were
+     *     captured.
+     * </p>
+     */
+    void startMultiPageSession();
+
+    /**
+     * <p>
+     *     Call this method when all pages of a multi-page session were captured.
+     * </p>
+     * <p>
+     *     An activity indicator is shown until the pages were processed and then {@link
+     *     CameraFragmentListener#onDocumentAvailable(Document)} is invoked with a {@link
+     *     net.gini.android.vision.document.MultiPageDocument} containing all pages.
+     * </p>
+     */
+    void finishMultiPageSession();
+
+    /**
+     * <p>
+     *     Call this method to discard the pages of the multi-page session. Pictures taken
+     *     afterwards are again passed one by one to {@link
+     *     CameraFragmentListener#onDocumentAvailable(Document)}.
+     * </p>
+     */
+    void cancelMultiPageSession();
 }
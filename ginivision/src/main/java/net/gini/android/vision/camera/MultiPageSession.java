@@ -0,0 +1,169 @@
+package net.gini.android.vision.camera;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+
+import net.gini.android.vision.document.MultiPageDocument;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.camera.photo.PhotoEdit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Collects the pages captured on the Camera Screen into one {@link MultiPageDocument}.
+ * </p>
+ * <p>
+ *     Each page is compressed for upload in the background as soon as it was added, while the
+ *     user captures the next one. Finishing the session only waits for the pages which are still
+ *     being compressed.
+ * </p>
+ * <p>
+ *     The pages are kept in the saved instance state. Pages which were still being compressed
+ *     are compressed again after restoring. A requested finish is not restored.
+ * </p>
+ */
+@UiThread
+class MultiPageSession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultiPageSession.class);
+
+    private static final String PAGES_KEY = "MULTI_PAGE_SESSION_PAGES_KEY";
+    private static final String PAGES_PROCESSED_KEY = "MULTI_PAGE_SESSION_PAGES_PROCESSED_KEY";
+
+    private final ArrayList<Photo> mPages = new ArrayList<>();
+    private final List<Boolean> mPagesProcessed = new ArrayList<>();
+    private final CancellationToken mCancellationToken = new CancellationToken();
+    private final long mStartedAt = System.currentTimeMillis();
+    private int mPendingPageCount;
+    private AsyncCallback<MultiPageDocument> mFinishCallback;
+    private long mFinishRequestedAt;
+
+    /**
+     * @return the session saved in the state or {@code null}, if no session was saved
+     */
+    @Nullable
+    static MultiPageSession restore(@NonNull final Bundle savedInstanceState) {
+        final ArrayList<Photo> pages = savedInstanceState.getParcelableArrayList(PAGES_KEY);
+        final boolean[] pagesProcessed = savedInstanceState.getBooleanArray(
+                PAGES_PROCESSED_KEY);
+        if (pages == null || pagesProcessed == null || pages.size() != pagesProcessed.length) {
+            return null;
+        }
+        final MultiPageSession session = new MultiPageSession();
+        for (int i = 0; i < pages.size(); i++) {
+            if (pagesProcessed[i]) {
+                session.mPages.add(pages.get(i));
+                session.mPagesProcessed.add(true);
+            } else {
+                session.addPage(pages.get(i));
+            }
+        }
+        LOG.debug("Restored session with {} pages", pages.size());
+        return session;
+    }
+
+    void saveState(@NonNull final Bundle outState) {
+        outState.putParcelableArrayList(PAGES_KEY, mPages);
+        final boolean[] pagesProcessed = new boolean[mPagesProcessed.size()];
+        for (int i = 0; i < pagesProcessed.length; i++) {
+            pagesProcessed[i] = mPagesProcessed.get(i);
+        }
+        outState.putBooleanArray(PAGES_PROCESSED_KEY, pagesProcessed);
+    }
+
+    void addPage(@NonNull final Photo photo) {
+        if (mCancellationToken.isCancelled()) {
+            LOG.warn("Session was cancelled, not adding page");
+            return;
+        }
+        final int pageIndex = mPages.size();
+        mPages.add(photo);
+        mPagesProcessed.add(false);
+        mPendingPageCount++;
+        LOG.debug("Compressing page {}", pageIndex + 1);
+        photo.edit()
+                .compressForUpload()
+                .applyAsync(mCancellationToken, new PhotoEdit.PhotoEditCallback() {
+                    @Override
+                    public void onDone(@NonNull final Photo result) {
+                        if (mCancellationToken.isCancelled()) {
+                            return;
+                        }
+                        LOG.debug("Page {} compressed", pageIndex + 1);
+                        mPages.set(pageIndex, result);
+                        mPagesProcessed.set(pageIndex, true);
+                        onPageProcessed();
+                    }
+
+                    @Override
+                    public void onFailed() {
+                        if (mCancellationToken.isCancelled()) {
+                            return;
+                        }
+                        // The uncompressed page can still be uploaded
+                        LOG.warn("Could not compress page {}", pageIndex + 1);
+                        mPagesProcessed.set(pageIndex, true);
+                        onPageProcessed();
+                    }
+                });
+    }
+
+    int getPageCount() {
+        return mPages.size();
+    }
+
+    boolean isProcessing() {
+        return mPendingPageCount > 0;
+    }
+
+    /**
+     * Creates the document after all pages were processed. No pages can be added afterwards.
+     */
+    void finish(@NonNull final AsyncCallback<MultiPageDocument> callback) {
+        if (mPages.isEmpty()) {
+            callback.onError(new IllegalStateException("No pages were captured"));
+            return;
+        }
+        mFinishCallback = callback;
+        mFinishRequestedAt = System.currentTimeMillis();
+        completeIfProcessed();
+    }
+
+    /**
+     * Discards the pages. The callback passed to {@link #finish(AsyncCallback)} won't be
+     * invoked.
+     */
+    void cancel() {
+        mCancellationToken.cancel();
+        mFinishCallback = null; // NOPMD
+        mPages.clear();
+        mPagesProcessed.clear();
+    }
+
+    private void onPageProcessed() {
+        mPendingPageCount--;
+        completeIfProcessed();
+    }
+
+    private void completeIfProcessed() {
+        final AsyncCallback<MultiPageDocument> callback = mFinishCallback;
+        if (callback == null || isProcessing()) {
+            return;
+        }
+        mFinishCallback = null; // NOPMD
+        mCancellationToken.cancel();
+        final long now = System.currentTimeMillis();
+        LOG.info("Session with {} pages finished after {} ms, waited {} ms for processing",
+                mPages.size(), now - mStartedAt, now - mFinishRequestedAt);
+        callback.onSuccess(MultiPageDocument.fromPhotos(mPages));
+    }
+}
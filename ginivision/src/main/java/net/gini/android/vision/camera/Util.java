@@ -18,7 +18,9 @@ final class Util {
         // Here are the possible error messages:
         // https://android.googlesource.com/platform/frameworks/base/+/marshmallow-release/core/java/android/hardware/Camera.java#415
         String message = exception.getMessage();
-        if (message.equals(CAMERA_EXCEPTION_MESSAGE_NO_ACCESS)) {
+        // The Camera2 API throws a SecurityException, if the camera permission was not granted
+        if (exception instanceof SecurityException
+                || CAMERA_EXCEPTION_MESSAGE_NO_ACCESS.equals(message)) {
             return new GiniVisionError(GiniVisionError.ErrorCode.CAMERA_NO_ACCESS, message);
         } else {
             return new GiniVisionError(GiniVisionError.ErrorCode.CAMERA_UNKNOWN, message);
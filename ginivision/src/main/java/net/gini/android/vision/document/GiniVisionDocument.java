@@ -9,11 +9,20 @@ import android.support.annotation.Nullable;
 
 import net.gini.android.vision.Document;
 import net.gini.android.vision.internal.AsyncCallback;
-import net.gini.android.vision.internal.camera.photo.ParcelableMemoryCache;
-import net.gini.android.vision.internal.util.UriReaderAsyncTask;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.document.ContentFingerprint;
+import net.gini.android.vision.internal.document.DocumentPayload;
 import net.gini.android.vision.util.IntentHelper;
+import net.gini.android.vision.util.UriHelper;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.channels.Channels;
+import java.util.concurrent.Callable;
 
 /**
  * @exclude
@@ -38,28 +47,33 @@ public class GiniVisionDocument implements Document {
     private final boolean mIsImported;
     private final boolean mIsReviewable;
     private final Type mType;
-    private byte[] mData;
+    private DocumentPayload mPayload;
+    // Materialized payload for getData(), released when memory runs low
+    private SoftReference<byte[]> mDataReference;
 
     GiniVisionDocument(@NonNull final Type type,
             @Nullable final byte[] data,
             @Nullable final Intent intent,
             final boolean isReviewable,
             final boolean isImported) {
+        this(type, data != null ? DocumentPayload.fromBytes(data) : null, intent, isReviewable,
+                isImported);
+    }
+
+    GiniVisionDocument(@NonNull final Type type,
+            @Nullable final DocumentPayload payload,
+            @Nullable final Intent intent,
+            final boolean isReviewable,
+            final boolean isImported) {
         mType = type;
-        mData = data;
+        mPayload = payload;
         mIntent = intent;
         mIsReviewable = isReviewable;
         mIsImported = isImported;
     }
 
     GiniVisionDocument(final Parcel in) {
-        final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
-        final ParcelableMemoryCache.Token token = in.readParcelable(
-                ParcelableMemoryCache.Token.class.getClassLoader());
-        if (token != null) {
-            mData = cache.getByteArray(token);
-            cache.removeByteArray(token);
-        }
+        mPayload = in.readParcelable(DocumentPayload.class.getClassLoader());
         mType = (Type) in.readSerializable();
         mIntent = in.readParcelable(Intent.class.getClassLoader());
         mIsReviewable = in.readInt() == 1;
@@ -79,14 +93,9 @@ public class GiniVisionDocument implements Document {
      */
     @Override
     public void writeToParcel(final Parcel dest, final int flags) {
-        if (mData != null) {
-            final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
-            final ParcelableMemoryCache.Token token = cache.storeByteArray(mData);
-            dest.writeParcelable(token, flags);
-        } else {
-            dest.writeParcelable(null, flags);
+        synchronized (this) {
+            dest.writeParcelable(mPayload, flags);
         }
-
         dest.writeSerializable(mType);
         dest.writeParcelable(mIntent, flags);
         dest.writeInt(mIsReviewable ? 1 : 0);
@@ -115,11 +124,66 @@ public class GiniVisionDocument implements Document {
     @Nullable
     @Override
     public synchronized byte[] getData() {
-        return mData;
+        if (mPayload == null) {
+            return null;
+        }
+        byte[] data = mDataReference != null ? mDataReference.get() : null;
+        if (data == null) {
+            data = mPayload.toByteArray();
+            mDataReference = new SoftReference<>(data);
+        }
+        return data;
+    }
+
+    /**
+     * @return the document's content without copying it to the heap or {@code null}, if it
+     * wasn't loaded yet
+     */
+    @Nullable
+    public synchronized DocumentPayload getPayload() {
+        return mPayload;
+    }
+
+    /**
+     * @return the fingerprint of the document's content or {@code null}, if it wasn't loaded yet
+     */
+    @Nullable
+    public synchronized ContentFingerprint getFingerprint() {
+        return mPayload != null ? mPayload.getFingerprint() : null;
     }
 
-    private synchronized void setData(final byte[] data) {
-        mData = data;
+    /**
+     * Opens the document's content for reading. Use it to upload the document without reading
+     * its content into a byte array first.
+     *
+     * <p> The content is read from the loaded data or, if it wasn't loaded, from the Intent's
+     * Uri. For a {@link MultiPageDocument} only the first page is read, the other pages have to be
+     * read separately.
+     *
+     * @param context Android context
+     * @return an {@link InputStream} which has to be closed by the caller
+     * @throws IOException           if the content could not be opened
+     * @throws IllegalStateException if there is neither loaded data nor an Intent with a Uri
+     */
+    @NonNull
+    public InputStream openInputStream(@NonNull final Context context) throws IOException {
+        final DocumentPayload payload = getPayload();
+        if (payload != null) {
+            return payload.openInputStream();
+        }
+        if (mIntent == null) {
+            throw new IllegalStateException("No Intent to read the data from");
+        }
+        final Uri uri = IntentHelper.getUri(mIntent);
+        if (uri == null) {
+            throw new IllegalStateException("Intent's data must contain a Uri");
+        }
+        return Channels.newInputStream(UriHelper.openChannelFromUri(uri, context));
+    }
+
+    private synchronized void setPayload(@NonNull final DocumentPayload payload) {
+        mPayload = payload;
+        mDataReference = null; // NOPMD
     }
 
     @Nullable
@@ -142,7 +206,7 @@ public class GiniVisionDocument implements Document {
     public String toString() {
         return "GiniVisionDocument{"
                 + "mType=" + mType
-                + ", mData=" + Arrays.toString(mData)
+                + ", mPayload=" + mPayload
                 + ", mIsReviewable=" + mIsReviewable
                 + ", mIsImported=" + mIsImported
                 + ", mIntent=" + mIntent
@@ -150,9 +214,23 @@ public class GiniVisionDocument implements Document {
     }
 
     public void loadData(@NonNull final Context context,
-            @NonNull final AsyncCallback<byte[]> callback) {
-        if (mData != null) {
-            callback.onSuccess(mData);
+            @NonNull final AsyncCallback<DocumentPayload> callback) {
+        loadData(context, new CancellationToken(), callback);
+    }
+
+    /**
+     * Copies the data from the Intent's Uri to a {@link DocumentPayload} without reading it into
+     * memory.
+     *
+     * @param cancellationToken cancels reading the data, the callback won't be invoked after
+     *                          the token was cancelled
+     */
+    public void loadData(@NonNull final Context context,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<DocumentPayload> callback) {
+        final DocumentPayload payload = getPayload();
+        if (payload != null) {
+            callback.onSuccess(payload);
             return;
         }
         if (mIntent == null) {
@@ -164,12 +242,29 @@ public class GiniVisionDocument implements Document {
             callback.onError(new IllegalStateException("Intent's data must contain a Uri"));
             return;
         }
-        final UriReaderAsyncTask asyncTask = new UriReaderAsyncTask(context,
-                new AsyncCallback<byte[]>() {
+        final Context applicationContext = context.getApplicationContext();
+        TaskScheduler.getInstance().submit(TaskType.READ_URI, Priority.HIGH, cancellationToken,
+                new Callable<DocumentPayload>() {
+                    @Override
+                    public DocumentPayload call() throws Exception {
+                        final InputStream inputStream = applicationContext.getContentResolver()
+                                .openInputStream(uri);
+                        if (inputStream == null) {
+                            throw new IllegalStateException(
+                                    "Couldn't open input stream from intent data");
+                        }
+                        try {
+                            return DocumentPayload.fromStream(inputStream);
+                        } finally {
+                            inputStream.close();
+                        }
+                    }
+                },
+                new AsyncCallback<DocumentPayload>() {
                     @Override
-                    public void onSuccess(final byte[] result) {
-                        setData(result);
-                        callback.onSuccess(mData);
+                    public void onSuccess(final DocumentPayload result) {
+                        setPayload(result);
+                        callback.onSuccess(result);
                     }
 
                     @Override
@@ -177,7 +272,6 @@ public class GiniVisionDocument implements Document {
                         callback.onError(exception);
                     }
                 });
-        asyncTask.execute(uri);
     }
 
 }
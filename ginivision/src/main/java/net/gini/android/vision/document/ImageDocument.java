@@ -12,6 +12,8 @@ import android.support.annotation.Nullable;
 
 import net.gini.android.vision.Document;
 import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.documentdetection.Quad;
 
 import java.util.List;
 
@@ -54,6 +56,7 @@ public final class ImageDocument extends GiniVisionDocument {
 
     private final int mRotationForDisplay;
     private final ImageFormat mFormat;
+    private final Quad mDocumentQuad;
 
     @NonNull
     static ImageDocument fromPhoto(@NonNull final Photo photo) {
@@ -99,13 +102,14 @@ public final class ImageDocument extends GiniVisionDocument {
 
     private ImageDocument(@NonNull final Photo photo,
             @Nullable final Intent intent) {
-        super(Type.IMAGE, photo.getData(), intent, true, photo.isImported());
+        super(Type.IMAGE, photo.getPayload(), intent, true, photo.isImported());
         mRotationForDisplay = photo.getRotationForDisplay();
         mFormat = photo.getImageFormat();
         mDeviceOrientation = photo.getDeviceOrientation();
         mDeviceType = photo.getDeviceType();
         mSource = photo.getSource();
         mImportMethod = photo.getImportMethod();
+        mDocumentQuad = photo.getDocumentQuad();
     }
 
     private ImageDocument(@Nullable final Intent intent, @NonNull final ImageFormat format,
@@ -113,13 +117,14 @@ public final class ImageDocument extends GiniVisionDocument {
             @NonNull final String deviceType,
             @NonNull final String source,
             @NonNull final String importMethod) {
-        super(Type.IMAGE, null, intent, true, true);
+        super(Type.IMAGE, (DocumentPayload) null, intent, true, true);
         mRotationForDisplay = 0;
         mFormat = format;
         mDeviceOrientation = deviceOrientation;
         mDeviceType = deviceType;
         mSource = source;
         mImportMethod = importMethod;
+        mDocumentQuad = null; // NOPMD
     }
 
     /**
@@ -177,6 +182,16 @@ public final class ImageDocument extends GiniVisionDocument {
         return mImportMethod;
     }
 
+    /**
+     * @return the corners of the document detected in the camera preview when the picture was
+     * taken, normalized to the unrotated image or {@code null}, if no document was detected
+     * @exclude
+     */
+    @Nullable
+    public Quad getDocumentQuad() {
+        return mDocumentQuad;
+    }
+
     /**
      * @exclude
      */
@@ -197,6 +212,7 @@ public final class ImageDocument extends GiniVisionDocument {
         dest.writeString(mDeviceType);
         dest.writeString(mSource);
         dest.writeString(mImportMethod);
+        dest.writeParcelable(mDocumentQuad, flags);
     }
 
     /**
@@ -222,5 +238,6 @@ public final class ImageDocument extends GiniVisionDocument {
         mDeviceType = in.readString();
         mSource = in.readString();
         mImportMethod = in.readString();
+        mDocumentQuad = in.readParcelable(Quad.class.getClassLoader());
     }
 }
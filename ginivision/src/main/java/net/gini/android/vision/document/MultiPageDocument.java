@@ -0,0 +1,160 @@
+package net.gini.android.vision.document;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.Document;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.document.ContentFingerprint;
+import net.gini.android.vision.internal.document.DocumentPayload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *     A document consisting of several pages which were captured in one session on the Camera
+ *     Screen.
+ * </p>
+ * <p>
+ *     Each page is an {@link ImageDocument} which was already compressed for upload. Upload the
+ *     data of all pages ({@link MultiPageDocument#getDocuments()}) together to the Gini API to
+ *     get the extractions for the whole document.
+ * </p>
+ * <p>
+ *     {@link Document#getData()} returns the first page's data, like {@link
+ *     MultiPageDocument#loadData(Context, CancellationToken, AsyncCallback)}. Code which only
+ *     handles single documents receives the first page instead of {@code null}.
+ * </p>
+ */
+public final class MultiPageDocument extends GiniVisionDocument {
+
+    private final List<ImageDocument> mDocuments;
+
+    /**
+     * @param photos the pages in the order they were captured
+     * @return new instance
+     *
+     * @exclude
+     */
+    @NonNull
+    public static MultiPageDocument fromPhotos(@NonNull final List<Photo> photos) {
+        if (photos.isEmpty()) {
+            throw new IllegalArgumentException("A multi-page document needs at least one page");
+        }
+        final List<ImageDocument> documents = new ArrayList<>(photos.size());
+        for (final Photo photo : photos) {
+            documents.add(ImageDocument.fromPhoto(photo));
+        }
+        return new MultiPageDocument(documents);
+    }
+
+    private MultiPageDocument(@NonNull final List<ImageDocument> documents) {
+        super(Type.MULTI_PAGE, (DocumentPayload) null, null, false, false);
+        mDocuments = Collections.unmodifiableList(documents);
+    }
+
+    private MultiPageDocument(final Parcel in) {
+        super(in);
+        final List<ImageDocument> documents = new ArrayList<>();
+        in.readTypedList(documents, ImageDocument.CREATOR);
+        mDocuments = Collections.unmodifiableList(documents);
+    }
+
+    /**
+     * <p>
+     *     The pages in the order they were captured.
+     * </p>
+     *
+     * @return the pages as image documents
+     */
+    @NonNull
+    public List<ImageDocument> getDocuments() {
+        return mDocuments;
+    }
+
+    /**
+     * @return the number of pages
+     */
+    public int getPageCount() {
+        return mDocuments.size();
+    }
+
+    /**
+     * @return the first page's data
+     */
+    @Nullable
+    @Override
+    public byte[] getData() {
+        return mDocuments.get(0).getData();
+    }
+
+    /**
+     * @return the first page's content without copying it to the heap
+     */
+    @Nullable
+    @Override
+    public DocumentPayload getPayload() {
+        return mDocuments.get(0).getPayload();
+    }
+
+    /**
+     * @return the fingerprint of the first page's content
+     */
+    @Nullable
+    @Override
+    public ContentFingerprint getFingerprint() {
+        return mDocuments.get(0).getFingerprint();
+    }
+
+    /**
+     * All pages are available, reports the first page's data.
+     *
+     * @exclude
+     */
+    @Override
+    public void loadData(@NonNull final Context context,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<DocumentPayload> callback) {
+        mDocuments.get(0).loadData(context, cancellationToken, callback);
+    }
+
+    /**
+     * @exclude
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * @exclude
+     */
+    @Override
+    public void writeToParcel(@NonNull final Parcel dest, final int flags) {
+        super.writeToParcel(dest, flags);
+        dest.writeTypedList(mDocuments);
+    }
+
+    /**
+     * @exclude
+     */
+    public static final Creator<MultiPageDocument> CREATOR =
+            new Parcelable.Creator<MultiPageDocument>() {
+                @Override
+                public MultiPageDocument createFromParcel(final Parcel in) {
+                    return new MultiPageDocument(in);
+                }
+
+                @Override
+                public MultiPageDocument[] newArray(final int size) {
+                    return new MultiPageDocument[size];
+                }
+            };
+}
@@ -6,6 +6,7 @@ import android.net.Uri;
 import android.os.Parcel;
 import android.support.annotation.NonNull;
 
+import net.gini.android.vision.internal.document.DocumentPayload;
 import net.gini.android.vision.util.IntentHelper;
 
 /**
@@ -36,7 +37,7 @@ public final class PdfDocument extends GiniVisionDocument {
      * @throws IllegalArgumentException if the Intent's data is null
      */
     private PdfDocument(@NonNull final Intent intent) {
-        super(Type.PDF, null, intent, false, true);
+        super(Type.PDF, (DocumentPayload) null, intent, false, true);
         mUri = IntentHelper.getUri(intent);
         if (mUri == null) {
             throw new IllegalArgumentException("Intent data must contain a Uri");
@@ -0,0 +1,25 @@
+package net.gini.android.vision.internal.async;
+
+/**
+ * <p>
+ *     Cancels the tasks submitted with it to the {@link TaskScheduler}.
+ * </p>
+ * <p>
+ *     Tasks which didn't start yet are skipped and the results of running tasks are discarded. A
+ *     cancelled token can't be reused.
+ * </p>
+ *
+ * @exclude
+ */
+public final class CancellationToken {
+
+    private volatile boolean mCancelled;
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+}
@@ -0,0 +1,19 @@
+package net.gini.android.vision.internal.async;
+
+/**
+ * Tasks with a higher priority are started before other waiting tasks of the same pool. Tasks
+ * with the same priority are started in the order they were submitted.
+ *
+ * @exclude
+ */
+public enum Priority {
+    /**
+     * The user waits for the result to see the screen's content.
+     */
+    HIGH,
+    NORMAL,
+    /**
+     * The result is only supplementary information.
+     */
+    LOW
+}
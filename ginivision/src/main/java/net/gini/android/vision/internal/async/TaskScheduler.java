@@ -0,0 +1,198 @@
+package net.gini.android.vision.internal.async;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.camera.api.UIExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Runs the background work of the library on its own bounded thread pools instead of the
+ *     {@link android.os.AsyncTask} executor shared with the client app.
+ * </p>
+ * <p>
+ *     Each {@link TaskType} is run on the pool for its kind of work, so that reading a document
+ *     doesn't wait for a photo being compressed and neither waits for a pdf being rendered. Within
+ *     a pool waiting tasks are started by their {@link Priority}. Results are delivered on the
+ *     main thread unless the task's {@link CancellationToken} was cancelled.
+ * </p>
+ * <p>
+ *     The time each task waited in the queue and ran is recorded in the {@link TaskStatistics}
+ *     of its type.
+ * </p>
+ *
+ * @exclude
+ */
+public final class TaskScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskScheduler.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Executor mCallbackExecutor;
+    private final Map<TaskType.Pool, ThreadPoolExecutor> mExecutors =
+            new EnumMap<>(TaskType.Pool.class);
+    private final Map<TaskType, TaskStatistics> mStatistics = new EnumMap<>(TaskType.class);
+    private final AtomicLong mSequence = new AtomicLong();
+
+    public static TaskScheduler getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * @param callbackExecutor delivers the results of the tasks
+     */
+    @VisibleForTesting
+    TaskScheduler(@NonNull final Executor callbackExecutor) {
+        mCallbackExecutor = callbackExecutor;
+        for (final TaskType.Pool pool : TaskType.Pool.values()) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(pool.getThreadCount(),
+                    pool.getThreadCount(), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new PoolThreadFactory(pool));
+            // Idle threads are released as the library's screens are not always shown
+            executor.allowCoreThreadTimeOut(true);
+            mExecutors.put(pool, executor);
+        }
+        for (final TaskType type : TaskType.values()) {
+            mStatistics.put(type, TaskStatistics.EMPTY);
+        }
+    }
+
+    /**
+     * Runs the task on the pool of its type. The callback is invoked on the main thread, unless
+     * the token was cancelled before the task completed.
+     */
+    public <T> void submit(@NonNull final TaskType type, @NonNull final Priority priority,
+            @NonNull final CancellationToken token, @NonNull final Callable<T> task,
+            @NonNull final AsyncCallback<T> callback) {
+        mExecutors.get(type.getPool()).execute(
+                new ScheduledTask<>(type, priority, mSequence.getAndIncrement(), token, task,
+                        callback));
+    }
+
+    @NonNull
+    public TaskStatistics getStatistics(@NonNull final TaskType type) {
+        synchronized (mStatistics) {
+            return mStatistics.get(type);
+        }
+    }
+
+    private void record(@NonNull final TaskType type, final long queueWaitMillis,
+            final long runMillis) {
+        final TaskStatistics statistics;
+        synchronized (mStatistics) {
+            statistics = mStatistics.get(type).withTask(queueWaitMillis, runMillis);
+            mStatistics.put(type, statistics);
+        }
+        LOG.debug("Task {} waited {} ms and ran {} ms: {}", type, queueWaitMillis, runMillis,
+                statistics);
+    }
+
+    private final class ScheduledTask<T> implements Runnable, Comparable<ScheduledTask<?>> {
+
+        private final TaskType mType;
+        private final Priority mPriority;
+        private final long mSequence;
+        private final CancellationToken mToken;
+        private final Callable<T> mTask;
+        private final AsyncCallback<T> mCallback;
+        private final long mSubmitNanos;
+
+        ScheduledTask(@NonNull final TaskType type, @NonNull final Priority priority,
+                final long sequence, @NonNull final CancellationToken token,
+                @NonNull final Callable<T> task, @NonNull final AsyncCallback<T> callback) {
+            mType = type;
+            mPriority = priority;
+            mSequence = sequence;
+            mToken = token;
+            mTask = task;
+            mCallback = callback;
+            mSubmitNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            if (mToken.isCancelled()) {
+                LOG.debug("Task {} cancelled before it started", mType);
+                return;
+            }
+            final long startNanos = System.nanoTime();
+            T result = null;
+            Exception exception = null;
+            try {
+                result = mTask.call();
+            } catch (final Exception e) {
+                exception = e;
+            }
+            record(mType, TimeUnit.NANOSECONDS.toMillis(startNanos - mSubmitNanos),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            deliver(result, exception);
+        }
+
+        private void deliver(final T result, final Exception exception) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mToken.isCancelled()) {
+                        LOG.debug("Task {} cancelled, discarding its result", mType);
+                        return;
+                    }
+                    if (exception != null) {
+                        mCallback.onError(exception);
+                    } else {
+                        mCallback.onSuccess(result);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(@NonNull final ScheduledTask<?> other) {
+            final int priorityOrder = mPriority.compareTo(other.mPriority);
+            if (priorityOrder != 0) {
+                return priorityOrder;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    private static final class PoolThreadFactory implements ThreadFactory {
+
+        // Maps to Android's background thread priority
+        private static final int THREAD_PRIORITY = Thread.NORM_PRIORITY - 1;
+
+        private final TaskType.Pool mPool;
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        PoolThreadFactory(@NonNull final TaskType.Pool pool) {
+            mPool = pool;
+        }
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    "GiniVision-" + mPool + "-" + mThreadNumber.getAndIncrement());
+            thread.setPriority(THREAD_PRIORITY);
+            return thread;
+        }
+    }
+
+    private static class InstanceHolder {
+        static final TaskScheduler INSTANCE = new TaskScheduler(new UIExecutor());
+    }
+}
@@ -0,0 +1,74 @@
+package net.gini.android.vision.internal.async;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable statistics of the completed tasks of a {@link TaskType}.
+ *
+ * @exclude
+ */
+public final class TaskStatistics {
+
+    static final TaskStatistics EMPTY = new TaskStatistics(0, 0, 0, 0, 0);
+
+    private final int mCount;
+    private final long mTotalQueueWaitMillis;
+    private final long mMaxQueueWaitMillis;
+    private final long mTotalRunMillis;
+    private final long mMaxRunMillis;
+
+    private TaskStatistics(final int count, final long totalQueueWaitMillis,
+            final long maxQueueWaitMillis, final long totalRunMillis, final long maxRunMillis) {
+        mCount = count;
+        mTotalQueueWaitMillis = totalQueueWaitMillis;
+        mMaxQueueWaitMillis = maxQueueWaitMillis;
+        mTotalRunMillis = totalRunMillis;
+        mMaxRunMillis = maxRunMillis;
+    }
+
+    @NonNull
+    TaskStatistics withTask(final long queueWaitMillis, final long runMillis) {
+        return new TaskStatistics(mCount + 1, mTotalQueueWaitMillis + queueWaitMillis,
+                Math.max(mMaxQueueWaitMillis, queueWaitMillis), mTotalRunMillis + runMillis,
+                Math.max(mMaxRunMillis, runMillis));
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getTotalQueueWaitMillis() {
+        return mTotalQueueWaitMillis;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return mMaxQueueWaitMillis;
+    }
+
+    public long getAverageQueueWaitMillis() {
+        return mCount == 0 ? 0 : mTotalQueueWaitMillis / mCount;
+    }
+
+    public long getTotalRunMillis() {
+        return mTotalRunMillis;
+    }
+
+    public long getMaxRunMillis() {
+        return mMaxRunMillis;
+    }
+
+    public long getAverageRunMillis() {
+        return mCount == 0 ? 0 : mTotalRunMillis / mCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskStatistics{"
+                + "count=" + mCount
+                + ", averageQueueWaitMillis=" + getAverageQueueWaitMillis()
+                + ", maxQueueWaitMillis=" + mMaxQueueWaitMillis
+                + ", averageRunMillis=" + getAverageRunMillis()
+                + ", maxRunMillis=" + mMaxRunMillis
+                + '}';
+    }
+}
@@ -0,0 +1,52 @@
+package net.gini.android.vision.internal.async;
+
+import android.support.annotation.NonNull;
+
+/**
+ * The kinds of tasks run by the {@link TaskScheduler}. Each kind is run on the pool for its work
+ * and has its own statistics.
+ *
+ * @exclude
+ */
+public enum TaskType {
+    READ_URI(Pool.IO),
+    WRITE_CACHE_FILE(Pool.IO),
+    CREATE_PHOTO(Pool.IMAGE),
+    EDIT_PHOTO(Pool.IMAGE),
+    DECODE_TILE(Pool.IMAGE),
+    RENDER_PDF(Pool.RENDER),
+    RENDER_PDF_TILE(Pool.RENDER),
+    COUNT_PDF_PAGES(Pool.RENDER);
+
+    private final Pool mPool;
+
+    TaskType(@NonNull final Pool pool) {
+        mPool = pool;
+    }
+
+    @NonNull
+    Pool getPool() {
+        return mPool;
+    }
+
+    /**
+     * Thread pools of the {@link TaskScheduler}.
+     */
+    enum Pool {
+        IO(2),
+        // Decoded photos are large, more concurrent image tasks would risk running out of memory
+        IMAGE(2),
+        // The pdf renderer is not thread safe
+        RENDER(1);
+
+        private final int mThreadCount;
+
+        Pool(final int threadCount) {
+            mThreadCount = threadCount;
+        }
+
+        int getThreadCount() {
+            return mThreadCount;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package net.gini.android.vision.internal.autocapture;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.internal.camera.api.UIExecutor;
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Detects the moment when the document in the camera preview is sharp and steady enough to
+ *     take a picture automatically.
+ * </p>
+ * <p>
+ *     The luma plane of each preview frame is copied into one of two preallocated buffers on the
+ *     calling thread. Scoring happens on a background thread. If both buffers are busy the frame
+ *     is skipped. The preview frame is not retained and can be recycled right after {@link
+ *     #detect(byte[], Size)} returns.
+ * </p>
+ * <p>
+ *     The detector starts disarmed. Arm it once the preview is running. It disarms itself after
+ *     notifying the listener. Arming forgets the previously scored frame, so motion is only
+ *     measured between frames handed over after arming.
+ * </p>
+ *
+ * @exclude
+ */
+public class AutoCaptureDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AutoCaptureDetector.class);
+
+    private static final int SCORE_FRAME = 1;
+    private static final int RESET_SCORER = 2;
+    private static final int LOG_THROUGHPUT_EVERY_FRAMES = 100;
+
+    /**
+     * Receives the capture moments on the UI thread.
+     */
+    public interface Listener {
+
+        void onCaptureReady();
+    }
+
+    private final LumaBuffer[] mFreeBuffers = new LumaBuffer[]{new LumaBuffer(), new LumaBuffer()};
+    private int mFreeBufferCount = mFreeBuffers.length;
+    private final FrameScorer mFrameScorer;
+    private final AutoCaptureTrigger mTrigger;
+    private final UIExecutor mUIExecutor;
+    private final HandlerThread mHandlerThread;
+    private final Handler mHandler;
+    private volatile Listener mListener;
+    private long mScoringTimeSumNanos;
+    private int mScoredFrames;
+
+    @NonNull
+    public static AutoCaptureDetector newInstance() {
+        return new AutoCaptureDetector(new FrameScorer(), new AutoCaptureTrigger());
+    }
+
+    @VisibleForTesting
+    AutoCaptureDetector(@NonNull final FrameScorer frameScorer,
+            @NonNull final AutoCaptureTrigger trigger) {
+        mFrameScorer = frameScorer;
+        mTrigger = trigger;
+        mUIExecutor = new UIExecutor();
+        mHandlerThread = new HandlerThread("AutoCaptureThread",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        mHandlerThread.start();
+        mHandler = new ScoringHandler(mHandlerThread.getLooper());
+    }
+
+    public void setListener(@Nullable final Listener listener) {
+        mListener = listener;
+    }
+
+    public void arm() {
+        LOG.debug("Auto capture armed");
+        // Queued before arming the trigger, frames scored afterwards aren't compared to the
+        // frame scored before disarming
+        mHandler.sendEmptyMessage(RESET_SCORER);
+        mTrigger.arm();
+    }
+
+    public void disarm() {
+        LOG.debug("Auto capture disarmed");
+        mTrigger.disarm();
+    }
+
+    /**
+     * Hands a preview frame to the detector.
+     *
+     * @param image     an NV21 image
+     * @param imageSize size of the image
+     * @return {@code true}, if the frame was copied for scoring, {@code false} if it was skipped
+     */
+    public boolean detect(@NonNull final byte[] image, @NonNull final Size imageSize) {
+        if (mListener == null || !mTrigger.isArmed()) {
+            return false;
+        }
+        final int lumaSize = imageSize.width * imageSize.height;
+        if (lumaSize <= 0 || image.length < lumaSize) {
+            return false;
+        }
+        final LumaBuffer buffer = acquireBuffer();
+        if (buffer == null) {
+            return false;
+        }
+        buffer.copyFrom(image, imageSize);
+        mHandler.obtainMessage(SCORE_FRAME, buffer).sendToTarget();
+        return true;
+    }
+
+    public void release() {
+        mListener = null; // NOPMD
+        mTrigger.disarm();
+        mHandler.removeMessages(SCORE_FRAME);
+        mHandler.removeMessages(RESET_SCORER);
+        mHandlerThread.quit();
+    }
+
+    @Nullable
+    private synchronized LumaBuffer acquireBuffer() {
+        if (mFreeBufferCount == 0) {
+            return null;
+        }
+        mFreeBufferCount--;
+        return mFreeBuffers[mFreeBufferCount];
+    }
+
+    private synchronized void releaseBuffer(@NonNull final LumaBuffer buffer) {
+        mFreeBuffers[mFreeBufferCount] = buffer;
+        mFreeBufferCount++;
+    }
+
+    private void scoreFrame(@NonNull final LumaBuffer buffer) {
+        final boolean captureReady;
+        try {
+            final long startNanos = System.nanoTime();
+            mFrameScorer.score(buffer.luma, buffer.width, buffer.height);
+            logThroughput(System.nanoTime() - startNanos);
+            captureReady = mTrigger.onFrameScored(mFrameScorer.getSharpness(),
+                    mFrameScorer.getMotion(), SystemClock.elapsedRealtime());
+        } finally {
+            releaseBuffer(buffer);
+        }
+        if (captureReady) {
+            LOG.info("Capture ready (sharpness {}, motion {})", mFrameScorer.getSharpness(),
+                    mFrameScorer.getMotion());
+            mUIExecutor.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    final Listener listener = mListener;
+                    if (listener != null) {
+                        listener.onCaptureReady();
+                    }
+                }
+            });
+        }
+    }
+
+    private void logThroughput(final long scoringTimeNanos) {
+        mScoringTimeSumNanos += scoringTimeNanos;
+        mScoredFrames++;
+        if (mScoredFrames == LOG_THROUGHPUT_EVERY_FRAMES) {
+            LOG.debug("Average frame scoring time {}us",
+                    mScoringTimeSumNanos / mScoredFrames / 1000);
+            mScoringTimeSumNanos = 0;
+            mScoredFrames = 0;
+        }
+    }
+
+    private class ScoringHandler extends Handler {
+
+        ScoringHandler(final Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(final Message msg) {
+            if (msg.what == SCORE_FRAME) {
+                scoreFrame((LumaBuffer) msg.obj);
+            } else if (msg.what == RESET_SCORER) {
+                mFrameScorer.reset();
+            } else {
+                super.handleMessage(msg);
+            }
+        }
+    }
+
+    private static class LumaBuffer {
+
+        byte[] luma = new byte[0];
+        int width;
+        int height;
+
+        void copyFrom(@NonNull final byte[] image, @NonNull final Size imageSize) {
+            final int lumaSize = imageSize.width * imageSize.height;
+            if (luma.length != lumaSize) {
+                // Only when the preview frame size changes
+                luma = new byte[lumaSize];
+            }
+            System.arraycopy(image, 0, luma, 0, lumaSize);
+            width = imageSize.width;
+            height = imageSize.height;
+        }
+    }
+}
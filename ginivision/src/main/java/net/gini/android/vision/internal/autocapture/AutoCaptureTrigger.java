@@ -0,0 +1,97 @@
+package net.gini.android.vision.internal.autocapture;
+
+import android.support.annotation.VisibleForTesting;
+
+/**
+ * <p>
+ *     Decides when to take a picture automatically based on the scores of the preview frames.
+ * </p>
+ * <p>
+ *     A picture is triggered once the frames were steady for a while and the current frame is
+ *     sharp: its sharpness reaches an absolute minimum and is close to the best sharpness seen
+ *     recently. The best sharpness decays over time, so it adapts to the scene. After triggering
+ *     it has to be armed again.
+ * </p>
+ */
+class AutoCaptureTrigger {
+
+    @VisibleForTesting
+    static final float DEFAULT_MIN_SHARPNESS = 60;
+    @VisibleForTesting
+    static final float DEFAULT_MAX_MOTION = 4;
+    @VisibleForTesting
+    static final long DEFAULT_STEADY_DURATION_MS = 600;
+    @VisibleForTesting
+    static final float PEAK_RATIO = 0.85f;
+
+    private static final float PEAK_DECAY = 0.98f;
+
+    private final float mMinSharpness;
+    private final float mMaxMotion;
+    private final long mSteadyDurationMs;
+    private boolean mArmed;
+    private float mPeakSharpness;
+    private long mSteadySinceMs = -1;
+
+    AutoCaptureTrigger() {
+        this(DEFAULT_MIN_SHARPNESS, DEFAULT_MAX_MOTION, DEFAULT_STEADY_DURATION_MS);
+    }
+
+    /**
+     * @param minSharpness     minimum Laplacian variance, see {@link FrameScorer#getSharpness()}
+     * @param maxMotion        maximum mean luma difference between frames for them to be steady,
+     *                         see {@link FrameScorer#getMotion()}
+     * @param steadyDurationMs how long the frames have to be steady
+     */
+    AutoCaptureTrigger(final float minSharpness, final float maxMotion,
+            final long steadyDurationMs) {
+        mMinSharpness = minSharpness;
+        mMaxMotion = maxMotion;
+        mSteadyDurationMs = steadyDurationMs;
+    }
+
+    synchronized void arm() {
+        mArmed = true;
+        mPeakSharpness = 0;
+        mSteadySinceMs = -1;
+    }
+
+    synchronized void disarm() {
+        mArmed = false;
+    }
+
+    synchronized boolean isArmed() {
+        return mArmed;
+    }
+
+    /**
+     * Called for every scored frame.
+     *
+     * @param sharpness the frame's sharpness
+     * @param motion    the motion since the previous frame
+     * @param nowMs     current time in milliseconds
+     * @return {@code true}, if a picture should be taken now. Disarms the trigger.
+     */
+    synchronized boolean onFrameScored(final float sharpness, final float motion,
+            final long nowMs) {
+        if (!mArmed) {
+            return false;
+        }
+        mPeakSharpness = Math.max(mPeakSharpness * PEAK_DECAY, sharpness);
+        if (motion > mMaxMotion) {
+            mSteadySinceMs = -1;
+            return false;
+        }
+        if (mSteadySinceMs < 0) {
+            mSteadySinceMs = nowMs;
+        }
+        if (nowMs - mSteadySinceMs < mSteadyDurationMs) {
+            return false;
+        }
+        if (sharpness < mMinSharpness || sharpness < PEAK_RATIO * mPeakSharpness) {
+            return false;
+        }
+        mArmed = false;
+        return true;
+    }
+}
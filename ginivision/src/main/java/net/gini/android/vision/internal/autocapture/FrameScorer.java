@@ -0,0 +1,152 @@
+package net.gini.android.vision.internal.autocapture;
+
+import android.support.annotation.NonNull;
+
+import net.gini.android.vision.internal.util.LumaDownsampler;
+
+/**
+ * <p>
+ *     Scores the sharpness of luma frames and the motion between consecutive frames.
+ * </p>
+ * <p>
+ *     Frames are box-downsampled to at most the maximum sample size. Sharpness is the variance of
+ *     the Laplacian of the downsampled frame, which is low for blurry and high for focused frames.
+ *     Motion is the mean absolute luma difference to the previous frame's samples.
+ * </p>
+ * <p>
+ *     The sample buffers are allocated once, scoring a frame doesn't allocate. Not thread safe.
+ * </p>
+ */
+class FrameScorer {
+
+    static final int DEFAULT_MAX_SAMPLE_WIDTH = 160;
+    static final int DEFAULT_MAX_SAMPLE_HEIGHT = 160;
+
+    /**
+     * Returned by {@link #getMotion()} when there was no previous frame of the same size.
+     */
+    static final float UNKNOWN_MOTION = Float.MAX_VALUE;
+
+    private final int mMaxSampleWidth;
+    private final int mMaxSampleHeight;
+    private int[] mSamples;
+    private int[] mPreviousSamples;
+    private int mFrameWidth;
+    private int mFrameHeight;
+    private int mPreviousFrameWidth;
+    private int mPreviousFrameHeight;
+    private int mSampleWidth;
+    private int mSampleHeight;
+    private float mSharpness;
+    private float mMotion = UNKNOWN_MOTION;
+
+    FrameScorer() {
+        this(DEFAULT_MAX_SAMPLE_WIDTH, DEFAULT_MAX_SAMPLE_HEIGHT);
+    }
+
+    FrameScorer(final int maxSampleWidth, final int maxSampleHeight) {
+        if (maxSampleWidth < 3 || maxSampleHeight < 3) {
+            throw new IllegalArgumentException("Sample size must be at least 3x3");
+        }
+        mMaxSampleWidth = maxSampleWidth;
+        mMaxSampleHeight = maxSampleHeight;
+        mSamples = new int[maxSampleWidth * maxSampleHeight];
+        mPreviousSamples = new int[maxSampleWidth * maxSampleHeight];
+    }
+
+    /**
+     * Scores a frame. The results are available with {@link #getSharpness()} and {@link
+     * #getMotion()}.
+     *
+     * @param luma   the luma plane, for example the beginning of an NV21 image
+     * @param width  width of the frame
+     * @param height height of the frame
+     */
+    void score(@NonNull final byte[] luma, final int width, final int height) {
+        if (width <= 0 || height <= 0 || luma.length < width * height) {
+            throw new IllegalArgumentException(
+                    "Luma plane too small for " + width + "x" + height);
+        }
+        swapSamples();
+        mFrameWidth = width;
+        mFrameHeight = height;
+        final int step = LumaDownsampler.getStep(width, height, mMaxSampleWidth,
+                mMaxSampleHeight);
+        mSampleWidth = width / step;
+        mSampleHeight = height / step;
+        LumaDownsampler.downsample(luma, width, height, step, mSamples);
+        mSharpness = laplacianVariance();
+        if (mFrameWidth == mPreviousFrameWidth && mFrameHeight == mPreviousFrameHeight) {
+            mMotion = meanAbsoluteDifference();
+        } else {
+            mMotion = UNKNOWN_MOTION;
+        }
+    }
+
+    /**
+     * @return the variance of the Laplacian of the last scored frame
+     */
+    float getSharpness() {
+        return mSharpness;
+    }
+
+    /**
+     * @return the mean absolute luma difference between the last two scored frames or {@link
+     * #UNKNOWN_MOTION}
+     */
+    float getMotion() {
+        return mMotion;
+    }
+
+    /**
+     * Forgets the previous frame, the next frame's motion will be unknown.
+     */
+    void reset() {
+        mFrameWidth = 0;
+        mFrameHeight = 0;
+        mMotion = UNKNOWN_MOTION;
+    }
+
+    private void swapSamples() {
+        final int[] samples = mPreviousSamples;
+        mPreviousSamples = mSamples;
+        mSamples = samples;
+        mPreviousFrameWidth = mFrameWidth;
+        mPreviousFrameHeight = mFrameHeight;
+    }
+
+    private float laplacianVariance() {
+        final int width = mSampleWidth;
+        final int height = mSampleHeight;
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int y = 1; y < height - 1; y++) {
+            final int rowOffset = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                final int i = rowOffset + x;
+                final int laplacian = 4 * mSamples[i] - mSamples[i - 1] - mSamples[i + 1]
+                        - mSamples[i - width] - mSamples[i + width];
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+            }
+        }
+        final int count = (width - 2) * (height - 2);
+        final double mean = (double) sum / count;
+        return (float) ((double) sumOfSquares / count - mean * mean);
+    }
+
+    private float meanAbsoluteDifference() {
+        final int count = mSampleWidth * mSampleHeight;
+        if (count == 0) {
+            return UNKNOWN_MOTION;
+        }
+        long differenceSum = 0;
+        for (int i = 0; i < count; i++) {
+            differenceSum += Math.abs(mSamples[i] - mPreviousSamples[i]);
+        }
+        return (float) differenceSum / count;
+    }
+}
@@ -0,0 +1,960 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.getLargestWithSimilarAspectRatio;
+import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.selectPictureSize;
+import static net.gini.android.vision.internal.util.DeviceHelper.getDeviceOrientation;
+import static net.gini.android.vision.internal.util.DeviceHelper.getDeviceType;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.hardware.Camera;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.VisibleForTesting;
+import android.view.MotionEvent;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.View;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.CapturePipeline;
+import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.documentdetection.Quad;
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * <p>
+ *     {@link CameraInterface} implementation using the Camera2 API.
+ * </p>
+ * <p>
+ *     The camera is driven on a separate thread and session setup is asynchronous. The returned
+ *     {@link CompletableFuture}s complete on the UI thread.
+ * </p>
+ * <p>
+ *     Besides the display preview and the still capture stream a low resolution YUV stream is
+ *     configured, if a preview callback was set. Its frames are delivered to the preview callback
+ *     in the NV21 format, like with the Camera API.
+ * </p>
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+public class Camera2Controller implements CameraInterface {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Camera2Controller.class);
+
+    private static final long MAX_PREVIEW_AREA = 1920 * 1440;
+    private static final long MAX_ANALYSIS_AREA = 640 * 480;
+    private static final float FOCUS_AREA_FRACTION = 0.05f;
+    private static final long RESET_FOCUS_DELAY_MS = 5000;
+
+    private final Activity mActivity;
+    private final PictureResolutionPolicy mPictureResolutionPolicy;
+    private final UIExecutor mUIExecutor;
+    private final CapturePipeline mCapturePipeline = new CapturePipeline();
+    private final Handler mResetFocusHandler;
+    private final AtomicReference<CompletableFuture<Boolean>> mFocusingFuture =
+            new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Photo>> mTakingPictureFuture =
+            new AtomicReference<>();
+
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+    private volatile Camera2Device mCameraDevice;
+    private CompletableFuture<Void> mOpenFuture;
+    private Camera2Device.Characteristics mCharacteristics;
+    private ImageReader mPictureReader;
+    private ImageReader mAnalysisReader;
+    private Surface mPreviewSurface;
+    private boolean mAnalysisStreamConfigured;
+    private boolean mSessionConfigured;
+    private boolean mPreviewRunning;
+    private boolean mContinuousFocus = true;
+    private MeteringRectangle mFocusArea;
+
+    private Size mPreviewSize = new Size(0, 0);
+    private Size mPictureSize = new Size(0, 0);
+    private Size mAnalysisSize = new Size(0, 0);
+
+    private volatile Camera.PreviewCallback mPreviewCallback;
+    private volatile PreviewBufferPool mPreviewBufferPool;
+
+    // Accessed only on the camera thread
+    private PendingPicture mPendingPicture;
+
+    private final Runnable mResetFocusMode = new Runnable() {
+        @Override
+        public void run() {
+            if (mCameraDevice == null || mCharacteristics == null) {
+                return;
+            }
+            mContinuousFocus = true;
+            mFocusArea = null; // NOPMD
+            if (mPreviewRunning) {
+                setRepeatingRequest();
+            }
+        }
+    };
+
+    public Camera2Controller(@NonNull final Activity activity) {
+        this(activity, PictureResolutionPolicy.largest());
+    }
+
+    /**
+     * @param activity                the activity showing the camera preview
+     * @param pictureResolutionPolicy selects the picture size
+     */
+    public Camera2Controller(@NonNull final Activity activity,
+            @NonNull final PictureResolutionPolicy pictureResolutionPolicy) {
+        mActivity = activity;
+        mPictureResolutionPolicy = pictureResolutionPolicy;
+        mUIExecutor = new UIExecutor();
+        mResetFocusHandler = new Handler();
+    }
+
+    /**
+     * Checks whether the device's back-facing camera is fully supported by the Camera2 API.
+     * Devices with legacy hardware level support should use the {@link CameraController}.
+     *
+     * @param context Android context
+     * @return {@code true}, if the Camera2 backend should be used
+     */
+    public static boolean isSupported(@NonNull final Context context) {
+        return Camera2DeviceImpl.isBackFacingCameraSupported(context);
+    }
+
+    @VisibleForTesting
+    @NonNull
+    protected Camera2Device createCameraDevice() {
+        return new Camera2DeviceImpl(mActivity);
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> open() {
+        LOG.info("Open camera");
+        if (mOpenFuture != null) {
+            LOG.debug("Camera already open or opening");
+            return mOpenFuture;
+        }
+        mCameraThread = new HandlerThread("GiniVisionCamera");
+        mCameraThread.start();
+        mCameraHandler = new Handler(mCameraThread.getLooper());
+        mCameraDevice = createCameraDevice();
+
+        final CompletableFuture<Void> opened = new CompletableFuture<>();
+        mOpenFuture = opened;
+        final Camera2Device cameraDevice = mCameraDevice;
+        final Handler cameraHandler = mCameraHandler;
+        cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cameraDevice.open(cameraHandler).handle(
+                        new CompletableFuture.BiFun<Camera2Device.Characteristics, Throwable,
+                                Void>() {
+                            @Override
+                            public Void apply(
+                                    final Camera2Device.Characteristics characteristics,
+                                    final Throwable throwable) {
+                                if (throwable != null) {
+                                    LOG.error("Cannot start camera", throwable);
+                                    completeExceptionallyOnUiThread(opened, throwable);
+                                    return null;
+                                }
+                                onCameraOpened(opened, characteristics, cameraHandler);
+                                return null;
+                            }
+                        });
+            }
+        });
+        return opened;
+    }
+
+    private void onCameraOpened(@NonNull final CompletableFuture<Void> opened,
+            @NonNull final Camera2Device.Characteristics characteristics,
+            @NonNull final Handler cameraHandler) {
+        final Size pictureSize = selectPictureSize(characteristics.pictureSizes,
+                mPictureResolutionPolicy);
+        if (pictureSize == null) {
+            completeExceptionallyOnUiThread(opened,
+                    new CameraException("No suitable picture size found"));
+            return;
+        }
+        Size previewSize = getLargestWithSimilarAspectRatio(characteristics.previewSizes,
+                pictureSize, MAX_PREVIEW_AREA);
+        if (previewSize == null) {
+            LOG.warn("No suitable preview size found");
+            previewSize = pictureSize;
+        }
+        Size analysisSize = getLargestWithSimilarAspectRatio(characteristics.analysisSizes,
+                pictureSize, MAX_ANALYSIS_AREA);
+        if (analysisSize == null) {
+            LOG.warn("No suitable analysis size found, using the preview size");
+            analysisSize = previewSize;
+        }
+        final ImageReader pictureReader = ImageReader.newInstance(pictureSize.width,
+                pictureSize.height, ImageFormat.JPEG, 2);
+        pictureReader.setOnImageAvailableListener(mPictureAvailableListener, cameraHandler);
+        final ImageReader analysisReader = ImageReader.newInstance(analysisSize.width,
+                analysisSize.height, ImageFormat.YUV_420_888, 3);
+        analysisReader.setOnImageAvailableListener(mAnalysisFrameAvailableListener,
+                cameraHandler);
+
+        final Size selectedPreviewSize = previewSize;
+        final Size selectedAnalysisSize = analysisSize;
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mOpenFuture != opened) {
+                    LOG.debug("Camera was closed while opening");
+                    pictureReader.close();
+                    analysisReader.close();
+                    return;
+                }
+                mCharacteristics = characteristics;
+                mPictureSize = pictureSize;
+                mPreviewSize = selectedPreviewSize;
+                mAnalysisSize = selectedAnalysisSize;
+                mPictureReader = pictureReader;
+                mAnalysisReader = analysisReader;
+                mContinuousFocus = characteristics.continuousPictureFocusSupported;
+                allocatePreviewBuffers();
+                LOG.debug("Picture size ({}, {})", mPictureSize.width, mPictureSize.height);
+                LOG.debug("Preview size ({}, {})", mPreviewSize.width, mPreviewSize.height);
+                LOG.debug("Analysis size ({}, {})", mAnalysisSize.width, mAnalysisSize.height);
+                LOG.info("Camera opened");
+                opened.complete(null);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        LOG.info("Closing camera");
+        final CompletableFuture<Void> opening = mOpenFuture;
+        if (opening == null) {
+            LOG.debug("Camera already closed");
+            LOG.info("Camera closed");
+            return;
+        }
+        mResetFocusHandler.removeCallbacks(mResetFocusMode);
+        final Camera2Device cameraDevice = mCameraDevice;
+        final HandlerThread cameraThread = mCameraThread;
+        final Handler cameraHandler = mCameraHandler;
+        final ImageReader pictureReader = mPictureReader;
+        final ImageReader analysisReader = mAnalysisReader;
+        mOpenFuture = null; // NOPMD
+        mCameraDevice = null; // NOPMD
+        mCameraThread = null; // NOPMD
+        mCameraHandler = null; // NOPMD
+        mPictureReader = null; // NOPMD
+        mAnalysisReader = null; // NOPMD
+        mPreviewSurface = null; // NOPMD
+        mCharacteristics = null; // NOPMD
+        mSessionConfigured = false;
+        mPreviewRunning = false;
+        // Wait for a pending open to finish to make sure the camera is released
+        opening.handle(new CompletableFuture.BiFun<Void, Throwable, Void>() {
+            @Override
+            public Void apply(final Void aVoid, final Throwable throwable) {
+                cameraHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        cameraDevice.close();
+                        if (pictureReader != null) {
+                            pictureReader.close();
+                        }
+                        if (analysisReader != null) {
+                            analysisReader.close();
+                        }
+                        cameraThread.quitSafely();
+                        LOG.info("Camera closed");
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> startPreview(@NonNull final SurfaceHolder surfaceHolder) {
+        LOG.info("Start preview for the given SurfaceHolder");
+        if (mCharacteristics == null) {
+            LOG.error("Cannot start preview: camera not open");
+            return failedFuture(new CameraException("Cannot start preview: camera not open"));
+        }
+        if (mPreviewRunning) {
+            LOG.info("Preview already running");
+            return CompletableFuture.completedFuture(null);
+        }
+        surfaceHolder.setFixedSize(mPreviewSize.width, mPreviewSize.height);
+        mPreviewSurface = surfaceHolder.getSurface();
+        mAnalysisStreamConfigured = mPreviewCallback != null;
+        mSessionConfigured = false;
+
+        final CompletableFuture<Void> previewStarted = new CompletableFuture<>();
+        final Rect surfaceFrame = surfaceHolder.getSurfaceFrame();
+        if (surfaceFrame.width() == mPreviewSize.width
+                && surfaceFrame.height() == mPreviewSize.height) {
+            createPreviewSession(previewStarted);
+            return previewStarted;
+        }
+        // The session must be created with a surface of the preview size, otherwise the surface
+        // could be reconfigured to the previous size
+        LOG.debug("Waiting for the surface to be resized");
+        final CompletableFuture<Void> opened = mOpenFuture;
+        surfaceHolder.addCallback(new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(final SurfaceHolder holder) {
+            }
+
+            @Override
+            public void surfaceChanged(final SurfaceHolder holder, final int format,
+                    final int width, final int height) {
+                if (width != mPreviewSize.width || height != mPreviewSize.height) {
+                    return;
+                }
+                holder.removeCallback(this);
+                if (mOpenFuture != opened) {
+                    previewStarted.completeExceptionally(
+                            new CameraException("Cannot start preview: camera closed"));
+                    return;
+                }
+                createPreviewSession(previewStarted);
+            }
+
+            @Override
+            public void surfaceDestroyed(final SurfaceHolder holder) {
+                holder.removeCallback(this);
+                previewStarted.completeExceptionally(
+                        new CameraException("Cannot start preview: surface destroyed"));
+            }
+        });
+        return previewStarted;
+    }
+
+    private void createPreviewSession(@NonNull final CompletableFuture<Void> previewStarted) {
+        final List<Surface> outputs = new ArrayList<>();
+        outputs.add(mPreviewSurface);
+        outputs.add(mPictureReader.getSurface());
+        if (mAnalysisStreamConfigured) {
+            outputs.add(mAnalysisReader.getSurface());
+        }
+        final CompletableFuture<Void> opened = mOpenFuture;
+        final Camera2Device cameraDevice = mCameraDevice;
+        final Camera2Device.RequestSettings settings = createPreviewSettings();
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cameraDevice.createSession(outputs).handle(
+                        new CompletableFuture.BiFun<Void, Throwable, Void>() {
+                            @Override
+                            public Void apply(final Void aVoid, final Throwable throwable) {
+                                if (throwable != null) {
+                                    LOG.error("Cannot start preview", throwable);
+                                    completeExceptionallyOnUiThread(previewStarted, throwable);
+                                    return null;
+                                }
+                                cameraDevice.setRepeatingRequest(settings);
+                                mUIExecutor.runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (mOpenFuture == opened) {
+                                            mSessionConfigured = true;
+                                            mPreviewRunning = true;
+                                            LOG.info("Preview started");
+                                        }
+                                        previewStarted.complete(null);
+                                    }
+                                });
+                                return null;
+                            }
+                        });
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> startPreview() {
+        LOG.info("Start preview");
+        if (mCharacteristics == null) {
+            LOG.error("Cannot start preview: camera not open");
+            return failedFuture(new CameraException("Cannot start preview: camera not open"));
+        }
+        if (mPreviewRunning) {
+            LOG.info("Preview already running");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!mSessionConfigured) {
+            LOG.warn("Cannot start preview: no capture session");
+            return CompletableFuture.completedFuture(null);
+        }
+        setRepeatingRequest();
+        mPreviewRunning = true;
+        LOG.info("Preview started");
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void stopPreview() {
+        LOG.info("Stop preview");
+        if (mCameraDevice == null) {
+            LOG.info("Preview not running: camera is stopped");
+            return;
+        }
+        final Camera2Device cameraDevice = mCameraDevice;
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cameraDevice.stopRepeating();
+            }
+        });
+        mPreviewRunning = false;
+        LOG.info("Preview stopped");
+    }
+
+    @Override
+    public boolean isPreviewRunning() {
+        return mPreviewRunning;
+    }
+
+    @Override
+    public void enableTapToFocus(@NonNull final View tapView,
+            @Nullable final TapToFocusListener listener) {
+        LOG.info("Tap to focus enabled");
+        tapView.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(final View view, final MotionEvent event) {
+                if (event.getAction() == MotionEvent.ACTION_UP) {
+                    final float x = event.getX();
+                    final float y = event.getY();
+                    LOG.debug("Handling tap to focus touch at point ({}, {})", x, y);
+                    if (mCharacteristics == null) {
+                        LOG.error("Cannot focus on tap: camera not open");
+                        return false;
+                    }
+                    if (mCharacteristics.maxFocusAreas > 0) {
+                        mFocusArea = calculateFocusArea(x, y, view.getWidth(), view.getHeight(),
+                                getCameraRotation(), mCharacteristics.activeArraySize);
+                        LOG.debug("Focus area set to {}", mFocusArea);
+                    } else {
+                        LOG.warn("Focus areas not supported");
+                    }
+                    if (listener != null) {
+                        listener.onFocusing(new Point(Math.round(x), Math.round(y)));
+                    }
+                    final CompletableFuture<Boolean> focused = focus();
+                    focused.handle(new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+                        @Override
+                        public Void apply(final Boolean success, final Throwable throwable) {
+                            if (listener != null) {
+                                listener.onFocused(throwable == null && success);
+                            }
+                            return null;
+                        }
+                    });
+                }
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void disableTapToFocus(@NonNull final View tapView) {
+        LOG.info("Tap to focus disabled");
+        tapView.setOnTouchListener(null);
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Boolean> focus() {
+        LOG.info("Start focusing");
+        if (mCharacteristics == null) {
+            LOG.error("Cannot focus: camera not open");
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!mCharacteristics.autoFocusSupported) {
+            LOG.error("Cannot focus: auto-focus mode not supported");
+            return CompletableFuture.completedFuture(false);
+        }
+
+        final CompletableFuture<Boolean> completed = new CompletableFuture<>();
+        do {
+            // Checking whether a completable is already available in which case focusing is in
+            // progress
+            final CompletableFuture<Boolean> inProgress = mFocusingFuture.get();
+            if (inProgress != null) {
+                LOG.info("Already focusing");
+                return inProgress;
+            }
+            // We rerun the above in case a completable was set by another thread
+            // Otherwise we set the new completable and exit the loop
+        } while (!mFocusingFuture.compareAndSet(null, completed));
+
+        mResetFocusHandler.removeCallbacks(mResetFocusMode);
+        mContinuousFocus = false;
+        final Camera2Device cameraDevice = mCameraDevice;
+        final Camera2Device.RequestSettings settings = createPreviewSettings();
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cameraDevice.setRepeatingRequest(settings);
+                cameraDevice.autoFocus(settings).handle(
+                        new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+                            @Override
+                            public Void apply(final Boolean success, final Throwable throwable) {
+                                final boolean result = throwable == null && success;
+                                mUIExecutor.runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        LOG.info("Focusing finished with result: {}", result);
+                                        mFocusingFuture.set(null);
+                                        completed.complete(result);
+                                        mResetFocusHandler.postDelayed(mResetFocusMode,
+                                                RESET_FOCUS_DELAY_MS);
+                                    }
+                                });
+                                return null;
+                            }
+                        });
+            }
+        });
+        return completed;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Photo> takePicture(@Nullable final Quad documentQuad) {
+        LOG.info("Take picture");
+        if (mCharacteristics == null) {
+            LOG.error("Cannot take picture: camera not open");
+            return failedFuture(new CameraException("Cannot take picture: camera not open"));
+        }
+
+        final CompletableFuture<Photo> pictureTaken = new CompletableFuture<>();
+        do {
+            // Checking whether a completable is already available in which case taking the
+            // picture is in progress
+            final CompletableFuture<Photo> inProgress = mTakingPictureFuture.get();
+            if (inProgress != null) {
+                LOG.info("Already taking a picture");
+                return inProgress;
+            }
+            // We rerun the above in case a completable was set by another thread
+            // Otherwise we set the new completable and exit the loop
+        } while (!mTakingPictureFuture.compareAndSet(null, pictureTaken));
+
+        // Preview is stopped after the picture was taken, but it's sufficient to declare
+        // preview as being stopped before it is really stopped
+        mPreviewRunning = false;
+
+        CompletableFuture<Boolean> focusFuture = new CompletableFuture<>();
+        if (mContinuousFocus) {
+            // When continuous focus mode is used no auto-focus run is needed
+            focusFuture.complete(true);
+        } else {
+            // Continuous focus mode is not used and we need to do an auto-focus run
+            focusFuture = focus();
+        }
+
+        final PendingPicture pendingPicture = new PendingPicture(pictureTaken,
+                getCameraRotation(), getDeviceOrientation(mActivity), getDeviceType(mActivity),
+                documentQuad);
+        focusFuture.handle(new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+            @Override
+            public Void apply(final Boolean aBoolean, final Throwable throwable) {
+                capture(pendingPicture);
+                return null;
+            }
+        });
+        return pictureTaken;
+    }
+
+    private void capture(@NonNull final PendingPicture pendingPicture) {
+        if (mCameraDevice == null) {
+            mTakingPictureFuture.set(null);
+            pendingPicture.future.completeExceptionally(
+                    new CameraException("Cannot take picture: camera not open"));
+            return;
+        }
+        final Camera2Device cameraDevice = mCameraDevice;
+        final List<Surface> targets = new ArrayList<>();
+        targets.add(mPictureReader.getSurface());
+        final Camera2Device.RequestSettings settings = new Camera2Device.RequestSettings(targets,
+                mContinuousFocus, mFocusArea, mCharacteristics.flashSupported);
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPendingPicture = pendingPicture;
+                cameraDevice.capture(settings).handle(
+                        new CompletableFuture.BiFun<Void, Throwable, Void>() {
+                            @Override
+                            public Void apply(final Void aVoid, final Throwable throwable) {
+                                if (throwable != null) {
+                                    LOG.error("Cannot take picture", throwable);
+                                    mPendingPicture = null; // NOPMD
+                                    completePictureOnUiThread(pendingPicture, null, throwable);
+                                }
+                                return null;
+                            }
+                        });
+            }
+        });
+    }
+
+    private final ImageReader.OnImageAvailableListener mPictureAvailableListener =
+            new ImageReader.OnImageAvailableListener() {
+                @Override
+                public void onImageAvailable(final ImageReader reader) {
+                    final Image image = reader.acquireNextImage();
+                    if (image == null) {
+                        return;
+                    }
+                    final byte[] jpeg;
+                    try {
+                        final ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                        jpeg = new byte[buffer.remaining()];
+                        buffer.get(jpeg);
+                    } finally {
+                        image.close();
+                    }
+                    final PendingPicture pendingPicture = mPendingPicture;
+                    mPendingPicture = null; // NOPMD
+                    if (pendingPicture == null) {
+                        LOG.warn("Received a picture without a pending capture");
+                        return;
+                    }
+                    // The repeating preview request keeps running, it's declared as running
+                    // again as soon as the jpeg was handed off
+                    mUIExecutor.runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            mPreviewRunning = mCameraDevice != null;
+                        }
+                    });
+                    // Not cancelled when the camera is closed, the taken picture is still
+                    // delivered
+                    mCapturePipeline.process(jpeg, pendingPicture.rotation,
+                            pendingPicture.deviceOrientation, pendingPicture.deviceType,
+                            pendingPicture.documentQuad, new CancellationToken(),
+                            new AsyncCallback<Photo>() {
+                                @Override
+                                public void onSuccess(final Photo result) {
+                                    completePictureOnUiThread(pendingPicture, result, null);
+                                }
+
+                                @Override
+                                public void onError(final Exception exception) {
+                                    completePictureOnUiThread(pendingPicture, null, exception);
+                                }
+                            });
+                }
+            };
+
+    private void completePictureOnUiThread(@NonNull final PendingPicture pendingPicture,
+            @Nullable final Photo photo, @Nullable final Throwable throwable) {
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mTakingPictureFuture.set(null);
+                if (throwable != null) {
+                    pendingPicture.future.completeExceptionally(throwable);
+                } else {
+                    LOG.info("Picture taken");
+                    pendingPicture.future.complete(photo);
+                }
+            }
+        });
+    }
+
+    private final ImageReader.OnImageAvailableListener mAnalysisFrameAvailableListener =
+            new ImageReader.OnImageAvailableListener() {
+                @Override
+                public void onImageAvailable(final ImageReader reader) {
+                    final Image image = reader.acquireLatestImage();
+                    if (image == null) {
+                        return;
+                    }
+                    final byte[] frame;
+                    try {
+                        if (mPreviewCallback == null) {
+                            return;
+                        }
+                        frame = toNV21(image, mPreviewBufferPool);
+                    } finally {
+                        image.close();
+                    }
+                    if (frame != null) {
+                        deliverPreviewFrame(frame);
+                    }
+                }
+            };
+
+    @Nullable
+    private static byte[] toNV21(@NonNull final Image image,
+            @Nullable final PreviewBufferPool bufferPool) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final byte[] frame;
+        if (bufferPool != null) {
+            frame = bufferPool.acquire();
+            if (frame == null) {
+                // All buffers are in use, the frame is dropped
+                return null;
+            }
+        } else {
+            frame = new byte[YuvConverter.getNV21Size(width, height)];
+        }
+        final Image.Plane[] planes = image.getPlanes();
+        YuvConverter.toNV21(planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                width, height, frame);
+        return frame;
+    }
+
+    private void deliverPreviewFrame(@NonNull final byte[] frame) {
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final Camera.PreviewCallback previewCallback = mPreviewCallback;
+                if (previewCallback != null) {
+                    previewCallback.onPreviewFrame(frame, null);
+                    return;
+                }
+                final PreviewBufferPool bufferPool = mPreviewBufferPool;
+                if (bufferPool != null) {
+                    bufferPool.recycle(frame);
+                }
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Size getPreviewSize() {
+        return mPreviewSize;
+    }
+
+    @NonNull
+    @Override
+    public Size getPreviewSizeForDisplay() {
+        final int rotation = getCameraRotation();
+        if (rotation == 90 || rotation == 270) {
+            return new Size(mPreviewSize.height, mPreviewSize.width);
+        }
+        return mPreviewSize;
+    }
+
+    @NonNull
+    @Override
+    public Size getPictureSize() {
+        return mPictureSize;
+    }
+
+    @NonNull
+    @Override
+    public Size getPreviewFrameSize() {
+        return mAnalysisSize;
+    }
+
+    @Override
+    public void setPreviewCallback(@Nullable final Camera.PreviewCallback previewCallback) {
+        mPreviewCallback = previewCallback;
+        if (previewCallback != null && mPreviewRunning && !mAnalysisStreamConfigured) {
+            LOG.warn("Preview frames will be delivered after the preview was restarted");
+        }
+    }
+
+    @Override
+    public void enablePreviewBufferPool(final int bufferCount) {
+        if (mPreviewRunning) {
+            LOG.warn("Cannot enable the preview buffer pool: preview already running");
+            return;
+        }
+        LOG.info("Preview buffer pool enabled with {} buffers", bufferCount);
+        mPreviewBufferPool = new PreviewBufferPool(bufferCount);
+        allocatePreviewBuffers();
+    }
+
+    private void allocatePreviewBuffers() {
+        final PreviewBufferPool bufferPool = mPreviewBufferPool;
+        if (bufferPool != null && mAnalysisSize.width > 0 && mAnalysisSize.height > 0) {
+            bufferPool.allocate(
+                    YuvConverter.getNV21Size(mAnalysisSize.width, mAnalysisSize.height));
+        }
+    }
+
+    @Nullable
+    @Override
+    public PreviewBufferPool getPreviewBufferPool() {
+        return mPreviewBufferPool;
+    }
+
+    @Override
+    public int getCameraRotation() {
+        final int sensorOrientation;
+        if (mCharacteristics != null) {
+            sensorOrientation = mCharacteristics.sensorOrientation;
+        } else {
+            sensorOrientation = Camera2DeviceImpl.getBackFacingSensorOrientation(mActivity);
+        }
+        final int rotation = mActivity.getWindowManager().getDefaultDisplay().getRotation();
+        int degrees = 0;
+        switch (rotation) {
+            case Surface.ROTATION_0:
+                degrees = 0;
+                break;
+            case Surface.ROTATION_90:
+                degrees = 90;
+                break;
+            case Surface.ROTATION_180:
+                degrees = 180;
+                break;
+            case Surface.ROTATION_270:
+                degrees = 270;
+                break;
+            default:
+                break;
+        }
+        return (sensorOrientation - degrees + 360) % 360;
+    }
+
+    private void setRepeatingRequest() {
+        final Camera2Device cameraDevice = mCameraDevice;
+        final Camera2Device.RequestSettings settings = createPreviewSettings();
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cameraDevice.setRepeatingRequest(settings);
+            }
+        });
+    }
+
+    @NonNull
+    private Camera2Device.RequestSettings createPreviewSettings() {
+        final List<Surface> targets = new ArrayList<>();
+        targets.add(mPreviewSurface);
+        if (mAnalysisStreamConfigured) {
+            targets.add(mAnalysisReader.getSurface());
+        }
+        return new Camera2Device.RequestSettings(targets, mContinuousFocus, mFocusArea, false);
+    }
+
+    /**
+     * <p>
+     * Converts the tap's coordinates in the view to a metering rectangle in the camera sensor's
+     * active array coordinates.
+     * </p>
+     * <p>
+     * The preview shown in the view is the sensor image rotated clockwise by the camera rotation,
+     * so the normalized tap point is rotated back counter-clockwise.
+     * </p>
+     *
+     * @param x               tap's X position in the view
+     * @param y               tap's Y position in the view
+     * @param tapViewWidth    the width of the tappable view
+     * @param tapViewHeight   the height of the tappable view
+     * @param rotation        the camera rotation, see {@link #getCameraRotation()}
+     * @param activeArraySize the sensor's active array
+     */
+    @VisibleForTesting
+    static MeteringRectangle calculateFocusArea(final float x, final float y,
+            final int tapViewWidth, final int tapViewHeight, final int rotation,
+            @NonNull final Rect activeArraySize) {
+        final float nx = x / tapViewWidth;
+        final float ny = y / tapViewHeight;
+        final float sx;
+        final float sy;
+        switch (rotation) {
+            case 90:
+                sx = ny;
+                sy = 1 - nx;
+                break;
+            case 180:
+                sx = 1 - nx;
+                sy = 1 - ny;
+                break;
+            case 270:
+                sx = 1 - ny;
+                sy = nx;
+                break;
+            default:
+                sx = nx;
+                sy = ny;
+                break;
+        }
+        final int width = activeArraySize.width();
+        final int height = activeArraySize.height();
+        final int halfWidth = Math.round(width * FOCUS_AREA_FRACTION);
+        final int halfHeight = Math.round(height * FOCUS_AREA_FRACTION);
+        final int centerX = Math.round(sx * width);
+        final int centerY = Math.round(sy * height);
+        final int left = clamp(centerX - halfWidth, 0, width - 2 * halfWidth);
+        final int top = clamp(centerY - halfHeight, 0, height - 2 * halfHeight);
+        return new MeteringRectangle(activeArraySize.left + left, activeArraySize.top + top,
+                2 * halfWidth, 2 * halfHeight, MeteringRectangle.METERING_WEIGHT_MAX);
+    }
+
+    private static int clamp(final int value, final int min, final int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private <T> void completeExceptionallyOnUiThread(@NonNull final CompletableFuture<T> future,
+            @NonNull final Throwable throwable) {
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                future.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(final Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    private static final class PendingPicture {
+
+        final CompletableFuture<Photo> future;
+        final int rotation;
+        final String deviceOrientation;
+        final String deviceType;
+        final Quad documentQuad;
+
+        PendingPicture(@NonNull final CompletableFuture<Photo> future, final int rotation,
+                @NonNull final String deviceOrientation, @NonNull final String deviceType,
+                @Nullable final Quad documentQuad) {
+            this.future = future;
+            this.rotation = rotation;
+            this.deviceOrientation = deviceOrientation;
+            this.deviceType = deviceType;
+            this.documentQuad = documentQuad;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.graphics.Rect;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.view.Surface;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.Collections;
+import java.util.List;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * <p>
+ *     A thin layer over a Camera2 {@link android.hardware.camera2.CameraDevice} and its capture
+ *     session. It only exposes what the {@link Camera2Controller} needs and allows testing the
+ *     controller with a fake device.
+ * </p>
+ * <p>
+ *     All returned {@link CompletableFuture}s complete on the thread of the {@link Handler} passed
+ *     to {@link #open(Handler)}.
+ * </p>
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+interface Camera2Device {
+
+    /**
+     * Opens the first back-facing camera.
+     *
+     * @param handler handler for the camera callbacks
+     * @return a {@link CompletableFuture} that completes with the camera's characteristics
+     */
+    @NonNull
+    CompletableFuture<Characteristics> open(@NonNull Handler handler);
+
+    /**
+     * Creates a capture session with the given output surfaces. Closes the previous session, if
+     * there was one.
+     *
+     * @return a {@link CompletableFuture} that completes when the session was configured
+     */
+    @NonNull
+    CompletableFuture<Void> createSession(@NonNull List<Surface> outputs);
+
+    /**
+     * Starts or replaces the repeating preview request.
+     */
+    void setRepeatingRequest(@NonNull RequestSettings settings);
+
+    /**
+     * Stops the repeating preview request.
+     */
+    void stopRepeating();
+
+    /**
+     * Runs an auto-focus scan using the given settings.
+     *
+     * @return a {@link CompletableFuture} that completes with {@code true}, if focus was locked
+     */
+    @NonNull
+    CompletableFuture<Boolean> autoFocus(@NonNull RequestSettings settings);
+
+    /**
+     * Captures a still image into the settings' target surfaces.
+     *
+     * @return a {@link CompletableFuture} that completes when the capture was completed
+     */
+    @NonNull
+    CompletableFuture<Void> capture(@NonNull RequestSettings settings);
+
+    /**
+     * Closes the session and the camera.
+     */
+    void close();
+
+    /**
+     * Camera characteristics required by the {@link Camera2Controller}.
+     */
+    final class Characteristics {
+
+        final List<Size> pictureSizes;
+        final List<Size> previewSizes;
+        final List<Size> analysisSizes;
+        final int sensorOrientation;
+        final boolean continuousPictureFocusSupported;
+        final boolean autoFocusSupported;
+        final boolean flashSupported;
+        final int maxFocusAreas;
+        final Rect activeArraySize;
+
+        Characteristics(@NonNull final List<Size> pictureSizes,
+                @NonNull final List<Size> previewSizes,
+                @NonNull final List<Size> analysisSizes,
+                final int sensorOrientation,
+                final boolean continuousPictureFocusSupported,
+                final boolean autoFocusSupported,
+                final boolean flashSupported,
+                final int maxFocusAreas,
+                @NonNull final Rect activeArraySize) {
+            this.pictureSizes = Collections.unmodifiableList(pictureSizes);
+            this.previewSizes = Collections.unmodifiableList(previewSizes);
+            this.analysisSizes = Collections.unmodifiableList(analysisSizes);
+            this.sensorOrientation = sensorOrientation;
+            this.continuousPictureFocusSupported = continuousPictureFocusSupported;
+            this.autoFocusSupported = autoFocusSupported;
+            this.flashSupported = flashSupported;
+            this.maxFocusAreas = maxFocusAreas;
+            this.activeArraySize = activeArraySize;
+        }
+    }
+
+    /**
+     * Settings for a capture request.
+     */
+    final class RequestSettings {
+
+        final List<Surface> targets;
+        final boolean continuousFocus;
+        final MeteringRectangle focusArea;
+        final boolean flash;
+
+        RequestSettings(@NonNull final List<Surface> targets, final boolean continuousFocus,
+                @Nullable final MeteringRectangle focusArea, final boolean flash) {
+            this.targets = Collections.unmodifiableList(targets);
+            this.continuousFocus = continuousFocus;
+            this.focusArea = focusArea;
+            this.flash = flash;
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.view.SurfaceHolder;
+import android.view.Surface;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * {@link Camera2Device} implementation using the Camera2 API.
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+class Camera2DeviceImpl implements Camera2Device {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Camera2DeviceImpl.class);
+
+    private static final int FOCUS_TIMEOUT_FRAMES = 60;
+    private static final int PRECAPTURE_TIMEOUT_FRAMES = 30;
+    // Guards against the capture results stopping before the frame based timeouts are reached
+    private static final long TRIGGER_TIMEOUT_MS = 3000;
+
+    private final CameraManager mCameraManager;
+    private Handler mHandler;
+    private CameraDevice mCameraDevice;
+    private CameraCaptureSession mSession;
+    private RequestSettings mRepeatingSettings;
+    private boolean mClosed;
+
+    Camera2DeviceImpl(@NonNull final Context context) {
+        mCameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    }
+
+    /**
+     * Checks whether the first back-facing camera supports more than the legacy hardware level,
+     * which is only a wrapper around the Camera API.
+     */
+    static boolean isBackFacingCameraSupported(@NonNull final Context context) {
+        final CameraManager cameraManager =
+                (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        if (cameraManager == null) {
+            return false;
+        }
+        try {
+            final String cameraId = findBackFacingCameraId(cameraManager);
+            if (cameraId == null) {
+                return false;
+            }
+            final Integer hardwareLevel = cameraManager.getCameraCharacteristics(cameraId)
+                    .get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+            return hardwareLevel != null
+                    && hardwareLevel != CameraMetadata.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+        } catch (final CameraAccessException | RuntimeException e) {
+            LOG.warn("Could not read camera characteristics", e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the sensor orientation of the first back-facing camera without opening it.
+     *
+     * @return the sensor orientation in degrees or 0, if it could not be read
+     */
+    static int getBackFacingSensorOrientation(@NonNull final Context context) {
+        final CameraManager cameraManager =
+                (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        if (cameraManager == null) {
+            return 0;
+        }
+        try {
+            final String cameraId = findBackFacingCameraId(cameraManager);
+            if (cameraId == null) {
+                return 0;
+            }
+            final Integer sensorOrientation = cameraManager.getCameraCharacteristics(cameraId)
+                    .get(CameraCharacteristics.SENSOR_ORIENTATION);
+            return sensorOrientation != null ? sensorOrientation : 0;
+        } catch (final CameraAccessException | RuntimeException e) {
+            LOG.warn("Could not read the sensor orientation", e);
+            return 0;
+        }
+    }
+
+    @Nullable
+    private static String findBackFacingCameraId(@NonNull final CameraManager cameraManager)
+            throws CameraAccessException {
+        for (final String cameraId : cameraManager.getCameraIdList()) {
+            final Integer facing = cameraManager.getCameraCharacteristics(cameraId)
+                    .get(CameraCharacteristics.LENS_FACING);
+            if (facing != null && facing == CameraMetadata.LENS_FACING_BACK) {
+                return cameraId;
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Characteristics> open(@NonNull final Handler handler) {
+        mHandler = handler;
+        mClosed = false;
+        final CompletableFuture<Characteristics> opened = new CompletableFuture<>();
+        try {
+            final String cameraId = findBackFacingCameraId(mCameraManager);
+            if (cameraId == null) {
+                opened.completeExceptionally(new CameraException("No back-facing camera"));
+                return opened;
+            }
+            final Characteristics characteristics = readCharacteristics(
+                    mCameraManager.getCameraCharacteristics(cameraId));
+            mCameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(@NonNull final CameraDevice camera) {
+                    if (mClosed) {
+                        camera.close();
+                        opened.completeExceptionally(
+                                new CameraException("Camera closed while opening"));
+                        return;
+                    }
+                    mCameraDevice = camera;
+                    opened.complete(characteristics);
+                }
+
+                @Override
+                public void onDisconnected(@NonNull final CameraDevice camera) {
+                    LOG.warn("Camera disconnected");
+                    camera.close();
+                    mCameraDevice = null; // NOPMD
+                    opened.completeExceptionally(new CameraException("Camera disconnected"));
+                }
+
+                @Override
+                public void onError(@NonNull final CameraDevice camera, final int error) {
+                    LOG.error("Camera error {}", error);
+                    camera.close();
+                    mCameraDevice = null; // NOPMD
+                    opened.completeExceptionally(new CameraException("Camera error " + error));
+                }
+            }, handler);
+        } catch (final CameraAccessException e) {
+            opened.completeExceptionally(new CameraException(e));
+        } catch (final RuntimeException e) {
+            // SecurityException, if the camera permission was not granted
+            opened.completeExceptionally(e);
+        }
+        return opened;
+    }
+
+    @NonNull
+    private static Characteristics readCharacteristics(
+            @NonNull final CameraCharacteristics characteristics) {
+        final StreamConfigurationMap configurationMap = characteristics.get(
+                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (configurationMap == null) {
+            throw new CameraException("No stream configuration");
+        }
+        final Integer sensorOrientation = characteristics.get(
+                CameraCharacteristics.SENSOR_ORIENTATION);
+        final int[] focusModes = characteristics.get(
+                CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+        final Boolean flashAvailable = characteristics.get(
+                CameraCharacteristics.FLASH_INFO_AVAILABLE);
+        final Integer maxFocusAreas = characteristics.get(
+                CameraCharacteristics.CONTROL_MAX_REGIONS_AF);
+        final Rect activeArraySize = characteristics.get(
+                CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        return new Characteristics(
+                toSizes(configurationMap.getOutputSizes(ImageFormat.JPEG)),
+                toSizes(configurationMap.getOutputSizes(SurfaceHolder.class)),
+                toSizes(configurationMap.getOutputSizes(ImageFormat.YUV_420_888)),
+                sensorOrientation != null ? sensorOrientation : 0,
+                contains(focusModes, CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE),
+                contains(focusModes, CameraMetadata.CONTROL_AF_MODE_AUTO),
+                flashAvailable != null && flashAvailable,
+                maxFocusAreas != null ? maxFocusAreas : 0,
+                activeArraySize != null ? activeArraySize : new Rect());
+    }
+
+    @NonNull
+    private static List<Size> toSizes(@Nullable final android.util.Size[] outputSizes) {
+        if (outputSizes == null) {
+            return Collections.emptyList();
+        }
+        final List<Size> sizes = new ArrayList<>(outputSizes.length);
+        for (final android.util.Size outputSize : outputSizes) {
+            sizes.add(new Size(outputSize.getWidth(), outputSize.getHeight()));
+        }
+        return sizes;
+    }
+
+    private static boolean contains(@Nullable final int[] values, final int value) {
+        if (values == null) {
+            return false;
+        }
+        for (final int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> createSession(@NonNull final List<Surface> outputs) {
+        final CompletableFuture<Void> configured = new CompletableFuture<>();
+        if (mCameraDevice == null) {
+            configured.completeExceptionally(
+                    new CameraException("Cannot create session: camera not open"));
+            return configured;
+        }
+        closeSession();
+        try {
+            mCameraDevice.createCaptureSession(outputs, new CameraCaptureSession.StateCallback() {
+                @Override
+                public void onConfigured(@NonNull final CameraCaptureSession session) {
+                    if (mCameraDevice == null) {
+                        session.close();
+                        configured.completeExceptionally(
+                                new CameraException("Camera closed while configuring"));
+                        return;
+                    }
+                    mSession = session;
+                    configured.complete(null);
+                }
+
+                @Override
+                public void onConfigureFailed(@NonNull final CameraCaptureSession session) {
+                    configured.completeExceptionally(
+                            new CameraException("Capture session configuration failed"));
+                }
+            }, mHandler);
+        } catch (final CameraAccessException e) {
+            configured.completeExceptionally(new CameraException(e));
+        } catch (final IllegalStateException e) {
+            configured.completeExceptionally(e);
+        }
+        return configured;
+    }
+
+    @Override
+    public void setRepeatingRequest(@NonNull final RequestSettings settings) {
+        mRepeatingSettings = settings;
+        setRepeatingRequest(settings, null);
+    }
+
+    private void setRepeatingRequest(@NonNull final RequestSettings settings,
+            @Nullable final CameraCaptureSession.CaptureCallback callback) {
+        if (mSession == null) {
+            LOG.error("Cannot set repeating request: no capture session");
+            return;
+        }
+        try {
+            final CaptureRequest.Builder builder = createRequestBuilder(
+                    CameraDevice.TEMPLATE_PREVIEW, settings);
+            mSession.setRepeatingRequest(builder.build(), callback, mHandler);
+        } catch (final CameraAccessException | IllegalStateException e) {
+            LOG.error("Cannot set repeating request", e);
+        }
+    }
+
+    @Override
+    public void stopRepeating() {
+        if (mSession == null) {
+            return;
+        }
+        try {
+            mSession.stopRepeating();
+        } catch (final CameraAccessException | IllegalStateException e) {
+            LOG.error("Cannot stop repeating request", e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Boolean> autoFocus(@NonNull final RequestSettings settings) {
+        final CompletableFuture<Boolean> focused = new CompletableFuture<>();
+        triggerAndAwait(settings, CaptureRequest.CONTROL_AF_TRIGGER,
+                CameraMetadata.CONTROL_AF_TRIGGER_START, CaptureResult.CONTROL_AF_STATE,
+                FOCUS_TIMEOUT_FRAMES, new StateListener() {
+                    @Override
+                    public boolean onState(@Nullable final Integer state) {
+                        if (state == null) {
+                            focused.complete(false);
+                            return true;
+                        }
+                        switch (state) {
+                            case CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED:
+                                focused.complete(true);
+                                return true;
+                            case CameraMetadata.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED:
+                                focused.complete(false);
+                                return true;
+                            default:
+                                return false;
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout() {
+                        LOG.warn("Auto-focus timed out");
+                        focused.complete(false);
+                    }
+                });
+        return focused;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<Void> capture(@NonNull final RequestSettings settings) {
+        final CompletableFuture<Void> captured = new CompletableFuture<>();
+        if (!settings.flash || mRepeatingSettings == null) {
+            captureStill(settings, captured);
+            return captured;
+        }
+        // Run the precapture metering sequence with the still capture's auto-exposure mode to let
+        // the flash fire correctly. The preview targets are used to not trigger a still capture.
+        final RequestSettings precaptureSettings = new RequestSettings(
+                mRepeatingSettings.targets, mRepeatingSettings.continuousFocus,
+                mRepeatingSettings.focusArea, settings.flash);
+        triggerAndAwait(precaptureSettings, CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
+                CameraMetadata.CONTROL_AE_PRECAPTURE_TRIGGER_START, CaptureResult.CONTROL_AE_STATE,
+                PRECAPTURE_TIMEOUT_FRAMES, new StateListener() {
+                    private boolean mPrecaptureSeen;
+
+                    @Override
+                    public boolean onState(@Nullable final Integer state) {
+                        if (state == null) {
+                            // Auto-exposure state not reported by the device
+                            captureStill(settings, captured);
+                            return true;
+                        }
+                        switch (state) {
+                            case CameraMetadata.CONTROL_AE_STATE_PRECAPTURE:
+                                mPrecaptureSeen = true;
+                                return false;
+                            case CameraMetadata.CONTROL_AE_STATE_CONVERGED:
+                            case CameraMetadata.CONTROL_AE_STATE_FLASH_REQUIRED:
+                                if (mPrecaptureSeen) {
+                                    captureStill(settings, captured);
+                                    return true;
+                                }
+                                return false;
+                            default:
+                                return false;
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout() {
+                        LOG.warn("Precapture metering timed out");
+                        captureStill(settings, captured);
+                    }
+                });
+        return captured;
+    }
+
+    private void captureStill(@NonNull final RequestSettings settings,
+            @NonNull final CompletableFuture<Void> captured) {
+        if (mSession == null) {
+            captured.completeExceptionally(
+                    new CameraException("Cannot capture: no capture session"));
+            return;
+        }
+        try {
+            final CaptureRequest.Builder builder = createRequestBuilder(
+                    CameraDevice.TEMPLATE_STILL_CAPTURE, settings);
+            mSession.capture(builder.build(), new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureCompleted(@NonNull final CameraCaptureSession session,
+                        @NonNull final CaptureRequest request,
+                        @NonNull final TotalCaptureResult result) {
+                    captured.complete(null);
+                }
+
+                @Override
+                public void onCaptureFailed(@NonNull final CameraCaptureSession session,
+                        @NonNull final CaptureRequest request,
+                        @NonNull final CaptureFailure failure) {
+                    captured.completeExceptionally(new CameraException(
+                            "Capture failed with reason " + failure.getReason()));
+                }
+            }, mHandler);
+        } catch (final CameraAccessException e) {
+            captured.completeExceptionally(new CameraException(e));
+        } catch (final IllegalStateException e) {
+            captured.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Sends a trigger and passes the state reported in the following capture results to the
+     * listener until it returns {@code true} or the timeout is reached. The timeout is reached
+     * after the given number of frames or, if the capture results stop, after
+     * {@link #TRIGGER_TIMEOUT_MS}. The plain repeating request is restored afterwards.
+     */
+    private void triggerAndAwait(@NonNull final RequestSettings settings,
+            @NonNull final CaptureRequest.Key<Integer> triggerKey, final int triggerValue,
+            @NonNull final CaptureResult.Key<Integer> stateKey, final int timeoutFrames,
+            @NonNull final StateListener listener) {
+        if (mSession == null) {
+            listener.onTimeout();
+            return;
+        }
+        final TriggerCallback callback = new TriggerCallback(triggerKey, triggerValue, stateKey,
+                timeoutFrames, listener);
+        try {
+            final CaptureRequest.Builder triggerBuilder = createRequestBuilder(
+                    CameraDevice.TEMPLATE_PREVIEW, settings);
+            triggerBuilder.set(triggerKey, triggerValue);
+            setRepeatingRequest(settings, callback);
+            mSession.capture(triggerBuilder.build(), callback, mHandler);
+            mHandler.postDelayed(callback, TRIGGER_TIMEOUT_MS);
+        } catch (final CameraAccessException | IllegalStateException e) {
+            LOG.error("Cannot send trigger", e);
+            listener.onTimeout();
+        }
+    }
+
+    /**
+     * Passes the state from the capture results following a trigger to a {@link StateListener}.
+     * When run it reports a timeout, if the awaited state was not reached yet.
+     */
+    private class TriggerCallback extends CameraCaptureSession.CaptureCallback implements
+            Runnable {
+
+        private final CaptureRequest.Key<Integer> mTriggerKey;
+        private final int mTriggerValue;
+        private final CaptureResult.Key<Integer> mStateKey;
+        private final int mTimeoutFrames;
+        private final StateListener mListener;
+        private boolean mTriggered;
+        private boolean mDone;
+        private int mFrames;
+
+        TriggerCallback(@NonNull final CaptureRequest.Key<Integer> triggerKey,
+                final int triggerValue, @NonNull final CaptureResult.Key<Integer> stateKey,
+                final int timeoutFrames, @NonNull final StateListener listener) {
+            mTriggerKey = triggerKey;
+            mTriggerValue = triggerValue;
+            mStateKey = stateKey;
+            mTimeoutFrames = timeoutFrames;
+            mListener = listener;
+        }
+
+        @Override
+        public void onCaptureCompleted(@NonNull final CameraCaptureSession session,
+                @NonNull final CaptureRequest request,
+                @NonNull final TotalCaptureResult result) {
+            if (mDone) {
+                return;
+            }
+            final Integer trigger = request.get(mTriggerKey);
+            if (!mTriggered) {
+                // Results are delivered in order, the state is only relevant after the trigger
+                // was processed
+                mTriggered = trigger != null && trigger == mTriggerValue;
+                return;
+            }
+            mFrames++;
+            if (mListener.onState(result.get(mStateKey))) {
+                finish();
+            } else if (mFrames > mTimeoutFrames) {
+                mListener.onTimeout();
+                finish();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mDone) {
+                return;
+            }
+            mListener.onTimeout();
+            finish();
+        }
+
+        private void finish() {
+            mDone = true;
+            mHandler.removeCallbacks(this);
+            if (mRepeatingSettings != null) {
+                setRepeatingRequest(mRepeatingSettings, null);
+            }
+        }
+    }
+
+    @NonNull
+    private CaptureRequest.Builder createRequestBuilder(final int template,
+            @NonNull final RequestSettings settings) throws CameraAccessException {
+        if (mCameraDevice == null) {
+            throw new IllegalStateException("Camera not open");
+        }
+        final CaptureRequest.Builder builder = mCameraDevice.createCaptureRequest(template);
+        for (final Surface target : settings.targets) {
+            builder.addTarget(target);
+        }
+        builder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+        builder.set(CaptureRequest.CONTROL_AF_MODE, settings.continuousFocus
+                ? CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE
+                : CameraMetadata.CONTROL_AF_MODE_AUTO);
+        if (settings.focusArea != null) {
+            builder.set(CaptureRequest.CONTROL_AF_REGIONS,
+                    new MeteringRectangle[]{settings.focusArea});
+        }
+        builder.set(CaptureRequest.CONTROL_AE_MODE, settings.flash
+                ? CameraMetadata.CONTROL_AE_MODE_ON_ALWAYS_FLASH
+                : CameraMetadata.CONTROL_AE_MODE_ON);
+        return builder;
+    }
+
+    private void closeSession() {
+        if (mSession != null) {
+            mSession.close();
+            mSession = null; // NOPMD
+        }
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        mRepeatingSettings = null; // NOPMD
+        closeSession();
+        if (mCameraDevice != null) {
+            mCameraDevice.close();
+            mCameraDevice = null; // NOPMD
+        }
+    }
+
+    private interface StateListener {
+
+        /**
+         * @return {@code true}, if the awaited state was reached
+         */
+        boolean onState(@Nullable Integer state);
+
+        void onTimeout();
+    }
+}
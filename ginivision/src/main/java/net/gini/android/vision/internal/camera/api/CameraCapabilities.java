@@ -0,0 +1,221 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.toSizes;
+
+import android.hardware.Camera;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *     The back-facing camera's capabilities used by the Gini Vision Library: the supported picture
+ *     and preview sizes, focus and flash modes and the sensor orientation.
+ * </p>
+ * <p>
+ *     They don't change for a device build and are cached with the {@link
+ *     CameraCapabilitiesCache} to avoid reading them from the camera every time.
+ * </p>
+ *
+ * @exclude
+ */
+public final class CameraCapabilities {
+
+    private static final String SEPARATOR = "\n";
+    private static final String LIST_SEPARATOR = ",";
+    private static final String SIZE_SEPARATOR = "x";
+    private static final int FIELD_COUNT = 7;
+
+    private final List<Size> mSupportedPictureSizes;
+    private final List<Size> mSupportedPreviewSizes;
+    private final List<String> mSupportedFocusModes;
+    private final List<String> mSupportedFlashModes;
+    private final int mSensorOrientation;
+
+    /**
+     * @param parameters        the back-facing camera's parameters
+     * @param sensorOrientation the back-facing camera's orientation, see {@link
+     *                          Camera.CameraInfo#orientation}
+     */
+    @NonNull
+    public static CameraCapabilities fromParameters(@NonNull final Camera.Parameters parameters,
+            final int sensorOrientation) {
+        return new CameraCapabilities(
+                toSizes(nonNullList(parameters.getSupportedPictureSizes())),
+                toSizes(nonNullList(parameters.getSupportedPreviewSizes())),
+                nonNullList(parameters.getSupportedFocusModes()),
+                nonNullList(parameters.getSupportedFlashModes()),
+                sensorOrientation);
+    }
+
+    /**
+     * @return the first back-facing camera's orientation or {@code null}, if there is no
+     * back-facing camera
+     */
+    @Nullable
+    public static Integer readBackFacingSensorOrientation() {
+        final int numberOfCameras = Camera.getNumberOfCameras();
+        final Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
+        for (int i = 0; i < numberOfCameras; i++) {
+            Camera.getCameraInfo(i, cameraInfo);
+            if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                return cameraInfo.orientation;
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    private static <T> List<T> nonNullList(@Nullable final List<T> list) {
+        return list != null ? list : Collections.<T>emptyList();
+    }
+
+    CameraCapabilities(@NonNull final List<Size> supportedPictureSizes,
+            @NonNull final List<Size> supportedPreviewSizes,
+            @NonNull final List<String> supportedFocusModes,
+            @NonNull final List<String> supportedFlashModes,
+            final int sensorOrientation) {
+        mSupportedPictureSizes = Collections.unmodifiableList(
+                new ArrayList<>(supportedPictureSizes));
+        mSupportedPreviewSizes = Collections.unmodifiableList(
+                new ArrayList<>(supportedPreviewSizes));
+        mSupportedFocusModes = Collections.unmodifiableList(
+                new ArrayList<>(supportedFocusModes));
+        mSupportedFlashModes = Collections.unmodifiableList(
+                new ArrayList<>(supportedFlashModes));
+        mSensorOrientation = sensorOrientation;
+    }
+
+    @NonNull
+    public List<Size> getSupportedPictureSizes() {
+        return mSupportedPictureSizes;
+    }
+
+    @NonNull
+    public List<Size> getSupportedPreviewSizes() {
+        return mSupportedPreviewSizes;
+    }
+
+    @NonNull
+    public List<String> getSupportedFocusModes() {
+        return mSupportedFocusModes;
+    }
+
+    @NonNull
+    public List<String> getSupportedFlashModes() {
+        return mSupportedFlashModes;
+    }
+
+    public int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    public boolean isFocusModeSupported(@NonNull final String focusMode) {
+        return mSupportedFocusModes.contains(focusMode);
+    }
+
+    public boolean isFlashModeSupported(@NonNull final String flashMode) {
+        return mSupportedFlashModes.contains(flashMode);
+    }
+
+    @NonNull
+    String encode(final int version, @NonNull final String fingerprint) {
+        return version + SEPARATOR
+                + fingerprint + SEPARATOR
+                + encodeSizes(mSupportedPictureSizes) + SEPARATOR
+                + encodeSizes(mSupportedPreviewSizes) + SEPARATOR
+                + join(mSupportedFocusModes) + SEPARATOR
+                + join(mSupportedFlashModes) + SEPARATOR
+                + mSensorOrientation;
+    }
+
+    /**
+     * @return the decoded capabilities or {@code null}, if the version or fingerprint differ or
+     * the encoded capabilities are malformed
+     */
+    @Nullable
+    static CameraCapabilities decode(@Nullable final String encoded, final int version,
+            @NonNull final String fingerprint) {
+        if (encoded == null) {
+            return null;
+        }
+        final String[] fields = encoded.split(SEPARATOR, -1);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        try {
+            if (Integer.parseInt(fields[0]) != version || !fields[1].equals(fingerprint)) {
+                return null;
+            }
+            return new CameraCapabilities(
+                    decodeSizes(fields[2]),
+                    decodeSizes(fields[3]),
+                    split(fields[4]),
+                    split(fields[5]),
+                    Integer.parseInt(fields[6]));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private static String encodeSizes(@NonNull final List<Size> sizes) {
+        final List<String> encoded = new ArrayList<>(sizes.size());
+        for (final Size size : sizes) {
+            encoded.add(size.width + SIZE_SEPARATOR + size.height);
+        }
+        return join(encoded);
+    }
+
+    @NonNull
+    private static List<Size> decodeSizes(@NonNull final String encoded) {
+        final List<String> encodedSizes = split(encoded);
+        final List<Size> sizes = new ArrayList<>(encodedSizes.size());
+        for (final String encodedSize : encodedSizes) {
+            final String[] dimensions = encodedSize.split(SIZE_SEPARATOR, -1);
+            if (dimensions.length != 2) {
+                throw new NumberFormatException("Malformed size: " + encodedSize);
+            }
+            sizes.add(new Size(Integer.parseInt(dimensions[0]),
+                    Integer.parseInt(dimensions[1])));
+        }
+        return sizes;
+    }
+
+    @NonNull
+    private static String join(@NonNull final List<String> values) {
+        final StringBuilder builder = new StringBuilder();
+        for (final String value : values) {
+            if (builder.length() > 0) {
+                builder.append(LIST_SEPARATOR);
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    private static List<String> split(@NonNull final String joined) {
+        if (joined.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(joined.split(LIST_SEPARATOR));
+    }
+
+    @Override
+    public String toString() {
+        return "CameraCapabilities{"
+                + "supportedPictureSizes=" + mSupportedPictureSizes
+                + ", supportedPreviewSizes=" + mSupportedPreviewSizes
+                + ", supportedFocusModes=" + mSupportedFocusModes
+                + ", supportedFlashModes=" + mSupportedFlashModes
+                + ", sensorOrientation=" + mSensorOrientation
+                + '}';
+    }
+}
@@ -0,0 +1,79 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Persists the {@link CameraCapabilities} of the back-facing camera.
+ * </p>
+ * <p>
+ *     The cached capabilities are only valid for the device build they were read on. They are
+ *     keyed by the build fingerprint and a format version, which has to be increased when the
+ *     stored capabilities change.
+ * </p>
+ *
+ * @exclude
+ */
+public class CameraCapabilitiesCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CameraCapabilitiesCache.class);
+
+    @VisibleForTesting
+    static final int VERSION = 2;
+
+    private static final String CAMERA_CAPABILITIES = "GV_CAMERA_CAPABILITIES";
+    private static final String KEY_BACK_FACING_CAMERA = "BACK_FACING_CAMERA";
+
+    private final SharedPreferences mSharedPreferences;
+    private final String mFingerprint;
+
+    public CameraCapabilitiesCache(@NonNull final Context context) {
+        this(context.getSharedPreferences(CAMERA_CAPABILITIES, Context.MODE_PRIVATE),
+                Build.FINGERPRINT);
+    }
+
+    @VisibleForTesting
+    CameraCapabilitiesCache(@NonNull final SharedPreferences sharedPreferences,
+            @Nullable final String fingerprint) {
+        mSharedPreferences = sharedPreferences;
+        mFingerprint = fingerprint != null ? fingerprint : "";
+    }
+
+    /**
+     * @return the cached capabilities or {@code null}, if none were cached for this device build
+     */
+    @Nullable
+    public CameraCapabilities load() {
+        final CameraCapabilities capabilities = CameraCapabilities.decode(
+                mSharedPreferences.getString(KEY_BACK_FACING_CAMERA, null), VERSION,
+                mFingerprint);
+        if (capabilities == null) {
+            LOG.debug("No valid cached camera capabilities");
+        } else {
+            LOG.debug("Loaded cached camera capabilities {}", capabilities);
+        }
+        return capabilities;
+    }
+
+    public void save(@NonNull final CameraCapabilities capabilities) {
+        mSharedPreferences.edit()
+                .putString(KEY_BACK_FACING_CAMERA, capabilities.encode(VERSION, mFingerprint))
+                .apply();
+        LOG.debug("Saved camera capabilities {}", capabilities);
+    }
+
+    public void clear() {
+        mSharedPreferences.edit()
+                .remove(KEY_BACK_FACING_CAMERA)
+                .apply();
+        LOG.debug("Cleared camera capabilities");
+    }
+}
@@ -1,20 +1,22 @@
 package net.gini.android.vision.internal.camera.api;
 
-import static net.gini.android.vision.internal.camera.api.CameraParametersHelper.isFlashModeSupported;
 import static net.gini.android.vision.internal.camera.api.CameraParametersHelper.isFocusModeSupported;
 import static net.gini.android.vision.internal.camera.api.CameraParametersHelper.isUsingFocusMode;
-import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.getLargestSize;
-import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.getLargestSizeWithSimilarAspectRatio;
+import static net.gini.android.vision.internal.camera.api.SizeSelectionHelper.getLargestWithSimilarAspectRatio;
 import static net.gini.android.vision.internal.util.DeviceHelper.getDeviceOrientation;
 import static net.gini.android.vision.internal.util.DeviceHelper.getDeviceType;
 
 import android.app.Activity;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.hardware.Camera;
+import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
@@ -23,8 +25,12 @@ import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.View;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.CapturePipeline;
 import net.gini.android.vision.internal.camera.photo.Photo;
-import net.gini.android.vision.internal.camera.photo.PhotoFactory;
+import net.gini.android.vision.internal.documentdetection.Quad;
 import net.gini.android.vision.internal.util.Size;
 
 import org.slf4j.Logger;
@@ -33,20 +39,31 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
 import jersey.repackaged.jsr166e.CompletableFuture;
 
 /**
+ * <p>
+ *     {@link CameraInterface} implementation using the Camera API.
+ * </p>
+ * <p>
+ *     In camera thread mode every {@link Camera} interaction runs on a dedicated looper thread
+ *     which is started when the camera is opened and stopped when it is closed. Camera callbacks,
+ *     including the preview callback, are invoked on that thread. The returned {@link
+ *     CompletableFuture}s complete on the UI thread in both modes.
+ * </p>
+ *
  * @exclude
  */
 public class CameraController implements CameraInterface {
 
     private static final Logger LOG = LoggerFactory.getLogger(CameraController.class);
 
-    private Camera mCamera;
+    private volatile Camera mCamera;
 
-    private boolean mPreviewRunning;
+    private volatile boolean mPreviewRunning;
     private final AtomicReference<CompletableFuture<Boolean>> mFocusingFuture =
             new AtomicReference<>();
     private final AtomicReference<CompletableFuture<Photo>> mTakingPictureFuture =
@@ -54,30 +71,96 @@ public class CameraController implements CameraInterface {
 
     private Size mPreviewSize = new Size(0, 0);
     private Size mPictureSize = new Size(0, 0);
+    private int mPreviewFormat = ImageFormat.NV21;
 
     private final Activity mActivity;
+    private final boolean mUseCameraThread;
+    private final PictureResolutionPolicy mPictureResolutionPolicy;
+    private final UIExecutor mUIExecutor;
+    private final CapturePipeline mCapturePipeline = new CapturePipeline();
     private final Handler mResetFocusHandler;
-    private Camera.PreviewCallback mPreviewCallback;
+    private HandlerThread mCameraThread;
+    private volatile Handler mCameraHandler;
+    private boolean mCameraThreadQuitting;
+    private volatile Camera.CameraInfo mBackFacingCameraInfo;
+    private final CameraCapabilitiesCache mCapabilitiesCache;
+    private volatile CameraCapabilities mCapabilities;
+    private volatile Camera.PreviewCallback mPreviewCallback;
+    private volatile PreviewBufferPool mPreviewBufferPool;
 
-    private final Runnable mResetFocusMode = new Runnable() {
+    private final Executor mCameraExecutor = new Executor() {
         @Override
-        public void run() {
-            if (mCamera == null) {
+        public void execute(@NonNull final Runnable command) {
+            runOnCameraThread(command);
+        }
+    };
+
+    private final Camera.PreviewCallback mBufferedPreviewCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(final byte[] data, final Camera camera) {
+            final PreviewBufferPool bufferPool = mPreviewBufferPool;
+            if (bufferPool == null) {
                 return;
             }
-            final Camera.Parameters parameters = mCamera.getParameters();
-            if (!isUsingFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE, mCamera)
-                    && isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE,
-                    mCamera)) {
-                parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+            bufferPool.onBufferDelivered(data);
+            final Camera.PreviewCallback previewCallback = mPreviewCallback;
+            if (previewCallback == null) {
+                bufferPool.recycle(data);
+                return;
             }
-            mCamera.setParameters(parameters);
+            previewCallback.onPreviewFrame(data, camera);
+        }
+    };
+
+    private final Runnable mResetFocusMode = new Runnable() {
+        @Override
+        public void run() {
+            runOnCameraThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCamera == null) {
+                        return;
+                    }
+                    final Camera.Parameters parameters = mCamera.getParameters();
+                    if (!isUsingFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE,
+                            mCamera)
+                            && supportsFocusMode(
+                            Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+                        parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+                    }
+                    mCamera.setParameters(parameters);
+                }
+            });
         }
     };
 
     public CameraController(@NonNull final Activity activity) {
+        this(activity, false);
+    }
+
+    /**
+     * @param activity        the activity showing the camera preview
+     * @param useCameraThread if {@code true}, the camera is opened and used on a dedicated
+     *                        thread, otherwise on the calling thread
+     */
+    public CameraController(@NonNull final Activity activity, final boolean useCameraThread) {
+        this(activity, useCameraThread, PictureResolutionPolicy.largest());
+    }
+
+    /**
+     * @param activity                the activity showing the camera preview
+     * @param useCameraThread         if {@code true}, the camera is opened and used on a
+     *                                dedicated thread, otherwise on the calling thread
+     * @param pictureResolutionPolicy selects the picture size
+     */
+    public CameraController(@NonNull final Activity activity, final boolean useCameraThread,
+            @NonNull final PictureResolutionPolicy pictureResolutionPolicy) {
         mActivity = activity;
+        mUseCameraThread = useCameraThread;
+        mPictureResolutionPolicy = pictureResolutionPolicy;
+        mUIExecutor = new UIExecutor();
         mResetFocusHandler = new Handler();
+        mCapabilitiesCache = new CameraCapabilitiesCache(activity);
     }
 
     @Nullable
@@ -86,29 +169,83 @@ public class CameraController implements CameraInterface {
         return mCamera;
     }
 
+    @VisibleForTesting
+    @Nullable
+    Looper getCameraLooper() {
+        return mCameraHandler != null ? mCameraHandler.getLooper() : null;
+    }
+
+    /**
+     * Runs the action on the camera thread. Without a camera thread, or if the camera thread has
+     * already quit, the action runs on the calling thread. In the latter case the camera is
+     * already released and the action will only find a closed camera.
+     */
+    private void runOnCameraThread(@NonNull final Runnable action) {
+        final Handler cameraHandler = mCameraHandler;
+        if (cameraHandler == null || Looper.myLooper() == cameraHandler.getLooper()
+                || !cameraHandler.post(action)) {
+            action.run();
+        }
+    }
+
+    private void startCameraThread() {
+        if (!mUseCameraThread || (mCameraThread != null && !mCameraThreadQuitting)) {
+            return;
+        }
+        final HandlerThread previousCameraThread = mCameraThread;
+        mCameraThread = new HandlerThread("GiniVisionCamera");
+        mCameraThread.start();
+        mCameraHandler = new Handler(mCameraThread.getLooper());
+        mCameraThreadQuitting = false;
+        if (previousCameraThread != null) {
+            // The camera can only be opened again after the previous thread released it
+            mCameraHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        previousCameraThread.join();
+                    } catch (final InterruptedException e) {
+                        LOG.warn("Interrupted while waiting for the previous camera thread", e);
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+    }
+
     @NonNull
     @Override
     public CompletableFuture<Void> open() {
         LOG.info("Open camera");
-        if (mCamera != null) {
-            LOG.debug("Camera already open");
-            LOG.info("Camera opened");
-            return CompletableFuture.completedFuture(null);
-        }
-        try {
-            mCamera = openCamera();
-            if (mCamera != null) {
-                configureCamera(mActivity);
-                LOG.info("Camera opened");
-                return CompletableFuture.completedFuture(null);
-            } else {
-                LOG.error("No back-facing camera");
-                return failedFuture(new CameraException("No back-facing camera"));
+        startCameraThread();
+        final CompletableFuture<Void> opened = new CompletableFuture<>();
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mCamera != null) {
+                    LOG.debug("Camera already open");
+                    LOG.info("Camera opened");
+                    completeOnUiThread(opened, null);
+                    return;
+                }
+                try {
+                    mCamera = openCamera();
+                    if (mCamera != null) {
+                        configureCamera(mActivity);
+                        LOG.info("Camera opened");
+                        completeOnUiThread(opened, null);
+                    } else {
+                        LOG.error("No back-facing camera");
+                        completeExceptionallyOnUiThread(opened,
+                                new CameraException("No back-facing camera"));
+                    }
+                } catch (final RuntimeException e) {
+                    LOG.error("Cannot start camera", e);
+                    completeExceptionallyOnUiThread(opened, e);
+                }
             }
-        } catch (final RuntimeException e) {
-            LOG.error("Cannot start camera", e);
-            return failedFuture(e);
-        }
+        });
+        return opened;
     }
 
     @VisibleForTesting
@@ -120,71 +257,145 @@ public class CameraController implements CameraInterface {
     @Override
     public void close() {
         LOG.info("Closing camera");
+        final HandlerThread cameraThread = mCameraThreadQuitting ? null : mCameraThread;
+        mCameraThreadQuitting = mCameraThread != null;
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                releaseCamera();
+                if (cameraThread != null) {
+                    quit(cameraThread);
+                }
+            }
+        });
+    }
+
+    private void releaseCamera() {
         if (mCamera == null) {
             LOG.debug("Camera already closed");
             LOG.info("Camera closed");
             return;
         }
+        final PreviewBufferPool bufferPool = mPreviewBufferPool;
+        if (bufferPool != null) {
+            bufferPool.detach();
+        }
         mCamera.release();
         mCamera = null; // NOPMD
         LOG.info("Camera closed");
     }
 
+    private static void quit(@NonNull final HandlerThread handlerThread) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            handlerThread.quitSafely();
+        } else {
+            handlerThread.quit();
+        }
+    }
+
     @NonNull
     @Override
     public CompletableFuture<Void> startPreview(@NonNull final SurfaceHolder surfaceHolder) {
         LOG.info("Start preview for the given SurfaceHolder");
-        if (mCamera == null) {
-            LOG.error("Cannot start preview: camera not open");
-            return failedFuture(new CameraException("Cannot start preview: camera not open"));
-        }
-        if (mPreviewRunning) {
-            LOG.info("Preview already running");
-            return CompletableFuture.completedFuture(null);
-        }
-        try {
-            mCamera.setPreviewCallback(mPreviewCallback);
-            mCamera.setPreviewDisplay(surfaceHolder);
-            mCamera.startPreview();
-            mPreviewRunning = true;
-            LOG.info("Preview started");
-        } catch (final IOException e) {
-            LOG.error("Cannot start preview", e);
-            return failedFuture(e);
-        }
-        return CompletableFuture.completedFuture(null);
+        final CompletableFuture<Void> previewStarted = new CompletableFuture<>();
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mCamera == null) {
+                    LOG.error("Cannot start preview: camera not open");
+                    completeExceptionallyOnUiThread(previewStarted,
+                            new CameraException("Cannot start preview: camera not open"));
+                    return;
+                }
+                if (mPreviewRunning) {
+                    LOG.info("Preview already running");
+                    completeOnUiThread(previewStarted, null);
+                    return;
+                }
+                try {
+                    registerPreviewCallback();
+                    mCamera.setPreviewDisplay(surfaceHolder);
+                    mCamera.startPreview();
+                    mPreviewRunning = true;
+                    LOG.info("Preview started");
+                } catch (final IOException e) {
+                    LOG.error("Cannot start preview", e);
+                    completeExceptionallyOnUiThread(previewStarted, e);
+                    return;
+                }
+                completeOnUiThread(previewStarted, null);
+            }
+        });
+        return previewStarted;
     }
 
     @NonNull
     @Override
     public CompletableFuture<Void> startPreview() {
         LOG.info("Start preview");
-        if (mCamera == null) {
-            LOG.error("Cannot start preview: camera not open");
-            return failedFuture(new CameraException("Cannot start preview: camera not open"));
-        }
-        if (mPreviewRunning) {
-            LOG.info("Preview already running");
-            return CompletableFuture.completedFuture(null);
-        }
-        mCamera.setPreviewCallback(mPreviewCallback);
-        mCamera.startPreview();
-        mPreviewRunning = true;
-        LOG.info("Preview started");
-        return CompletableFuture.completedFuture(null);
+        final CompletableFuture<Void> previewStarted = new CompletableFuture<>();
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mCamera == null) {
+                    LOG.error("Cannot start preview: camera not open");
+                    completeExceptionallyOnUiThread(previewStarted,
+                            new CameraException("Cannot start preview: camera not open"));
+                    return;
+                }
+                if (mPreviewRunning) {
+                    LOG.info("Preview already running");
+                    completeOnUiThread(previewStarted, null);
+                    return;
+                }
+                registerPreviewCallback();
+                mCamera.startPreview();
+                mPreviewRunning = true;
+                LOG.info("Preview started");
+                completeOnUiThread(previewStarted, null);
+            }
+        });
+        return previewStarted;
     }
 
     @Override
     public void stopPreview() {
         LOG.info("Stop preview");
-        if (mCamera == null) {
-            LOG.info("Preview not running: camera is stopped");
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mCamera == null) {
+                    LOG.info("Preview not running: camera is stopped");
+                    return;
+                }
+                mCamera.setPreviewCallback(null);
+                final PreviewBufferPool bufferPool = mPreviewBufferPool;
+                if (bufferPool != null) {
+                    bufferPool.detach();
+                }
+                mCamera.stopPreview();
+                mPreviewRunning = false;
+                LOG.info("Preview stopped");
+            }
+        });
+    }
+
+    private void registerPreviewCallback() {
+        final PreviewBufferPool bufferPool = mPreviewBufferPool;
+        if (bufferPool == null || mPreviewCallback == null) {
+            mCamera.setPreviewCallback(mPreviewCallback);
             return;
         }
+        // Clears any buffers the camera might still hold from a previous registration
         mCamera.setPreviewCallback(null);
-        mCamera.stopPreview();
-        mPreviewRunning = false;
-        LOG.info("Preview stopped");
+        mCamera.setPreviewCallbackWithBuffer(mBufferedPreviewCallback);
+        bufferPool.attach(mCamera, getPreviewBufferSize());
+        LOG.debug("Preview callback registered with buffer pool {}", bufferPool);
+    }
+
+    private int getPreviewBufferSize() {
+        final int bitsPerPixel = ImageFormat.getBitsPerPixel(mPreviewFormat);
+        return mPreviewSize.width * mPreviewSize.height * bitsPerPixel / 8;
     }
 
     @Override
@@ -220,55 +431,80 @@ public class CameraController implements CameraInterface {
                         // Otherwise we set the new completable and exit the loop
                     } while (!mFocusingFuture.compareAndSet(null, focused));
 
-                    mCamera.cancelAutoFocus();
-                    final Rect focusRect = calculateTapArea(x, y, getBackFacingCameraOrientation(),
-                            view.getWidth(), view.getHeight());
-                    LOG.debug("Focus rect calculated (l:{}, t:{}, r:{}, b:{})", focusRect.left,
-                            focusRect.top, focusRect.right, focusRect.bottom);
-
-                    final Camera.Parameters parameters = mCamera.getParameters();
-                    if (!isUsingFocusMode(Camera.Parameters.FOCUS_MODE_AUTO, mCamera)
-                            && isFocusModeSupported(Camera.Parameters.FOCUS_MODE_AUTO, mCamera)) {
-                        parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_AUTO);
-                    }
-                    if (parameters.getMaxNumFocusAreas() > 0) {
-                        final List<Camera.Area> mylist = new ArrayList<>();
-                        mylist.add(new Camera.Area(focusRect, 1000));
-                        parameters.setFocusAreas(mylist);
-                        LOG.debug("Focus area set");
-                    } else {
-                        LOG.warn("Focus areas not supported");
+                    if (listener != null) {
+                        listener.onFocusing(new Point(Math.round(x), Math.round(y)));
                     }
-
-                    try {
-                        if (listener != null) {
-                            listener.onFocusing(new Point(Math.round(x), Math.round(y)));
-                        }
-                        mCamera.setParameters(parameters);
-                        LOG.info("Focusing started");
-                        mCamera.autoFocus(new Camera.AutoFocusCallback() {
-                            @Override
-                            public void onAutoFocus(final boolean success, final Camera camera) {
-                                LOG.info("Focusing finished with result: {}", success);
-                                mFocusingFuture.set(null);
-                                focused.complete(success);
-                                if (listener != null) {
-                                    listener.onFocused(success);
-                                }
-                                mResetFocusHandler.removeCallbacks(mResetFocusMode);
-                                mResetFocusHandler.postDelayed(mResetFocusMode, 5000);
+                    focused.handle(new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+                        @Override
+                        public Void apply(final Boolean success, final Throwable throwable) {
+                            if (listener != null) {
+                                listener.onFocused(success);
                             }
-                        });
-                    } catch (final Exception e) {
-                        mFocusingFuture.set(null);
-                        LOG.error("Could not focus", e);
-                    }
+                            mResetFocusHandler.removeCallbacks(mResetFocusMode);
+                            mResetFocusHandler.postDelayed(mResetFocusMode, 5000);
+                            return null;
+                        }
+                    });
+                    final int viewWidth = view.getWidth();
+                    final int viewHeight = view.getHeight();
+                    runOnCameraThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            focusOnTapArea(x, y, viewWidth, viewHeight, focused);
+                        }
+                    });
                 }
                 return true;
             }
         });
     }
 
+    private void focusOnTapArea(final float x, final float y, final int tapViewWidth,
+            final int tapViewHeight, @NonNull final CompletableFuture<Boolean> focused) {
+        if (mCamera == null) {
+            LOG.error("Cannot focus on tap: camera not open");
+            mFocusingFuture.set(null);
+            completeOnUiThread(focused, false);
+            return;
+        }
+        try {
+            mCamera.cancelAutoFocus();
+            final Rect focusRect = calculateTapArea(x, y, getBackFacingCameraOrientation(),
+                    tapViewWidth, tapViewHeight);
+            LOG.debug("Focus rect calculated (l:{}, t:{}, r:{}, b:{})", focusRect.left,
+                    focusRect.top, focusRect.right, focusRect.bottom);
+
+            final Camera.Parameters parameters = mCamera.getParameters();
+            if (!isUsingFocusMode(Camera.Parameters.FOCUS_MODE_AUTO, mCamera)
+                    && supportsFocusMode(Camera.Parameters.FOCUS_MODE_AUTO)) {
+                parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_AUTO);
+            }
+            if (parameters.getMaxNumFocusAreas() > 0) {
+                final List<Camera.Area> mylist = new ArrayList<>();
+                mylist.add(new Camera.Area(focusRect, 1000));
+                parameters.setFocusAreas(mylist);
+                LOG.debug("Focus area set");
+            } else {
+                LOG.warn("Focus areas not supported");
+            }
+
+            mCamera.setParameters(parameters);
+            LOG.info("Focusing started");
+            mCamera.autoFocus(new Camera.AutoFocusCallback() {
+                @Override
+                public void onAutoFocus(final boolean success, final Camera camera) {
+                    LOG.info("Focusing finished with result: {}", success);
+                    mFocusingFuture.set(null);
+                    completeOnUiThread(focused, success);
+                }
+            });
+        } catch (final Exception e) {
+            mFocusingFuture.set(null);
+            LOG.error("Could not focus", e);
+            completeOnUiThread(focused, false);
+        }
+    }
+
     @Override
     public void disableTapToFocus(@NonNull final View tapView) {
         LOG.info("Tap to focus disabled");
@@ -285,12 +521,6 @@ public class CameraController implements CameraInterface {
             return CompletableFuture.completedFuture(false);
         }
 
-        if (!isFocusModeSupported(Camera.Parameters.FOCUS_MODE_AUTO,
-                mCamera)) {
-            LOG.error("Cannot focus: auto-focus mode not supported");
-            return CompletableFuture.completedFuture(false);
-        }
-
         final CompletableFuture<Boolean> completed = new CompletableFuture<>();
         do {
             // Checking whether a completable is already available in which case focusing is in
@@ -304,13 +534,30 @@ public class CameraController implements CameraInterface {
             // Otherwise we set the new completable and exit the loop
         } while (!mFocusingFuture.compareAndSet(null, completed));
 
-        mCamera.cancelAutoFocus();
-        mCamera.autoFocus(new Camera.AutoFocusCallback() {
+        runOnCameraThread(new Runnable() {
             @Override
-            public void onAutoFocus(final boolean success, final Camera camera) {
-                LOG.info("Focusing finished with result: {}", success);
-                mFocusingFuture.set(null);
-                completed.complete(success);
+            public void run() {
+                if (mCamera == null) {
+                    LOG.error("Cannot focus: camera not open");
+                    mFocusingFuture.set(null);
+                    completeOnUiThread(completed, false);
+                    return;
+                }
+                if (!supportsFocusMode(Camera.Parameters.FOCUS_MODE_AUTO)) {
+                    LOG.error("Cannot focus: auto-focus mode not supported");
+                    mFocusingFuture.set(null);
+                    completeOnUiThread(completed, false);
+                    return;
+                }
+                mCamera.cancelAutoFocus();
+                mCamera.autoFocus(new Camera.AutoFocusCallback() {
+                    @Override
+                    public void onAutoFocus(final boolean success, final Camera camera) {
+                        LOG.info("Focusing finished with result: {}", success);
+                        mFocusingFuture.set(null);
+                        completeOnUiThread(completed, success);
+                    }
+                });
             }
         });
 
@@ -319,7 +566,7 @@ public class CameraController implements CameraInterface {
 
     @NonNull
     @Override
-    public CompletableFuture<Photo> takePicture() {
+    public CompletableFuture<Photo> takePicture(@Nullable final Quad documentQuad) {
         LOG.info("Take picture");
 
         if (mCamera == null) {
@@ -345,38 +592,68 @@ public class CameraController implements CameraInterface {
         // as being stopped before it is really stopped
         mPreviewRunning = false;
 
-        CompletableFuture<Boolean> focusFuture = new CompletableFuture<>();
-        if (isUsingFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE, mCamera)) {
-            // When continuous focus mode is used no auto-focus run is needed
-            focusFuture.complete(true);
-        } else {
-            // Continuous focus mode is not used and we need to do an auto-focus run
-            focusFuture = focus();
-        }
-
-        focusFuture.handle(new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
+        runOnCameraThread(new Runnable() {
             @Override
-            public Void apply(final Boolean aBoolean, final Throwable throwable) {
-                takePicture(new Camera.PictureCallback() {
+            public void run() {
+                CompletableFuture<Boolean> focusFuture = new CompletableFuture<>();
+                if (mCamera != null && isUsingFocusMode(
+                        Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE, mCamera)) {
+                    // When continuous focus mode is used no auto-focus run is needed
+                    focusFuture.complete(true);
+                } else {
+                    // Continuous focus mode is not used and we need to do an auto-focus run
+                    focusFuture = focus();
+                }
+
+                focusFuture.handle(new CompletableFuture.BiFun<Boolean, Throwable, Void>() {
                     @Override
-                    public void onPictureTaken(final byte[] bytes, final Camera camera) {
-                        mTakingPictureFuture.set(null);
-                        final Photo photo = PhotoFactory.newPhotoFromJpeg(bytes,
-                                getDisplayOrientationForCamera(mActivity),
-                                getDeviceOrientation(mActivity),
-                                getDeviceType(mActivity),
-                                "camera");
-                        LOG.info("Picture taken");
-                        pictureTaken.complete(photo);
+                    public Void apply(final Boolean aBoolean, final Throwable throwable) {
+                        runOnCameraThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                takePicture(createPictureCallback(pictureTaken,
+                                        documentQuad));
+                            }
+                        });
+                        return null;
                     }
                 });
-                return null;
             }
         });
 
         return pictureTaken;
     }
 
+    @NonNull
+    private Camera.PictureCallback createPictureCallback(
+            @NonNull final CompletableFuture<Photo> pictureTaken,
+            @Nullable final Quad documentQuad) {
+        return new Camera.PictureCallback() {
+            @Override
+            public void onPictureTaken(final byte[] bytes, final Camera camera) {
+                // Not cancelled when the camera is closed, the taken picture is still delivered
+                mCapturePipeline.process(bytes, getDisplayOrientationForCamera(mActivity),
+                        getDeviceOrientation(mActivity), getDeviceType(mActivity), documentQuad,
+                        new CancellationToken(), new AsyncCallback<Photo>() {
+                            @Override
+                            public void onSuccess(final Photo result) {
+                                mTakingPictureFuture.set(null);
+                                LOG.info("Picture taken");
+                                pictureTaken.complete(result);
+                            }
+
+                            @Override
+                            public void onError(final Exception exception) {
+                                mTakingPictureFuture.set(null);
+                                pictureTaken.completeExceptionally(exception);
+                            }
+                        });
+                // The preview can only be restarted after the jpeg was delivered
+                startPreview();
+            }
+        };
+    }
+
     @VisibleForTesting
     protected void takePicture(final Camera.PictureCallback callback) {
         if (mCamera == null) {
@@ -407,11 +684,34 @@ public class CameraController implements CameraInterface {
         return mPictureSize;
     }
 
+    @NonNull
+    @Override
+    public Size getPreviewFrameSize() {
+        return mPreviewSize;
+    }
+
     @Override
     public void setPreviewCallback(@Nullable final Camera.PreviewCallback previewCallback) {
         mPreviewCallback = previewCallback;
     }
 
+    @Override
+    public void enablePreviewBufferPool(final int bufferCount) {
+        if (mPreviewRunning) {
+            LOG.warn("Cannot enable the preview buffer pool: preview already running");
+            return;
+        }
+        LOG.info("Preview buffer pool enabled with {} buffers", bufferCount);
+        mPreviewBufferPool = new PreviewBufferPool(bufferCount,
+                mUseCameraThread ? mCameraExecutor : mUIExecutor);
+    }
+
+    @Nullable
+    @Override
+    public PreviewBufferPool getPreviewBufferPool() {
+        return mPreviewBufferPool;
+    }
+
     @Override
     public int getCameraRotation() {
         return getDisplayOrientationForCamera(mActivity);
@@ -425,30 +725,69 @@ public class CameraController implements CameraInterface {
         }
 
         final Camera.Parameters params = mCamera.getParameters();
-        selectPictureSize(params);
-        selectPreviewSize(params);
-        selectFocusMode(params);
-        selectFlashMode(params);
+        final CameraCapabilities capabilities = getCameraCapabilities(params);
+        selectPictureSize(params, capabilities);
+        selectPreviewSize(params, capabilities);
+        selectFocusMode(params, capabilities);
+        selectFlashMode(params, capabilities);
         mCamera.setParameters(params);
+        mPreviewFormat = params.getPreviewFormat();
 
         setCameraDisplayOrientation(activity, mCamera);
     }
 
-    private void selectPictureSize(final Camera.Parameters params) {
-        final List<Camera.Size> pictureSizes = params.getSupportedPictureSizes();
-        final Size pictureSize = getLargestSize(pictureSizes);
+    /**
+     * The capabilities are read from the camera parameters only once per device build. Afterwards
+     * they are loaded from the {@link CameraCapabilitiesCache} which spares us parsing the
+     * parameters and querying the camera infos on every start.
+     */
+    @NonNull
+    private CameraCapabilities getCameraCapabilities(@NonNull final Camera.Parameters params) {
+        if (mCapabilities != null) {
+            return mCapabilities;
+        }
+        CameraCapabilities capabilities = mCapabilitiesCache.load();
+        if (capabilities == null) {
+            LOG.debug("Reading camera capabilities");
+            final Integer sensorOrientation = CameraCapabilities.readBackFacingSensorOrientation();
+            capabilities = CameraCapabilities.fromParameters(params,
+                    sensorOrientation != null ? sensorOrientation : 0);
+            if (sensorOrientation != null) {
+                mCapabilitiesCache.save(capabilities);
+            } else {
+                LOG.warn("No back facing camera info, camera capabilities not cached");
+            }
+        }
+        mCapabilities = capabilities;
+        return capabilities;
+    }
+
+    private boolean supportsFocusMode(@NonNull final String focusMode) {
+        final CameraCapabilities capabilities = mCapabilities;
+        if (capabilities != null) {
+            return capabilities.isFocusModeSupported(focusMode);
+        }
+        return isFocusModeSupported(focusMode, mCamera);
+    }
+
+    private void selectPictureSize(final Camera.Parameters params,
+            final CameraCapabilities capabilities) {
+        final Size pictureSize = SizeSelectionHelper.selectPictureSize(
+                capabilities.getSupportedPictureSizes(), mPictureResolutionPolicy);
         if (pictureSize != null) {
             mPictureSize = pictureSize;
             params.setPictureSize(mPictureSize.width, mPictureSize.height);
-            LOG.debug("Picture size ({}, {})", mPictureSize.width, mPictureSize.height);
+            LOG.debug("Picture size ({}, {}) selected with {}", mPictureSize.width,
+                    mPictureSize.height, mPictureResolutionPolicy);
         } else {
             LOG.warn("No suitable picture size found");
         }
     }
 
-    private void selectPreviewSize(final Camera.Parameters params) {
-        final List<Camera.Size> previewSizes = params.getSupportedPreviewSizes();
-        final Size previewSize = getLargestSizeWithSimilarAspectRatio(previewSizes, mPictureSize);
+    private void selectPreviewSize(final Camera.Parameters params,
+            final CameraCapabilities capabilities) {
+        final Size previewSize = getLargestWithSimilarAspectRatio(
+                capabilities.getSupportedPreviewSizes(), mPictureSize);
         if (previewSize != null) {
             mPreviewSize = previewSize;
             params.setPreviewSize(mPreviewSize.width, mPreviewSize.height);
@@ -458,8 +797,9 @@ public class CameraController implements CameraInterface {
         }
     }
 
-    private void selectFocusMode(final Camera.Parameters params) {
-        if (isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE, mCamera)) {
+    private void selectFocusMode(final Camera.Parameters params,
+            final CameraCapabilities capabilities) {
+        if (capabilities.isFocusModeSupported(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
             params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
             LOG.debug("Focus mode continuous picture");
         } else {
@@ -467,8 +807,9 @@ public class CameraController implements CameraInterface {
         }
     }
 
-    private void selectFlashMode(final Camera.Parameters params) {
-        if (isFlashModeSupported(Camera.Parameters.FLASH_MODE_ON, mCamera)) {
+    private void selectFlashMode(final Camera.Parameters params,
+            final CameraCapabilities capabilities) {
+        if (capabilities.isFlashModeSupported(Camera.Parameters.FLASH_MODE_ON)) {
             params.setFlashMode(Camera.Parameters.FLASH_MODE_ON);
             LOG.debug("Flash on");
         } else {
@@ -485,8 +826,8 @@ public class CameraController implements CameraInterface {
     }
 
     private int getDisplayOrientationForCamera(final Activity activity) {
-        final Camera.CameraInfo info = getBackFacingCameraInfo();
-        if (info == null) {
+        final Integer sensorOrientation = getBackFacingSensorOrientation();
+        if (sensorOrientation == null) {
             LOG.error("Could not get back facing camera info");
             return 0;
         }
@@ -511,19 +852,25 @@ public class CameraController implements CameraInterface {
         }
         LOG.debug("Default display rotation is {}", degrees);
 
-        int result;
-        if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            result = (info.orientation + degrees) % 360;
-            result = (360 - result) % 360;  // compensate the mirror
-        } else {  // back-facing
-            result = (info.orientation - degrees + 360) % 360;
-        }
+        // Only the back-facing camera is used
+        return (sensorOrientation - degrees + 360) % 360;
+    }
 
-        return result;
+    @Nullable
+    private Integer getBackFacingSensorOrientation() {
+        final CameraCapabilities capabilities = mCapabilities;
+        if (capabilities != null) {
+            return capabilities.getSensorOrientation();
+        }
+        final Camera.CameraInfo cameraInfo = getBackFacingCameraInfo();
+        return cameraInfo != null ? cameraInfo.orientation : null;
     }
 
     @Nullable
     private Camera.CameraInfo getBackFacingCameraInfo() {
+        if (mBackFacingCameraInfo != null) {
+            return mBackFacingCameraInfo;
+        }
         LOG.debug("Getting back facing camera info");
         final int numberOfCameras = Camera.getNumberOfCameras();
         final Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
@@ -531,6 +878,9 @@ public class CameraController implements CameraInterface {
             Camera.getCameraInfo(i, cameraInfo);
             if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
                 LOG.debug("Camera info found");
+                // The camera info doesn't change, it is read once to avoid querying the camera
+                // service again on the UI thread
+                mBackFacingCameraInfo = cameraInfo;
                 return cameraInfo;
             }
         }
@@ -540,10 +890,10 @@ public class CameraController implements CameraInterface {
 
     private int getBackFacingCameraOrientation() {
         LOG.debug("Getting back facing camera orientation");
-        final Camera.CameraInfo cameraInfo = getBackFacingCameraInfo();
-        if (cameraInfo != null) {
-            LOG.debug("Camera orientation: {}", cameraInfo.orientation);
-            return cameraInfo.orientation;
+        final Integer sensorOrientation = getBackFacingSensorOrientation();
+        if (sensorOrientation != null) {
+            LOG.debug("Camera orientation: {}", sensorOrientation);
+            return sensorOrientation;
         }
         LOG.debug("No camera info, using default camera orientation: 0");
         return 0;
@@ -648,6 +998,26 @@ public class CameraController implements CameraInterface {
         return rect;
     }
 
+    private <T> void completeOnUiThread(@NonNull final CompletableFuture<T> future,
+            @Nullable final T value) {
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                future.complete(value);
+            }
+        });
+    }
+
+    private <T> void completeExceptionallyOnUiThread(@NonNull final CompletableFuture<T> future,
+            @NonNull final Throwable throwable) {
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                future.completeExceptionally(throwable);
+            }
+        });
+    }
+
     private static <T> CompletableFuture<T> failedFuture(final Throwable throwable) {
         final CompletableFuture<T> future = new CompletableFuture<>();
         future.completeExceptionally(throwable);
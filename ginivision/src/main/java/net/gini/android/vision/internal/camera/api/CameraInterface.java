@@ -8,6 +8,7 @@ import android.view.SurfaceHolder;
 import android.view.View;
 
 import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.documentdetection.Quad;
 import net.gini.android.vision.internal.util.Size;
 
 import jersey.repackaged.jsr166e.CompletableFuture;
@@ -20,6 +21,9 @@ import jersey.repackaged.jsr166e.CompletableFuture;
  *     We use this interface with the deprecated Camera API and the new Camera2 API to publish a common API for the required
  *     camera features.
  * </p>
+ * <p>
+ *     The returned {@link CompletableFuture}s complete on the UI thread.
+ * </p>
  * @exclude
  */
 public interface CameraInterface {
@@ -111,10 +115,16 @@ public interface CameraInterface {
      * <p>
      *     Take a picture with the camera.
      * </p>
+     * <p>
+     *     The preview is restarted as soon as the camera delivered the jpeg. The photo is
+     *     created in the background and the returned future completes when it's ready.
+     * </p>
+     * @param documentQuad the document detected in the preview, which is stored in the photo,
+     *                     or {@code null}
      * @return a {@link CompletableFuture} that completes with the {@link Photo} object taken
      */
     @NonNull
-    CompletableFuture<Photo> takePicture();
+    CompletableFuture<Photo> takePicture(@Nullable Quad documentQuad);
 
     /**
      * <p>
@@ -144,14 +154,55 @@ public interface CameraInterface {
     @NonNull
     Size getPictureSize();
 
+    /**
+     * <p>
+     *     The size of the images delivered to the preview callback set with {@link
+     *     #setPreviewCallback(Camera.PreviewCallback)}. It may be smaller than the preview size.
+     * </p>
+     * @return preview frame size
+     */
+    @NonNull
+    Size getPreviewFrameSize();
+
     /**
      * <p>
      *      Set a callback to recieve preview images from the camera.
      * </p>
+     * <p>
+     *     The callback may be invoked on the thread used for interacting with the camera instead
+     *     of the UI thread.
+     * </p>
      * @param previewCallback callback implementation
      */
     void setPreviewCallback(@NonNull Camera.PreviewCallback previewCallback);
 
+    /**
+     * <p>
+     *     Switches preview frame delivery to a ring of preallocated buffers instead of allocating a
+     *     new byte array for every frame.
+     * </p>
+     * <p>
+     *     The preview callback receives buffers from the ring and must hand each of them back to the
+     *     {@link PreviewBufferPool} returned by {@link #getPreviewBufferPool()}. Frames are not
+     *     delivered while all buffers are in use.
+     * </p>
+     * <p>
+     *     <b>Note</b>: has to be called before the preview is started.
+     * </p>
+     * @param bufferCount number of preview buffers to preallocate
+     */
+    void enablePreviewBufferPool(int bufferCount);
+
+    /**
+     * <p>
+     *     The preview buffer pool, if buffer pool mode was enabled with {@link
+     *     #enablePreviewBufferPool(int)}.
+     * </p>
+     * @return the {@link PreviewBufferPool} or {@code null}
+     */
+    @Nullable
+    PreviewBufferPool getPreviewBufferPool();
+
     /**
      * <p>
      *     The rotation in degrees of the camera. Derived from the camera sensor orientation
@@ -0,0 +1,196 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.hardware.Camera;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ *     A small ring of preallocated preview frame buffers.
+ * </p>
+ * <p>
+ *     With the Camera API the buffers are given to the camera and filled by it after registering
+ *     the preview callback with {@link Camera#setPreviewCallbackWithBuffer(Camera.PreviewCallback)}.
+ *     Other frame producers take a buffer with {@link #acquire()} and fill it themselves.
+ * </p>
+ * <p>
+ *     Buffers delivered to the preview callback are in use until they are handed back with {@link
+ *     #recycle(byte[])} or {@link #drop(byte[])}. Consumers must recycle every buffer they receive,
+ *     even if they don't process it.
+ * </p>
+ * <p>
+ *     Recycling may be done from any thread, the buffers are given back to the camera using the
+ *     executor of the thread which interacts with the camera. By default this is the UI thread.
+ * </p>
+ *
+ * @exclude
+ */
+public class PreviewBufferPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PreviewBufferPool.class);
+
+    private final int mBufferCount;
+    private final Executor mCameraExecutor;
+    private final Set<byte[]> mBuffersInUse = Collections.newSetFromMap(
+            new IdentityHashMap<byte[], Boolean>());
+    private final ArrayDeque<byte[]> mFreeBuffers = new ArrayDeque<>();
+    private byte[][] mBuffers = new byte[0][];
+    private Camera mCamera;
+    private int mDroppedFrames;
+
+    PreviewBufferPool(final int bufferCount) {
+        this(bufferCount, new UIExecutor());
+    }
+
+    PreviewBufferPool(final int bufferCount, @NonNull final Executor cameraExecutor) {
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("At least one preview buffer is required");
+        }
+        mBufferCount = bufferCount;
+        mCameraExecutor = cameraExecutor;
+    }
+
+    /**
+     * Allocates the buffers, if they have not been allocated yet or their size differs from the
+     * requested one.
+     */
+    synchronized void allocate(final int bufferSize) {
+        if (mBuffers.length != 0 && mBuffers[0].length == bufferSize) {
+            return;
+        }
+        LOG.debug("Allocating {} preview buffers of {} bytes", mBufferCount, bufferSize);
+        mBuffers = new byte[mBufferCount][bufferSize];
+        mBuffersInUse.clear();
+        mFreeBuffers.clear();
+        Collections.addAll(mFreeBuffers, mBuffers);
+    }
+
+    /**
+     * Gives all free buffers to the camera. The camera's buffer queue must have been cleared
+     * before.
+     */
+    synchronized void attach(@NonNull final Camera camera, final int bufferSize) {
+        detach();
+        allocate(bufferSize);
+        mCamera = camera;
+        while (!mFreeBuffers.isEmpty()) {
+            mCamera.addCallbackBuffer(mFreeBuffers.poll());
+        }
+    }
+
+    /**
+     * Stops giving recycled buffers to the camera. Buffers held by the camera are considered free
+     * again, because the camera discards them when the preview callback is removed.
+     */
+    synchronized void detach() {
+        if (mCamera == null) {
+            return;
+        }
+        mCamera = null; // NOPMD
+        mFreeBuffers.clear();
+        for (final byte[] buffer : mBuffers) {
+            if (!mBuffersInUse.contains(buffer)) {
+                mFreeBuffers.add(buffer);
+            }
+        }
+    }
+
+    synchronized void onBufferDelivered(@NonNull final byte[] buffer) {
+        mBuffersInUse.add(buffer);
+    }
+
+    /**
+     * Takes a free buffer to be filled with a preview frame. If all buffers are in use the frame
+     * is counted as dropped.
+     *
+     * @return a free buffer or {@code null}
+     */
+    @Nullable
+    synchronized byte[] acquire() {
+        final byte[] buffer = mFreeBuffers.poll();
+        if (buffer == null) {
+            mDroppedFrames++;
+            return null;
+        }
+        mBuffersInUse.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Hands a buffer back after it was processed.
+     *
+     * @param buffer a buffer received in the preview callback
+     */
+    public void recycle(@NonNull final byte[] buffer) {
+        mCameraExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                giveBack(buffer);
+            }
+        });
+    }
+
+    /**
+     * Hands a buffer back without it being processed. The frame is counted as dropped.
+     *
+     * @param buffer a buffer received in the preview callback
+     */
+    public void drop(@NonNull final byte[] buffer) {
+        synchronized (this) {
+            mDroppedFrames++;
+        }
+        recycle(buffer);
+    }
+
+    private synchronized void giveBack(@NonNull final byte[] buffer) {
+        if (!mBuffersInUse.remove(buffer)) {
+            // Not one of ours anymore (buffers were reallocated) or already recycled
+            return;
+        }
+        if (mCamera != null) {
+            mCamera.addCallbackBuffer(buffer);
+        } else {
+            mFreeBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * @return the number of buffers in the ring
+     */
+    public int getBufferCount() {
+        return mBufferCount;
+    }
+
+    /**
+     * @return the number of buffers delivered to the preview callback and not yet recycled
+     */
+    public synchronized int getBuffersInUse() {
+        return mBuffersInUse.size();
+    }
+
+    /**
+     * @return the number of frames which were handed back without being processed or which were
+     * lost because all buffers were in use
+     */
+    public synchronized int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PreviewBufferPool{"
+                + "bufferCount=" + mBufferCount
+                + ", buffersInUse=" + mBuffersInUse.size()
+                + ", droppedFrames=" + mDroppedFrames
+                + '}';
+    }
+}
@@ -4,6 +4,7 @@ import android.hardware.Camera;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import net.gini.android.vision.PictureResolutionPolicy;
 import net.gini.android.vision.internal.util.Size;
 
 import java.util.ArrayList;
@@ -14,31 +15,160 @@ import java.util.List;
  */
 public final class SizeSelectionHelper {
 
+    private static final long PIXELS_PER_MEGAPIXEL = 1000000;
+    // Cameras advertised with N megapixels often have slightly less, like 3264x2448 for 8MP
+    private static final float MEGAPIXEL_TOLERANCE = 0.0125f;
+    private static final int ARGB_8888_BYTES_PER_PIXEL = 4;
+
     @Nullable
     public static Size getLargestSize(@NonNull final List<Camera.Size> sizes) {
-        Camera.Size largest = null;
-        for (final Camera.Size size : sizes) {
+        return getLargest(toSizes(sizes));
+    }
+
+    @Nullable
+    public static Size getLargestSizeWithSimilarAspectRatio(
+            @NonNull final List<Camera.Size> sizes, @NonNull final Size referenceSize) {
+        return getLargestWithSimilarAspectRatio(toSizes(sizes), referenceSize);
+    }
+
+    @Nullable
+    public static Size getLargest(@NonNull final List<Size> sizes) {
+        Size largest = null;
+        for (final Size size : sizes) {
             if (largest == null || getArea(largest) < getArea(size)) {
                 largest = size;
             }
         }
-        return largest != null ? new Size(largest.width, largest.height) : null;
+        return largest;
     }
 
     @Nullable
-    public static Size getLargestSizeWithSimilarAspectRatio(
-            @NonNull final List<Camera.Size> sizes, @NonNull final Size referenceSize) {
-        final List<Camera.Size> sameAspectSizes = getSameAspectRatioSizes(sizes, referenceSize);
-        return getLargestSize(sameAspectSizes);
+    public static Size getLargestWithSimilarAspectRatio(@NonNull final List<Size> sizes,
+            @NonNull final Size referenceSize) {
+        return getLargest(getSameAspectRatioSizes(sizes, referenceSize));
+    }
+
+    /**
+     * Returns the largest size with a similar aspect ratio as the reference size and an area not
+     * larger than the maximum area.
+     */
+    @Nullable
+    public static Size getLargestWithSimilarAspectRatio(@NonNull final List<Size> sizes,
+            @NonNull final Size referenceSize, final long maxArea) {
+        final List<Size> sameAspectSizes = getSameAspectRatioSizes(sizes, referenceSize);
+        final List<Size> smallerSizes = new ArrayList<>();
+        for (final Size size : sameAspectSizes) {
+            if (getArea(size) <= maxArea) {
+                smallerSizes.add(size);
+            }
+        }
+        return getLargest(smallerSizes);
+    }
+
+    /**
+     * Selects the picture size according to the policy.
+     *
+     * @return the selected size or {@code null}, if there are no sizes
+     */
+    @Nullable
+    public static Size selectPictureSize(@NonNull final List<Size> sizes,
+            @NonNull final PictureResolutionPolicy policy) {
+        switch (policy.getType()) {
+            case MEGAPIXEL_RANGE:
+                return selectInMegapixelRange(sizes, policy.getMinMegapixels(),
+                        policy.getMaxMegapixels());
+            case MEMORY_BUDGET:
+                return selectInMemoryBudget(sizes, policy.getMaxBytes());
+            case MIN_MEGAPIXELS:
+                return selectSmallestWithMinMegapixels(sizes, policy.getMinMegapixels());
+            case LARGEST:
+            default:
+                return getLargest(sizes);
+        }
+    }
+
+    @Nullable
+    private static Size selectInMegapixelRange(@NonNull final List<Size> sizes,
+            final float minMegapixels, final float maxMegapixels) {
+        final long minArea = toMinArea(minMegapixels);
+        final long maxArea = (long) (maxMegapixels * PIXELS_PER_MEGAPIXEL);
+        final List<Size> inRange = new ArrayList<>();
+        final List<Size> aboveRange = new ArrayList<>();
+        for (final Size size : sizes) {
+            final long area = getArea(size);
+            if (area > maxArea) {
+                aboveRange.add(size);
+            } else if (area >= minArea) {
+                inRange.add(size);
+            }
+        }
+        if (!inRange.isEmpty()) {
+            return getLargest(inRange);
+        }
+        if (!aboveRange.isEmpty()) {
+            return getSmallest(aboveRange);
+        }
+        return getLargest(sizes);
+    }
+
+    @Nullable
+    private static Size selectInMemoryBudget(@NonNull final List<Size> sizes,
+            final long maxBytes) {
+        final List<Size> withinBudget = new ArrayList<>();
+        for (final Size size : sizes) {
+            if (getArea(size) * ARGB_8888_BYTES_PER_PIXEL <= maxBytes) {
+                withinBudget.add(size);
+            }
+        }
+        if (!withinBudget.isEmpty()) {
+            return getLargest(withinBudget);
+        }
+        return getSmallest(sizes);
+    }
+
+    @Nullable
+    private static Size selectSmallestWithMinMegapixels(@NonNull final List<Size> sizes,
+            final float minMegapixels) {
+        // The largest size covers the whole sensor and its aspect ratio is used for the preview
+        final Size largest = getLargest(sizes);
+        if (largest == null) {
+            return null;
+        }
+        final long minArea = toMinArea(minMegapixels);
+        final List<Size> largeEnough = new ArrayList<>();
+        for (final Size size : getSameAspectRatioSizes(sizes, largest)) {
+            if (getArea(size) >= minArea) {
+                largeEnough.add(size);
+            }
+        }
+        if (!largeEnough.isEmpty()) {
+            return getSmallest(largeEnough);
+        }
+        return largest;
+    }
+
+    @Nullable
+    private static Size getSmallest(@NonNull final List<Size> sizes) {
+        Size smallest = null;
+        for (final Size size : sizes) {
+            if (smallest == null || getArea(size) < getArea(smallest)) {
+                smallest = size;
+            }
+        }
+        return smallest;
+    }
+
+    private static long toMinArea(final float megapixels) {
+        return (long) (megapixels * PIXELS_PER_MEGAPIXEL * (1 - MEGAPIXEL_TOLERANCE));
     }
 
     @NonNull
-    private static List<Camera.Size> getSameAspectRatioSizes(@NonNull final List<Camera.Size> sizes,
+    private static List<Size> getSameAspectRatioSizes(@NonNull final List<Size> sizes,
             @NonNull final Size referenceSize) {
         final float referenceAspectRatio =
                 (float) referenceSize.width / (float) referenceSize.height;
-        final List<Camera.Size> sameAspectSizes = new ArrayList<>();
-        for (final Camera.Size size : sizes) {
+        final List<Size> sameAspectSizes = new ArrayList<>();
+        for (final Size size : sizes) {
             final float aspectRatio = (float) size.width / (float) size.height;
             if (isSimilarAspectRatio(aspectRatio, referenceAspectRatio)) {
                 sameAspectSizes.add(size);
@@ -47,15 +177,24 @@ public final class SizeSelectionHelper {
         return sameAspectSizes;
     }
 
+    @NonNull
+    public static List<Size> toSizes(@NonNull final List<Camera.Size> cameraSizes) {
+        final List<Size> sizes = new ArrayList<>(cameraSizes.size());
+        for (final Camera.Size cameraSize : cameraSizes) {
+            sizes.add(new Size(cameraSize.width, cameraSize.height));
+        }
+        return sizes;
+    }
+
     private static boolean isSimilarAspectRatio(final float aspectRatio,
             final float referenceAspectRatio) {
         return Math.abs(aspectRatio - referenceAspectRatio) < 0.1f;
     }
 
-    private static long getArea(final Camera.Size size) {
-        return size.width * size.height;
+    private static long getArea(final Size size) {
+        return (long) size.width * size.height;
     }
 
     private SizeSelectionHelper() {
     }
-}
\ No newline at end of file
+}
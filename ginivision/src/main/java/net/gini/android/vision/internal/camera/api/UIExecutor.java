@@ -2,11 +2,14 @@ package net.gini.android.vision.internal.camera.api;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
 
 /**
  * @exclude
  */
-public class UIExecutor {
+public class UIExecutor implements Executor {
     private final Thread mUiThread;
     private final Handler mUiHandler;
 
@@ -30,4 +33,9 @@ public class UIExecutor {
             action.run();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void execute(@NonNull final Runnable command) {
+        runOnUiThread(command);
+    }
+}
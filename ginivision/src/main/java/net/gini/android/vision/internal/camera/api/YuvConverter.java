@@ -0,0 +1,66 @@
+package net.gini.android.vision.internal.camera.api;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts YUV_420_888 planes, as received from a Camera2 {@link android.media.ImageReader}, to
+ * NV21 which is what the Camera API delivers to preview callbacks.
+ *
+ * @exclude
+ */
+final class YuvConverter {
+
+    static int getNV21Size(final int width, final int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Writes the planes to the output array as NV21: the full resolution luma plane followed by
+     * interleaved V and U samples at half resolution.
+     *
+     * @param yPlane         luma plane, its pixel stride must be 1
+     * @param yRowStride     row stride of the luma plane
+     * @param uPlane         U plane
+     * @param vPlane         V plane
+     * @param uvRowStride    row stride of the chroma planes
+     * @param uvPixelStride  pixel stride of the chroma planes
+     * @param width          image width
+     * @param height         image height
+     * @param nv21           output array, must be at least {@link #getNV21Size(int, int)} large
+     */
+    static void toNV21(@NonNull final ByteBuffer yPlane, final int yRowStride,
+            @NonNull final ByteBuffer uPlane, @NonNull final ByteBuffer vPlane,
+            final int uvRowStride, final int uvPixelStride,
+            final int width, final int height, @NonNull final byte[] nv21) {
+        if (nv21.length < getNV21Size(width, height)) {
+            throw new IllegalArgumentException("Output array too small for the image");
+        }
+        int position = 0;
+        if (yRowStride == width) {
+            yPlane.position(0);
+            yPlane.get(nv21, 0, width * height);
+            position = width * height;
+        } else {
+            for (int row = 0; row < height; row++) {
+                yPlane.position(row * yRowStride);
+                yPlane.get(nv21, position, width);
+                position += width;
+            }
+        }
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        for (int row = 0; row < chromaHeight; row++) {
+            final int rowOffset = row * uvRowStride;
+            for (int column = 0; column < chromaWidth; column++) {
+                final int index = rowOffset + column * uvPixelStride;
+                nv21[position++] = vPlane.get(index);
+                nv21[position++] = uPlane.get(index);
+            }
+        }
+    }
+
+    private YuvConverter() {
+    }
+}
@@ -0,0 +1,105 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+/**
+ * <p>
+ *     Converts horizontal strips of ARGB pixels into an NV21 image: the full resolution luma plane
+ *     followed by interleaved V and U samples at half resolution.
+ * </p>
+ * <p>
+ *     Uses the full range BT.601 coefficients of JFIF, which {@link android.graphics.YuvImage}
+ *     expects when compressing to JPEG.
+ * </p>
+ *
+ * @exclude
+ */
+final class ArgbToNv21Converter {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final byte[] mNv21;
+
+    ArgbToNv21Converter(final int width, final int height) {
+        mWidth = width;
+        mHeight = height;
+        mNv21 = new byte[getNv21Length(width, height)];
+    }
+
+    static int getNv21Length(final int width, final int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * @param pixels   ARGB pixels of the strip with a row stride of the image width
+     * @param firstRow row of the image where the strip starts, must be even unless it is the last
+     *                 row
+     * @param rows     number of rows in the strip
+     */
+    void writeStrip(@NonNull final int[] pixels, final int firstRow, final int rows) {
+        if (firstRow % 2 != 0 && firstRow != mHeight - 1) {
+            throw new IllegalArgumentException("Strips must start at an even row: " + firstRow);
+        }
+        if (firstRow < 0 || rows < 0 || firstRow + rows > mHeight
+                || pixels.length < rows * mWidth) {
+            throw new IllegalArgumentException(
+                    "Strip out of bounds: rows " + firstRow + " to " + (firstRow + rows));
+        }
+        for (int row = 0; row < rows; row++) {
+            final int lumaOffset = (firstRow + row) * mWidth;
+            final int pixelOffset = row * mWidth;
+            for (int column = 0; column < mWidth; column++) {
+                mNv21[lumaOffset + column] = (byte) getLuma(pixels[pixelOffset + column]);
+            }
+        }
+        final int chromaStart = mWidth * mHeight;
+        final int chromaWidth = (mWidth + 1) / 2;
+        for (int row = 0; row < rows; row += 2) {
+            final int chromaOffset = chromaStart + (firstRow + row) / 2 * chromaWidth * 2;
+            final int pixelOffset = row * mWidth;
+            final int nextRowOffset = row + 1 < rows ? pixelOffset + mWidth : pixelOffset;
+            for (int column = 0; column < mWidth; column += 2) {
+                final int nextColumn = column + 1 < mWidth ? column + 1 : column;
+                final int pixel1 = pixels[pixelOffset + column];
+                final int pixel2 = pixels[pixelOffset + nextColumn];
+                final int pixel3 = pixels[nextRowOffset + column];
+                final int pixel4 = pixels[nextRowOffset + nextColumn];
+                final int red = (red(pixel1) + red(pixel2) + red(pixel3) + red(pixel4) + 2) >> 2;
+                final int green = (green(pixel1) + green(pixel2) + green(pixel3) + green(pixel4)
+                        + 2) >> 2;
+                final int blue = (blue(pixel1) + blue(pixel2) + blue(pixel3) + blue(pixel4)
+                        + 2) >> 2;
+                final int index = chromaOffset + column;
+                mNv21[index] = (byte) clamp((128 * 65536 + 32768 + 32768 * red
+                        - 27440 * green - 5328 * blue) >> 16);
+                mNv21[index + 1] = (byte) clamp((128 * 65536 + 32768 - 11059 * red
+                        - 21709 * green + 32768 * blue) >> 16);
+            }
+        }
+    }
+
+    @NonNull
+    byte[] getNv21() {
+        return mNv21;
+    }
+
+    private static int getLuma(final int pixel) {
+        return (19595 * red(pixel) + 38470 * green(pixel) + 7471 * blue(pixel) + 32768) >> 16;
+    }
+
+    private static int red(final int pixel) {
+        return (pixel >> 16) & 0xFF;
+    }
+
+    private static int green(final int pixel) {
+        return (pixel >> 8) & 0xFF;
+    }
+
+    private static int blue(final int pixel) {
+        return pixel & 0xFF;
+    }
+
+    private static int clamp(final int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,75 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+/**
+ * <p>
+ *     This singleton cache keeps the most recently used photo previews so that the same photo
+ *     isn't decoded again on every screen showing it.
+ * </p>
+ * <p>
+ *     Previews are identified by the photo's content fingerprint. The cache is limited to an
+ *     eighth of the available memory and evicts the least recently used previews.
+ * </p>
+ *
+ * @exclude
+ */
+public enum BitmapPreviewCache {
+
+    INSTANCE;
+
+    private static final int MAX_MEMORY_FRACTION = 8;
+
+    private final LruCache<String, Preview> mCache = new LruCache<String, Preview>(
+            (int) (Runtime.getRuntime().maxMemory() / 1024 / MAX_MEMORY_FRACTION)) {
+        @Override
+        protected int sizeOf(final String key, final Preview preview) {
+            return preview.bitmap.getByteCount() / 1024;
+        }
+    };
+
+    /**
+     * @param fingerprint the photo's content fingerprint
+     * @param sampleSize  the sample size needed for the preview
+     * @return the cached preview, if it was decoded with at most the sample size
+     */
+    @Nullable
+    Bitmap get(@NonNull final String fingerprint, final int sampleSize) {
+        final Preview preview = mCache.get(fingerprint);
+        if (preview == null || preview.sampleSize > sampleSize) {
+            return null;
+        }
+        return preview.bitmap;
+    }
+
+    /**
+     * Replaces the cached preview of the photo.
+     */
+    void put(@NonNull final String fingerprint, @NonNull final Bitmap bitmap,
+            final int sampleSize) {
+        mCache.put(fingerprint, new Preview(bitmap, sampleSize));
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    @NonNull
+    public static BitmapPreviewCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static final class Preview {
+
+        final Bitmap bitmap;
+        final int sampleSize;
+
+        Preview(@NonNull final Bitmap bitmap, final int sampleSize) {
+            this.bitmap = bitmap;
+            this.sampleSize = sampleSize;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.documentdetection.Quad;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *     Turns the jpeg delivered by the camera into a {@link Photo} off the camera and UI threads.
+ * </p>
+ * <p>
+ *     The camera callback only hands off the jpeg and is free to restart the preview right away.
+ *     The picture then runs through two stages on the image pool: creating the photo, which tags
+ *     the EXIF and writes the payload, and decoding the preview. The photo is delivered on the
+ *     main thread.
+ * </p>
+ * <p>
+ *     If the cancellation token is cancelled the remaining stages are skipped, the callback is not
+ *     invoked and the payload of an already created photo is deleted.
+ * </p>
+ *
+ * @exclude
+ */
+public final class CapturePipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CapturePipeline.class);
+
+    private static final String SOURCE_CAMERA = "camera";
+
+    private final TaskScheduler mTaskScheduler;
+    private final Stages mStages;
+
+    public CapturePipeline() {
+        this(TaskScheduler.getInstance(), new PhotoStages());
+    }
+
+    @VisibleForTesting
+    CapturePipeline(@NonNull final TaskScheduler taskScheduler, @NonNull final Stages stages) {
+        mTaskScheduler = taskScheduler;
+        mStages = stages;
+    }
+
+    /**
+     * Hands off the jpeg. Returns immediately and may be called from any thread.
+     *
+     * @param documentQuad      the document detected in the camera preview, or {@code null}
+     * @param cancellationToken cancels the processing between and before the stages
+     * @param callback          invoked on the main thread with the photo
+     */
+    public void process(@NonNull final byte[] jpeg, final int orientation,
+            @NonNull final String deviceOrientation, @NonNull final String deviceType,
+            @Nullable final Quad documentQuad, @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Photo> callback) {
+        final long handedOffNanos = System.nanoTime();
+        // Results are always delivered to delete the payloads of cancelled photos
+        mTaskScheduler.submit(TaskType.CREATE_PHOTO, Priority.HIGH, new CancellationToken(),
+                new Callable<Photo>() {
+                    @Override
+                    public Photo call() throws Exception {
+                        if (cancellationToken.isCancelled()) {
+                            return null;
+                        }
+                        return mStages.createPhoto(jpeg, orientation, deviceOrientation,
+                                deviceType, documentQuad);
+                    }
+                }, new AsyncCallback<Photo>() {
+                    @Override
+                    public void onSuccess(final Photo result) {
+                        if (result == null || discardIfCancelled(result, cancellationToken)) {
+                            return;
+                        }
+                        decodePreview(result, handedOffNanos, cancellationToken, callback);
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        onStageFailed(exception, cancellationToken, callback);
+                    }
+                });
+    }
+
+    private void decodePreview(@NonNull final Photo photo, final long handedOffNanos,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Photo> callback) {
+        mTaskScheduler.submit(TaskType.CREATE_PHOTO, Priority.HIGH, new CancellationToken(),
+                new Callable<Photo>() {
+                    @Override
+                    public Photo call() throws Exception {
+                        if (!cancellationToken.isCancelled()) {
+                            mStages.decodePreview(photo);
+                        }
+                        return photo;
+                    }
+                }, new AsyncCallback<Photo>() {
+                    @Override
+                    public void onSuccess(final Photo result) {
+                        if (discardIfCancelled(result, cancellationToken)) {
+                            return;
+                        }
+                        LOG.debug("Picture processed in {} ms", TimeUnit.NANOSECONDS.toMillis(
+                                System.nanoTime() - handedOffNanos));
+                        callback.onSuccess(result);
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        mStages.discard(photo);
+                        onStageFailed(exception, cancellationToken, callback);
+                    }
+                });
+    }
+
+    private boolean discardIfCancelled(@NonNull final Photo photo,
+            @NonNull final CancellationToken cancellationToken) {
+        if (!cancellationToken.isCancelled()) {
+            return false;
+        }
+        LOG.debug("Picture processing cancelled, discarding the photo");
+        mStages.discard(photo);
+        return true;
+    }
+
+    private static void onStageFailed(@NonNull final Exception exception,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Photo> callback) {
+        LOG.error("Picture processing failed", exception);
+        if (cancellationToken.isCancelled()) {
+            return;
+        }
+        callback.onError(exception);
+    }
+
+    /**
+     * The work of the pipeline's stages, run on the image pool.
+     */
+    @VisibleForTesting
+    interface Stages {
+
+        /**
+         * Tags the EXIF and writes the payload.
+         */
+        @NonNull
+        Photo createPhoto(@NonNull byte[] jpeg, int orientation,
+                @NonNull String deviceOrientation, @NonNull String deviceType,
+                @Nullable Quad documentQuad);
+
+        void decodePreview(@NonNull Photo photo);
+
+        /**
+         * Releases a photo which won't be delivered.
+         */
+        void discard(@NonNull Photo photo);
+    }
+
+    private static final class PhotoStages implements Stages {
+
+        @NonNull
+        @Override
+        public Photo createPhoto(@NonNull final byte[] jpeg, final int orientation,
+                @NonNull final String deviceOrientation, @NonNull final String deviceType,
+                @Nullable final Quad documentQuad) {
+            return new MutablePhoto(jpeg, orientation, deviceOrientation, deviceType,
+                    SOURCE_CAMERA, "", ImageDocument.ImageFormat.JPEG, false, documentQuad);
+        }
+
+        @Override
+        public void decodePreview(@NonNull final Photo photo) {
+            // Only photos created by createPhoto() are passed in
+            ((MutablePhoto) photo).initBitmapPreview(PreviewSampling.DEFAULT_TARGET_SIZE);
+        }
+
+        @Override
+        public void discard(@NonNull final Photo photo) {
+            final DocumentPayload payload = photo.getPayload();
+            if (payload != null) {
+                payload.delete();
+            }
+        }
+    }
+}
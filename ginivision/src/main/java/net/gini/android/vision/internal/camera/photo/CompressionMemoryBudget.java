@@ -0,0 +1,77 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+
+/**
+ * <p>
+ *     Shares the free memory between recompressions running at the same time.
+ * </p>
+ * <p>
+ *     Each {@link CompressionPlan} is made with the free memory minus the peak bytes of the plans
+ *     which are still reserved. Otherwise concurrent recompressions would each plan with the same
+ *     free memory and together allocate more than is available.
+ * </p>
+ *
+ * @exclude
+ */
+final class CompressionMemoryBudget {
+
+    private static final CompressionMemoryBudget sHeapBudget = new CompressionMemoryBudget(
+            new FreeMemory() {
+                @Override
+                public long getFreeBytes() {
+                    final Runtime runtime = Runtime.getRuntime();
+                    return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+                }
+            });
+
+    private final FreeMemory mFreeMemory;
+    private long mReservedBytes;
+
+    @NonNull
+    static CompressionMemoryBudget getHeapBudget() {
+        return sHeapBudget;
+    }
+
+    @VisibleForTesting
+    CompressionMemoryBudget(@NonNull final FreeMemory freeMemory) {
+        mFreeMemory = freeMemory;
+    }
+
+    /**
+     * Creates a plan with the memory which is not reserved and reserves the plan's peak bytes
+     * until {@link #release(CompressionPlan)} is called.
+     *
+     * @param width      width of the JPEG
+     * @param height     height of the JPEG
+     * @param jpegLength size of the JPEG in bytes
+     * @param policy     limits the downsampling of the JPEG
+     * @return the reserved plan
+     */
+    @NonNull
+    synchronized CompressionPlan reservePlan(final int width, final int height,
+            final int jpegLength, @NonNull final PictureResolutionPolicy policy) {
+        final long availableBytes = Math.max(0, mFreeMemory.getFreeBytes() - mReservedBytes);
+        final CompressionPlan plan = CompressionPlan.create(width, height, jpegLength,
+                availableBytes, policy);
+        mReservedBytes += plan.getPeakBytes();
+        return plan;
+    }
+
+    synchronized void release(@NonNull final CompressionPlan plan) {
+        mReservedBytes = Math.max(0, mReservedBytes - plan.getPeakBytes());
+    }
+
+    @VisibleForTesting
+    synchronized long getReservedBytes() {
+        return mReservedBytes;
+    }
+
+    interface FreeMemory {
+
+        long getFreeBytes();
+    }
+}
@@ -0,0 +1,173 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.camera.api.SizeSelectionHelper;
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Decides how a JPEG is decoded for recompression so that the decoded pixels fit into the
+ *     available memory.
+ * </p>
+ * <p>
+ *     The JPEG is downsampled only as far as the {@link PictureResolutionPolicy} allows. The
+ *     whole image is decoded into an ARGB_8888 bitmap if it fits, otherwise into an RGB_565
+ *     bitmap. If neither fits, it is decoded in horizontal strips into a single reused bitmap and
+ *     the strips are collected in an NV21 buffer which needs only 1.5 bytes per pixel.
+ * </p>
+ *
+ * @exclude
+ */
+final class CompressionPlan {
+
+    enum Mode {
+        FULL_ARGB_8888,
+        FULL_RGB_565,
+        STRIPS
+    }
+
+    private static final int MAX_SAMPLE_SIZE = 8;
+    private static final int ARGB_8888_BYTES_PER_PIXEL = 4;
+    private static final int RGB_565_BYTES_PER_PIXEL = 2;
+    // Leave room for the allocations of the rest of the app while compressing
+    private static final float MAX_USABLE_MEMORY_FRACTION = 0.75f;
+    private static final long MAX_STRIP_BYTES = 1024 * 1024;
+    // Strip heights are even so that the 2x2 pixel blocks sharing an NV21 chroma sample are
+    // never split between two strips
+    private static final int MIN_STRIP_HEIGHT = 16;
+
+    private final Mode mMode;
+    private final int mSampleSize;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStripHeight;
+    private final long mPeakBytes;
+
+    /**
+     * @param width          width of the JPEG
+     * @param height         height of the JPEG
+     * @param jpegLength     size of the JPEG in bytes, used to estimate the compressed output
+     * @param availableBytes memory which may be allocated
+     * @param policy         limits the downsampling of the JPEG
+     */
+    @NonNull
+    static CompressionPlan create(final int width, final int height, final int jpegLength,
+            final long availableBytes, @NonNull final PictureResolutionPolicy policy) {
+        final int sampleSize = getSampleSize(width, height, policy);
+        final int sampledWidth = getSampledLength(width, sampleSize);
+        final int sampledHeight = getSampledLength(height, sampleSize);
+        final long pixels = (long) sampledWidth * sampledHeight;
+        final long usableBytes = (long) (availableBytes * MAX_USABLE_MEMORY_FRACTION);
+
+        final long argbPeakBytes = pixels * ARGB_8888_BYTES_PER_PIXEL + jpegLength;
+        if (argbPeakBytes <= usableBytes) {
+            return new CompressionPlan(Mode.FULL_ARGB_8888, sampleSize, sampledWidth,
+                    sampledHeight, sampledHeight, argbPeakBytes);
+        }
+        final long rgb565PeakBytes = pixels * RGB_565_BYTES_PER_PIXEL + jpegLength;
+        if (rgb565PeakBytes <= usableBytes) {
+            return new CompressionPlan(Mode.FULL_RGB_565, sampleSize, sampledWidth,
+                    sampledHeight, sampledHeight, rgb565PeakBytes);
+        }
+        final int stripHeight = getStripHeight(sampledWidth, sampledHeight);
+        final long stripBytes = (long) sampledWidth * stripHeight * ARGB_8888_BYTES_PER_PIXEL;
+        // The strip bitmap and a copy of its pixels
+        final long stripsPeakBytes = ArgbToNv21Converter.getNv21Length(sampledWidth,
+                sampledHeight) + 2 * stripBytes + jpegLength;
+        return new CompressionPlan(Mode.STRIPS, sampleSize, sampledWidth, sampledHeight,
+                stripHeight, stripsPeakBytes);
+    }
+
+    /**
+     * Offers the power of two downsamplings to the picture size selection of the policy.
+     */
+    private static int getSampleSize(final int width, final int height,
+            @NonNull final PictureResolutionPolicy policy) {
+        final List<Size> sizes = new ArrayList<>();
+        for (int sampleSize = 1; sampleSize <= MAX_SAMPLE_SIZE; sampleSize *= 2) {
+            sizes.add(new Size(getSampledLength(width, sampleSize),
+                    getSampledLength(height, sampleSize)));
+        }
+        final Size selected = SizeSelectionHelper.selectPictureSize(sizes, policy);
+        if (selected == null) {
+            return 1;
+        }
+        return 1 << sizes.indexOf(selected);
+    }
+
+    /**
+     * The JPEG decoder rounds the downsampled dimensions up.
+     */
+    private static int getSampledLength(final int length, final int sampleSize) {
+        return (length + sampleSize - 1) / sampleSize;
+    }
+
+    private static int getStripHeight(final int width, final int height) {
+        final long maxRows = MAX_STRIP_BYTES / ((long) width * ARGB_8888_BYTES_PER_PIXEL);
+        return (int) Math.min(height, Math.max(MIN_STRIP_HEIGHT, maxRows - maxRows % 2));
+    }
+
+    private CompressionPlan(@NonNull final Mode mode, final int sampleSize, final int width,
+            final int height, final int stripHeight, final long peakBytes) {
+        mMode = mode;
+        mSampleSize = sampleSize;
+        mWidth = width;
+        mHeight = height;
+        mStripHeight = stripHeight;
+        mPeakBytes = peakBytes;
+    }
+
+    @NonNull
+    Mode getMode() {
+        return mMode;
+    }
+
+    int getSampleSize() {
+        return mSampleSize;
+    }
+
+    /**
+     * @return width of the decoded image
+     */
+    int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return height of the decoded image
+     */
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return rows decoded at once, equals the height unless decoding in strips
+     */
+    int getStripHeight() {
+        return mStripHeight;
+    }
+
+    /**
+     * @return estimated peak memory in bytes allocated for the recompression
+     */
+    long getPeakBytes() {
+        return mPeakBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionPlan{"
+                + "mode=" + mMode
+                + ", sampleSize=" + mSampleSize
+                + ", width=" + mWidth
+                + ", height=" + mHeight
+                + ", stripHeight=" + mStripHeight
+                + ", peakBytes=" + mPeakBytes
+                + '}';
+    }
+}
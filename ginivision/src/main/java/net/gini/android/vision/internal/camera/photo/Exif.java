@@ -1,38 +1,28 @@
 package net.gini.android.vision.internal.camera.photo;
 
-import static org.apache.commons.imaging.Imaging.getMetadata;
-
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
 
 import net.gini.android.vision.BuildConfig;
 
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.ImageWriteException;
-import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
-import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
-import org.apache.commons.imaging.formats.tiff.TiffField;
-import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
-import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
-import org.apache.commons.imaging.formats.tiff.constants.TiffConstants;
-import org.apache.commons.imaging.formats.tiff.constants.TiffDirectoryType;
-import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
-import org.apache.commons.imaging.formats.tiff.fieldtypes.FieldType;
-import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
-import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
-import org.apache.commons.imaging.formats.tiff.write.TiffOutputField;
-import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
+ * <p>
+ *     The EXIF metadata we write into our JPEGs: the {@link RequiredTags}, the User Comment and
+ *     the Orientation.
+ * </p>
+ * <p>
+ *     Other tags in the original JPEG are dropped. The TIFF structure is written into a new APP1
+ *     segment which replaces the existing EXIF segment with a single copy of the JPEG.
+ * </p>
+ *
  * @exclude
  */
 class Exif {
@@ -49,209 +39,207 @@ class Exif {
     static final String USER_COMMENT_SOURCE = "Source";
     static final String USER_COMMENT_IMPORT_METHOD = "ImportMethod";
 
-    private final TiffOutputSet mTiffOutputSet;
-
-    private Exif(@NonNull final TiffOutputSet tiffOutputSet) {
-        mTiffOutputSet = tiffOutputSet;
+    // IFD0 tags
+    static final int TAG_MAKE = 0x010F;
+    static final int TAG_MODEL = 0x0110;
+    static final int TAG_ORIENTATION = 0x0112;
+    static final int TAG_EXIF_IFD_POINTER = 0x8769;
+    // EXIF IFD tags
+    static final int TAG_EXPOSURE_TIME = 0x829A;
+    static final int TAG_ISO = 0x8827;
+    static final int TAG_COMPRESSED_BITS_PER_PIXEL = 0x9102;
+    static final int TAG_APERTURE_VALUE = 0x9202;
+    static final int TAG_FLASH = 0x9209;
+    static final int TAG_USER_COMMENT = 0x9286;
+
+    private static final int TIFF_HEADER_LENGTH = 8;
+    private static final int IFD_ENTRY_LENGTH = 12;
+
+    private final ByteOrder mByteOrder;
+    private final SortedMap<Integer, ExifField> mIfd0Fields;
+    private final SortedMap<Integer, ExifField> mExifFields;
+
+    private Exif(@NonNull final ByteOrder byteOrder,
+            @NonNull final SortedMap<Integer, ExifField> ifd0Fields,
+            @NonNull final SortedMap<Integer, ExifField> exifFields) {
+        mByteOrder = byteOrder;
+        mIfd0Fields = ifd0Fields;
+        mExifFields = exifFields;
     }
 
     @NonNull
-    public static Builder builder(@NonNull final byte[] jpeg)
-            throws ImageWriteException, IOException, ImageReadException {
-        return new Builder(jpeg);
+    public static Builder builder() {
+        return new Builder();
     }
 
     static UserCommentBuilder userCommentBuilder() {
         return new UserCommentBuilder();
     }
 
+    /**
+     * @param jpeg a JPEG image
+     * @return a copy of the JPEG with its EXIF segment replaced by this metadata
+     * @throws ExifReaderException   if the byte array is not a JPEG or its segments are malformed
+     * @throws IllegalStateException if the metadata does not fit into an APP1 segment
+     */
     @NonNull
-    public byte[] writeToJpeg(@NonNull final byte[] jpeg)
-            throws ImageWriteException, ImageReadException, IOException {
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        final ExifRewriter exifRewriter = new ExifRewriter();
-        exifRewriter.updateExifMetadataLossless(jpeg, outputStream, mTiffOutputSet);
-
-        return outputStream.toByteArray();
+    public byte[] writeToJpeg(@NonNull final byte[] jpeg) {
+        final ExifSegment exifSegment = ExifSegment.locate(jpeg);
+        return exifSegment.replace(jpeg, createSegment());
     }
 
     @NonNull
-    public static RequiredTags readRequiredTags(@NonNull final byte[] jpeg)
-            throws IOException, ImageReadException {
-        final RequiredTags requiredTags = new RequiredTags();
-
-        JpegImageMetadata jpegMetadata = null;
-        try {
-            jpegMetadata = (JpegImageMetadata) getMetadata(jpeg);
-        } catch (final ClassCastException e) { // NOPMD
-            // Ignore
+    private byte[] createSegment() {
+        final SortedMap<Integer, ExifField> ifd0Fields = new TreeMap<>(mIfd0Fields);
+        final int exifIfdOffset;
+        if (mExifFields.isEmpty()) {
+            exifIfdOffset = 0;
+        } else {
+            // Add the pointer first, it is needed for the IFD0 size
+            ifd0Fields.put(TAG_EXIF_IFD_POINTER,
+                    ExifField.forLong(TAG_EXIF_IFD_POINTER, 0, mByteOrder));
+            exifIfdOffset = TIFF_HEADER_LENGTH + getDirectoryLength(ifd0Fields);
+            ifd0Fields.put(TAG_EXIF_IFD_POINTER,
+                    ExifField.forLong(TAG_EXIF_IFD_POINTER, exifIfdOffset, mByteOrder));
         }
-
-        if (jpegMetadata != null) {
-            requiredTags.make = jpegMetadata.findEXIFValue(TiffTagConstants.TIFF_TAG_MAKE);
-            requiredTags.model = jpegMetadata.findEXIFValue(TiffTagConstants.TIFF_TAG_MODEL);
-            requiredTags.iso = jpegMetadata.findEXIFValue(ExifTagConstants.EXIF_TAG_ISO);
-            requiredTags.exposure = jpegMetadata.findEXIFValue(
-                    ExifTagConstants.EXIF_TAG_EXPOSURE_TIME);
-            requiredTags.aperture = jpegMetadata.findEXIFValue(
-                    ExifTagConstants.EXIF_TAG_APERTURE_VALUE);
-            requiredTags.flash = jpegMetadata.findEXIFValue(ExifTagConstants.EXIF_TAG_FLASH);
-            requiredTags.compressedBitsPerPixel = jpegMetadata.findEXIFValue(
-                    ExifTagConstants.EXIF_TAG_COMPRESSED_BITS_PER_PIXEL);
+        final int tiffLength = TIFF_HEADER_LENGTH + getDirectoryLength(ifd0Fields)
+                + (mExifFields.isEmpty() ? 0 : getDirectoryLength(mExifFields));
+
+        final byte[] segment = new byte[ExifSegment.HEADER_LENGTH + tiffLength];
+        ExifSegment.writeHeader(segment, segment.length);
+        final int tiffOffset = ExifSegment.HEADER_LENGTH;
+        final byte byteOrderMark = (byte) (mByteOrder == ByteOrder.BIG_ENDIAN ? 'M' : 'I');
+        segment[tiffOffset] = byteOrderMark;
+        segment[tiffOffset + 1] = byteOrderMark;
+        ExifField.writeShort(segment, tiffOffset + 2, 42, mByteOrder);
+        ExifField.writeInt(segment, tiffOffset + 4, TIFF_HEADER_LENGTH, mByteOrder);
+        writeDirectory(segment, tiffOffset, TIFF_HEADER_LENGTH, ifd0Fields);
+        if (!mExifFields.isEmpty()) {
+            writeDirectory(segment, tiffOffset, exifIfdOffset, mExifFields);
         }
+        return segment;
+    }
 
-        return requiredTags;
+    /**
+     * @return length of the directory including the values which don't fit into the entries
+     */
+    private static int getDirectoryLength(@NonNull final SortedMap<Integer, ExifField> fields) {
+        int length = 2 + fields.size() * IFD_ENTRY_LENGTH + 4;
+        for (final ExifField field : fields.values()) {
+            length += getExternalValueLength(field);
+        }
+        return length;
     }
 
-    static class Builder {
+    private static int getExternalValueLength(@NonNull final ExifField field) {
+        final int valueLength = field.getValue().length;
+        if (valueLength <= 4) {
+            return 0;
+        }
+        // Values start on word boundaries
+        return valueLength + (valueLength % 2);
+    }
 
-        private final TiffOutputSet mTiffOutputSet;
-        private TiffOutputDirectory mIfd0Directory;
-        private final TiffOutputDirectory mExifDirectory;
-
-        private Builder(@NonNull final byte[] jpeg)
-                throws ImageWriteException, IOException, ImageReadException {
-            // Create a new exif metadata set, to keep only the required exif tags
-            mTiffOutputSet = createOutputSetForJpeg(jpeg, TiffConstants.DEFAULT_TIFF_BYTE_ORDER);
-
-            mExifDirectory = mTiffOutputSet.getOrCreateExifDirectory();
-            mIfd0Directory = mTiffOutputSet.findDirectory(
-                    TiffDirectoryType.TIFF_DIRECTORY_IFD0.directoryType);
-            if (mIfd0Directory == null) {
-                mIfd0Directory = new TiffOutputDirectory(
-                        TiffDirectoryType.TIFF_DIRECTORY_IFD0.directoryType,
-                        mTiffOutputSet.byteOrder);
-                mTiffOutputSet.addDirectory(mIfd0Directory);
+    private void writeDirectory(@NonNull final byte[] segment, final int tiffOffset,
+            final int directoryOffset, @NonNull final SortedMap<Integer, ExifField> fields) {
+        int entryPosition = tiffOffset + directoryOffset;
+        ExifField.writeShort(segment, entryPosition, fields.size(), mByteOrder);
+        entryPosition += 2;
+        int valueOffset = directoryOffset + 2 + fields.size() * IFD_ENTRY_LENGTH + 4;
+        for (final ExifField field : fields.values()) {
+            ExifField.writeShort(segment, entryPosition, field.getTag(), mByteOrder);
+            ExifField.writeShort(segment, entryPosition + 2, field.getType(), mByteOrder);
+            ExifField.writeInt(segment, entryPosition + 4, field.getCount(), mByteOrder);
+            final byte[] value = field.getValue();
+            if (value.length <= 4) {
+                System.arraycopy(value, 0, segment, entryPosition + 8, value.length);
+            } else {
+                ExifField.writeInt(segment, entryPosition + 8, valueOffset, mByteOrder);
+                System.arraycopy(value, 0, segment, tiffOffset + valueOffset, value.length);
+                valueOffset += getExternalValueLength(field);
             }
+            entryPosition += IFD_ENTRY_LENGTH;
         }
+        // No next directory
+        ExifField.writeInt(segment, entryPosition, 0, mByteOrder);
+    }
 
-        private static TiffOutputSet createOutputSetForJpeg(@NonNull final byte[] jpeg,
-                final ByteOrder defaultByteOrder)
-                throws IOException, ImageReadException, ImageWriteException {
-            ByteOrder byteOrder = defaultByteOrder;
-
-            final JpegImageMetadata jpegMetadata;
-            try {
-                jpegMetadata = (JpegImageMetadata) getMetadata(jpeg);
-            } catch (final ClassCastException e) {
-                throw new ImageReadException(
-                        "Wrong metadata type, only JpegImageMetadata supported", e);
-            }
+    /**
+     * Reads the required tags in a single pass.
+     *
+     * @return the required tags, which are all {@code null} if the JPEG had no EXIF metadata
+     * @throws ExifReaderException if the byte array is not a JPEG or the EXIF metadata is
+     *                             malformed
+     */
+    @NonNull
+    public static RequiredTags readRequiredTags(@NonNull final byte[] jpeg) {
+        return ExifReader.forJpegOrEmpty(jpeg).getRequiredTags();
+    }
 
-            if (jpegMetadata != null) {
-                final TiffImageMetadata exif = jpegMetadata.getExif();
-                if (exif != null) {
-                    byteOrder = exif.getOutputSet().byteOrder;
-                }
-            }
+    static class Builder {
 
-            return new TiffOutputSet(byteOrder);
-        }
+        private ByteOrder mByteOrder = ByteOrder.BIG_ENDIAN;
+        private RequiredTags mRequiredTags;
+        private String mUserComment;
+        private int mOrientationDegrees = -1;
 
-        @NonNull
-        public Builder setRequiredTags(@NonNull final RequiredTags requiredTags)
-                throws ImageReadException, ImageWriteException {
-            // Make
-            if (requiredTags.make != null) {
-                try {
-                    final TiffOutputField makeField = createTiffOutputField(requiredTags.make);
-                    mIfd0Directory.add(makeField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            // Model
-            if (requiredTags.model != null) {
-                try {
-                    final TiffOutputField modelField = createTiffOutputField(requiredTags.model);
-                    mIfd0Directory.add(modelField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            // ISO
-            if (requiredTags.iso != null) {
-                try {
-                    final TiffOutputField isoField = createTiffOutputField(requiredTags.iso);
-                    mExifDirectory.add(isoField);
-                } catch (final Exception e) { // NOPMD
-                    // Ignore, ClassCastException was thrown on a Galaxy Nexus w. Android 4.3
-                }
-            }
-            // Exposure
-            if (requiredTags.exposure != null) {
-                try {
-                    final TiffOutputField exposureField = createTiffOutputField(
-                            requiredTags.exposure);
-                    mExifDirectory.add(exposureField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            // Aperture
-            if (requiredTags.aperture != null) {
-                try {
-                    final TiffOutputField apertureField = createTiffOutputField(
-                            requiredTags.aperture);
-                    mExifDirectory.add(apertureField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            // Flash
-            if (requiredTags.flash != null) {
-                try {
-                    final TiffOutputField flashField = createTiffOutputField(requiredTags.flash);
-                    mExifDirectory.add(flashField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            // Compressed bits per pixel
-            if (requiredTags.compressedBitsPerPixel != null) {
-                try {
-                    final TiffOutputField compressedBitsPerPixelField = createTiffOutputField(
-                            requiredTags.compressedBitsPerPixel);
-                    mExifDirectory.add(compressedBitsPerPixelField);
-                } catch (final Exception e) { // NOPMD
-                    // Shouldn't happen, but ignore it, if it does
-                }
-            }
-            return this;
+        private Builder() {
         }
 
+        /**
+         * The tags are written in their original byte order.
+         */
         @NonNull
-        private TiffOutputField createTiffOutputField(@NonNull final TiffField tiffField) {
-            return new TiffOutputField(tiffField.getTagInfo(),
-                    tiffField.getFieldType(),
-                    (int) tiffField.getCount(),
-                    tiffField.getByteArrayValue());
+        public Builder setRequiredTags(@NonNull final RequiredTags requiredTags) {
+            mRequiredTags = requiredTags;
+            mByteOrder = requiredTags.byteOrder;
+            return this;
         }
 
         @NonNull
         public Builder setUserComment(final String userComment) {
-            addUserCommentStringExif(mExifDirectory, userComment);
+            mUserComment = userComment;
             return this;
         }
 
         @NonNull
         public Builder setOrientationFromDegrees(final int degrees) {
-            final byte[] bytes = new byte[1];
-            bytes[0] = (byte) rotationToExifOrientation(degrees);
-            final TiffOutputField orientationOutputField = new TiffOutputField(
-                    TiffTagConstants.TIFF_TAG_ORIENTATION, FieldType.SHORT, 1, bytes);
-            mIfd0Directory.add(orientationOutputField);
+            mOrientationDegrees = degrees;
             return this;
         }
 
         @NonNull
         public Exif build() {
-            return new Exif(mTiffOutputSet);
+            final SortedMap<Integer, ExifField> ifd0Fields = new TreeMap<>();
+            final SortedMap<Integer, ExifField> exifFields = new TreeMap<>();
+            if (mRequiredTags != null) {
+                putIfNotNull(ifd0Fields, mRequiredTags.make);
+                putIfNotNull(ifd0Fields, mRequiredTags.model);
+                putIfNotNull(exifFields, mRequiredTags.iso);
+                putIfNotNull(exifFields, mRequiredTags.exposure);
+                putIfNotNull(exifFields, mRequiredTags.aperture);
+                putIfNotNull(exifFields, mRequiredTags.flash);
+                putIfNotNull(exifFields, mRequiredTags.compressedBitsPerPixel);
+            }
+            if (mOrientationDegrees >= 0) {
+                ifd0Fields.put(TAG_ORIENTATION, ExifField.forShort(TAG_ORIENTATION,
+                        rotationToExifOrientation(mOrientationDegrees), mByteOrder));
+            }
+            if (mUserComment != null) {
+                exifFields.put(TAG_USER_COMMENT, createUserCommentField(mUserComment));
+            }
+            return new Exif(mByteOrder, ifd0Fields, exifFields);
         }
 
-        private void addUserCommentStringExif(@NonNull final TiffOutputDirectory outputDirectory,
-                @NonNull final String value) {
+        private void putIfNotNull(@NonNull final SortedMap<Integer, ExifField> fields,
+                @Nullable final ExifField field) {
+            if (field != null) {
+                fields.put(field.getTag(), field);
+            }
+        }
+
+        @NonNull
+        private ExifField createUserCommentField(@NonNull final String value) {
             // ASCII character code
             final byte[] characterCode = new byte[]{0x41, 0x53, 0x43, 0x49, 0x49, 0x00, 0x00, 0x00};
 
@@ -261,14 +249,8 @@ class Exif {
             System.arraycopy(characterCode, 0, userComment, 0, characterCode.length);
             System.arraycopy(comment, 0, userComment, characterCode.length, comment.length);
 
-            addStringExif(outputDirectory, ExifTagConstants.EXIF_TAG_USER_COMMENT, userComment);
-        }
-
-        private void addStringExif(final TiffOutputDirectory outputDirectory, final TagInfo tagInfo,
-                final byte[] bytes) {
-            final TiffOutputField outputField = new TiffOutputField(tagInfo, FieldType.ASCII,
-                    bytes.length, bytes);
-            outputDirectory.add(outputField);
+            return new ExifField(TAG_USER_COMMENT, ExifField.TYPE_ASCII, userComment.length,
+                    userComment, mByteOrder);
         }
 
         private static int rotationToExifOrientation(final int degrees) {
@@ -297,13 +279,17 @@ class Exif {
 
     static class RequiredTags {
 
-        public TiffField make;
-        public TiffField model;
-        public TiffField iso;
-        public TiffField exposure;
-        public TiffField aperture;
-        public TiffField flash;
-        public TiffField compressedBitsPerPixel;
+        /**
+         * Byte order of the fields' raw values.
+         */
+        public ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+        public ExifField make;
+        public ExifField model;
+        public ExifField iso;
+        public ExifField exposure;
+        public ExifField aperture;
+        public ExifField flash;
+        public ExifField compressedBitsPerPixel;
         // User Comment is also required, but added manually
         // Orientation is also required, but added manually
 
@@ -328,14 +314,8 @@ class Exif {
                     && areEqual(compressedBitsPerPixel, that.compressedBitsPerPixel);
         }
 
-        private boolean areEqual(@Nullable final TiffField left, @Nullable final TiffField right) {
-            final boolean leftIsNotNull = left != null;
-            final boolean rightIsNotNull = right != null;
-            Log.d("RequiredTags", "left : " + (leftIsNotNull ? left.toString() : "null"));
-            Log.d("RequiredTags", "right: " + (rightIsNotNull ? right.toString() : "null"));
-            return leftIsNotNull && rightIsNotNull ? left.getValueDescription().equals(
-                    right.getValueDescription())
-                    : leftIsNotNull == rightIsNotNull;
+        private boolean areEqual(@Nullable final ExifField left, @Nullable final ExifField right) {
+            return left != null ? left.equals(right) : right == null;
         }
 
         @Override
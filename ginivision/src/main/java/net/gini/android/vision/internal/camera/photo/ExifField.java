@@ -0,0 +1,219 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A TIFF field of an EXIF segment with its value's raw bytes in the segment's byte order.
+ *
+ * @exclude
+ */
+final class ExifField {
+
+    static final int TYPE_BYTE = 1;
+    static final int TYPE_ASCII = 2;
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_RATIONAL = 5;
+    static final int TYPE_SBYTE = 6;
+    static final int TYPE_UNDEFINED = 7;
+    static final int TYPE_SSHORT = 8;
+    static final int TYPE_SLONG = 9;
+    static final int TYPE_SRATIONAL = 10;
+    static final int TYPE_FLOAT = 11;
+    static final int TYPE_DOUBLE = 12;
+
+    private final int mTag;
+    private final int mType;
+    private final int mCount;
+    private final byte[] mValue;
+    private final ByteOrder mByteOrder;
+
+    ExifField(final int tag, final int type, final int count, @NonNull final byte[] value,
+            @NonNull final ByteOrder byteOrder) {
+        mTag = tag;
+        mType = type;
+        mCount = count;
+        mValue = value;
+        mByteOrder = byteOrder;
+    }
+
+    @NonNull
+    static ExifField forShort(final int tag, final int value, @NonNull final ByteOrder byteOrder) {
+        final byte[] bytes = new byte[2];
+        writeShort(bytes, 0, value, byteOrder);
+        return new ExifField(tag, TYPE_SHORT, 1, bytes, byteOrder);
+    }
+
+    @NonNull
+    static ExifField forLong(final int tag, final int value, @NonNull final ByteOrder byteOrder) {
+        final byte[] bytes = new byte[4];
+        writeInt(bytes, 0, value, byteOrder);
+        return new ExifField(tag, TYPE_LONG, 1, bytes, byteOrder);
+    }
+
+    /**
+     * @return the size in bytes of one value of the type or 0 for unknown types
+     */
+    static int getTypeSize(final int type) {
+        switch (type) {
+            case TYPE_BYTE:
+            case TYPE_ASCII:
+            case TYPE_SBYTE:
+            case TYPE_UNDEFINED:
+                return 1;
+            case TYPE_SHORT:
+            case TYPE_SSHORT:
+                return 2;
+            case TYPE_LONG:
+            case TYPE_SLONG:
+            case TYPE_FLOAT:
+                return 4;
+            case TYPE_RATIONAL:
+            case TYPE_SRATIONAL:
+            case TYPE_DOUBLE:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    int getTag() {
+        return mTag;
+    }
+
+    int getType() {
+        return mType;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    @NonNull
+    byte[] getValue() {
+        return mValue;
+    }
+
+    @NonNull
+    ByteOrder getByteOrder() {
+        return mByteOrder;
+    }
+
+    /**
+     * @return the first value of a BYTE, SHORT or LONG field
+     * @throws ExifReaderException if the field has another type or no value
+     */
+    int getIntValue() {
+        final int typeSize = getTypeSize(mType);
+        if (mValue.length < typeSize || typeSize == 0) {
+            throw new ExifReaderException("No value in field " + mTag);
+        }
+        switch (mType) {
+            case TYPE_BYTE:
+                return mValue[0] & 0xFF;
+            case TYPE_SHORT:
+                return readUnsignedShort(mValue, 0, mByteOrder);
+            case TYPE_LONG:
+                return readInt(mValue, 0, mByteOrder);
+            default:
+                throw new ExifReaderException(
+                        "Field " + mTag + " of type " + mType + " is not an integer");
+        }
+    }
+
+    /**
+     * @return the NUL separated strings of an ASCII field, empty strings are skipped
+     */
+    @NonNull
+    String[] getStringValues() {
+        final List<String> strings = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= mValue.length; i++) {
+            if (i == mValue.length || mValue[i] == 0) {
+                if (i > start) {
+                    strings.add(new String(mValue, start, i - start, Charset.forName("US-ASCII")));
+                }
+                start = i + 1;
+            }
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    static int readUnsignedShort(@NonNull final byte[] bytes, final int offset,
+            @NonNull final ByteOrder byteOrder) {
+        final int first = bytes[offset] & 0xFF;
+        final int second = bytes[offset + 1] & 0xFF;
+        return byteOrder == ByteOrder.BIG_ENDIAN ? first << 8 | second : second << 8 | first;
+    }
+
+    static int readInt(@NonNull final byte[] bytes, final int offset,
+            @NonNull final ByteOrder byteOrder) {
+        final int high = readUnsignedShort(bytes, offset, byteOrder);
+        final int low = readUnsignedShort(bytes, offset + 2, byteOrder);
+        return byteOrder == ByteOrder.BIG_ENDIAN ? high << 16 | low : low << 16 | high;
+    }
+
+    static void writeShort(@NonNull final byte[] bytes, final int offset, final int value,
+            @NonNull final ByteOrder byteOrder) {
+        if (byteOrder == ByteOrder.BIG_ENDIAN) {
+            bytes[offset] = (byte) (value >> 8);
+            bytes[offset + 1] = (byte) value;
+        } else {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >> 8);
+        }
+    }
+
+    static void writeInt(@NonNull final byte[] bytes, final int offset, final int value,
+            @NonNull final ByteOrder byteOrder) {
+        if (byteOrder == ByteOrder.BIG_ENDIAN) {
+            writeShort(bytes, offset, value >>> 16, byteOrder);
+            writeShort(bytes, offset + 2, value, byteOrder);
+        } else {
+            writeShort(bytes, offset, value, byteOrder);
+            writeShort(bytes, offset + 2, value >>> 16, byteOrder);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ExifField that = (ExifField) o;
+        return mTag == that.mTag
+                && mType == that.mType
+                && mCount == that.mCount
+                && mByteOrder.equals(that.mByteOrder)
+                && Arrays.equals(mValue, that.mValue);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mTag;
+        result = 31 * result + mType;
+        result = 31 * result + mCount;
+        result = 31 * result + Arrays.hashCode(mValue);
+        result = 31 * result + mByteOrder.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ExifField{"
+                + "tag=0x" + Integer.toHexString(mTag)
+                + ", type=" + mType
+                + ", count=" + mCount
+                + ", value=" + Arrays.toString(mValue)
+                + '}';
+    }
+}
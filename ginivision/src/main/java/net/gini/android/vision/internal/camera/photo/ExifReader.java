@@ -1,56 +1,195 @@
 package net.gini.android.vision.internal.camera.photo;
 
-import static org.apache.commons.imaging.Imaging.getMetadata;
-
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
-import org.apache.commons.imaging.formats.tiff.TiffField;
-import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
-import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
-
-import java.io.IOException;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
+ * <p>
+ *     Reads the EXIF tags we need from a JPEG in a single pass.
+ * </p>
+ * <p>
+ *     Only IFD0 and the EXIF IFD are visited and only the values of the {@link
+ *     Exif.RequiredTags}, the User Comment and the Orientation are copied.
+ * </p>
+ *
  * @exclude
  */
 final class ExifReader {
 
-    private final JpegImageMetadata mJpegMetadata;
+    private static final int TIFF_MAGIC_NUMBER = 42;
+    private static final int IFD_ENTRY_LENGTH = 12;
+    private static final int[] IFD0_TAGS = new int[]{
+            Exif.TAG_MAKE, Exif.TAG_MODEL, Exif.TAG_ORIENTATION};
+    private static final int[] EXIF_IFD_TAGS = new int[]{
+            Exif.TAG_ISO, Exif.TAG_EXPOSURE_TIME, Exif.TAG_APERTURE_VALUE, Exif.TAG_FLASH,
+            Exif.TAG_COMPRESSED_BITS_PER_PIXEL, Exif.TAG_USER_COMMENT};
+
+    private final boolean mHasMetadata;
+    private final ByteOrder mByteOrder;
+    private final Map<Integer, ExifField> mFields;
 
+    /**
+     * @throws ExifReaderException if the JPEG has no or malformed EXIF metadata
+     */
     static ExifReader forJpeg(@NonNull final byte[] jpeg) {
+        return read(jpeg, true);
+    }
+
+    /**
+     * Like {@link #forJpeg(byte[])}, but returns an empty reader if the JPEG has no EXIF metadata.
+     *
+     * @throws ExifReaderException if the byte array is not a JPEG or the EXIF metadata is
+     *                             malformed
+     */
+    static ExifReader forJpegOrEmpty(@NonNull final byte[] jpeg) {
+        return read(jpeg, false);
+    }
+
+    private static ExifReader read(@NonNull final byte[] jpeg, final boolean metadataRequired) {
+        final ExifSegment segment;
         try {
-            final JpegImageMetadata jpegMetadata = (JpegImageMetadata) getMetadata(jpeg);
-            if (jpegMetadata == null) {
+            segment = ExifSegment.locate(jpeg);
+        } catch (final ExifReaderException e) {
+            throw new ExifReaderException("Could not read jpeg metadata: " + e.getMessage(), e);
+        }
+        if (!segment.exists()) {
+            if (metadataRequired) {
                 throw new ExifReaderException("No jpeg metadata found");
             }
-            return new ExifReader(jpegMetadata);
-        } catch (IOException | ImageReadException | ClassCastException e) {
+            return new ExifReader(false, ByteOrder.BIG_ENDIAN,
+                    new HashMap<Integer, ExifField>());
+        }
+        try {
+            return readTiff(jpeg, segment.getTiffOffset(), segment.getTiffLength());
+        } catch (final ExifReaderException e) {
             throw new ExifReaderException("Could not read jpeg metadata: " + e.getMessage(), e);
         }
     }
 
-    private ExifReader(@NonNull final JpegImageMetadata jpegMetadata) {
-        mJpegMetadata = jpegMetadata;
+    private static ExifReader readTiff(@NonNull final byte[] jpeg, final int tiffOffset,
+            final int tiffLength) {
+        if (tiffLength < 8) {
+            throw new ExifReaderException("TIFF header too short");
+        }
+        final ByteOrder byteOrder;
+        if (jpeg[tiffOffset] == 'I' && jpeg[tiffOffset + 1] == 'I') {
+            byteOrder = ByteOrder.LITTLE_ENDIAN;
+        } else if (jpeg[tiffOffset] == 'M' && jpeg[tiffOffset + 1] == 'M') {
+            byteOrder = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new ExifReaderException("Unknown TIFF byte order");
+        }
+        if (ExifField.readUnsignedShort(jpeg, tiffOffset + 2, byteOrder) != TIFF_MAGIC_NUMBER) {
+            throw new ExifReaderException("Not a TIFF header");
+        }
+        final Map<Integer, ExifField> fields = new HashMap<>();
+        final int ifd0Offset = ExifField.readInt(jpeg, tiffOffset + 4, byteOrder);
+        final int exifIfdOffset = readDirectory(jpeg, tiffOffset, tiffLength, ifd0Offset,
+                byteOrder, IFD0_TAGS, fields);
+        if (exifIfdOffset > 0) {
+            readDirectory(jpeg, tiffOffset, tiffLength, exifIfdOffset, byteOrder, EXIF_IFD_TAGS,
+                    fields);
+        }
+        return new ExifReader(true, byteOrder, fields);
+    }
+
+    /**
+     * Copies the wanted fields of a directory.
+     *
+     * @return the EXIF IFD's offset, if the directory points to it, otherwise -1
+     */
+    private static int readDirectory(@NonNull final byte[] jpeg, final int tiffOffset,
+            final int tiffLength, final int directoryOffset, @NonNull final ByteOrder byteOrder,
+            @NonNull final int[] wantedTags, @NonNull final Map<Integer, ExifField> fields) {
+        if (directoryOffset < 8 || directoryOffset > tiffLength - 2) {
+            throw new ExifReaderException("Directory offset out of bounds: " + directoryOffset);
+        }
+        final int entryCount = ExifField.readUnsignedShort(jpeg, tiffOffset + directoryOffset,
+                byteOrder);
+        if (directoryOffset + 2 + (long) entryCount * IFD_ENTRY_LENGTH > tiffLength) {
+            throw new ExifReaderException("Directory entries out of bounds");
+        }
+        int exifIfdOffset = -1;
+        for (int i = 0; i < entryCount; i++) {
+            final int entryOffset = tiffOffset + directoryOffset + 2 + i * IFD_ENTRY_LENGTH;
+            final int tag = ExifField.readUnsignedShort(jpeg, entryOffset, byteOrder);
+            if (tag == Exif.TAG_EXIF_IFD_POINTER) {
+                exifIfdOffset = ExifField.readInt(jpeg, entryOffset + 8, byteOrder);
+                continue;
+            }
+            if (!contains(wantedTags, tag)) {
+                continue;
+            }
+            final int type = ExifField.readUnsignedShort(jpeg, entryOffset + 2, byteOrder);
+            final int count = ExifField.readInt(jpeg, entryOffset + 4, byteOrder);
+            final long size = (long) ExifField.getTypeSize(type) * count;
+            if (size <= 0) {
+                continue;
+            }
+            final int valueOffset;
+            if (size <= 4) {
+                valueOffset = entryOffset + 8;
+            } else {
+                final int offset = ExifField.readInt(jpeg, entryOffset + 8, byteOrder);
+                if (offset < 0 || offset + size > tiffLength) {
+                    throw new ExifReaderException("Value of tag " + tag + " out of bounds");
+                }
+                valueOffset = tiffOffset + offset;
+            }
+            fields.put(tag, new ExifField(tag, type, count,
+                    Arrays.copyOfRange(jpeg, valueOffset, valueOffset + (int) size), byteOrder));
+        }
+        return exifIfdOffset;
+    }
+
+    private static boolean contains(@NonNull final int[] tags, final int tag) {
+        for (final int wantedTag : tags) {
+            if (wantedTag == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ExifReader(final boolean hasMetadata, @NonNull final ByteOrder byteOrder,
+            @NonNull final Map<Integer, ExifField> fields) {
+        mHasMetadata = hasMetadata;
+        mByteOrder = byteOrder;
+        mFields = fields;
+    }
+
+    boolean hasMetadata() {
+        return mHasMetadata;
+    }
+
+    @NonNull
+    Exif.RequiredTags getRequiredTags() {
+        final Exif.RequiredTags requiredTags = new Exif.RequiredTags();
+        requiredTags.byteOrder = mByteOrder;
+        requiredTags.make = mFields.get(Exif.TAG_MAKE);
+        requiredTags.model = mFields.get(Exif.TAG_MODEL);
+        requiredTags.iso = mFields.get(Exif.TAG_ISO);
+        requiredTags.exposure = mFields.get(Exif.TAG_EXPOSURE_TIME);
+        requiredTags.aperture = mFields.get(Exif.TAG_APERTURE_VALUE);
+        requiredTags.flash = mFields.get(Exif.TAG_FLASH);
+        requiredTags.compressedBitsPerPixel = mFields.get(Exif.TAG_COMPRESSED_BITS_PER_PIXEL);
+        return requiredTags;
     }
 
     @NonNull
     String getUserComment() {
-        final TiffField userCommentField = mJpegMetadata.findEXIFValue(
-                ExifTagConstants.EXIF_TAG_USER_COMMENT);
+        final ExifField userCommentField = mFields.get(Exif.TAG_USER_COMMENT);
         if (userCommentField == null) {
             throw new ExifReaderException("No User Comment found");
         }
 
-        final byte[] rawUserComment = userCommentField.getByteArrayValue();
-        if (rawUserComment == null) {
-            throw new ExifReaderException("No User Comment found");
-        }
-
+        final byte[] rawUserComment = userCommentField.getValue();
         if (rawUserComment.length >= 8) {
             return new String(Arrays.copyOfRange(rawUserComment, 8, rawUserComment.length),
                     Charset.forName("US-ASCII"));
@@ -73,12 +212,11 @@ final class ExifReader {
     }
 
     int getOrientationAsDegrees() {
-        final TiffField orientation = mJpegMetadata.findEXIFValue(
-                TiffTagConstants.TIFF_TAG_ORIENTATION);
+        final ExifField orientation = mFields.get(Exif.TAG_ORIENTATION);
         if (orientation != null) {
             try {
                 return exifOrientationToRotation(orientation.getIntValue());
-            } catch (final ImageReadException e) {
+            } catch (final ExifReaderException e) {
                 return 0;
             }
         }
@@ -0,0 +1,160 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+/**
+ * <p>
+ *     Location of the EXIF APP1 segment in a JPEG.
+ * </p>
+ * <p>
+ *     Found by walking the segment markers from the start of the image up to the start of the
+ *     compressed image data, which is not scanned. If there is no EXIF segment the location is
+ *     where a new one has to be inserted: right after the start of image marker or after the JFIF
+ *     APP0 segments.
+ * </p>
+ *
+ * @exclude
+ */
+final class ExifSegment {
+
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
+    private static final byte[] EXIF_IDENTIFIER = new byte[]{'E', 'x', 'i', 'f', 0, 0};
+    /**
+     * Marker, segment length and EXIF identifier.
+     */
+    static final int HEADER_LENGTH = 4 + 6;
+    static final int MAX_SEGMENT_LENGTH = 2 + 0xFFFF;
+
+    private final int mStart;
+    private final int mEnd;
+
+    private ExifSegment(final int start, final int end) {
+        mStart = start;
+        mEnd = end;
+    }
+
+    /**
+     * @param jpeg a JPEG image
+     * @return the EXIF segment's location or the location for inserting one
+     * @throws ExifReaderException if the image is not a JPEG or its segments are malformed
+     */
+    @NonNull
+    static ExifSegment locate(@NonNull final byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != MARKER_PREFIX
+                || (jpeg[1] & 0xFF) != MARKER_SOI) {
+            throw new ExifReaderException("Not a JPEG");
+        }
+        int insertionPoint = 2;
+        int position = 2;
+        while (position + 4 <= jpeg.length) {
+            if ((jpeg[position] & 0xFF) != MARKER_PREFIX) {
+                throw new ExifReaderException("No JPEG marker at " + position);
+            }
+            final int marker = jpeg[position + 1] & 0xFF;
+            if (marker == MARKER_PREFIX) {
+                // Fill byte
+                position++;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                break;
+            }
+            if (isStandalone(marker)) {
+                position += 2;
+                continue;
+            }
+            final int length = ((jpeg[position + 2] & 0xFF) << 8) | (jpeg[position + 3] & 0xFF);
+            final int end = position + 2 + length;
+            if (length < 2 || end > jpeg.length) {
+                throw new ExifReaderException("Truncated JPEG segment at " + position);
+            }
+            if (marker == MARKER_APP1 && hasExifIdentifier(jpeg, position + 4, end)) {
+                return new ExifSegment(position, end);
+            }
+            if (marker == MARKER_APP0 && position == insertionPoint) {
+                insertionPoint = end;
+            }
+            position = end;
+        }
+        return new ExifSegment(insertionPoint, insertionPoint);
+    }
+
+    private static boolean isStandalone(final int marker) {
+        return marker == MARKER_TEM || marker == MARKER_SOI
+                || (marker >= MARKER_RST0 && marker <= MARKER_RST7);
+    }
+
+    private static boolean hasExifIdentifier(@NonNull final byte[] jpeg, final int from,
+            final int end) {
+        if (end - from < EXIF_IDENTIFIER.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_IDENTIFIER.length; i++) {
+            if (jpeg[from + i] != EXIF_IDENTIFIER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the marker, the length and the EXIF identifier of an APP1 segment.
+     *
+     * @param segment       receives the header at its beginning
+     * @param segmentLength length of the whole segment including the marker
+     */
+    static void writeHeader(@NonNull final byte[] segment, final int segmentLength) {
+        if (segmentLength > MAX_SEGMENT_LENGTH) {
+            throw new IllegalStateException(
+                    "EXIF segment too large: " + segmentLength + " bytes");
+        }
+        segment[0] = (byte) MARKER_PREFIX;
+        segment[1] = (byte) MARKER_APP1;
+        segment[2] = (byte) ((segmentLength - 2) >> 8);
+        segment[3] = (byte) (segmentLength - 2);
+        System.arraycopy(EXIF_IDENTIFIER, 0, segment, 4, EXIF_IDENTIFIER.length);
+    }
+
+    boolean exists() {
+        return mEnd > mStart;
+    }
+
+    /**
+     * @return offset of the TIFF header in the JPEG
+     */
+    int getTiffOffset() {
+        return mStart + HEADER_LENGTH;
+    }
+
+    /**
+     * @return length of the TIFF data or 0, if there is no EXIF segment
+     */
+    int getTiffLength() {
+        return exists() ? mEnd - mStart - HEADER_LENGTH : 0;
+    }
+
+    /**
+     * Copies the JPEG once, replacing the EXIF segment or inserting the new one.
+     *
+     * @param jpeg    the JPEG this segment was located in
+     * @param segment a complete APP1 segment
+     * @return a new JPEG with the segment
+     */
+    @NonNull
+    byte[] replace(@NonNull final byte[] jpeg, @NonNull final byte[] segment) {
+        final byte[] result = new byte[jpeg.length - (mEnd - mStart) + segment.length];
+        System.arraycopy(jpeg, 0, result, 0, mStart);
+        System.arraycopy(segment, 0, result, mStart, segment.length);
+        System.arraycopy(jpeg, mEnd, result, mStart + segment.length, jpeg.length - mEnd);
+        return result;
+    }
+}
@@ -9,6 +9,9 @@ import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.documentdetection.Quad;
+import net.gini.android.vision.internal.util.Size;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,7 +20,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.lang.ref.SoftReference;
 
 /**
  * @exclude
@@ -27,38 +30,90 @@ class ImmutablePhoto implements Photo {
     private static final Logger LOG = LoggerFactory.getLogger(ImmutablePhoto.class);
 
     Bitmap mBitmapPreview;
-    byte[] mData;
+    DocumentPayload mPayload;
+    // Whether the payload was handed out or parceled and may still be used after it was replaced
+    private boolean mPayloadShared;
+    // Materialized payload for getData(), released when memory runs low
+    private SoftReference<byte[]> mDataReference;
     int mRotationForDisplay;
+    private final Quad mDocumentQuad;
+    Size mPreviewTargetSize = PreviewSampling.DEFAULT_TARGET_SIZE;
     private final ImageDocument.ImageFormat mImageFormat;
     private final boolean mIsImported;
 
     ImmutablePhoto(@NonNull final byte[] data, final int orientation,
-            @NonNull final ImageDocument.ImageFormat imageFormat, final boolean isImported) {
-        mData = data;
+            @NonNull final ImageDocument.ImageFormat imageFormat, final boolean isImported,
+            @Nullable final Quad documentQuad) {
+        mPayload = DocumentPayload.fromBytes(data);
         mRotationForDisplay = orientation;
         mImageFormat = imageFormat;
         mIsImported = isImported;
-        mBitmapPreview = createPreview();
+        mDocumentQuad = documentQuad;
     }
 
     ImmutablePhoto(@NonNull final ImageDocument imageDocument) {
-        mData = imageDocument.getData();
+        mPayload = imageDocument.getPayload();
+        mPayloadShared = true;
         mRotationForDisplay = imageDocument.getRotationForDisplay();
         mImageFormat = imageDocument.getFormat();
         mIsImported = imageDocument.isImported();
+        mDocumentQuad = imageDocument.getDocumentQuad();
+    }
+
+    /**
+     * Creates the preview, which is shown scaled to fit into the target size. Must be called
+     * after construction.
+     */
+    final synchronized void initBitmapPreview(@NonNull final Size targetSize) {
+        mPreviewTargetSize = targetSize;
         mBitmapPreview = createPreview();
     }
 
+    /**
+     * Decodes the preview or returns the cached one, if a photo with the same content was
+     * decoded before.
+     */
     @Nullable
     final Bitmap createPreview() {
-        if (mData == null) {
+        if (mPayload == null) {
             return null;
         }
 
         final BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inSampleSize = 2;
+        options.inJustDecodeBounds = true;
+        decodePayload(options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        final int sampleSize = PreviewSampling.getSampleSize(options.outWidth,
+                options.outHeight, mPreviewTargetSize);
+
+        // Changed data has a new fingerprint, so a cached preview is never outdated
+        final String cacheKey = mPayload.getFingerprint().toString();
+        final BitmapPreviewCache cache = BitmapPreviewCache.getInstance();
+        final Bitmap cachedPreview = cache.get(cacheKey, sampleSize);
+        if (cachedPreview != null) {
+            return cachedPreview;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        final Bitmap preview = decodePayload(options);
+        if (preview != null) {
+            cache.put(cacheKey, preview, sampleSize);
+        }
+        return preview;
+    }
 
-        return BitmapFactory.decodeByteArray(mData, 0, mData.length, options);
+    @Nullable
+    private Bitmap decodePayload(@NonNull final BitmapFactory.Options options) {
+        final File file = mPayload.getFile();
+        if (file != null) {
+            // Decodes straight from the file without copying the jpeg to the heap
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+        final byte[] data = mPayload.toByteArray();
+        return data != null ? BitmapFactory.decodeByteArray(data, 0, data.length, options) : null;
     }
 
     @Override
@@ -72,6 +127,12 @@ class ImmutablePhoto implements Photo {
         return mImageFormat;
     }
 
+    @Override
+    @Nullable
+    public Quad getDocumentQuad() {
+        return mDocumentQuad;
+    }
+
     @Override
     public PhotoEdit edit() {
         return new NoOpPhotoEdit(this);
@@ -100,7 +161,37 @@ class ImmutablePhoto implements Photo {
     @Override
     @Nullable
     public synchronized byte[] getData() {
-        return mData;
+        if (mPayload == null) {
+            return null;
+        }
+        byte[] data = mDataReference != null ? mDataReference.get() : null;
+        if (data == null) {
+            data = mPayload.toByteArray();
+            mDataReference = new SoftReference<>(data);
+        }
+        return data;
+    }
+
+    @Override
+    @Nullable
+    public synchronized DocumentPayload getPayload() {
+        mPayloadShared = true;
+        return mPayload;
+    }
+
+    /**
+     * Replaces the payload with the new data. The previous payload is not modified, as documents
+     * created from this photo may still use it. It is deleted, if it was never shared.
+     */
+    synchronized void setPayloadData(@NonNull final byte[] data) {
+        final DocumentPayload previousPayload = mPayload;
+        mPayload = DocumentPayload.fromBytes(data);
+        if (previousPayload != null && !mPayloadShared) {
+            previousPayload.delete();
+        }
+        mPayloadShared = false;
+        // The new data is still on the heap anyway
+        mDataReference = new SoftReference<>(data);
     }
 
     @Override
@@ -140,20 +231,13 @@ class ImmutablePhoto implements Photo {
 
     @Override
     public synchronized void saveToFile(final File file) {
-        FileOutputStream fileOutputStream = null;
+        if (mPayload == null) {
+            return;
+        }
         try {
-            fileOutputStream = new FileOutputStream(file);
-            fileOutputStream.write(mData, 0, mData.length);
+            mPayload.writeTo(file);
         } catch (final IOException e) {
             LOG.error("Failed to save jpeg to {}", file.getAbsolutePath(), e);
-        } finally {
-            if (fileOutputStream != null) {
-                try {
-                    fileOutputStream.close();
-                } catch (final IOException e) {
-                    LOG.error("Closing FileOutputStream failed for {}", file.getAbsolutePath(), e);
-                }
-            }
         }
     }
 
@@ -184,15 +268,20 @@ class ImmutablePhoto implements Photo {
     @Override
     public void writeToParcel(final Parcel dest, final int flags) {
         final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
-        ParcelableMemoryCache.Token token = cache.storeBitmap(mBitmapPreview);
+        final ParcelableMemoryCache.Token token = cache.storeBitmap(mBitmapPreview);
         dest.writeParcelable(token, flags);
 
-        token = cache.storeByteArray(mData);
-        dest.writeParcelable(token, flags);
+        synchronized (this) {
+            mPayloadShared = true;
+            dest.writeParcelable(mPayload, flags);
+        }
 
         dest.writeInt(mRotationForDisplay);
         dest.writeSerializable(mImageFormat);
         dest.writeInt(mIsImported ? 1 : 0);
+        dest.writeParcelable(mDocumentQuad, flags);
+        dest.writeInt(mPreviewTargetSize.width);
+        dest.writeInt(mPreviewTargetSize.height);
     }
 
     public static final Parcelable.Creator<ImmutablePhoto> CREATOR =
@@ -210,18 +299,24 @@ class ImmutablePhoto implements Photo {
 
     protected ImmutablePhoto(final Parcel in) {
         final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
-        ParcelableMemoryCache.Token token = in.readParcelable(
+        final ParcelableMemoryCache.Token token = in.readParcelable(
                 ParcelableMemoryCache.Token.class.getClassLoader());
         mBitmapPreview = cache.getBitmap(token);
         cache.removeBitmap(token);
 
-        token = in.readParcelable(ParcelableMemoryCache.Token.class.getClassLoader());
-        mData = cache.getByteArray(token);
-        cache.removeByteArray(token);
+        mPayload = in.readParcelable(DocumentPayload.class.getClassLoader());
+        // Saved state may hold further copies
+        mPayloadShared = true;
 
         mRotationForDisplay = in.readInt();
         mImageFormat = (ImageDocument.ImageFormat) in.readSerializable();
         mIsImported = in.readInt() == 1;
+        mDocumentQuad = in.readParcelable(Quad.class.getClassLoader());
+        mPreviewTargetSize = new Size(in.readInt(), in.readInt());
+        if (mBitmapPreview == null && mPayload != null) {
+            // The preview was evicted from the ParcelableMemoryCache
+            mBitmapPreview = createPreview();
+        }
     }
 
     @Override
@@ -239,14 +334,14 @@ class ImmutablePhoto implements Photo {
                 : photo.mBitmapPreview != null) {
             return false;
         }
-        return Arrays.equals(mData, photo.mData);
+        return mPayload != null ? mPayload.equals(photo.mPayload) : photo.mPayload == null;
 
     }
 
     @Override
     public int hashCode() {
         int result = mBitmapPreview != null ? mBitmapPreview.hashCode() : 0;
-        result = 31 * result + Arrays.hashCode(mData);
+        result = 31 * result + (mPayload != null ? mPayload.hashCode() : 0);
         return result;
     }
 }
@@ -0,0 +1,116 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Predicts the size of a JPEG for each quality from trial encodes of a downsampled proxy of
+ *     the image.
+ * </p>
+ * <p>
+ *     Sizes between the trial qualities are interpolated linearly and scaled up by the ratio of
+ *     the image's and the proxy's pixel count. As downsampled images contain more detail per pixel
+ *     the predictions tend to be too large. They can be corrected with the size of an actual
+ *     encode using {@link #calibrate(int, long)}.
+ * </p>
+ *
+ * @exclude
+ */
+final class JpegSizePredictor {
+
+    private final int[] mQualities;
+    private final long[] mProxySizes;
+    private double mScale;
+
+    /**
+     * @param qualities  trial qualities in ascending order
+     * @param proxySizes sizes of the proxy's trial encodes
+     * @param pixelRatio pixel count of the image divided by the pixel count of the proxy
+     */
+    JpegSizePredictor(@NonNull final int[] qualities, @NonNull final long[] proxySizes,
+            final double pixelRatio) {
+        if (qualities.length == 0 || qualities.length != proxySizes.length) {
+            throw new IllegalArgumentException(
+                    "Every trial quality needs a size: " + Arrays.toString(qualities) + ", "
+                            + Arrays.toString(proxySizes));
+        }
+        for (int i = 1; i < qualities.length; i++) {
+            if (qualities[i] <= qualities[i - 1]) {
+                throw new IllegalArgumentException(
+                        "Trial qualities must be ascending: " + Arrays.toString(qualities));
+            }
+        }
+        mQualities = qualities.clone();
+        mProxySizes = proxySizes.clone();
+        mScale = pixelRatio;
+    }
+
+    /**
+     * @return up to the given count of qualities evenly distributed between the minimum and
+     * maximum quality in ascending order
+     */
+    @NonNull
+    static int[] getTrialQualities(final int minQuality, final int maxQuality, final int count) {
+        if (maxQuality <= minQuality || count < 2) {
+            return new int[]{maxQuality};
+        }
+        final int trialCount = Math.min(count, maxQuality - minQuality + 1);
+        final int[] qualities = new int[trialCount];
+        for (int i = 0; i < trialCount; i++) {
+            qualities[i] = minQuality + (maxQuality - minQuality) * i / (trialCount - 1);
+        }
+        return qualities;
+    }
+
+    /**
+     * @return the predicted size in bytes, qualities outside the trials are clamped to the lowest
+     * or highest trial quality
+     */
+    long predict(final int quality) {
+        return (long) (interpolateProxySize(quality) * mScale);
+    }
+
+    private double interpolateProxySize(final int quality) {
+        if (quality <= mQualities[0]) {
+            return mProxySizes[0];
+        }
+        final int last = mQualities.length - 1;
+        if (quality >= mQualities[last]) {
+            return mProxySizes[last];
+        }
+        int upper = 1;
+        while (mQualities[upper] < quality) {
+            upper++;
+        }
+        final int lower = upper - 1;
+        final double fraction = (double) (quality - mQualities[lower])
+                / (mQualities[upper] - mQualities[lower]);
+        return mProxySizes[lower] + fraction * (mProxySizes[upper] - mProxySizes[lower]);
+    }
+
+    /**
+     * @return the highest quality between the lowest and the highest trial quality whose
+     * predicted size is at most the given size or the lowest trial quality, if none fits
+     */
+    int getHighestQualityFitting(final long maxBytes) {
+        for (int quality = mQualities[mQualities.length - 1]; quality > mQualities[0];
+                quality--) {
+            if (predict(quality) <= maxBytes) {
+                return quality;
+            }
+        }
+        return mQualities[0];
+    }
+
+    /**
+     * Scales all predictions so that the prediction for the quality equals the actual size.
+     */
+    void calibrate(final int quality, final long actualBytes) {
+        final double proxySize = interpolateProxySize(quality);
+        if (proxySize > 0 && actualBytes > 0) {
+            mScale = actualBytes / proxySize;
+        }
+    }
+}
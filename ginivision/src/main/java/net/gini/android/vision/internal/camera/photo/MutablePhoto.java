@@ -8,13 +8,11 @@ import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.documentdetection.Quad;
 
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.ImageWriteException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -32,14 +30,17 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
     private String mSource;
     private String mImportMethod;
     private ImageDocument mImageDocument;
+    // Keeps recording edits until they are applied, not parceled
+    private PhotoEdit mPhotoEdit;
 
     MutablePhoto(@NonNull final byte[] data, final int orientation,
             @NonNull final String deviceOrientation,
             @NonNull final String deviceType,
             @NonNull final String source,
             @NonNull final String importMethod,
-            @NonNull final ImageDocument.ImageFormat format, final boolean isImported) {
-        super(data, orientation, format, isImported);
+            @NonNull final ImageDocument.ImageFormat format, final boolean isImported,
+            @Nullable final Quad documentQuad) {
+        super(data, orientation, format, isImported, documentQuad);
         mContentId = generateUUID();
         mDeviceOrientation = deviceOrientation;
         mDeviceType = deviceType;
@@ -65,12 +66,12 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
             return;
         }
 
-        readRequiredTags();
-
         ExifReader exifReader = null;
         String userComment = "";
         try {
-            exifReader = ExifReader.forJpeg(data);
+            // Read all we need from the exif metadata in one pass
+            exifReader = ExifReader.forJpegOrEmpty(data);
+            mRequiredTags = exifReader.getRequiredTags();
             userComment = exifReader.getUserComment();
         } catch (final ExifReaderException e) {
             LOG.warn("Could not read exif User Comment", e);
@@ -143,7 +144,7 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
 
     private void initRotationForDisplay(@Nullable final ExifReader exifReader) {
         if (mImageDocument != null && mImageDocument.isImported()
-                && exifReader != null) {
+                && exifReader != null && exifReader.hasMetadata()) {
             mRotationForDisplay = exifReader.getOrientationAsDegrees();
         }
     }
@@ -172,7 +173,7 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
 
     @Override
     public void setData(final byte[] data) {
-        super.mData = data;
+        setPayloadData(data);
     }
 
     @VisibleForTesting
@@ -213,7 +214,7 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
         }
         try {
             mRequiredTags = Exif.readRequiredTags(data);
-        } catch (IOException | ImageReadException e) {
+        } catch (final ExifReaderException e) {
             LOG.error("Could not read exif tags", e);
         }
     }
@@ -228,7 +229,7 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
             boolean addMake = false;
             boolean addModel = false;
 
-            final Exif.Builder exifBuilder = Exif.builder(data);
+            final Exif.Builder exifBuilder = Exif.builder();
 
             if (mRequiredTags != null) {
                 exifBuilder.setRequiredTags(mRequiredTags);
@@ -254,14 +255,17 @@ class MutablePhoto extends ImmutablePhoto implements Parcelable {
 
             final byte[] jpeg = exifBuilder.build().writeToJpeg(data);
             setData(jpeg);
-        } catch (ImageReadException | ImageWriteException | IOException e) {
+        } catch (ExifReaderException | IllegalStateException e) {
             LOG.error("Could not add required exif tags", e);
         }
     }
 
     @Override
     public synchronized PhotoEdit edit() {
-        return new PhotoEdit(this);
+        if (mPhotoEdit == null) {
+            mPhotoEdit = new PhotoEdit(this);
+        }
+        return mPhotoEdit;
     }
 
 
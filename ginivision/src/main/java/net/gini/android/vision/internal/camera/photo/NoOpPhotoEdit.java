@@ -2,6 +2,8 @@ package net.gini.android.vision.internal.camera.photo;
 
 import android.support.annotation.NonNull;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+
 /**
  * @exclude
  */
@@ -23,4 +25,17 @@ class NoOpPhotoEdit extends PhotoEdit {
     public PhotoEdit compressBy(final int quality) {
         return this;
     }
+
+    @NonNull
+    @Override
+    public PhotoEdit compressBy(final int quality,
+            @NonNull final PictureResolutionPolicy resolutionPolicy) {
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public PhotoEdit compressToSize(final int maxBytes, final int maxQuality) {
+        return this;
+    }
 }
@@ -1,14 +1,26 @@
 package net.gini.android.vision.internal.camera.photo;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This singleton cache keeps references to byte arrays and Bitmaps to be preserved between
@@ -16,6 +28,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * This solution is needed because it is not possible to pass large byte arrays and Bitmaps via
  * Intents.
+ * <p>
+ * The memory held by the cache is limited. Byte arrays which are evicted or which weren't read
+ * for a while are written to app-private files, so that their tokens can be resolved even after
+ * the process was restarted. Evicted Bitmaps are dropped and have to be recreated by the reader.
  *
  * @exclude
  */
@@ -23,17 +39,26 @@ public enum ParcelableMemoryCache {
 
     INSTANCE;
 
+    private static final Logger LOG = LoggerFactory.getLogger(ParcelableMemoryCache.class);
+
+    private static final int MAX_MEMORY_FRACTION = 8;
+    // Parcels are normally read within a screen transition, older entries were probably leaked
+    private static final long MAX_ENTRY_AGE_MILLIS = 5 * 60 * 1000;
+    private static final long MAX_SPILL_FILE_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String SPILL_DIRECTORY_NAME = "gv_parcelable_cache";
+
     /**
      * Opaque tokenId type to identify a document.
      */
     public static final class Token implements Parcelable {
 
-        private static final AtomicInteger COUNTER = new AtomicInteger(0);
         public static final Creator<Token> CREATOR = new Creator<Token>() {
             @Override
             public Token createFromParcel(final Parcel source) {
-                final int token = source.readInt();
-                return new Token(token);
+                final String tokenId = source.readString();
+                final String spillDirectory = source.readString();
+                return new Token(tokenId,
+                        spillDirectory != null ? new File(spillDirectory) : null);
             }
 
             @Override
@@ -42,15 +67,18 @@ public enum ParcelableMemoryCache {
             }
         };
 
-        private final int tokenId;
+        // Unique across process restarts to not resolve a previous process' spilled entry
+        private final String tokenId;
+        private final File spillDirectory;
 
-        private Token(final int tokenId) {
+        private Token(@NonNull final String tokenId, @Nullable final File spillDirectory) {
             this.tokenId = tokenId;
+            this.spillDirectory = spillDirectory;
         }
 
         @NonNull
-        static Token next() {
-            return new Token(COUNTER.getAndIncrement());
+        static Token next(@Nullable final File spillDirectory) {
+            return new Token(UUID.randomUUID().toString(), spillDirectory);
         }
 
         @Override
@@ -60,7 +88,8 @@ public enum ParcelableMemoryCache {
 
         @Override
         public void writeToParcel(final Parcel dest, final int flags) {
-            dest.writeInt(tokenId);
+            dest.writeString(tokenId);
+            dest.writeString(spillDirectory != null ? spillDirectory.getPath() : null);
         }
 
         @Override
@@ -68,54 +97,143 @@ public enum ParcelableMemoryCache {
             if (this == other) {
                 return true;
             } else if (other instanceof Token) {
-                return tokenId == ((Token) other).tokenId;
+                return tokenId.equals(((Token) other).tokenId);
             }
             return false;
         }
 
         @Override
         public int hashCode() {
-            return tokenId;
+            return tokenId.hashCode();
         }
     }
 
-    private final Map<Token, byte[]> mByteArrayCache = new ConcurrentHashMap<>();
-    private final Map<Token, Bitmap> mBitmapCache = new ConcurrentHashMap<>();
+    private final SpillingMemoryCache mCache = new SpillingMemoryCache(
+            Runtime.getRuntime().maxMemory() / MAX_MEMORY_FRACTION, MAX_ENTRY_AGE_MILLIS,
+            new Executor() {
+                @Override
+                public void execute(@NonNull final Runnable command) {
+                    runOnIoPool(command);
+                }
+            });
 
+    /**
+     * Sets up the app-private directory for the evicted entries. Needs to be called before
+     * storing entries, otherwise they are kept in memory.
+     */
+    public void init(@NonNull final Context context) {
+        if (mCache.getSpillDirectory() != null) {
+            return;
+        }
+        final File spillDirectory = new File(context.getApplicationContext().getCacheDir(),
+                SPILL_DIRECTORY_NAME);
+        if (!spillDirectory.exists() && !spillDirectory.mkdirs()) {
+            LOG.error("Could not create the spill directory {}", spillDirectory);
+            return;
+        }
+        mCache.setSpillDirectory(spillDirectory);
+        // Entries of previous processes which were never read
+        runOnIoPool(new Runnable() {
+            @Override
+            public void run() {
+                mCache.deleteSpilledFilesOlderThan(MAX_SPILL_FILE_AGE_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * @param maxBytes bytes which may be held in memory before entries are evicted
+     */
+    public void setMaxBytes(final long maxBytes) {
+        mCache.setMaxBytes(maxBytes);
+    }
+
+    @Nullable
     public byte[] getByteArray(@NonNull final Token token) {
-        return mByteArrayCache.get(token);
+        return mCache.getByteArray(token.tokenId, token.spillDirectory);
     }
 
     public Token storeByteArray(@NonNull final byte[] documentJpeg) {
-        final Token token = Token.next();
-        mByteArrayCache.put(token, documentJpeg);
+        final Token token = Token.next(mCache.getSpillDirectory());
+        mCache.putByteArray(token.tokenId, documentJpeg);
         return token;
     }
 
     public void removeByteArray(@NonNull final Token token) {
-        mByteArrayCache.remove(token);
+        mCache.remove(token.tokenId, token.spillDirectory);
     }
 
+    /**
+     * @return the Bitmap or {@code null}, if it was evicted
+     */
     @Nullable
     public Bitmap getBitmap(@NonNull final Token token) {
-        return mBitmapCache.get(token);
+        return mCache.getBitmap(token.tokenId);
     }
 
     @NonNull
     public Token storeBitmap(@Nullable final Bitmap documentBitmap) {
-        final Token token = Token.next();
+        final Token token = Token.next(null);
         if (documentBitmap != null) {
-            mBitmapCache.put(token, documentBitmap);
+            mCache.putBitmap(token.tokenId, documentBitmap);
         }
         return token;
     }
 
     public void removeBitmap(@NonNull final Token token) {
-        mBitmapCache.remove(token);
+        mCache.remove(token.tokenId, null);
+    }
+
+    /**
+     * @return number of stored entries which weren't removed yet, including the spilled ones
+     */
+    public int getLiveTokenCount() {
+        return mCache.getLiveCount();
+    }
+
+    /**
+     * @return bytes of the entries held in memory
+     */
+    public long getBytesHeld() {
+        return mCache.getBytesHeld();
+    }
+
+    /**
+     * @return number of entries which weren't read for so long that they were probably leaked
+     */
+    public int getLeakedCount() {
+        return mCache.getStaleCount();
+    }
+
+    /**
+     * @return number of entries evicted to stay within the maximum bytes
+     */
+    public int getEvictedCount() {
+        return mCache.getEvictedCount();
     }
 
     @NonNull
     public static ParcelableMemoryCache getInstance() {
         return INSTANCE;
     }
+
+    private static void runOnIoPool(@NonNull final Runnable runnable) {
+        TaskScheduler.getInstance().submit(TaskType.WRITE_CACHE_FILE, Priority.LOW,
+                new CancellationToken(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runnable.run();
+                        return null;
+                    }
+                }, new AsyncCallback<Void>() {
+                    @Override
+                    public void onSuccess(final Void result) {
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        LOG.error("Parcelable cache file operation failed", exception);
+                    }
+                });
+    }
 }
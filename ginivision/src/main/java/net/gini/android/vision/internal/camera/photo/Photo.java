@@ -2,8 +2,11 @@ package net.gini.android.vision.internal.camera.photo;
 
 import android.graphics.Bitmap;
 import android.os.Parcelable;
+import android.support.annotation.Nullable;
 
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.documentdetection.Quad;
 
 import java.io.File;
 
@@ -18,6 +21,12 @@ public interface Photo extends Parcelable {
 
     void setData(byte[] data);
 
+    /**
+     * @return the photo's jpeg without copying it to the heap
+     */
+    @Nullable
+    DocumentPayload getPayload();
+
     int getRotationForDisplay();
 
     void setRotationForDisplay(int rotationDegrees);
@@ -34,6 +43,13 @@ public interface Photo extends Parcelable {
 
     ImageDocument.ImageFormat getImageFormat();
 
+    /**
+     * @return the corners of the document detected in the camera preview when the picture was
+     * taken, normalized to the unrotated image or {@code null}, if no document was detected
+     */
+    @Nullable
+    Quad getDocumentQuad();
+
     PhotoEdit edit();
 
     void updateBitmapPreview();
@@ -2,21 +2,81 @@ package net.gini.android.vision.internal.camera.photo;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
+ * <p>
+ *     Recompresses the photo's JPEG either with a fixed quality or with the highest quality
+ *     whose JPEG fits into a maximum size.
+ * </p>
+ * <p>
+ *     To avoid running out of memory with large photos the JPEG is decoded as described by a
+ *     {@link CompressionPlan}: downsampled as far as the {@link PictureResolutionPolicy} allows
+ *     and, if the decoded pixels don't fit into the memory left by other recompressions in the
+ *     {@link CompressionMemoryBudget}, decoded with RGB_565 or in horizontal strips.
+ * </p>
+ * <p>
+ *     For a maximum size the quality is chosen with a {@link JpegSizePredictor} using trial
+ *     encodes of a small proxy of the photo. The photo is then encoded once and only encoded
+ *     again with a lower quality, if the prediction was too optimistic.
+ * </p>
+ *
  * @exclude
  */
 class PhotoCompressionModifier implements PhotoModifier {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PhotoCompressionModifier.class);
+
+    static final int NO_MAX_BYTES = 0;
+    private static final int MIN_QUALITY = 10;
+    private static final int TRIAL_COUNT = 6;
+    private static final int MAX_PROXY_SIDE = 1024;
+    private static final int MAX_RETRIES = 2;
+    private static final int RETRY_QUALITY_STEP = 5;
+    // The EXIF segment is added after compressing
+    private static final int EXIF_RESERVED_BYTES = 4 * 1024;
+
     private final Photo mPhoto;
     private final int mQuality;
+    private final int mMaxBytes;
+    private final PictureResolutionPolicy mResolutionPolicy;
 
     PhotoCompressionModifier(final int quality, @NonNull final Photo photo) {
+        this(quality, PictureResolutionPolicy.largest(), photo);
+    }
+
+    PhotoCompressionModifier(final int quality,
+            @NonNull final PictureResolutionPolicy resolutionPolicy, @NonNull final Photo photo) {
+        this(quality, NO_MAX_BYTES, resolutionPolicy, photo);
+    }
+
+    /**
+     * @param quality          the quality or the highest quality, if a maximum size is given
+     * @param maxBytes         maximum size of the JPEG or {@link #NO_MAX_BYTES}
+     * @param resolutionPolicy the photo may be downsampled as far as the policy allows
+     * @param photo            the photo to compress
+     */
+    PhotoCompressionModifier(final int quality, final int maxBytes,
+            @NonNull final PictureResolutionPolicy resolutionPolicy, @NonNull final Photo photo) {
         mQuality = quality;
+        mMaxBytes = maxBytes;
+        mResolutionPolicy = resolutionPolicy;
         mPhoto = photo;
     }
 
@@ -25,26 +85,252 @@ class PhotoCompressionModifier implements PhotoModifier {
         return mQuality;
     }
 
+    @VisibleForTesting
+    int getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    @VisibleForTesting
+    PictureResolutionPolicy getResolutionPolicy() {
+        return mResolutionPolicy;
+    }
+
     @Override
     public void modify() {
         if (mPhoto.getData() == null) {
             return;
         }
         synchronized (mPhoto) {
-            final Bitmap originalImage = BitmapFactory.decodeByteArray(mPhoto.getData(), 0,
-                    mPhoto.getData().length);
-            if (originalImage == null) {
+            final byte[] data = mPhoto.getData();
+            final BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+            boundsOptions.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, boundsOptions);
+            if (boundsOptions.outWidth <= 0 || boundsOptions.outHeight <= 0) {
                 return;
             }
 
-            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            originalImage.compress(Bitmap.CompressFormat.JPEG, mQuality, byteArrayOutputStream);
+            final CompressionMemoryBudget budget = CompressionMemoryBudget.getHeapBudget();
+            final CompressionPlan plan = budget.reservePlan(boundsOptions.outWidth,
+                    boundsOptions.outHeight, data.length, mResolutionPolicy);
+            LOG.info("Compressing {}x{} photo with quality {} and max bytes {}: {}",
+                    boundsOptions.outWidth, boundsOptions.outHeight, mQuality, mMaxBytes, plan);
+            try {
+                compress(data, plan);
+            } finally {
+                budget.release(plan);
+            }
+        }
+    }
+
+    /**
+     * Called while the plan's peak bytes are reserved.
+     */
+    private void compress(@NonNull final byte[] data, @NonNull final CompressionPlan plan) {
+        final JpegSizePredictor predictor = mMaxBytes > NO_MAX_BYTES
+                ? createSizePredictor(data, plan) : null;
+        final int targetBytes = mMaxBytes - EXIF_RESERVED_BYTES;
+        int quality = predictor != null
+                ? predictor.getHighestQualityFitting(targetBytes) : mQuality;
 
-            final byte[] jpeg = byteArrayOutputStream.toByteArray();
-            mPhoto.setData(jpeg);
-            mPhoto.updateBitmapPreview();
+        final Encoder encoder = plan.getMode() == CompressionPlan.Mode.STRIPS
+                ? decodeInStrips(data, plan) : decodeFull(data, plan);
+        if (encoder == null) {
+            return;
+        }
+        byte[] jpeg;
+        try {
+            jpeg = encoder.encode(quality);
+            int retries = 0;
+            while (predictor != null && jpeg != null && jpeg.length > targetBytes
+                    && quality > MIN_QUALITY && retries < MAX_RETRIES) {
+                predictor.calibrate(quality, jpeg.length);
+                final int lowerQuality = Math.min(quality - RETRY_QUALITY_STEP,
+                        predictor.getHighestQualityFitting(targetBytes));
+                LOG.debug("JPEG with quality {} has {} bytes, retrying with quality {}",
+                        quality, jpeg.length, lowerQuality);
+                quality = Math.max(MIN_QUALITY, lowerQuality);
+                jpeg = encoder.encode(quality);
+                retries++;
+            }
+        } finally {
+            encoder.release();
+        }
+        if (jpeg == null) {
+            return;
+        }
+        LOG.info("Compressed photo from {} to {} bytes with quality {} and an estimated "
+                + "peak memory of {} bytes", data.length, jpeg.length, quality,
+                plan.getPeakBytes());
+
+        mPhoto.setData(jpeg);
+        mPhoto.updateBitmapPreview();
+    }
+
+    /**
+     * @return the predictor or {@code null}, if the trial encodes failed
+     */
+    @Nullable
+    private JpegSizePredictor createSizePredictor(@NonNull final byte[] data,
+            @NonNull final CompressionPlan plan) {
+        int proxySampleSize = plan.getSampleSize();
+        while (Math.max(plan.getWidth(), plan.getHeight()) * plan.getSampleSize()
+                / proxySampleSize > MAX_PROXY_SIDE) {
+            proxySampleSize *= 2;
+        }
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = proxySampleSize;
+        final Bitmap proxy = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (proxy == null) {
+            return null;
+        }
+        final int[] qualities = JpegSizePredictor.getTrialQualities(MIN_QUALITY, mQuality,
+                TRIAL_COUNT);
+        try {
+            // The proxy is small and compressing already runs on the image pool, so the trials
+            // are encoded one after the other
+            final long[] proxySizes = new long[qualities.length];
+            for (int i = 0; i < qualities.length; i++) {
+                final ByteCountingOutputStream outputStream = new ByteCountingOutputStream();
+                if (!proxy.compress(Bitmap.CompressFormat.JPEG, qualities[i], outputStream)) {
+                    LOG.error("Trial encode with quality {} failed", qualities[i]);
+                    return null;
+                }
+                proxySizes[i] = outputStream.getCount();
+            }
+            final double pixelRatio = (double) plan.getWidth() * plan.getHeight()
+                    / ((double) proxy.getWidth() * proxy.getHeight());
+            return new JpegSizePredictor(qualities, proxySizes, pixelRatio);
+        } finally {
+            proxy.recycle();
+        }
+    }
+
+    @Nullable
+    private Encoder decodeFull(@NonNull final byte[] data, @NonNull final CompressionPlan plan) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = plan.getSampleSize();
+        if (plan.getMode() == CompressionPlan.Mode.FULL_RGB_565) {
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        final Bitmap originalImage = BitmapFactory.decodeByteArray(data, 0, data.length,
+                options);
+        if (originalImage == null) {
+            return null;
+        }
+        return new Encoder() {
+            @Nullable
+            @Override
+            public byte[] encode(final int quality) {
+                final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                originalImage.compress(Bitmap.CompressFormat.JPEG, quality,
+                        byteArrayOutputStream);
+                return byteArrayOutputStream.toByteArray();
+            }
+
+            @Override
+            public void release() {
+                originalImage.recycle();
+            }
+        };
+    }
+
+    @Nullable
+    private Encoder decodeInStrips(@NonNull final byte[] data,
+            @NonNull final CompressionPlan plan) {
+        final BitmapRegionDecoder decoder;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(data, 0, data.length, false);
+        } catch (final IOException e) {
+            LOG.error("Could not create region decoder", e);
+            return null;
+        }
+        final int width = plan.getWidth();
+        final int height = plan.getHeight();
+        final ArgbToNv21Converter converter = new ArgbToNv21Converter(width, height);
+        try {
+            final int stripHeight = plan.getStripHeight();
+            final int sampleSize = plan.getSampleSize();
+            final int[] pixels = new int[width * stripHeight];
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            final Rect region = new Rect();
+            Bitmap strip = null;
+            for (int row = 0; row < height; row += stripHeight) {
+                final int rows = Math.min(stripHeight, height - row);
+                region.set(0, row * sampleSize, decoder.getWidth(),
+                        Math.min((row + rows) * sampleSize, decoder.getHeight()));
+                // The region decoder draws into the reused strip and leaves its size unchanged
+                if (strip != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    options.inBitmap = strip;
+                } else if (strip != null) {
+                    strip.recycle();
+                }
+                strip = decoder.decodeRegion(region, options);
+                if (strip == null) {
+                    if (options.inBitmap != null) {
+                        options.inBitmap.recycle();
+                    }
+                    return null;
+                }
+                final int decodedRows = Math.min(rows, strip.getHeight());
+                strip.getPixels(pixels, 0, width, 0, 0, Math.min(width, strip.getWidth()),
+                        decodedRows);
+                converter.writeStrip(pixels, row, rows);
+            }
+            if (strip != null) {
+                strip.recycle();
+            }
+        } finally {
+            decoder.recycle();
+        }
+
+        final YuvImage yuvImage = new YuvImage(converter.getNv21(), ImageFormat.NV21, width,
+                height, null);
+        return new Encoder() {
+            @Nullable
+            @Override
+            public byte[] encode(final int quality) {
+                final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                if (!yuvImage.compressToJpeg(new Rect(0, 0, width, height), quality,
+                        byteArrayOutputStream)) {
+                    return null;
+                }
+                return byteArrayOutputStream.toByteArray();
+            }
+
+            @Override
+            public void release() {
+            }
+        };
+    }
+
+    /**
+     * Encodes the decoded photo, possibly several times.
+     */
+    private interface Encoder {
+
+        @Nullable
+        byte[] encode(int quality);
+
+        void release();
+    }
+
+    private static class ByteCountingOutputStream extends OutputStream {
+
+        private long mCount;
+
+        @Override
+        public void write(final int oneByte) {
+            mCount++;
+        }
+
+        @Override
+        public void write(@NonNull final byte[] buffer, final int offset, final int count) {
+            mCount += count;
+        }
 
-            mPhoto.updateExif();
+        long getCount() {
+            return mCount;
         }
     }
 }
@@ -1,18 +1,44 @@
 package net.gini.android.vision.internal.camera.photo;
 
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
+ * <p>
+ *     Journal of the edits of a photo.
+ * </p>
+ * <p>
+ *     Edits are only recorded until they are applied. Recording an edit replaces a previously
+ *     recorded edit of the same kind, so successive rotations are collapsed into one. When applied
+ *     all edits are materialized in a single pass and the JPEG's EXIF metadata is rewritten only
+ *     once at the end.
+ * </p>
+ *
  * @exclude
  */
 public class PhotoEdit {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PhotoEdit.class);
+
+    private static final int MAX_QUALITY = 95;
+    private static final int MAX_QUALITY_FOR_UPLOAD = 50;
+    private static final int MAX_BYTES_FOR_UPLOAD = 2 * 1024 * 1024;
+
     private final Photo mPhoto;
     @VisibleForTesting
     List<PhotoModifier> mPhotoModifiers;
@@ -34,6 +60,7 @@ public class PhotoEdit {
 
     @NonNull
     public PhotoEdit rotateTo(final int degrees) {
+        removeModifier(PhotoRotationModifier.class);
         final PhotoRotationModifier rotationModifier = new PhotoRotationModifier(degrees, mPhoto);
         getPhotoModifiers().add(rotationModifier);
         return this;
@@ -41,86 +68,132 @@ public class PhotoEdit {
 
     @NonNull
     public PhotoEdit compressBy(final int quality) {
-        removeCompressionModifier();
+        return compressBy(quality, PictureResolutionPolicy.largest());
+    }
+
+    /**
+     * @param quality          JPEG quality
+     * @param resolutionPolicy the photo may be downsampled as far as the policy allows
+     */
+    @NonNull
+    public PhotoEdit compressBy(final int quality,
+            @NonNull final PictureResolutionPolicy resolutionPolicy) {
+        removeModifier(PhotoCompressionModifier.class);
         final PhotoCompressionModifier compressionModifier = new PhotoCompressionModifier(quality,
-                mPhoto);
+                resolutionPolicy, mPhoto);
+        getPhotoModifiers().add(compressionModifier);
+        return this;
+    }
+
+    /**
+     * Compresses with the highest quality for which the JPEG is at most the given size.
+     *
+     * @param maxBytes maximum size of the JPEG including the EXIF metadata
+     */
+    @NonNull
+    public PhotoEdit compressToSize(final int maxBytes) {
+        return compressToSize(maxBytes, MAX_QUALITY);
+    }
+
+    /**
+     * Compresses with the highest quality up to the maximum quality for which the JPEG is at
+     * most the given size.
+     *
+     * @param maxBytes   maximum size of the JPEG including the EXIF metadata
+     * @param maxQuality highest JPEG quality to use
+     */
+    @NonNull
+    public PhotoEdit compressToSize(final int maxBytes, final int maxQuality) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maxBytes);
+        }
+        removeModifier(PhotoCompressionModifier.class);
+        final PhotoCompressionModifier compressionModifier = new PhotoCompressionModifier(
+                maxQuality, maxBytes, PictureResolutionPolicy.largest(), mPhoto);
         getPhotoModifiers().add(compressionModifier);
         return this;
     }
 
-    private void removeCompressionModifier() {
+    /**
+     * Compresses the JPEG to the size and quality used for uploading it to the Gini API.
+     */
+    @NonNull
+    public PhotoEdit compressForUpload() {
+        return compressToSize(MAX_BYTES_FOR_UPLOAD, MAX_QUALITY_FOR_UPLOAD);
+    }
+
+    private void removeModifier(@NonNull final Class<? extends PhotoModifier> modifierClass) {
         final List<PhotoModifier> photoModifiers = getPhotoModifiers();
         for (final PhotoModifier photoModifier : photoModifiers) {
-            if (photoModifier.getClass() == PhotoCompressionModifier.class) {
+            if (photoModifier.getClass() == modifierClass) {
                 photoModifiers.remove(photoModifier);
                 return;
             }
         }
     }
 
+    /**
+     * @return whether there are recorded edits which were not applied yet
+     */
+    public boolean hasPendingEdits() {
+        return mPhotoModifiers != null && !mPhotoModifiers.isEmpty();
+    }
+
     public void apply() {
-        applyChanges(mPhotoModifiers);
+        applyChanges(mPhoto, mPhotoModifiers);
         mPhotoModifiers = null; // NOPMD
     }
 
     public void applyAsync(@NonNull final PhotoEditCallback callback) {
-        final EditAsync async = new EditAsync(mPhoto, mPhotoModifiers);
-        mPhotoModifiers = null; // NOPMD
-        async.setCallback(callback);
-        async.execute((Void[]) null);
+        applyAsync(new CancellationToken(), callback);
     }
 
-    private static void applyChanges(@Nullable final List<PhotoModifier> modifiers) {
-        if (modifiers == null) {
-            return;
-        }
-        for (final PhotoModifier modifier : modifiers) {
-            modifier.modify();
-        }
+    /**
+     * The edits are applied even if the token is cancelled, as they are removed from the journal
+     * now. Only the callback won't be invoked after the token was cancelled.
+     */
+    public void applyAsync(@NonNull final CancellationToken cancellationToken,
+            @NonNull final PhotoEditCallback callback) {
+        final List<PhotoModifier> photoModifiers = mPhotoModifiers;
+        mPhotoModifiers = null; // NOPMD
+        TaskScheduler.getInstance().submit(TaskType.EDIT_PHOTO, Priority.NORMAL,
+                new CancellationToken(), new Callable<Photo>() {
+                    @Override
+                    public Photo call() throws Exception {
+                        applyChanges(mPhoto, photoModifiers);
+                        return mPhoto;
+                    }
+                },
+                new AsyncCallback<Photo>() {
+                    @Override
+                    public void onSuccess(final Photo result) {
+                        if (cancellationToken.isCancelled()) {
+                            return;
+                        }
+                        callback.onDone(result);
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        LOG.error("Failed to apply the edits", exception);
+                        if (cancellationToken.isCancelled()) {
+                            return;
+                        }
+                        callback.onFailed();
+                    }
+                });
     }
 
-    private static class EditAsync extends AsyncTask<Void, Void, Photo> {
-
-        private static final PhotoEditCallback NO_OP_CALLBACK = new PhotoEditCallback() {
-            @Override
-            public void onDone(@NonNull final Photo photo) {
-            }
-
-            @Override
-            public void onFailed() {
-            }
-        };
-
-        private final Photo mPhoto;
-        private final List<PhotoModifier> mPhotoModifiers;
-        private PhotoEditCallback mCallback = NO_OP_CALLBACK;
-
-        EditAsync(@NonNull final Photo photo, @Nullable final List<PhotoModifier> photoModifiers) {
-            mPhoto = photo;
-            mPhotoModifiers = photoModifiers;
-        }
-
-        public void setCallback(@Nullable final PhotoEditCallback callback) {
-            if (callback == null) {
-                mCallback = NO_OP_CALLBACK;
-            } else {
-                mCallback = callback;
-            }
-        }
-
-        @Override
-        protected Photo doInBackground(final Void... params) {
-            applyChanges(mPhotoModifiers);
-            return mPhoto;
+    private static void applyChanges(@NonNull final Photo photo,
+            @Nullable final List<PhotoModifier> modifiers) {
+        if (modifiers == null || modifiers.isEmpty()) {
+            return;
         }
-
-        @Override
-        protected void onPostExecute(final Photo result) {
-            if (result != null) {
-                mCallback.onDone(result);
-            } else {
-                mCallback.onFailed();
+        synchronized (photo) {
+            for (final PhotoModifier modifier : modifiers) {
+                modifier.modify();
             }
+            photo.updateExif();
         }
     }
 
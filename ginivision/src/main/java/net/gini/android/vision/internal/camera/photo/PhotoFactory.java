@@ -1,8 +1,11 @@
 package net.gini.android.vision.internal.camera.photo;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.internal.documentdetection.Quad;
+import net.gini.android.vision.internal.util.Size;
 
 /**
  * @exclude
@@ -14,15 +17,43 @@ public final class PhotoFactory {
             @NonNull final String deviceOrientation,
             @NonNull final String deviceType,
             @NonNull final String source) {
-        return new MutablePhoto(bytes, orientation, deviceOrientation, deviceType, source,
-                "", ImageDocument.ImageFormat.JPEG, false);
+        return newPhotoFromJpeg(bytes, orientation, deviceOrientation, deviceType, source, null);
+    }
+
+    /**
+     * @param documentQuad the document detected in the camera preview when the picture was
+     *                     taken, or {@code null}
+     */
+    public static Photo newPhotoFromJpeg(final byte[] bytes,
+            final int orientation,
+            @NonNull final String deviceOrientation,
+            @NonNull final String deviceType,
+            @NonNull final String source,
+            @Nullable final Quad documentQuad) {
+        final MutablePhoto photo = new MutablePhoto(bytes, orientation, deviceOrientation,
+                deviceType, source, "", ImageDocument.ImageFormat.JPEG, false, documentQuad);
+        photo.initBitmapPreview(PreviewSampling.DEFAULT_TARGET_SIZE);
+        return photo;
     }
 
     public static Photo newPhotoFromDocument(final ImageDocument document) {
+        return newPhotoFromDocument(document, PreviewSampling.DEFAULT_TARGET_SIZE);
+    }
+
+    /**
+     * @param previewTargetSize size of the view showing the photo's preview, used to decode
+     *                          the preview with a matching resolution
+     */
+    public static Photo newPhotoFromDocument(final ImageDocument document,
+            @NonNull final Size previewTargetSize) {
+        final ImmutablePhoto photo;
         if (document.getFormat() == ImageDocument.ImageFormat.JPEG) {
-            return new MutablePhoto(document);
+            photo = new MutablePhoto(document);
+        } else {
+            photo = new ImmutablePhoto(document);
         }
-        return new ImmutablePhoto(document);
+        photo.initBitmapPreview(previewTargetSize);
+        return photo;
     }
 
     private PhotoFactory() {
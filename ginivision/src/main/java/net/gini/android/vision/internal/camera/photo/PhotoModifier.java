@@ -1,6 +1,9 @@
 package net.gini.android.vision.internal.camera.photo;
 
 /**
+ * Changes a photo when its {@link PhotoEdit} is applied. The EXIF metadata is updated by the
+ * {@link PhotoEdit} after all modifiers ran.
+ *
  * @exclude
  */
 interface PhotoModifier {
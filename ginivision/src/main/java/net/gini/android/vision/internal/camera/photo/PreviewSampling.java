@@ -0,0 +1,55 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.support.annotation.NonNull;
+
+import net.gini.android.vision.internal.util.Size;
+
+/**
+ * Chooses the sample size for decoding a preview of a photo which is shown scaled to fit into a
+ * view.
+ *
+ * @exclude
+ */
+final class PreviewSampling {
+
+    /**
+     * Used when the size of the view showing the preview is not known.
+     */
+    static final Size DEFAULT_TARGET_SIZE = new Size(1920, 1080);
+
+    /**
+     * <p>
+     *     Returns the largest power of two sample size with which the preview still has at least
+     *     as many pixels as the image scaled to fit into the target size.
+     * </p>
+     * <p>
+     *     The image may be displayed rotated, so the longer sides of the image and target are
+     *     compared with each other and the shorter sides with each other.
+     * </p>
+     *
+     * @param targetSize size of the view showing the preview, if empty the {@link
+     *                   #DEFAULT_TARGET_SIZE} is used
+     * @return the sample size or 1, if the image is empty
+     */
+    static int getSampleSize(final int width, final int height, @NonNull final Size targetSize) {
+        final Size target = targetSize.width > 0 && targetSize.height > 0
+                ? targetSize : DEFAULT_TARGET_SIZE;
+        final int imageLong = Math.max(width, height);
+        final int imageShort = Math.min(width, height);
+        final int targetLong = Math.max(target.width, target.height);
+        final int targetShort = Math.min(target.width, target.height);
+        if (imageShort <= 0) {
+            return 1;
+        }
+        final double scale = Math.min((double) targetLong / imageLong,
+                (double) targetShort / imageShort);
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private PreviewSampling() {
+    }
+}
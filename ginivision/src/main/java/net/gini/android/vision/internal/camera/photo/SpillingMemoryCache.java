@@ -0,0 +1,349 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>
+ *     Byte accounted memory cache for the {@link ParcelableMemoryCache}.
+ * </p>
+ * <p>
+ *     When the held bytes exceed the maximum the least recently used entries are evicted. Entries
+ *     which weren't removed within the maximum age were most likely leaked by a parcel which was
+ *     never read and are evicted, too. Both are checked whenever entries are added or read.
+ *     Evicted byte arrays are written to a file in the spill directory so that they can still be
+ *     read. Evicted Bitmaps are dropped as they can be decoded again.
+ * </p>
+ *
+ * @exclude
+ */
+final class SpillingMemoryCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillingMemoryCache.class);
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final Executor mSpillExecutor;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> mSpilledKeys = new HashSet<>();
+    private long mMaxBytes;
+    private final long mMaxAgeMillis;
+    private File mSpillDirectory;
+    private long mBytesHeld;
+    private int mEvictedCount;
+    private int mStaleCount;
+    private int mDroppedBitmapCount;
+    private int mSpillFailedCount;
+
+    /**
+     * @param maxBytes      bytes which may be held in memory
+     * @param maxAgeMillis  entries held longer are evicted
+     * @param spillExecutor writes the evicted byte arrays to files
+     */
+    SpillingMemoryCache(final long maxBytes, final long maxAgeMillis,
+            @NonNull final Executor spillExecutor) {
+        mMaxBytes = maxBytes;
+        mMaxAgeMillis = maxAgeMillis;
+        mSpillExecutor = spillExecutor;
+    }
+
+    synchronized void setSpillDirectory(@Nullable final File spillDirectory) {
+        mSpillDirectory = spillDirectory;
+    }
+
+    @Nullable
+    synchronized File getSpillDirectory() {
+        return mSpillDirectory;
+    }
+
+    synchronized void setMaxBytes(final long maxBytes) {
+        mMaxBytes = maxBytes;
+        evict();
+    }
+
+    synchronized void putByteArray(@NonNull final String key, @NonNull final byte[] bytes) {
+        put(key, new Entry(bytes, null, bytes.length));
+    }
+
+    synchronized void putBitmap(@NonNull final String key, @NonNull final Bitmap bitmap) {
+        put(key, new Entry(null, bitmap, bitmap.getByteCount()));
+    }
+
+    private void put(@NonNull final String key, @NonNull final Entry entry) {
+        final Entry previous = mEntries.put(key, entry);
+        if (previous != null) {
+            mBytesHeld -= previous.byteCount;
+        }
+        mBytesHeld += entry.byteCount;
+        evict();
+    }
+
+    /**
+     * @param spillDirectory directory where the entry was spilled to, if it's not in memory
+     */
+    @Nullable
+    byte[] getByteArray(@NonNull final String key, @Nullable final File spillDirectory) {
+        synchronized (this) {
+            final Entry entry = mEntries.get(key);
+            // The entry was read, only other entries could have been leaked
+            evict();
+            if (entry != null) {
+                return entry.bytes;
+            }
+        }
+        if (spillDirectory == null) {
+            return null;
+        }
+        final File file = new File(spillDirectory, key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return readFile(file);
+        } catch (final IOException e) {
+            LOG.error("Could not read spilled entry {}", key, e);
+            return null;
+        }
+    }
+
+    @Nullable
+    synchronized Bitmap getBitmap(@NonNull final String key) {
+        final Entry entry = mEntries.get(key);
+        evict();
+        return entry != null ? entry.bitmap : null;
+    }
+
+    /**
+     * @param spillDirectory directory where the entry was spilled to, if it's not in memory
+     */
+    void remove(@NonNull final String key, @Nullable final File spillDirectory) {
+        synchronized (this) {
+            final Entry entry = mEntries.remove(key);
+            if (entry != null) {
+                mBytesHeld -= entry.byteCount;
+            }
+            mSpilledKeys.remove(key);
+        }
+        if (spillDirectory != null) {
+            final File file = new File(spillDirectory, key);
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Could not delete spilled entry {}", key);
+            }
+        }
+    }
+
+    /**
+     * @return entries in memory and spilled entries which weren't removed yet
+     */
+    synchronized int getLiveCount() {
+        return mEntries.size() + mSpilledKeys.size();
+    }
+
+    synchronized long getBytesHeld() {
+        return mBytesHeld;
+    }
+
+    /**
+     * @return number of entries evicted because the maximum bytes were exceeded
+     */
+    synchronized int getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    /**
+     * @return number of entries evicted because they weren't removed within the maximum age
+     */
+    synchronized int getStaleCount() {
+        return mStaleCount;
+    }
+
+    /**
+     * @return number of evicted Bitmaps, which are not spilled
+     */
+    synchronized int getDroppedBitmapCount() {
+        return mDroppedBitmapCount;
+    }
+
+    /**
+     * @return number of evicted byte arrays which couldn't be spilled and were kept in memory
+     */
+    synchronized int getSpillFailedCount() {
+        return mSpillFailedCount;
+    }
+
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        final List<String> staleKeys = new ArrayList<>();
+        final List<String> evictedKeys = new ArrayList<>();
+        long bytesAfterEviction = mBytesHeld;
+        // Iterates from the least recently used entry
+        for (final Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            if (entry.spilling) {
+                // Will be removed from memory when written
+                bytesAfterEviction -= entry.byteCount;
+                continue;
+            }
+            if (entry.kept) {
+                continue;
+            }
+            if (now - entry.createdAtMillis > mMaxAgeMillis) {
+                staleKeys.add(mapEntry.getKey());
+                bytesAfterEviction -= entry.byteCount;
+            } else if (bytesAfterEviction > mMaxBytes) {
+                evictedKeys.add(mapEntry.getKey());
+                bytesAfterEviction -= entry.byteCount;
+            }
+        }
+        for (final String key : staleKeys) {
+            LOG.warn("Entry {} was not read within {} ms, it was probably leaked", key,
+                    mMaxAgeMillis);
+            mStaleCount++;
+            evict(key);
+        }
+        for (final String key : evictedKeys) {
+            mEvictedCount++;
+            evict(key);
+        }
+    }
+
+    private void evict(@NonNull final String key) {
+        final Entry entry = mEntries.get(key);
+        if (entry.bitmap != null) {
+            mEntries.remove(key);
+            mBytesHeld -= entry.byteCount;
+            mDroppedBitmapCount++;
+            return;
+        }
+        final File spillDirectory = mSpillDirectory;
+        if (spillDirectory == null) {
+            LOG.warn("No spill directory, keeping entry {} in memory", key);
+            entry.kept = true;
+            mSpillFailedCount++;
+            return;
+        }
+        entry.spilling = true;
+        mSpillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                spill(key, entry, spillDirectory);
+            }
+        });
+    }
+
+    private void spill(@NonNull final String key, @NonNull final Entry entry,
+            @NonNull final File spillDirectory) {
+        final File file = new File(spillDirectory, key);
+        boolean written = false;
+        try {
+            writeFile(file, entry.bytes);
+            written = true;
+        } catch (final IOException e) {
+            LOG.error("Could not spill entry {}", key, e);
+        }
+        synchronized (this) {
+            if (mEntries.get(key) != entry) {
+                // Removed while spilling
+                if (written && !file.delete()) {
+                    LOG.warn("Could not delete spilled entry {}", key);
+                }
+                return;
+            }
+            entry.spilling = false;
+            if (!written) {
+                entry.kept = true;
+                mSpillFailedCount++;
+                return;
+            }
+            mEntries.remove(key);
+            mBytesHeld -= entry.byteCount;
+            mSpilledKeys.add(key);
+            LOG.debug("Spilled entry {} with {} bytes", key, entry.byteCount);
+        }
+    }
+
+    /**
+     * Deletes the spilled files which were not modified within the maximum age.
+     */
+    void deleteSpilledFilesOlderThan(final long maxAgeMillis) {
+        final File spillDirectory = getSpillDirectory();
+        final File[] files = spillDirectory != null ? spillDirectory.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (final File file : files) {
+            if (now - file.lastModified() > maxAgeMillis && !file.delete()) {
+                LOG.warn("Could not delete spilled file {}", file);
+            }
+        }
+    }
+
+    private static void writeFile(@NonNull final File file, @NonNull final byte[] bytes)
+            throws IOException {
+        final File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+        final OutputStream outputStream = new FileOutputStream(tempFile);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+    }
+
+    @NonNull
+    private static byte[] readFile(@NonNull final File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int read = inputStream.read(bytes, offset, bytes.length - offset);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            inputStream.close();
+        }
+        return bytes;
+    }
+
+    private static final class Entry {
+
+        final byte[] bytes;
+        final Bitmap bitmap;
+        final long byteCount;
+        final long createdAtMillis = System.currentTimeMillis();
+        boolean spilling;
+        // Eviction failed, the entry stays in memory until it's removed
+        boolean kept;
+
+        Entry(@Nullable final byte[] bytes, @Nullable final Bitmap bitmap, final long byteCount) {
+            this.bytes = bytes;
+            this.bitmap = bitmap;
+            this.byteCount = byteCount;
+        }
+    }
+}
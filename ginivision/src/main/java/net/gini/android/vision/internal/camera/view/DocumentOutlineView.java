@@ -0,0 +1,70 @@
+package net.gini.android.vision.internal.camera.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.view.View;
+
+import net.gini.android.vision.R;
+import net.gini.android.vision.internal.documentdetection.Quad;
+
+/**
+ * Draws the outline of the document detected in the camera preview. Has to be laid out exactly
+ * over the camera preview.
+ *
+ * @exclude
+ */
+public class DocumentOutlineView extends View {
+
+    private final Paint mPaint;
+    private final Path mPath = new Path();
+    private Quad mQuad;
+
+    public DocumentOutlineView(final Context context) {
+        this(context, null);
+    }
+
+    public DocumentOutlineView(final Context context, @Nullable final AttributeSet attrs) {
+        super(context, attrs);
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setColor(ContextCompat.getColor(context, R.color.gv_camera_document_outline));
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeJoin(Paint.Join.ROUND);
+        mPaint.setStrokeWidth(
+                getResources().getDimension(R.dimen.gv_camera_document_outline_width));
+    }
+
+    /**
+     * @param quad the document's corners in the displayed preview's orientation or {@code null}
+     *             to hide the outline
+     */
+    public void setQuad(@Nullable final Quad quad) {
+        if (quad == null ? mQuad == null : quad.equals(mQuad)) {
+            return;
+        }
+        mQuad = quad;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        super.onDraw(canvas);
+        if (mQuad == null) {
+            return;
+        }
+        final int width = getWidth();
+        final int height = getHeight();
+        mPath.reset();
+        mPath.moveTo(mQuad.getX(Quad.TOP_LEFT) * width, mQuad.getY(Quad.TOP_LEFT) * height);
+        mPath.lineTo(mQuad.getX(Quad.TOP_RIGHT) * width, mQuad.getY(Quad.TOP_RIGHT) * height);
+        mPath.lineTo(mQuad.getX(Quad.BOTTOM_RIGHT) * width,
+                mQuad.getY(Quad.BOTTOM_RIGHT) * height);
+        mPath.lineTo(mQuad.getX(Quad.BOTTOM_LEFT) * width, mQuad.getY(Quad.BOTTOM_LEFT) * height);
+        mPath.close();
+        canvas.drawPath(mPath, mPaint);
+    }
+}
@@ -0,0 +1,107 @@
+package net.gini.android.vision.internal.document;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>
+ *     128 bit hash of a document's content.
+ * </p>
+ * <p>
+ *     It is computed while the content is written, so that comparing, hashing and logging
+ *     documents and photos doesn't need to read their content again.
+ * </p>
+ *
+ * @exclude
+ */
+public final class ContentFingerprint {
+
+    private static final String ALGORITHM = "MD5";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long mHigh;
+    private final long mLow;
+
+    @NonNull
+    public static ContentFingerprint of(@NonNull final byte[] bytes) {
+        final Hasher hasher = new Hasher();
+        hasher.update(bytes, 0, bytes.length);
+        return hasher.finish();
+    }
+
+    ContentFingerprint(final long high, final long low) {
+        mHigh = high;
+        mLow = low;
+    }
+
+    long getHigh() {
+        return mHigh;
+    }
+
+    long getLow() {
+        return mLow;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ContentFingerprint that = (ContentFingerprint) o;
+        return mHigh == that.mHigh && mLow == that.mLow;
+    }
+
+    @Override
+    public int hashCode() {
+        // The bits are already well distributed
+        return (int) mLow;
+    }
+
+    @Override
+    public String toString() {
+        final char[] chars = new char[32];
+        appendHex(chars, 0, mHigh);
+        appendHex(chars, 16, mLow);
+        return new String(chars);
+    }
+
+    private static void appendHex(@NonNull final char[] chars, final int offset,
+            final long value) {
+        for (int i = 0; i < 16; i++) {
+            chars[offset + i] = HEX_DIGITS[(int) (value >>> (60 - 4 * i)) & 0xf];
+        }
+    }
+
+    /**
+     * Computes the fingerprint incrementally from the chunks of the content.
+     */
+    static final class Hasher {
+
+        private final MessageDigest mDigest;
+
+        Hasher() {
+            try {
+                mDigest = MessageDigest.getInstance(ALGORITHM);
+            } catch (final NoSuchAlgorithmException e) {
+                // Every Java platform is required to support MD5
+                throw new IllegalStateException(ALGORITHM + " not available", e);
+            }
+        }
+
+        void update(@NonNull final byte[] bytes, final int offset, final int length) {
+            mDigest.update(bytes, offset, length);
+        }
+
+        @NonNull
+        ContentFingerprint finish() {
+            final ByteBuffer digest = ByteBuffer.wrap(mDigest.digest());
+            return new ContentFingerprint(digest.getLong(), digest.getLong());
+        }
+    }
+}
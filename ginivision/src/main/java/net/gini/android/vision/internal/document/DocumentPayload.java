@@ -0,0 +1,430 @@
+package net.gini.android.vision.internal.document;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.camera.photo.ParcelableMemoryCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ *     Immutable content of a document kept in an app-private cache file instead of the Java heap.
+ * </p>
+ * <p>
+ *     The file is read by streaming it or by memory-mapping it on demand. Only its path is
+ *     parceled, so the content survives process restarts without being copied. If no payload
+ *     directory was set up or the file could not be written, the content is kept in a byte array
+ *     and parceled using the {@link ParcelableMemoryCache}.
+ * </p>
+ * <p>
+ *     The {@link ContentFingerprint} is computed while the content is written and identifies the
+ *     payload in comparisons and logs.
+ * </p>
+ * <p>
+ *     Payload files are never modified. New content creates a new payload and the owner deletes
+ *     the superseded payload, if it wasn't shared. Payloads created or unparceled in this process
+ *     are live. When the directory is set up files of other payloads are deleted, if they weren't
+ *     written or parceled within a day.
+ * </p>
+ *
+ * @exclude
+ */
+public final class DocumentPayload implements Parcelable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentPayload.class);
+
+    private static final String PAYLOAD_DIRECTORY_NAME = "gv_document_payloads";
+    private static final long MAX_FILE_AGE_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static volatile File sPayloadDirectory;
+    // Names of the files of payloads created or unparceled in this process, never deleted by age
+    private static final Set<String> sLiveFileNames =
+            Collections.synchronizedSet(new HashSet<String>());
+
+    private final File mFile;
+    private final byte[] mBytes;
+    private final ContentFingerprint mFingerprint;
+
+    /**
+     * Sets up the app-private cache directory for the payload files. Payloads created before are
+     * kept in memory.
+     */
+    public static void init(@NonNull final Context context) {
+        if (sPayloadDirectory != null) {
+            return;
+        }
+        final File payloadDirectory = new File(context.getApplicationContext().getCacheDir(),
+                PAYLOAD_DIRECTORY_NAME);
+        if (!payloadDirectory.exists() && !payloadDirectory.mkdirs()) {
+            LOG.error("Could not create the payload directory {}", payloadDirectory);
+            return;
+        }
+        sPayloadDirectory = payloadDirectory;
+        TaskScheduler.getInstance().submit(TaskType.WRITE_CACHE_FILE, Priority.LOW,
+                new CancellationToken(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        deleteUnreferencedFilesOlderThan(payloadDirectory,
+                                MAX_FILE_AGE_MILLIS);
+                        return null;
+                    }
+                }, new AsyncCallback<Void>() {
+                    @Override
+                    public void onSuccess(final Void result) {
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        LOG.error("Could not delete old payload files", exception);
+                    }
+                });
+    }
+
+    @VisibleForTesting
+    static void setPayloadDirectory(@Nullable final File payloadDirectory) {
+        sPayloadDirectory = payloadDirectory;
+    }
+
+    @NonNull
+    public static DocumentPayload fromBytes(@NonNull final byte[] bytes) {
+        final ContentFingerprint fingerprint = ContentFingerprint.of(bytes);
+        final File file = newFile();
+        if (file != null) {
+            OutputStream outputStream = null;
+            try {
+                outputStream = new FileOutputStream(file);
+                outputStream.write(bytes);
+                outputStream.close();
+                return new DocumentPayload(file, null, fingerprint);
+            } catch (final IOException e) {
+                LOG.error("Could not write payload file, keeping it in memory", e);
+                closeQuietly(outputStream);
+                deleteFile(file);
+            }
+        }
+        return new DocumentPayload(null, bytes, fingerprint);
+    }
+
+    /**
+     * Copies the stream into a new payload without reading it into memory. Doesn't close the
+     * stream.
+     */
+    @NonNull
+    public static DocumentPayload fromStream(@NonNull final InputStream inputStream)
+            throws IOException {
+        final ContentFingerprint.Hasher hasher = new ContentFingerprint.Hasher();
+        final File file = newFile();
+        if (file == null) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            copy(inputStream, outputStream, hasher);
+            return new DocumentPayload(null, outputStream.toByteArray(), hasher.finish());
+        }
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            copy(inputStream, outputStream, hasher);
+        } catch (final IOException e) {
+            closeQuietly(outputStream);
+            deleteFile(file);
+            throw e;
+        }
+        outputStream.close();
+        return new DocumentPayload(file, null, hasher.finish());
+    }
+
+    @Nullable
+    private static File newFile() {
+        final File payloadDirectory = sPayloadDirectory;
+        if (payloadDirectory == null) {
+            return null;
+        }
+        return new File(payloadDirectory, UUID.randomUUID().toString());
+    }
+
+    private DocumentPayload(@Nullable final File file, @Nullable final byte[] bytes,
+            @NonNull final ContentFingerprint fingerprint) {
+        mFile = file;
+        mBytes = bytes;
+        mFingerprint = fingerprint;
+        if (file != null) {
+            sLiveFileNames.add(file.getName());
+        }
+    }
+
+    /**
+     * Deletes the payload's file. Only for payloads which were superseded and never shared, as
+     * other copies of the payload can't be read afterwards.
+     */
+    public void delete() {
+        if (mFile == null) {
+            return;
+        }
+        sLiveFileNames.remove(mFile.getName());
+        deleteFile(mFile);
+    }
+
+    @NonNull
+    public ContentFingerprint getFingerprint() {
+        return mFingerprint;
+    }
+
+    /**
+     * @return the payload's file or {@code null}, if it's kept in memory
+     */
+    @Nullable
+    public File getFile() {
+        return mFile;
+    }
+
+    public long getLength() {
+        return mFile != null ? mFile.length() : mBytes.length;
+    }
+
+    @NonNull
+    public InputStream openInputStream() throws IOException {
+        if (mFile != null) {
+            return new FileInputStream(mFile);
+        }
+        return new ByteArrayInputStream(mBytes);
+    }
+
+    /**
+     * @return a read-only buffer of the content, which is memory-mapped for file payloads
+     */
+    @NonNull
+    public ByteBuffer map() throws IOException {
+        if (mFile == null) {
+            return ByteBuffer.wrap(mBytes).asReadOnlyBuffer();
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel was closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Copies the content into a new byte array. Only for the APIs which need the whole content
+     * on the heap.
+     *
+     * @return the content or {@code null}, if the file could not be read
+     */
+    @Nullable
+    public byte[] toByteArray() {
+        if (mFile == null) {
+            return mBytes;
+        }
+        try {
+            final ByteBuffer buffer = map();
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        } catch (final IOException e) {
+            LOG.error("Could not read payload file {}", mFile, e);
+            return null;
+        }
+    }
+
+    public void writeTo(@NonNull final OutputStream outputStream) throws IOException {
+        final InputStream inputStream = openInputStream();
+        try {
+            copy(inputStream, outputStream, null);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public void writeTo(@NonNull final File file) throws IOException {
+        final OutputStream outputStream = new FileOutputStream(file);
+        try {
+            writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static void copy(@NonNull final InputStream inputStream,
+            @NonNull final OutputStream outputStream,
+            @Nullable final ContentFingerprint.Hasher hasher) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+            if (hasher != null) {
+                hasher.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files which are not used by live payloads and were not written or parceled
+     * within the maximum age. They belong to payloads of previous processes, whose parcels are
+     * most likely gone.
+     */
+    @VisibleForTesting
+    static void deleteUnreferencedFilesOlderThan(@NonNull final File directory,
+            final long maxAgeMillis) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (final File file : files) {
+            if (now - file.lastModified() > maxAgeMillis
+                    && !sLiveFileNames.contains(file.getName())) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Marks the file as recently parceled to keep it while saved state may still point to it.
+     */
+    private static void touch(@NonNull final File file) {
+        TaskScheduler.getInstance().submit(TaskType.WRITE_CACHE_FILE, Priority.LOW,
+                new CancellationToken(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        if (file.exists() && !file.setLastModified(System.currentTimeMillis())) {
+                            LOG.warn("Could not update the modification time of {}", file);
+                        }
+                        return null;
+                    }
+                }, new AsyncCallback<Void>() {
+                    @Override
+                    public void onSuccess(final Void result) {
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        LOG.error("Could not touch payload file {}", file, exception);
+                    }
+                });
+    }
+
+    private static void deleteFile(@NonNull final File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Could not delete payload file {}", file);
+        }
+    }
+
+    private static void closeQuietly(@Nullable final OutputStream outputStream) {
+        if (outputStream == null) {
+            return;
+        }
+        try {
+            outputStream.close();
+        } catch (final IOException ignored) { // NOPMD
+            // Already failed
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        dest.writeLong(mFingerprint.getHigh());
+        dest.writeLong(mFingerprint.getLow());
+        if (mFile != null) {
+            dest.writeString(mFile.getPath());
+            touch(mFile);
+        } else {
+            dest.writeString(null);
+            final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
+            dest.writeParcelable(cache.storeByteArray(mBytes), flags);
+        }
+    }
+
+    /**
+     * Creates {@code null}, if the content was kept in memory and was lost from the
+     * {@link ParcelableMemoryCache}.
+     */
+    public static final Creator<DocumentPayload> CREATOR = new Creator<DocumentPayload>() {
+        @Override
+        @Nullable
+        public DocumentPayload createFromParcel(final Parcel in) {
+            final ContentFingerprint fingerprint = new ContentFingerprint(in.readLong(),
+                    in.readLong());
+            final String path = in.readString();
+            if (path != null) {
+                return new DocumentPayload(new File(path), null, fingerprint);
+            }
+            final ParcelableMemoryCache cache = ParcelableMemoryCache.getInstance();
+            final ParcelableMemoryCache.Token token = in.readParcelable(
+                    ParcelableMemoryCache.Token.class.getClassLoader());
+            final byte[] bytes = cache.getByteArray(token);
+            cache.removeByteArray(token);
+            if (bytes == null) {
+                LOG.error("Payload {} was lost from the memory cache", fingerprint);
+                return null;
+            }
+            return new DocumentPayload(null, bytes, fingerprint);
+        }
+
+        @Override
+        public DocumentPayload[] newArray(final int size) {
+            return new DocumentPayload[size];
+        }
+    };
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final DocumentPayload that = (DocumentPayload) o;
+        // Payloads with the same content are equal regardless of where it's stored
+        return mFingerprint.equals(that.mFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return mFingerprint.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentPayload{"
+                + "fingerprint=" + mFingerprint
+                + ", length=" + getLength()
+                + (mFile != null ? ", file=" + mFile.getName() : "")
+                + '}';
+    }
+}
@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
 import net.gini.android.vision.internal.util.Size;
 
 /**
@@ -12,9 +13,22 @@ import net.gini.android.vision.internal.util.Size;
  */
 public interface DocumentRenderer {
 
-    void toBitmap(@NonNull final Size targetSize, @NonNull final Callback callback);
+    /**
+     * @param cancellationToken the callback won't be invoked after the token was cancelled
+     */
+    void toBitmap(@NonNull final Size targetSize,
+            @NonNull final CancellationToken cancellationToken, @NonNull final Callback callback);
 
-    void getPageCount(@NonNull final AsyncCallback<Integer> asyncCallback);
+    /**
+     * @param cancellationToken the callback won't be invoked after the token was cancelled
+     */
+    void getPageCount(@NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Integer> asyncCallback);
+
+    /**
+     * Releases the resources held for rendering. Call it when the document isn't shown anymore.
+     */
+    void close();
 
     /**
      * @exclude
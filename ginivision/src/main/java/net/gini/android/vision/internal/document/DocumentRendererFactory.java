@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 
 import net.gini.android.vision.Document;
 import net.gini.android.vision.document.ImageDocument;
+import net.gini.android.vision.document.MultiPageDocument;
 import net.gini.android.vision.document.PdfDocument;
 
 /**
@@ -20,6 +21,10 @@ public final class DocumentRendererFactory {
                 return new ImageDocumentRenderer((ImageDocument) document);
             case PDF:
                 return new PdfDocumentRenderer((PdfDocument) document, context);
+            case MULTI_PAGE:
+                // Shows the first page
+                return new ImageDocumentRenderer(
+                        ((MultiPageDocument) document).getDocuments().get(0));
             default:
                 throw new IllegalArgumentException("Unknown document type");
         }
@@ -4,10 +4,16 @@ import android.support.annotation.NonNull;
 
 import net.gini.android.vision.document.ImageDocument;
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
 import net.gini.android.vision.internal.camera.photo.Photo;
-import net.gini.android.vision.internal.camera.photo.PhotoFactoryDocumentAsyncTask;
+import net.gini.android.vision.internal.camera.photo.PhotoFactory;
 import net.gini.android.vision.internal.util.Size;
 
+import java.util.concurrent.Callable;
+
 /**
  * @exclude
  */
@@ -23,9 +29,16 @@ class ImageDocumentRenderer implements DocumentRenderer {
 
     @Override
     public void toBitmap(@NonNull final Size targetSize,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final Callback callback) {
         if (mPhoto == null) {
-            final PhotoFactoryDocumentAsyncTask asyncTask = new PhotoFactoryDocumentAsyncTask(
+            TaskScheduler.getInstance().submit(TaskType.CREATE_PHOTO, Priority.HIGH,
+                    cancellationToken, new Callable<Photo>() {
+                        @Override
+                        public Photo call() throws Exception {
+                            return PhotoFactory.newPhotoFromDocument(mImageDocument, targetSize);
+                        }
+                    },
                     new AsyncCallback<Photo>() {
                         @Override
                         public void onSuccess(final Photo result) {
@@ -39,14 +52,18 @@ class ImageDocumentRenderer implements DocumentRenderer {
                             callback.onBitmapReady(null, 0);
                         }
                     });
-            asyncTask.execute(mImageDocument);
         } else {
             callback.onBitmapReady(mPhoto.getBitmapPreview(), mPhoto.getRotationForDisplay());
         }
     }
 
     @Override
-    public void getPageCount(@NonNull final AsyncCallback<Integer> asyncCallback) {
+    public void getPageCount(@NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Integer> asyncCallback) {
         asyncCallback.onSuccess(1);
     }
+
+    @Override
+    public void close() {
+    }
 }
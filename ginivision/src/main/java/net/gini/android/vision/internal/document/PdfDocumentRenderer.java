@@ -6,6 +6,7 @@ import android.support.annotation.NonNull;
 
 import net.gini.android.vision.document.PdfDocument;
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
 import net.gini.android.vision.internal.pdf.Pdf;
 import net.gini.android.vision.internal.util.Size;
 
@@ -28,10 +29,11 @@ class PdfDocumentRenderer implements DocumentRenderer {
 
     @Override
     public void toBitmap(@NonNull final Size targetSize,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final Callback callback) {
         final Pdf pdf = getPdf();
         if (mBitmap == null) {
-            pdf.toBitmap(targetSize, mContext, new AsyncCallback<Bitmap>() {
+            pdf.toBitmap(targetSize, mContext, cancellationToken, new AsyncCallback<Bitmap>() {
                 @Override
                 public void onSuccess(final Bitmap result) {
                     mBitmap = result;
@@ -57,10 +59,11 @@ class PdfDocumentRenderer implements DocumentRenderer {
     }
 
     @Override
-    public void getPageCount(@NonNull final AsyncCallback<Integer> asyncCallback) {
+    public void getPageCount(@NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Integer> asyncCallback) {
         final Pdf pdf = getPdf();
         if (mPageCount == -1) {
-            pdf.getPageCount(mContext, new AsyncCallback<Integer>() {
+            pdf.getPageCount(mContext, cancellationToken, new AsyncCallback<Integer>() {
                 @Override
                 public void onSuccess(final Integer result) {
                     mPageCount = result;
@@ -76,4 +79,12 @@ class PdfDocumentRenderer implements DocumentRenderer {
             asyncCallback.onSuccess(mPageCount);
         }
     }
+
+    @Override
+    public void close() {
+        if (mPdf != null) {
+            mPdf.close();
+            mPdf = null; // NOPMD
+        }
+    }
 }
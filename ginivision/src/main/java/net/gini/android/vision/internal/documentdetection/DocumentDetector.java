@@ -0,0 +1,221 @@
+package net.gini.android.vision.internal.documentdetection;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.internal.camera.api.UIExecutor;
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Detects the outline of the document in the camera preview.
+ * </p>
+ * <p>
+ *     At most one frame is analysed every {@link #MIN_DETECTION_INTERVAL_MS}. The luma plane of the
+ *     frame is copied into a preallocated buffer on the calling thread and the detection happens
+ *     on a background thread. Frames arriving while a detection is running or before the interval
+ *     elapsed are skipped. The preview frame is not retained and can be recycled right after
+ *     {@link #detect(byte[], Size)} returns.
+ * </p>
+ * <p>
+ *     The listener is notified on the UI thread whenever the detected outline appears, changes or
+ *     disappears.
+ * </p>
+ *
+ * @exclude
+ */
+public class DocumentDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentDetector.class);
+
+    @VisibleForTesting
+    static final long MIN_DETECTION_INTERVAL_MS = 150;
+    /**
+     * Detected outlines older than this are not reported by {@link #getLatestQuad()}.
+     */
+    private static final long MAX_QUAD_AGE_MS = 1000;
+    private static final int DETECT_QUAD = 1;
+    private static final int LOG_THROUGHPUT_EVERY_FRAMES = 50;
+
+    /**
+     * Receives the detected outlines on the UI thread.
+     */
+    public interface Listener {
+
+        /**
+         * @param quad the document's corners in the preview frame or {@code null}, if no document
+         *             is visible anymore
+         */
+        void onQuadDetected(@Nullable Quad quad);
+    }
+
+    private final LumaBuffer mBuffer = new LumaBuffer();
+    private boolean mBufferBusy;
+    private long mLastDetectionStartMs;
+    private final QuadDetector mQuadDetector;
+    private final UIExecutor mUIExecutor;
+    private final HandlerThread mHandlerThread;
+    private final Handler mHandler;
+    private volatile Listener mListener;
+    private volatile Quad mLatestQuad;
+    private volatile long mLatestQuadTimeMs;
+    private long mDetectionTimeSumNanos;
+    private int mDetectedFrames;
+
+    @NonNull
+    public static DocumentDetector newInstance() {
+        return new DocumentDetector(new QuadDetector());
+    }
+
+    @VisibleForTesting
+    DocumentDetector(@NonNull final QuadDetector quadDetector) {
+        mQuadDetector = quadDetector;
+        mUIExecutor = new UIExecutor();
+        mHandlerThread = new HandlerThread("DocumentDetectionThread",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        mHandlerThread.start();
+        mHandler = new DetectionHandler(mHandlerThread.getLooper());
+    }
+
+    public void setListener(@Nullable final Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Hands a preview frame to the detector.
+     *
+     * @param image     an NV21 image
+     * @param imageSize size of the image
+     * @return {@code true}, if the frame was copied for detection, {@code false} if it was skipped
+     */
+    public boolean detect(@NonNull final byte[] image, @NonNull final Size imageSize) {
+        if (mListener == null) {
+            return false;
+        }
+        final int lumaSize = imageSize.width * imageSize.height;
+        if (lumaSize <= 0 || image.length < lumaSize) {
+            return false;
+        }
+        if (!acquireBuffer(SystemClock.elapsedRealtime())) {
+            return false;
+        }
+        mBuffer.copyFrom(image, imageSize);
+        mHandler.obtainMessage(DETECT_QUAD, mBuffer).sendToTarget();
+        return true;
+    }
+
+    /**
+     * @return the most recently detected document corners or {@code null}, if no document was
+     * detected recently
+     */
+    @Nullable
+    public Quad getLatestQuad() {
+        final Quad quad = mLatestQuad;
+        if (quad == null
+                || SystemClock.elapsedRealtime() - mLatestQuadTimeMs > MAX_QUAD_AGE_MS) {
+            return null;
+        }
+        return quad;
+    }
+
+    public void release() {
+        mListener = null; // NOPMD
+        mLatestQuad = null; // NOPMD
+        mHandler.removeMessages(DETECT_QUAD);
+        mHandlerThread.quit();
+    }
+
+    private synchronized boolean acquireBuffer(final long nowMs) {
+        if (mBufferBusy || nowMs - mLastDetectionStartMs < MIN_DETECTION_INTERVAL_MS) {
+            return false;
+        }
+        mBufferBusy = true;
+        mLastDetectionStartMs = nowMs;
+        return true;
+    }
+
+    private synchronized void releaseBuffer() {
+        mBufferBusy = false;
+    }
+
+    private void detectQuad(@NonNull final LumaBuffer buffer) {
+        final Quad quad;
+        try {
+            final long startNanos = System.nanoTime();
+            quad = mQuadDetector.detect(buffer.luma, buffer.width, buffer.height);
+            logThroughput(System.nanoTime() - startNanos);
+        } finally {
+            releaseBuffer();
+        }
+        final Quad previousQuad = mLatestQuad;
+        mLatestQuad = quad;
+        mLatestQuadTimeMs = SystemClock.elapsedRealtime();
+        if (quad == null && previousQuad == null) {
+            return;
+        }
+        mUIExecutor.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final Listener listener = mListener;
+                if (listener != null) {
+                    listener.onQuadDetected(quad);
+                }
+            }
+        });
+    }
+
+    private void logThroughput(final long detectionTimeNanos) {
+        mDetectionTimeSumNanos += detectionTimeNanos;
+        mDetectedFrames++;
+        if (mDetectedFrames == LOG_THROUGHPUT_EVERY_FRAMES) {
+            LOG.debug("Average document detection time {}us",
+                    mDetectionTimeSumNanos / mDetectedFrames / 1000);
+            mDetectionTimeSumNanos = 0;
+            mDetectedFrames = 0;
+        }
+    }
+
+    private class DetectionHandler extends Handler {
+
+        DetectionHandler(final Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(final Message msg) {
+            if (msg.what == DETECT_QUAD) {
+                detectQuad((LumaBuffer) msg.obj);
+            } else {
+                super.handleMessage(msg);
+            }
+        }
+    }
+
+    private static class LumaBuffer {
+
+        byte[] luma = new byte[0];
+        int width;
+        int height;
+
+        void copyFrom(@NonNull final byte[] image, @NonNull final Size imageSize) {
+            final int lumaSize = imageSize.width * imageSize.height;
+            if (luma.length != lumaSize) {
+                // Only when the preview frame size changes
+                luma = new byte[lumaSize];
+            }
+            System.arraycopy(image, 0, luma, 0, lumaSize);
+            width = imageSize.width;
+            height = imageSize.height;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package net.gini.android.vision.internal.documentdetection;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     The four corners of a document detected in an image.
+ * </p>
+ * <p>
+ *     Coordinates are normalized to the image's width and height (0.0 to 1.0), so they don't
+ *     depend on the image's resolution. They are relative to the image's pixel data, not to how it
+ *     is displayed: use {@link #rotate(int)} to map them to the display orientation.
+ * </p>
+ * <p>
+ *     The corners are ordered clockwise starting with the top-left corner.
+ * </p>
+ *
+ * @exclude
+ */
+public final class Quad implements Parcelable {
+
+    public static final int TOP_LEFT = 0;
+    public static final int TOP_RIGHT = 1;
+    public static final int BOTTOM_RIGHT = 2;
+    public static final int BOTTOM_LEFT = 3;
+
+    public static final Creator<Quad> CREATOR = new Creator<Quad>() {
+        @Override
+        public Quad createFromParcel(final Parcel in) {
+            return new Quad(in);
+        }
+
+        @Override
+        public Quad[] newArray(final int size) {
+            return new Quad[size];
+        }
+    };
+
+    private final float[] mCoordinates;
+
+    /**
+     * @param coordinates the normalized x and y coordinates of the top-left, top-right,
+     *                    bottom-right and bottom-left corners
+     */
+    public Quad(@NonNull final float[] coordinates) {
+        if (coordinates.length != 8) {
+            throw new IllegalArgumentException("A quad needs 8 coordinates");
+        }
+        mCoordinates = Arrays.copyOf(coordinates, 8);
+    }
+
+    private Quad(final Parcel in) {
+        mCoordinates = in.createFloatArray();
+    }
+
+    public float getX(final int corner) {
+        return mCoordinates[corner * 2];
+    }
+
+    public float getY(final int corner) {
+        return mCoordinates[corner * 2 + 1];
+    }
+
+    /**
+     * Maps the corners to an image rotated clockwise by the given degrees. The corners are
+     * reordered, so the first corner is again the top-left one.
+     *
+     * @param degrees a multiple of 90
+     * @return the quad in the rotated image
+     */
+    @NonNull
+    public Quad rotate(final int degrees) {
+        final int quarterTurns = ((degrees / 90) % 4 + 4) % 4;
+        if (quarterTurns == 0) {
+            return this;
+        }
+        final float[] rotated = new float[8];
+        for (int corner = 0; corner < 4; corner++) {
+            final float x = getX(corner);
+            final float y = getY(corner);
+            final float rotatedX;
+            final float rotatedY;
+            switch (quarterTurns) {
+                case 1:
+                    rotatedX = 1 - y;
+                    rotatedY = x;
+                    break;
+                case 2:
+                    rotatedX = 1 - x;
+                    rotatedY = 1 - y;
+                    break;
+                default:
+                    rotatedX = y;
+                    rotatedY = 1 - x;
+                    break;
+            }
+            // Rotating clockwise moves each corner one position further in the clockwise order
+            final int rotatedCorner = (corner + quarterTurns) % 4;
+            rotated[rotatedCorner * 2] = rotatedX;
+            rotated[rotatedCorner * 2 + 1] = rotatedY;
+        }
+        return new Quad(rotated);
+    }
+
+    /**
+     * @return the quad's area as a fraction of the image's area
+     */
+    public float getArea() {
+        float doubleArea = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            final int next = (corner + 1) % 4;
+            doubleArea += getX(corner) * getY(next) - getX(next) * getY(corner);
+        }
+        return Math.abs(doubleArea) / 2;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        dest.writeFloatArray(mCoordinates);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Quad quad = (Quad) o;
+        return Arrays.equals(mCoordinates, quad.mCoordinates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mCoordinates);
+    }
+
+    @Override
+    public String toString() {
+        return "Quad{"
+                + "topLeft=" + getX(TOP_LEFT) + "," + getY(TOP_LEFT)
+                + ", topRight=" + getX(TOP_RIGHT) + "," + getY(TOP_RIGHT)
+                + ", bottomRight=" + getX(BOTTOM_RIGHT) + "," + getY(BOTTOM_RIGHT)
+                + ", bottomLeft=" + getX(BOTTOM_LEFT) + "," + getY(BOTTOM_LEFT)
+                + '}';
+    }
+}
@@ -0,0 +1,506 @@
+package net.gini.android.vision.internal.documentdetection;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.util.LumaDownsampler;
+
+/**
+ * <p>
+ *     Detects the outline of a document in luma frames.
+ * </p>
+ * <p>
+ *     Frames are box-downsampled to at most the maximum sample size and blurred. Edges are found
+ *     with the Sobel operator and thinned with non-maximum suppression. Each edge pixel votes in a
+ *     Hough accumulator for the lines running along its edge direction and the strongest lines are
+ *     extracted. Pairs of roughly parallel lines are combined into quads, which are scored by how
+ *     much of their sides are covered by edges. The best quad covering a minimum area wins.
+ * </p>
+ * <p>
+ *     All buffers are allocated once, only the detected {@link Quad} is allocated per frame. Not
+ *     thread safe.
+ * </p>
+ */
+class QuadDetector {
+
+    static final int DEFAULT_MAX_SAMPLE_SIZE = 160;
+
+    private static final int THETA_BINS = 90;
+    private static final double THETA_STEP = Math.PI / THETA_BINS;
+    // Edge pixels vote only for lines within +/-6 degrees of their edge direction
+    private static final int THETA_VOTE_WINDOW = 3;
+    private static final int MAX_LINES = 12;
+    private static final int PEAK_SUPPRESSION_THETA = 4;
+    private static final int PEAK_SUPPRESSION_RHO = 6;
+    private static final float MIN_LINE_VOTES_RATIO = 0.2f;
+    private static final int MIN_EDGE_MAGNITUDE = 40;
+    private static final float EDGE_MAGNITUDE_RATIO = 0.15f;
+    private static final double MAX_PARALLEL_ANGLE = Math.toRadians(20);
+    private static final double MIN_CORNER_ANGLE = Math.toRadians(50);
+    private static final float MIN_PARALLEL_SEPARATION_RATIO = 0.2f;
+    private static final float MIN_AREA_RATIO = 0.15f;
+    private static final float MIN_SIDE_COVERAGE = 0.5f;
+    private static final float MIN_MEAN_COVERAGE = 0.65f;
+    private static final float AREA_SCORE_WEIGHT = 0.25f;
+    private static final float CORNER_MARGIN = 2;
+
+    private final int mMaxSampleSize;
+    private final int[] mSamples;
+    private final int[] mBlurred;
+    private final int[] mGradientX;
+    private final int[] mGradientY;
+    private final int[] mMagnitude;
+    private final byte[] mEdges;
+    private final int mMaxRho;
+    private final int[] mAccumulator;
+    private final float[] mCos = new float[THETA_BINS];
+    private final float[] mSin = new float[THETA_BINS];
+    private final double[] mLineTheta = new double[MAX_LINES];
+    private final double[] mLineRho = new double[MAX_LINES];
+    private final int[] mPairFirst = new int[MAX_LINES * MAX_LINES / 2];
+    private final int[] mPairSecond = new int[MAX_LINES * MAX_LINES / 2];
+    private final float[] mCorners = new float[8];
+    private final float[] mBestCorners = new float[8];
+    private int mSampleWidth;
+    private int mSampleHeight;
+    private int mLineCount;
+    private int mPairCount;
+
+    QuadDetector() {
+        this(DEFAULT_MAX_SAMPLE_SIZE);
+    }
+
+    QuadDetector(final int maxSampleSize) {
+        if (maxSampleSize < 16) {
+            throw new IllegalArgumentException("Sample size must be at least 16x16");
+        }
+        mMaxSampleSize = maxSampleSize;
+        final int sampleCount = maxSampleSize * maxSampleSize;
+        mSamples = new int[sampleCount];
+        mBlurred = new int[sampleCount];
+        mGradientX = new int[sampleCount];
+        mGradientY = new int[sampleCount];
+        mMagnitude = new int[sampleCount];
+        mEdges = new byte[sampleCount];
+        mMaxRho = (int) Math.ceil(Math.sqrt(2) * maxSampleSize);
+        mAccumulator = new int[THETA_BINS * (2 * mMaxRho + 1)];
+        for (int theta = 0; theta < THETA_BINS; theta++) {
+            mCos[theta] = (float) Math.cos(theta * THETA_STEP);
+            mSin[theta] = (float) Math.sin(theta * THETA_STEP);
+        }
+    }
+
+    /**
+     * Detects a document in a frame.
+     *
+     * @param luma   the luma plane, for example the beginning of an NV21 image
+     * @param width  width of the frame
+     * @param height height of the frame
+     * @return the document's corners or {@code null}, if no document was found
+     */
+    @Nullable
+    Quad detect(@NonNull final byte[] luma, final int width, final int height) {
+        if (width <= 0 || height <= 0 || luma.length < width * height) {
+            throw new IllegalArgumentException(
+                    "Luma plane too small for " + width + "x" + height);
+        }
+        final int step = LumaDownsampler.getStep(width, height, mMaxSampleSize, mMaxSampleSize);
+        mSampleWidth = width / step;
+        mSampleHeight = height / step;
+        if (mSampleWidth < 16 || mSampleHeight < 16) {
+            return null;
+        }
+        LumaDownsampler.downsample(luma, width, height, step, mSamples);
+        blur();
+        if (!detectEdges()) {
+            return null;
+        }
+        voteLines();
+        extractLines();
+        pairParallelLines();
+        if (!findBestQuad()) {
+            return null;
+        }
+        final float[] normalized = new float[8];
+        for (int i = 0; i < 8; i += 2) {
+            normalized[i] = clamp((mBestCorners[i] + 0.5f) / mSampleWidth);
+            normalized[i + 1] = clamp((mBestCorners[i + 1] + 0.5f) / mSampleHeight);
+        }
+        return new Quad(normalized);
+    }
+
+    private void blur() {
+        final int width = mSampleWidth;
+        final int height = mSampleHeight;
+        // Horizontal [1 2 1] pass into the magnitude buffer, which is free at this point
+        final int[] horizontal = mMagnitude;
+        for (int y = 0; y < height; y++) {
+            final int rowOffset = y * width;
+            horizontal[rowOffset] = mSamples[rowOffset] * 4;
+            horizontal[rowOffset + width - 1] = mSamples[rowOffset + width - 1] * 4;
+            for (int x = 1; x < width - 1; x++) {
+                final int i = rowOffset + x;
+                horizontal[i] = mSamples[i - 1] + 2 * mSamples[i] + mSamples[i + 1];
+            }
+        }
+        // Vertical [1 2 1] pass, the result is 16 times the blurred luma
+        for (int x = 0; x < width; x++) {
+            mBlurred[x] = horizontal[x] * 4;
+            final int last = (height - 1) * width + x;
+            mBlurred[last] = horizontal[last] * 4;
+        }
+        for (int y = 1; y < height - 1; y++) {
+            final int rowOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                final int i = rowOffset + x;
+                mBlurred[i] = horizontal[i - width] + 2 * horizontal[i] + horizontal[i + width];
+            }
+        }
+        for (int i = 0; i < width * height; i++) {
+            mBlurred[i] = mBlurred[i] / 16;
+        }
+    }
+
+    private boolean detectEdges() {
+        final int width = mSampleWidth;
+        final int height = mSampleHeight;
+        final int count = width * height;
+        int maxMagnitude = 0;
+        for (int i = 0; i < count; i++) {
+            mMagnitude[i] = 0;
+            mEdges[i] = 0;
+        }
+        for (int y = 1; y < height - 1; y++) {
+            final int rowOffset = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                final int i = rowOffset + x;
+                final int topLeft = mBlurred[i - width - 1];
+                final int top = mBlurred[i - width];
+                final int topRight = mBlurred[i - width + 1];
+                final int left = mBlurred[i - 1];
+                final int right = mBlurred[i + 1];
+                final int bottomLeft = mBlurred[i + width - 1];
+                final int bottom = mBlurred[i + width];
+                final int bottomRight = mBlurred[i + width + 1];
+                final int gradientX = topRight + 2 * right + bottomRight
+                        - topLeft - 2 * left - bottomLeft;
+                final int gradientY = bottomLeft + 2 * bottom + bottomRight
+                        - topLeft - 2 * top - topRight;
+                mGradientX[i] = gradientX;
+                mGradientY[i] = gradientY;
+                final int magnitude = Math.abs(gradientX) + Math.abs(gradientY);
+                mMagnitude[i] = magnitude;
+                maxMagnitude = Math.max(maxMagnitude, magnitude);
+            }
+        }
+        final int threshold = Math.max(MIN_EDGE_MAGNITUDE,
+                (int) (EDGE_MAGNITUDE_RATIO * maxMagnitude));
+        if (maxMagnitude < threshold) {
+            return false;
+        }
+        for (int y = 1; y < height - 1; y++) {
+            final int rowOffset = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                final int i = rowOffset + x;
+                final int magnitude = mMagnitude[i];
+                if (magnitude < threshold) {
+                    continue;
+                }
+                final int gradientX = Math.abs(mGradientX[i]);
+                final int gradientY = Math.abs(mGradientY[i]);
+                // Neighbour offset along the gradient direction
+                final int offset;
+                if (gradientX > 2 * gradientY) {
+                    offset = 1;
+                } else if (gradientY > 2 * gradientX) {
+                    offset = width;
+                } else if ((mGradientX[i] > 0) == (mGradientY[i] > 0)) {
+                    offset = width + 1;
+                } else {
+                    offset = width - 1;
+                }
+                if (magnitude >= mMagnitude[i - offset] && magnitude >= mMagnitude[i + offset]) {
+                    mEdges[i] = 1;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void voteLines() {
+        final int width = mSampleWidth;
+        final int height = mSampleHeight;
+        final int rhoBins = 2 * mMaxRho + 1;
+        for (int i = 0; i < mAccumulator.length; i++) {
+            mAccumulator[i] = 0;
+        }
+        for (int y = 1; y < height - 1; y++) {
+            final int rowOffset = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                final int i = rowOffset + x;
+                if (mEdges[i] == 0) {
+                    continue;
+                }
+                // The gradient is perpendicular to the edge, so it is the line's normal
+                double normal = Math.atan2(mGradientY[i], mGradientX[i]);
+                if (normal < 0) {
+                    normal += Math.PI;
+                }
+                final int center = (int) Math.round(normal / THETA_STEP);
+                for (int k = -THETA_VOTE_WINDOW; k <= THETA_VOTE_WINDOW; k++) {
+                    final int theta = ((center + k) % THETA_BINS + THETA_BINS) % THETA_BINS;
+                    final int rho = Math.round(x * mCos[theta] + y * mSin[theta]);
+                    mAccumulator[theta * rhoBins + rho + mMaxRho]++;
+                }
+            }
+        }
+    }
+
+    private void extractLines() {
+        final int rhoBins = 2 * mMaxRho + 1;
+        final int minVotes = Math.max(8,
+                (int) (MIN_LINE_VOTES_RATIO * Math.min(mSampleWidth, mSampleHeight)));
+        mLineCount = 0;
+        while (mLineCount < MAX_LINES) {
+            int maxVotes = 0;
+            int maxIndex = -1;
+            for (int i = 0; i < mAccumulator.length; i++) {
+                if (mAccumulator[i] > maxVotes) {
+                    maxVotes = mAccumulator[i];
+                    maxIndex = i;
+                }
+            }
+            if (maxVotes < minVotes) {
+                return;
+            }
+            final int theta = maxIndex / rhoBins;
+            final int rho = maxIndex % rhoBins - mMaxRho;
+            mLineTheta[mLineCount] = theta * THETA_STEP;
+            mLineRho[mLineCount] = rho;
+            mLineCount++;
+            suppressPeak(theta, rho);
+        }
+    }
+
+    private void suppressPeak(final int theta, final int rho) {
+        final int rhoBins = 2 * mMaxRho + 1;
+        for (int k = -PEAK_SUPPRESSION_THETA; k <= PEAK_SUPPRESSION_THETA; k++) {
+            int neighbourTheta = theta + k;
+            int neighbourRho = rho;
+            // Angles wrap around at 180 degrees where the line's rho changes its sign
+            if (neighbourTheta < 0) {
+                neighbourTheta += THETA_BINS;
+                neighbourRho = -rho;
+            } else if (neighbourTheta >= THETA_BINS) {
+                neighbourTheta -= THETA_BINS;
+                neighbourRho = -rho;
+            }
+            final int from = Math.max(-mMaxRho, neighbourRho - PEAK_SUPPRESSION_RHO);
+            final int to = Math.min(mMaxRho, neighbourRho + PEAK_SUPPRESSION_RHO);
+            for (int r = from; r <= to; r++) {
+                mAccumulator[neighbourTheta * rhoBins + r + mMaxRho] = 0;
+            }
+        }
+    }
+
+    private void pairParallelLines() {
+        final float minSeparation = MIN_PARALLEL_SEPARATION_RATIO
+                * Math.min(mSampleWidth, mSampleHeight);
+        mPairCount = 0;
+        for (int first = 0; first < mLineCount; first++) {
+            for (int second = first + 1; second < mLineCount; second++) {
+                final double thetaDifference = Math.abs(mLineTheta[first] - mLineTheta[second]);
+                if (Math.min(thetaDifference, Math.PI - thetaDifference) > MAX_PARALLEL_ANGLE) {
+                    continue;
+                }
+                // Lines close to the wrap-around have opposite rho signs
+                final double secondRho = thetaDifference > Math.PI / 2 ? -mLineRho[second]
+                        : mLineRho[second];
+                if (Math.abs(mLineRho[first] - secondRho) < minSeparation) {
+                    continue;
+                }
+                mPairFirst[mPairCount] = first;
+                mPairSecond[mPairCount] = second;
+                mPairCount++;
+            }
+        }
+    }
+
+    private boolean findBestQuad() {
+        final float minArea = MIN_AREA_RATIO * mSampleWidth * mSampleHeight;
+        float bestScore = -1;
+        for (int p = 0; p < mPairCount; p++) {
+            for (int q = p + 1; q < mPairCount; q++) {
+                if (!isCornerAngle(mPairFirst[p], mPairFirst[q])) {
+                    continue;
+                }
+                if (!intersectPairs(p, q)) {
+                    continue;
+                }
+                final float area = orderCorners();
+                if (area < minArea || !isConvex()) {
+                    continue;
+                }
+                final float coverage = meanSideCoverage();
+                if (coverage < 0) {
+                    continue;
+                }
+                final float score = coverage
+                        + AREA_SCORE_WEIGHT * area / (mSampleWidth * mSampleHeight);
+                if (score > bestScore) {
+                    bestScore = score;
+                    System.arraycopy(mCorners, 0, mBestCorners, 0, 8);
+                }
+            }
+        }
+        return bestScore >= 0;
+    }
+
+    private boolean isCornerAngle(final int firstLine, final int secondLine) {
+        final double thetaDifference = Math.abs(mLineTheta[firstLine] - mLineTheta[secondLine]);
+        return Math.min(thetaDifference, Math.PI - thetaDifference) >= MIN_CORNER_ANGLE;
+    }
+
+    private boolean intersectPairs(final int p, final int q) {
+        // Consecutive corners share a line, so the corners form a closed outline
+        return intersect(mPairFirst[p], mPairFirst[q], 0)
+                && intersect(mPairFirst[p], mPairSecond[q], 1)
+                && intersect(mPairSecond[p], mPairSecond[q], 2)
+                && intersect(mPairSecond[p], mPairFirst[q], 3);
+    }
+
+    private boolean intersect(final int firstLine, final int secondLine, final int corner) {
+        final double firstTheta = mLineTheta[firstLine];
+        final double secondTheta = mLineTheta[secondLine];
+        final double determinant = Math.sin(secondTheta - firstTheta);
+        if (Math.abs(determinant) < 1e-6) {
+            return false;
+        }
+        final double firstRho = mLineRho[firstLine];
+        final double secondRho = mLineRho[secondLine];
+        final double x = (firstRho * Math.sin(secondTheta) - secondRho * Math.sin(firstTheta))
+                / determinant;
+        final double y = (secondRho * Math.cos(firstTheta) - firstRho * Math.cos(secondTheta))
+                / determinant;
+        if (x < -CORNER_MARGIN || x > mSampleWidth - 1 + CORNER_MARGIN
+                || y < -CORNER_MARGIN || y > mSampleHeight - 1 + CORNER_MARGIN) {
+            return false;
+        }
+        mCorners[corner * 2] = (float) x;
+        mCorners[corner * 2 + 1] = (float) y;
+        return true;
+    }
+
+    /**
+     * Orders the corners clockwise starting with the top-left one.
+     *
+     * @return the area of the quad
+     */
+    private float orderCorners() {
+        float doubleArea = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            final int next = (corner + 1) % 4;
+            doubleArea += mCorners[corner * 2] * mCorners[next * 2 + 1]
+                    - mCorners[next * 2] * mCorners[corner * 2 + 1];
+        }
+        if (doubleArea < 0) {
+            // Counterclockwise in image coordinates, swap the second and fourth corners
+            swapCorners(1, 3);
+        }
+        int topLeft = 0;
+        for (int corner = 1; corner < 4; corner++) {
+            if (mCorners[corner * 2] + mCorners[corner * 2 + 1]
+                    < mCorners[topLeft * 2] + mCorners[topLeft * 2 + 1]) {
+                topLeft = corner;
+            }
+        }
+        for (int shift = 0; shift < topLeft; shift++) {
+            rotateCornersLeft();
+        }
+        return Math.abs(doubleArea) / 2;
+    }
+
+    private void swapCorners(final int first, final int second) {
+        for (int i = 0; i < 2; i++) {
+            final float tmp = mCorners[first * 2 + i];
+            mCorners[first * 2 + i] = mCorners[second * 2 + i];
+            mCorners[second * 2 + i] = tmp;
+        }
+    }
+
+    private void rotateCornersLeft() {
+        final float x = mCorners[0];
+        final float y = mCorners[1];
+        System.arraycopy(mCorners, 2, mCorners, 0, 6);
+        mCorners[6] = x;
+        mCorners[7] = y;
+    }
+
+    private boolean isConvex() {
+        for (int corner = 0; corner < 4; corner++) {
+            final int next = (corner + 1) % 4;
+            final int afterNext = (corner + 2) % 4;
+            final float edgeX = mCorners[next * 2] - mCorners[corner * 2];
+            final float edgeY = mCorners[next * 2 + 1] - mCorners[corner * 2 + 1];
+            final float nextEdgeX = mCorners[afterNext * 2] - mCorners[next * 2];
+            final float nextEdgeY = mCorners[afterNext * 2 + 1] - mCorners[next * 2 + 1];
+            if (edgeX * nextEdgeY - edgeY * nextEdgeX <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the mean fraction of the sides covered by edges or -1, if a side or the mean is
+     * not covered enough
+     */
+    private float meanSideCoverage() {
+        float coverageSum = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            final int next = (corner + 1) % 4;
+            final float coverage = sideCoverage(mCorners[corner * 2], mCorners[corner * 2 + 1],
+                    mCorners[next * 2], mCorners[next * 2 + 1]);
+            if (coverage < MIN_SIDE_COVERAGE) {
+                return -1;
+            }
+            coverageSum += coverage;
+        }
+        final float meanCoverage = coverageSum / 4;
+        return meanCoverage < MIN_MEAN_COVERAGE ? -1 : meanCoverage;
+    }
+
+    private float sideCoverage(final float fromX, final float fromY, final float toX,
+            final float toY) {
+        final float length = (float) Math.hypot(toX - fromX, toY - fromY);
+        final int samples = Math.max(1, (int) length);
+        int hits = 0;
+        for (int s = 0; s < samples; s++) {
+            final float t = (s + 0.5f) / samples;
+            final int x = Math.round(fromX + t * (toX - fromX));
+            final int y = Math.round(fromY + t * (toY - fromY));
+            if (hasEdgeNear(x, y)) {
+                hits++;
+            }
+        }
+        return (float) hits / samples;
+    }
+
+    private boolean hasEdgeNear(final int x, final int y) {
+        for (int neighbourY = Math.max(0, y - 1);
+                neighbourY <= Math.min(mSampleHeight - 1, y + 1); neighbourY++) {
+            final int rowOffset = neighbourY * mSampleWidth;
+            for (int neighbourX = Math.max(0, x - 1);
+                    neighbourX <= Math.min(mSampleWidth - 1, x + 1); neighbourX++) {
+                if (mEdges[rowOffset + neighbourX] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static float clamp(final float value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
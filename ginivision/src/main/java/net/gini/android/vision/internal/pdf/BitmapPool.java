@@ -0,0 +1,88 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Recycles the bitmaps pdf pages are rendered into.
+ * </p>
+ * <p>
+ *     A released bitmap is reused for the next page which fits into its memory, even if the page
+ *     has different dimensions. Bitmaps which don't fit into the pool are recycled.
+ * </p>
+ * <p>
+ *     Pdf pages can only be rendered into {@link Bitmap.Config#ARGB_8888} bitmaps.
+ * </p>
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+final class BitmapPool {
+
+    private final int mMaxSize;
+    private final List<Bitmap> mBitmaps = new ArrayList<>();
+    private boolean mCleared;
+
+    /**
+     * @param maxSize the maximum number of bitmaps kept for reuse
+     */
+    BitmapPool(final int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @return a white bitmap with the requested dimensions, reused from the pool if possible
+     */
+    @NonNull
+    synchronized Bitmap acquire(final int width, final int height) {
+        final int byteCount = width * height * 4;
+        Bitmap bestFit = null;
+        for (final Bitmap bitmap : mBitmaps) {
+            // The smallest fitting bitmap leaves the larger ones for larger pages
+            if (bitmap.getAllocationByteCount() >= byteCount && (bestFit == null
+                    || bitmap.getAllocationByteCount() < bestFit.getAllocationByteCount())) {
+                bestFit = bitmap;
+            }
+        }
+        if (bestFit != null) {
+            mBitmaps.remove(bestFit);
+            bestFit.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            bestFit.eraseColor(Color.WHITE);
+            return bestFit;
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.WHITE);
+        return bitmap;
+    }
+
+    /**
+     * The bitmap must not be used anymore by the caller.
+     */
+    synchronized void release(@NonNull final Bitmap bitmap) {
+        if (bitmap.isRecycled() || mBitmaps.contains(bitmap)) {
+            return;
+        }
+        if (!mCleared && mBitmaps.size() < mMaxSize && bitmap.isMutable()) {
+            mBitmaps.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Recycles the pooled bitmaps. Bitmaps released afterwards are recycled right away.
+     */
+    synchronized void clear() {
+        mCleared = true;
+        for (final Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+    }
+}
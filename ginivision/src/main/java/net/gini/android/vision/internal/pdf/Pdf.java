@@ -10,6 +10,7 @@ import android.support.annotation.NonNull;
 
 import net.gini.android.vision.document.PdfDocument;
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
 import net.gini.android.vision.internal.util.Size;
 
 /**
@@ -37,27 +38,39 @@ public final class Pdf implements Parcelable {
     }
 
     public void toBitmap(@NonNull final Size targetSize, @NonNull final Context context,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final AsyncCallback<Bitmap> asyncCallback) {
-        getRenderer(context).toBitmap(targetSize, asyncCallback);
+        getRenderer(context).toBitmap(targetSize, cancellationToken, asyncCallback);
     }
 
     public void getPageCount(@NonNull final Context context,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final AsyncCallback<Integer> asyncCallback) {
-        getRenderer(context).getPageCount(asyncCallback);
+        getRenderer(context).getPageCount(cancellationToken, asyncCallback);
     }
 
     public int getPageCount(@NonNull final Context context) {
         return getRenderer(context).getPageCount();
     }
 
-    private Renderer getRenderer(@NonNull final Context context) {
+    /**
+     * Releases the pdf's renderer. The pdf can be used again afterwards and will get a new one.
+     */
+    public void close() {
+        if (mRenderer != null) {
+            mRenderer.close();
+            mRenderer = null; // NOPMD
+        }
+    }
+
+    Renderer getRenderer(@NonNull final Context context) {
         if (mRenderer != null) {
             return mRenderer;
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             mRenderer = new RendererLollipop(mUri, context);
         } else {
-            mRenderer = new RendererPreLollipop();
+            mRenderer = new RendererPreLollipop(mUri, context);
         }
         return mRenderer;
     }
@@ -0,0 +1,581 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Parses pdf objects from a buffer.
+ * </p>
+ * <p>
+ *     Names and dictionary keys are returned as {@link String}s without the leading slash,
+ *     strings as byte arrays, numbers as {@link Long}s or {@link Double}s, arrays as
+ *     {@link List}s and dictionaries as {@link Map}s. Stream data is not read, only its location
+ *     is returned.
+ * </p>
+ * <p>
+ *     Parsers for content streams return operators as {@link Operator}s.
+ * </p>
+ */
+final class PdfObjectParser {
+
+    private static final byte[] ENDSTREAM = bytes("endstream");
+
+    /**
+     * Resolves the indirect length of streams.
+     */
+    interface LengthResolver {
+
+        /**
+         * @return the length or -1, if it can't be resolved
+         */
+        int resolveLength(@Nullable Object length);
+    }
+
+    private final ByteBuffer mBuffer;
+    private final LengthResolver mLengthResolver;
+    private final boolean mContentStream;
+    private final int mLimit;
+    private int mPosition;
+
+    PdfObjectParser(@NonNull final ByteBuffer buffer,
+            @NonNull final LengthResolver lengthResolver) {
+        this(buffer, lengthResolver, false);
+    }
+
+    private PdfObjectParser(@NonNull final ByteBuffer buffer,
+            @NonNull final LengthResolver lengthResolver, final boolean contentStream) {
+        mBuffer = buffer;
+        mLengthResolver = lengthResolver;
+        mContentStream = contentStream;
+        mLimit = buffer.limit();
+    }
+
+    /**
+     * Creates a parser for the operands and operators of a decoded content stream.
+     */
+    @NonNull
+    static PdfObjectParser forContentStream(@NonNull final byte[] content) {
+        return new PdfObjectParser(ByteBuffer.wrap(content), new LengthResolver() {
+            @Override
+            public int resolveLength(@Nullable final Object length) {
+                // Content streams don't contain streams
+                return -1;
+            }
+        }, true);
+    }
+
+    boolean isAtEnd() {
+        skipWhitespace();
+        return mPosition >= mLimit;
+    }
+
+    int getPosition() {
+        return mPosition;
+    }
+
+    void setPosition(final int position) {
+        if (position < 0 || position > mLimit) {
+            throw new PdfStructureException("Position out of bounds: " + position);
+        }
+        mPosition = position;
+    }
+
+    /**
+     * Reads the object at the offset and checks that it is the expected object.
+     */
+    @Nullable
+    Object readIndirectObject(final int offset, final int objectNumber) {
+        setPosition(offset);
+        final Object number = readObject();
+        if (!(number instanceof Long) || ((Long) number).intValue() != objectNumber) {
+            throw new PdfStructureException("Object " + objectNumber + " not found at " + offset);
+        }
+        readObject();
+        if (!readKeyword("obj")) {
+            throw new PdfStructureException("Missing obj keyword at " + offset);
+        }
+        return readObject();
+    }
+
+    /**
+     * @return true and skips the keyword, if the next token is the keyword
+     */
+    boolean readKeyword(@NonNull final String keyword) {
+        skipWhitespace();
+        final int length = keyword.length();
+        if (mPosition + length > mLimit) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (mBuffer.get(mPosition + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        if (mPosition + length < mLimit && isRegular(mBuffer.get(mPosition + length))) {
+            return false;
+        }
+        mPosition += length;
+        return true;
+    }
+
+    @Nullable
+    Object readObject() {
+        skipWhitespace();
+        if (mPosition >= mLimit) {
+            throw new PdfStructureException("Unexpected end of data");
+        }
+        final byte b = mBuffer.get(mPosition);
+        switch (b) {
+            case '/':
+                mPosition++;
+                return readName();
+            case '<':
+                if (mPosition + 1 < mLimit && mBuffer.get(mPosition + 1) == '<') {
+                    mPosition += 2;
+                    return readDictionaryOrStream();
+                }
+                mPosition++;
+                return readHexString();
+            case '(':
+                mPosition++;
+                return readLiteralString();
+            case '[':
+                mPosition++;
+                return readArray();
+            default:
+                if (b == '+' || b == '-' || b == '.' || isDigit(b)) {
+                    return readNumberOrReference();
+                }
+                return readKeywordObject();
+        }
+    }
+
+    private void skipWhitespace() {
+        while (mPosition < mLimit) {
+            final byte b = mBuffer.get(mPosition);
+            if (b == '%') {
+                while (mPosition < mLimit && mBuffer.get(mPosition) != '\n'
+                        && mBuffer.get(mPosition) != '\r') {
+                    mPosition++;
+                }
+            } else if (isWhitespace(b)) {
+                mPosition++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    private String readName() {
+        final StringBuilder name = new StringBuilder();
+        while (mPosition < mLimit && isRegular(mBuffer.get(mPosition))) {
+            final byte b = mBuffer.get(mPosition++);
+            if (b == '#' && mPosition + 1 < mLimit) {
+                final int high = Character.digit(mBuffer.get(mPosition), 16);
+                final int low = Character.digit(mBuffer.get(mPosition + 1), 16);
+                if (high >= 0 && low >= 0) {
+                    name.append((char) (high << 4 | low));
+                    mPosition += 2;
+                    continue;
+                }
+            }
+            name.append((char) (b & 0xff));
+        }
+        return name.toString();
+    }
+
+    @NonNull
+    private byte[] readHexString() {
+        final ByteArrayOutputStream string = new ByteArrayOutputStream();
+        int high = -1;
+        while (mPosition < mLimit) {
+            final byte b = mBuffer.get(mPosition++);
+            if (b == '>') {
+                if (high >= 0) {
+                    string.write(high << 4);
+                }
+                return string.toByteArray();
+            }
+            final int digit = Character.digit(b, 16);
+            if (digit < 0) {
+                continue;
+            }
+            if (high < 0) {
+                high = digit;
+            } else {
+                string.write(high << 4 | digit);
+                high = -1;
+            }
+        }
+        throw new PdfStructureException("Unterminated hex string");
+    }
+
+    @NonNull
+    private byte[] readLiteralString() {
+        final ByteArrayOutputStream string = new ByteArrayOutputStream();
+        int depth = 1;
+        while (mPosition < mLimit) {
+            final byte b = mBuffer.get(mPosition++);
+            if (b == '(') {
+                depth++;
+            } else if (b == ')') {
+                depth--;
+                if (depth == 0) {
+                    return string.toByteArray();
+                }
+            } else if (b == '\\' && mPosition < mLimit) {
+                readEscapeSequence(string);
+                continue;
+            }
+            string.write(b);
+        }
+        throw new PdfStructureException("Unterminated string");
+    }
+
+    private void readEscapeSequence(@NonNull final ByteArrayOutputStream string) {
+        final byte b = mBuffer.get(mPosition++);
+        switch (b) {
+            case 'n':
+                string.write('\n');
+                break;
+            case 'r':
+                string.write('\r');
+                break;
+            case 't':
+                string.write('\t');
+                break;
+            case 'b':
+                string.write('\b');
+                break;
+            case 'f':
+                string.write('\f');
+                break;
+            case '\r':
+                // Line continuation
+                if (mPosition < mLimit && mBuffer.get(mPosition) == '\n') {
+                    mPosition++;
+                }
+                break;
+            case '\n':
+                break;
+            default:
+                if (b >= '0' && b <= '7') {
+                    int value = b - '0';
+                    for (int i = 0; i < 2 && mPosition < mLimit; i++) {
+                        final byte digit = mBuffer.get(mPosition);
+                        if (digit < '0' || digit > '7') {
+                            break;
+                        }
+                        value = value * 8 + digit - '0';
+                        mPosition++;
+                    }
+                    string.write(value);
+                } else {
+                    string.write(b);
+                }
+        }
+    }
+
+    @NonNull
+    private List<Object> readArray() {
+        final List<Object> array = new ArrayList<>();
+        while (true) {
+            skipWhitespace();
+            if (mPosition >= mLimit) {
+                throw new PdfStructureException("Unterminated array");
+            }
+            if (mBuffer.get(mPosition) == ']') {
+                mPosition++;
+                return array;
+            }
+            array.add(readObject());
+        }
+    }
+
+    @NonNull
+    private Object readDictionaryOrStream() {
+        final Map<String, Object> dictionary = new HashMap<>();
+        while (true) {
+            skipWhitespace();
+            if (mPosition + 1 >= mLimit) {
+                throw new PdfStructureException("Unterminated dictionary");
+            }
+            if (mBuffer.get(mPosition) == '>' && mBuffer.get(mPosition + 1) == '>') {
+                mPosition += 2;
+                break;
+            }
+            final Object key = readObject();
+            if (!(key instanceof String)) {
+                throw new PdfStructureException("Dictionary key is not a name at " + mPosition);
+            }
+            dictionary.put((String) key, readObject());
+        }
+        final int dictionaryEnd = mPosition;
+        if (!readKeyword("stream")) {
+            mPosition = dictionaryEnd;
+            return dictionary;
+        }
+        return readStream(dictionary);
+    }
+
+    @NonNull
+    private Stream readStream(@NonNull final Map<String, Object> dictionary) {
+        if (mPosition < mLimit && mBuffer.get(mPosition) == '\r') {
+            mPosition++;
+        }
+        if (mPosition < mLimit && mBuffer.get(mPosition) == '\n') {
+            mPosition++;
+        }
+        final int dataOffset = mPosition;
+        int length = mLengthResolver.resolveLength(dictionary.get("Length"));
+        if (length < 0 || dataOffset + length > mLimit || !isEndStreamAt(dataOffset + length)) {
+            // Wrong lengths are common, the data ends before the endstream keyword
+            final int endStream = indexOf(mBuffer, ENDSTREAM, dataOffset, mLimit);
+            if (endStream < 0) {
+                throw new PdfStructureException("Unterminated stream at " + dataOffset);
+            }
+            length = endStream - dataOffset;
+            while (length > 0 && isEol(mBuffer.get(dataOffset + length - 1))) {
+                length--;
+            }
+        }
+        mPosition = dataOffset + length;
+        readKeyword("endstream");
+        return new Stream(dictionary, dataOffset, length);
+    }
+
+    private boolean isEndStreamAt(final int offset) {
+        int position = offset;
+        while (position < mLimit && isWhitespace(mBuffer.get(position))) {
+            position++;
+        }
+        return startsWith(mBuffer, ENDSTREAM, position);
+    }
+
+    @Nullable
+    private Object readNumberOrReference() {
+        final Number number = readNumber();
+        if (!(number instanceof Long)) {
+            return number;
+        }
+        final int afterNumber = mPosition;
+        skipWhitespace();
+        if (mPosition < mLimit && isDigit(mBuffer.get(mPosition))) {
+            final Number generation = readNumber();
+            skipWhitespace();
+            if (generation instanceof Long && mPosition < mLimit
+                    && mBuffer.get(mPosition) == 'R'
+                    && (mPosition + 1 == mLimit || !isRegular(mBuffer.get(mPosition + 1)))) {
+                mPosition++;
+                return new Ref(number.intValue(), generation.intValue());
+            }
+        }
+        mPosition = afterNumber;
+        return number;
+    }
+
+    @NonNull
+    private Number readNumber() {
+        final int start = mPosition;
+        boolean negative = false;
+        final byte sign = mBuffer.get(mPosition);
+        if (sign == '+' || sign == '-') {
+            negative = sign == '-';
+            mPosition++;
+        }
+        long integer = 0;
+        while (mPosition < mLimit && isDigit(mBuffer.get(mPosition))) {
+            integer = integer * 10 + mBuffer.get(mPosition++) - '0';
+        }
+        if (mPosition < mLimit && mBuffer.get(mPosition) == '.') {
+            mPosition++;
+            double fraction = 0;
+            double divisor = 1;
+            while (mPosition < mLimit && isDigit(mBuffer.get(mPosition))) {
+                fraction = fraction * 10 + mBuffer.get(mPosition++) - '0';
+                divisor *= 10;
+            }
+            final double value = integer + fraction / divisor;
+            return negative ? -value : value;
+        }
+        if (mPosition == start + (sign == '+' || sign == '-' ? 1 : 0)) {
+            throw new PdfStructureException("Malformed number at " + start);
+        }
+        return negative ? -integer : integer;
+    }
+
+    @Nullable
+    private Object readKeywordObject() {
+        final int start = mPosition;
+        while (mPosition < mLimit && isRegular(mBuffer.get(mPosition))) {
+            mPosition++;
+        }
+        if (mPosition == start) {
+            throw new PdfStructureException(
+                    "Unexpected character " + (char) mBuffer.get(start) + " at " + start);
+        }
+        final String keyword = string(mBuffer, start, mPosition);
+        if ("true".equals(keyword)) {
+            return Boolean.TRUE;
+        } else if ("false".equals(keyword)) {
+            return Boolean.FALSE;
+        } else if ("null".equals(keyword)) {
+            return null;
+        } else if (mContentStream) {
+            return new Operator(keyword);
+        }
+        throw new PdfStructureException("Unexpected keyword " + keyword + " at " + start);
+    }
+
+    static int indexOf(@NonNull final ByteBuffer buffer, @NonNull final byte[] pattern,
+            final int from, final int to) {
+        for (int i = Math.max(0, from); i <= to - pattern.length; i++) {
+            if (startsWith(buffer, pattern, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int lastIndexOf(@NonNull final ByteBuffer buffer, @NonNull final byte[] pattern,
+            final int from, final int to) {
+        for (int i = to - pattern.length; i >= Math.max(0, from); i--) {
+            if (startsWith(buffer, pattern, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean startsWith(@NonNull final ByteBuffer buffer, @NonNull final byte[] pattern,
+            final int offset) {
+        if (offset < 0 || offset + pattern.length > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (buffer.get(offset + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    static boolean isRegular(final byte b) {
+        return !isWhitespace(b) && !isDelimiter(b);
+    }
+
+    @NonNull
+    static byte[] bytes(@NonNull final String ascii) {
+        final byte[] bytes = new byte[ascii.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ascii.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static boolean isDelimiter(final byte b) {
+        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']'
+                || b == '{' || b == '}' || b == '/' || b == '%';
+    }
+
+    private static boolean isEol(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    @NonNull
+    private static String string(@NonNull final ByteBuffer buffer, final int start,
+            final int end) {
+        final StringBuilder string = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            string.append((char) (buffer.get(i) & 0xff));
+        }
+        return string.toString();
+    }
+
+    /**
+     * Reference to an indirect object.
+     */
+    static final class Ref {
+
+        final int number;
+        final int generation;
+
+        Ref(final int number, final int generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Ref ref = (Ref) o;
+            return number == ref.number && generation == ref.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * number + generation;
+        }
+
+        @Override
+        public String toString() {
+            return number + " " + generation + " R";
+        }
+    }
+
+    /**
+     * Operator of a content stream.
+     */
+    static final class Operator {
+
+        final String name;
+
+        Operator(@NonNull final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Location of a stream's data in the parsed buffer.
+     */
+    static final class Stream {
+
+        final Map<String, Object> dictionary;
+        final int dataOffset;
+        final int dataLength;
+
+        Stream(@NonNull final Map<String, Object> dictionary, final int dataOffset,
+                final int dataLength) {
+            this.dictionary = dictionary;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+    }
+}
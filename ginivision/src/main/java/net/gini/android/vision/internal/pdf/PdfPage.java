@@ -0,0 +1,46 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.Map;
+
+/**
+ * A leaf of the page tree with its inherited attributes.
+ */
+final class PdfPage {
+
+    final Map<String, Object> dictionary;
+    /**
+     * Lower left and upper right corner in default user space.
+     */
+    final float[] mediaBox;
+    /**
+     * Clockwise rotation in degrees for display.
+     */
+    final int rotation;
+    final Map<String, Object> resources;
+
+    PdfPage(@NonNull final Map<String, Object> dictionary, @NonNull final float[] mediaBox,
+            final int rotation, @Nullable final Map<String, Object> resources) {
+        this.dictionary = dictionary;
+        this.mediaBox = mediaBox;
+        this.rotation = rotation;
+        this.resources = resources;
+    }
+
+    /**
+     * @return the media box size in points with the page rotation applied
+     */
+    @NonNull
+    Size getSize() {
+        final int width = Math.round(Math.abs(mediaBox[2] - mediaBox[0]));
+        final int height = Math.round(Math.abs(mediaBox[3] - mediaBox[1]));
+        if (Math.abs(rotation) % 180 == 90) {
+            return new Size(height, width);
+        }
+        return new Size(width, height);
+    }
+}
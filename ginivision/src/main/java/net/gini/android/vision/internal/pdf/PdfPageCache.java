@@ -0,0 +1,70 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import net.gini.android.vision.internal.util.Size;
+
+/**
+ * <p>
+ *     This singleton cache keeps the most recently rendered pdf pages so that a page isn't
+ *     rendered again when it is shown again.
+ * </p>
+ * <p>
+ *     Pages are identified by a {@link PdfPageKey} of the pdf's Uri, the page index and the
+ *     requested target size. The cache is limited to a sixteenth of the available memory and
+ *     evicts the least recently used pages.
+ * </p>
+ *
+ * @exclude
+ */
+enum PdfPageCache {
+
+    INSTANCE;
+
+    private static final int MAX_MEMORY_FRACTION = 16;
+
+    private final LruCache<PdfPageKey, Bitmap> mCache = new LruCache<PdfPageKey, Bitmap>(
+            (int) (Runtime.getRuntime().maxMemory() / 1024 / MAX_MEMORY_FRACTION)) {
+        @Override
+        protected int sizeOf(final PdfPageKey key, final Bitmap bitmap) {
+            return bitmap.getByteCount() / 1024;
+        }
+    };
+
+    @Nullable
+    Bitmap get(@NonNull final Uri uri, final int pageIndex, @NonNull final Size targetSize) {
+        return mCache.get(createKey(uri, pageIndex, targetSize));
+    }
+
+    void put(@NonNull final Uri uri, final int pageIndex, @NonNull final Size targetSize,
+            @NonNull final Bitmap bitmap) {
+        mCache.put(createKey(uri, pageIndex, targetSize), bitmap);
+    }
+
+    /**
+     * Removes all pages of the pdf.
+     */
+    void evict(@NonNull final Uri uri) {
+        final String uriString = uri.toString();
+        for (final PdfPageKey key : mCache.snapshot().keySet()) {
+            if (key.isPageOf(uriString)) {
+                mCache.remove(key);
+            }
+        }
+    }
+
+    @NonNull
+    static PdfPageCache getInstance() {
+        return INSTANCE;
+    }
+
+    @NonNull
+    private static PdfPageKey createKey(@NonNull final Uri uri, final int pageIndex,
+            @NonNull final Size targetSize) {
+        return new PdfPageKey(uri.toString(), pageIndex, targetSize);
+    }
+}
@@ -0,0 +1,78 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The jpeg embedded in a pdf page which shows nothing else but the jpeg.
+ *
+ * @exclude
+ */
+public final class PdfPageImage {
+
+    private final int mPageIndex;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRotation;
+    private final ByteBuffer mJpeg;
+
+    PdfPageImage(final int pageIndex, final int width, final int height, final int rotation,
+            @NonNull final ByteBuffer jpeg) {
+        mPageIndex = pageIndex;
+        mWidth = width;
+        mHeight = height;
+        mRotation = rotation;
+        mJpeg = jpeg;
+    }
+
+    public int getPageIndex() {
+        return mPageIndex;
+    }
+
+    /**
+     * @return the width of the jpeg in pixels
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the height of the jpeg in pixels
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return the clockwise rotation in degrees needed to show the jpeg like the page
+     */
+    public int getRotation() {
+        return mRotation;
+    }
+
+    public int getLength() {
+        return mJpeg.remaining();
+    }
+
+    /**
+     * @return the unmodified bytes of the jpeg as stored in the pdf
+     */
+    @NonNull
+    public byte[] getJpeg() {
+        final byte[] jpeg = new byte[mJpeg.remaining()];
+        mJpeg.duplicate().get(jpeg);
+        return jpeg;
+    }
+
+    @Override
+    public String toString() {
+        return "PdfPageImage{"
+                + "mPageIndex=" + mPageIndex
+                + ", mWidth=" + mWidth
+                + ", mHeight=" + mHeight
+                + ", mRotation=" + mRotation
+                + ", mLength=" + getLength()
+                + '}';
+    }
+}
@@ -0,0 +1,62 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+
+import net.gini.android.vision.internal.util.Size;
+
+/**
+ * Identifies a rendered pdf page in the {@link PdfPageCache} by the pdf's Uri, the page index and
+ * the requested target size.
+ *
+ * @exclude
+ */
+final class PdfPageKey {
+
+    private final String mUri;
+    private final int mPageIndex;
+    private final Size mTargetSize;
+
+    /**
+     * @param uri the pdf's Uri as a string
+     */
+    PdfPageKey(@NonNull final String uri, final int pageIndex, @NonNull final Size targetSize) {
+        mUri = uri;
+        mPageIndex = pageIndex;
+        mTargetSize = targetSize;
+    }
+
+    /**
+     * @param uri the pdf's Uri as a string
+     * @return true, if the page belongs to the pdf
+     */
+    boolean isPageOf(@NonNull final String uri) {
+        return mUri.equals(uri);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final PdfPageKey that = (PdfPageKey) o;
+        return mPageIndex == that.mPageIndex
+                && mUri.equals(that.mUri)
+                && mTargetSize.equals(that.mTargetSize);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mUri.hashCode();
+        result = 31 * result + mPageIndex;
+        result = 31 * result + mTargetSize.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return mUri + "#" + mPageIndex + "@" + mTargetSize.width + "x" + mTargetSize.height;
+    }
+}
@@ -0,0 +1,205 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.annotation.VisibleForTesting;
+import android.util.SparseArray;
+
+import net.gini.android.vision.document.PdfDocument;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     Renders the pages of a pdf progressively for paging through them.
+ * </p>
+ * <p>
+ *     Low resolution thumbnails of all pages are rendered first, so that every page can be shown
+ *     right away. The shown pages are then rendered at display resolution. Rendering a page is
+ *     cancelled once it is hidden and its bitmap is reused for the next shown page.
+ * </p>
+ *
+ * @exclude
+ */
+@UiThread
+public final class PdfPageLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PdfPageLoader.class);
+
+    // A sixteenth of the pixels of a page
+    private static final int THUMBNAIL_SCALE = 4;
+    // The shown page, its neighbours kept by a pager and the page being paged in
+    private static final int MAX_POOLED_BITMAPS = 4;
+
+    /**
+     * @exclude
+     */
+    public interface Listener {
+
+        /**
+         * Called for the thumbnail and again for the display resolution rendering of the page.
+         * The bitmap must not be used anymore after the page was hidden or the loader was
+         * closed.
+         */
+        void onPageRendered(int pageIndex, @NonNull Bitmap bitmap);
+    }
+
+    private final Renderer mRenderer;
+    private final Size mPageSize;
+    private final Size mThumbnailSize;
+    private final Listener mListener;
+    private final BitmapPool mBitmapPool = new BitmapPool(MAX_POOLED_BITMAPS);
+    private final SparseArray<Bitmap> mThumbnails = new SparseArray<>();
+    private final SparseArray<Bitmap> mPages = new SparseArray<>();
+    private final SparseArray<CancellationToken> mPageTokens = new SparseArray<>();
+    private final CancellationToken mThumbnailToken = new CancellationToken();
+    private boolean mClosed;
+
+    /**
+     * @param pageSize the size of the view showing a page
+     */
+    public PdfPageLoader(@NonNull final PdfDocument document, @NonNull final Context context,
+            @NonNull final Size pageSize, @NonNull final Listener listener) {
+        this(Pdf.fromDocument(document).getRenderer(context), pageSize, listener);
+    }
+
+    @VisibleForTesting
+    PdfPageLoader(@NonNull final Renderer renderer, @NonNull final Size pageSize,
+            @NonNull final Listener listener) {
+        mRenderer = renderer;
+        mPageSize = pageSize;
+        mThumbnailSize = new Size(Math.max(1, pageSize.width / THUMBNAIL_SCALE),
+                Math.max(1, pageSize.height / THUMBNAIL_SCALE));
+        mListener = listener;
+    }
+
+    /**
+     * Starts rendering the thumbnails of all pages.
+     */
+    public void start(final int pageCount) {
+        if (mClosed) {
+            return;
+        }
+        LOG.debug("Rendering {} thumbnails", pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            final int pageIndex = i;
+            mRenderer.renderPage(pageIndex, mThumbnailSize, mBitmapPool,
+                    Priority.HIGH, mThumbnailToken, new AsyncCallback<Bitmap>() {
+                        @Override
+                        public void onSuccess(final Bitmap result) {
+                            if (result == null) {
+                                return;
+                            }
+                            if (mClosed) {
+                                mBitmapPool.release(result);
+                                return;
+                            }
+                            mThumbnails.put(pageIndex, result);
+                            if (mPages.get(pageIndex) == null) {
+                                mListener.onPageRendered(pageIndex, result);
+                            }
+                        }
+
+                        @Override
+                        public void onError(final Exception exception) {
+                            LOG.error("Thumbnail rendering failed for page {}", pageIndex + 1,
+                                    exception);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return the page at the best resolution rendered so far
+     */
+    @Nullable
+    public Bitmap getBitmap(final int pageIndex) {
+        final Bitmap page = mPages.get(pageIndex);
+        return page != null ? page : mThumbnails.get(pageIndex);
+    }
+
+    /**
+     * Renders the page at display resolution, after the thumbnails.
+     */
+    public void showPage(final int pageIndex) {
+        if (mClosed || mPages.get(pageIndex) != null || mPageTokens.get(pageIndex) != null) {
+            return;
+        }
+        final CancellationToken token = new CancellationToken();
+        mPageTokens.put(pageIndex, token);
+        mRenderer.renderPage(pageIndex, mPageSize, mBitmapPool,
+                Priority.NORMAL, token, new AsyncCallback<Bitmap>() {
+                    @Override
+                    public void onSuccess(final Bitmap result) {
+                        if (token.isCancelled()) {
+                            // Hidden while rendering
+                            if (result != null) {
+                                mBitmapPool.release(result);
+                            }
+                            return;
+                        }
+                        mPageTokens.remove(pageIndex);
+                        if (result == null) {
+                            return;
+                        }
+                        mPages.put(pageIndex, result);
+                        mListener.onPageRendered(pageIndex, result);
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        if (token.isCancelled()) {
+                            return;
+                        }
+                        mPageTokens.remove(pageIndex);
+                        LOG.error("Rendering failed for page {}", pageIndex + 1, exception);
+                    }
+                });
+    }
+
+    /**
+     * Cancels rendering the page and reuses its display resolution bitmap. The thumbnail is kept.
+     */
+    public void hidePage(final int pageIndex) {
+        final CancellationToken token = mPageTokens.get(pageIndex);
+        if (token != null) {
+            token.cancel();
+            mPageTokens.remove(pageIndex);
+        }
+        final Bitmap page = mPages.get(pageIndex);
+        if (page != null) {
+            mPages.remove(pageIndex);
+            mBitmapPool.release(page);
+        }
+    }
+
+    /**
+     * Cancels all rendering and recycles the bitmaps.
+     */
+    public void close() {
+        mClosed = true;
+        mThumbnailToken.cancel();
+        for (int i = 0; i < mPageTokens.size(); i++) {
+            mPageTokens.valueAt(i).cancel();
+        }
+        mPageTokens.clear();
+        for (int i = 0; i < mPages.size(); i++) {
+            mPages.valueAt(i).recycle();
+        }
+        mPages.clear();
+        for (int i = 0; i < mThumbnails.size(); i++) {
+            mThumbnails.valueAt(i).recycle();
+        }
+        mThumbnails.clear();
+        mBitmapPool.clear();
+        mRenderer.close();
+    }
+}
@@ -0,0 +1,317 @@
+package net.gini.android.vision.internal.pdf;
+
+import static net.gini.android.vision.internal.pdf.Pdf.DEFAULT_PREVIEW_HEIGHT;
+import static net.gini.android.vision.internal.pdf.Pdf.DEFAULT_PREVIEW_WIDTH;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ *     Keeps one {@link PdfRenderer} open for a pdf while it is used by the file import
+ *     validation, the page counting and the rendering.
+ * </p>
+ * <p>
+ *     Sessions are shared per Uri and reference counted by a {@link SessionRegistry}. After the
+ *     last user released it the session is kept open for a short time, as the validated pdf is
+ *     usually shown right after.
+ * </p>
+ * <p>
+ *     The {@link PdfRenderer} can have only one page open at a time and is not thread safe.
+ *     Access to it is serialized on the session.
+ * </p>
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+final class PdfSession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PdfSession.class);
+
+    private static final long IDLE_TIMEOUT_MS = 30000;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final SessionRegistry<Uri, PdfSession> sSessions = new SessionRegistry<>(
+            new SessionRegistry.Closer<PdfSession>() {
+                @Override
+                public void close(@NonNull final PdfSession session) {
+                    session.closeOnRenderPool();
+                }
+            }, new SessionRegistry.DelayedExecutor() {
+                @Override
+                public void postDelayed(@NonNull final Runnable runnable, final long delayMs) {
+                    sHandler.postDelayed(runnable, delayMs);
+                }
+
+                @Override
+                public void removeCallbacks(@NonNull final Runnable runnable) {
+                    sHandler.removeCallbacks(runnable);
+                }
+            }, IDLE_TIMEOUT_MS);
+
+    private final Uri mUri;
+    private final Context mContext;
+    private final PdfPageCache mPageCache = PdfPageCache.getInstance();
+    private ParcelFileDescriptor mFileDescriptor;
+    private PdfRenderer mPdfRenderer;
+    private int mPageCount = -1;
+    private boolean mClosed;
+
+    /**
+     * Returns the open session for the pdf or opens a new one. Each call must be balanced with
+     * a call to {@link #release()}.
+     */
+    @NonNull
+    static PdfSession acquire(@NonNull final Uri uri, @NonNull final Context context) {
+        return sSessions.acquire(uri, new SessionRegistry.Factory<Uri, PdfSession>() {
+            @NonNull
+            @Override
+            public PdfSession create(@NonNull final Uri key) {
+                return new PdfSession(key, context.getApplicationContext());
+            }
+        });
+    }
+
+    private PdfSession(@NonNull final Uri uri, @NonNull final Context context) {
+        mUri = uri;
+        mContext = context;
+    }
+
+    void release() {
+        sSessions.release(mUri, this);
+    }
+
+    synchronized int getPageCount() {
+        if (mPageCount != -1) {
+            return mPageCount;
+        }
+        final PdfRenderer pdfRenderer = getPdfRenderer();
+        if (pdfRenderer == null) {
+            return 0;
+        }
+        mPageCount = pdfRenderer.getPageCount();
+        return mPageCount;
+    }
+
+    /**
+     * Renders the page to fit the target size or returns the previously rendered page.
+     */
+    @Nullable
+    synchronized Bitmap renderPage(final int pageIndex, @NonNull final Size targetSize) {
+        final Bitmap cachedBitmap = mPageCache.get(mUri, pageIndex, targetSize);
+        if (cachedBitmap != null) {
+            return cachedBitmap;
+        }
+        final Bitmap bitmap = render(pageIndex, targetSize, null);
+        if (bitmap != null) {
+            mPageCache.put(mUri, pageIndex, targetSize, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Renders the page to fit the target size into a bitmap from the pool. The bitmap is not
+     * cached and the caller must release it to the pool.
+     */
+    @Nullable
+    synchronized Bitmap renderPage(final int pageIndex, @NonNull final Size targetSize,
+            @NonNull final BitmapPool bitmapPool) {
+        return render(pageIndex, targetSize, bitmapPool);
+    }
+
+    /**
+     * @return the page's size in points
+     */
+    @Nullable
+    synchronized Size getPageSize(final int pageIndex) {
+        final PdfRenderer pdfRenderer = getPdfRenderer();
+        if (pdfRenderer == null || pageIndex >= getPageCount()) {
+            return null;
+        }
+        final PdfRenderer.Page page = pdfRenderer.openPage(pageIndex);
+        try {
+            return new Size(page.getWidth(), page.getHeight());
+        } finally {
+            page.close();
+        }
+    }
+
+    /**
+     * Renders a region of the page, scaled from points to pixels, into the top left corner of
+     * the bitmap.
+     *
+     * @param region the region in scaled pixels
+     * @return false if the pdf couldn't be read
+     */
+    synchronized boolean renderRegion(final int pageIndex, final float scale,
+            @NonNull final Rect region, @NonNull final Bitmap bitmap) {
+        final PdfRenderer pdfRenderer = getPdfRenderer();
+        if (pdfRenderer == null || pageIndex >= getPageCount()) {
+            return false;
+        }
+        final PdfRenderer.Page page = pdfRenderer.openPage(pageIndex);
+        try {
+            final Matrix transform = new Matrix();
+            transform.setScale(scale, scale);
+            transform.postTranslate(-region.left, -region.top);
+            // Pages are transparent where they have no content
+            bitmap.eraseColor(Color.WHITE);
+            page.render(bitmap, null, transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            return true;
+        } finally {
+            page.close();
+        }
+    }
+
+    @Nullable
+    private Bitmap render(final int pageIndex, @NonNull final Size targetSize,
+            @Nullable final BitmapPool bitmapPool) {
+        final PdfRenderer pdfRenderer = getPdfRenderer();
+        if (pdfRenderer == null || pageIndex >= getPageCount()) {
+            return null;
+        }
+        final PdfRenderer.Page page = pdfRenderer.openPage(pageIndex);
+        try {
+            final Size optimalSize = calculateOptimalRenderingSize(page, targetSize);
+            final Bitmap bitmap = bitmapPool != null
+                    ? bitmapPool.acquire(optimalSize.width, optimalSize.height)
+                    : createWhiteBitmap(optimalSize);
+            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            return bitmap;
+        } finally {
+            page.close();
+        }
+    }
+
+    @Nullable
+    private PdfRenderer getPdfRenderer() {
+        if (mPdfRenderer != null || mClosed) {
+            return mPdfRenderer;
+        }
+        try {
+            mFileDescriptor = mContext.getContentResolver().openFileDescriptor(mUri, "r");
+        } catch (final FileNotFoundException e) {
+            LOG.error("Pdf not found", e);
+        }
+        if (mFileDescriptor == null) {
+            return null;
+        }
+        try {
+            mPdfRenderer = new PdfRenderer(mFileDescriptor);
+        } catch (final IOException e) {
+            LOG.error("Could not read pdf", e);
+            closeFileDescriptor();
+        }
+        return mPdfRenderer;
+    }
+
+    private void closeOnRenderPool() {
+        // Closing waits for a running render, which must not block the main thread
+        TaskScheduler.getInstance().submit(TaskType.RENDER_PDF, Priority.LOW,
+                new CancellationToken(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        close();
+                        return null;
+                    }
+                }, new AsyncCallback<Void>() {
+                    @Override
+                    public void onSuccess(final Void result) {
+                        LOG.debug("Pdf session closed");
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        LOG.error("Could not close pdf session", exception);
+                    }
+                });
+    }
+
+    private synchronized void close() {
+        mClosed = true;
+        if (mPdfRenderer != null) {
+            mPdfRenderer.close();
+            mPdfRenderer = null; // NOPMD
+        }
+        closeFileDescriptor();
+        mPageCache.evict(mUri);
+    }
+
+    private void closeFileDescriptor() {
+        if (mFileDescriptor == null) {
+            return;
+        }
+        try {
+            mFileDescriptor.close();
+        } catch (final IOException e) {
+            LOG.error("Could not close pdf file descriptor", e);
+        }
+        mFileDescriptor = null; // NOPMD
+    }
+
+    @NonNull
+    private static Size calculateOptimalRenderingSize(@NonNull final PdfRenderer.Page page,
+            @NonNull final Size previewSize) {
+        final Size newPreviewSize = getDefaultPreviewSizeIfEmpty(previewSize);
+        final float pageRatio = (float) page.getWidth() / (float) page.getHeight();
+        final float previewRatio = (float) newPreviewSize.width / (float) newPreviewSize.height;
+        if (pageRatio < previewRatio) {
+            // The PDF page is taller than wide, or at least more so than the preview => fit the
+            // height of the pdf page
+            // to the preview and resize the width according to the pdf page's aspect ratio
+            final int height = newPreviewSize.height;
+            final int width = (int) ((float) height * pageRatio);
+            return new Size(width, height);
+        } else {
+            // The PDF page is wider than tall, or at least more so than the preview => fit the
+            // width of the pdf page
+            // to the preview and resize the height according to the pdf page's aspect ratio
+            final int width = newPreviewSize.width;
+            final int height = (int) ((float) width / pageRatio);
+            return new Size(width, height);
+        }
+    }
+
+    @NonNull
+    private static Bitmap createWhiteBitmap(@NonNull final Size renderingSize) {
+        final Bitmap bitmap = Bitmap.createBitmap(renderingSize.width, renderingSize.height,
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        return bitmap;
+    }
+
+    @NonNull
+    private static Size getDefaultPreviewSizeIfEmpty(@NonNull final Size size) {
+        if (size.width == 0 || size.height == 0) {
+            return new Size(DEFAULT_PREVIEW_WIDTH, DEFAULT_PREVIEW_HEIGHT);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,65 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page count, page sizes and metadata of a pdf as read by the {@link PdfStructureReader}.
+ *
+ * @exclude
+ */
+public final class PdfStructure {
+
+    private final int mPageCount;
+    private final List<Size> mPageSizes;
+    private final boolean mEncrypted;
+    private final String mProducer;
+
+    PdfStructure(final int pageCount, @NonNull final List<Size> pageSizes,
+            final boolean encrypted, @Nullable final String producer) {
+        mPageCount = pageCount;
+        mPageSizes = Collections.unmodifiableList(pageSizes);
+        mEncrypted = encrypted;
+        mProducer = producer;
+    }
+
+    public int getPageCount() {
+        return mPageCount;
+    }
+
+    /**
+     * @return the media box sizes of the pages in points with the page rotation applied
+     */
+    @NonNull
+    public List<Size> getPageSizes() {
+        return mPageSizes;
+    }
+
+    public boolean isEncrypted() {
+        return mEncrypted;
+    }
+
+    /**
+     * @return the producer from the document information or null, if it is missing or the pdf is
+     * encrypted
+     */
+    @Nullable
+    public String getProducer() {
+        return mProducer;
+    }
+
+    @Override
+    public String toString() {
+        return "PdfStructure{"
+                + "mPageCount=" + mPageCount
+                + ", mPageSizes=" + mPageSizes
+                + ", mEncrypted=" + mEncrypted
+                + ", mProducer='" + mProducer + '\''
+                + '}';
+    }
+}
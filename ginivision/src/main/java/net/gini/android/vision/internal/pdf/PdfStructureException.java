@@ -0,0 +1,19 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Thrown when the structure of a pdf could not be read.
+ *
+ * @exclude
+ */
+public class PdfStructureException extends RuntimeException {
+
+    PdfStructureException(@NonNull final String detailMessage) {
+        super(detailMessage);
+    }
+
+    PdfStructureException(@NonNull final String detailMessage, @NonNull final Throwable throwable) {
+        super(detailMessage, throwable);
+    }
+}
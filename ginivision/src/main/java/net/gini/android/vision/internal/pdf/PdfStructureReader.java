@@ -0,0 +1,860 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ *     Reads the page count, page sizes and metadata of a pdf without rendering it.
+ * </p>
+ * <p>
+ *     Only the cross-reference tables or streams, the trailer, the document catalog and the page
+ *     tree are parsed. Content streams are never decoded, which makes reading fast enough to
+ *     validate imported pdfs on the calling thread and works on every API level.
+ * </p>
+ * <p>
+ *     Damaged cross-references are recovered from by scanning the whole file for objects.
+ * </p>
+ *
+ * @exclude
+ */
+public final class PdfStructureReader implements PdfObjectParser.LengthResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PdfStructureReader.class);
+
+    private static final byte[] HEADER = PdfObjectParser.bytes("%PDF-");
+    private static final byte[] STARTXREF = PdfObjectParser.bytes("startxref");
+    private static final byte[] TRAILER = PdfObjectParser.bytes("trailer");
+    private static final byte[] OBJ = PdfObjectParser.bytes("obj");
+    private static final int HEADER_SEARCH_LENGTH = 1024;
+    private static final int STARTXREF_SEARCH_LENGTH = 1024;
+    private static final int MAX_PAGE_TREE_DEPTH = 64;
+    private static final int MAX_REFERENCE_CHAIN = 32;
+
+    private static final int FREE_OBJECT = 0;
+    private static final int UNCOMPRESSED_OBJECT = 1;
+    private static final int COMPRESSED_OBJECT = 2;
+
+    private final ByteBuffer mBuffer;
+    private final Map<Integer, XrefEntry> mXref = new HashMap<>();
+    private final Map<Integer, Object> mObjects = new HashMap<>();
+    private final Map<Integer, ObjectStream> mObjectStreams = new HashMap<>();
+    private final Set<Integer> mLoadingObjects = new HashSet<>();
+    private Map<String, Object> mTrailer;
+    private List<PdfPage> mPages;
+    private int mPageTreeCount;
+
+    /**
+     * Reads the structure of a pdf from a file.
+     *
+     * @throws IOException           if the file could not be mapped
+     * @throws PdfStructureException if the file is not a pdf or is damaged beyond recovery
+     */
+    @NonNull
+    public static PdfStructure read(@NonNull final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return read(map(randomAccessFile.getChannel()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the structure of a pdf from a content or file Uri. The Uri must point to a seekable
+     * file, pipes are not supported.
+     *
+     * @throws IOException           if the file could not be opened or mapped
+     * @throws PdfStructureException if the file is not a pdf or is damaged beyond recovery
+     */
+    @NonNull
+    public static PdfStructure read(@NonNull final Uri uri, @NonNull final Context context)
+            throws IOException {
+        return read(map(uri, context));
+    }
+
+    /**
+     * Reads the structure of a pdf from its contents.
+     *
+     * @throws PdfStructureException if the buffer does not contain a pdf or it is damaged beyond
+     *                               recovery
+     */
+    @NonNull
+    public static PdfStructure read(@NonNull final ByteBuffer buffer) {
+        return new PdfStructureReader(buffer).read();
+    }
+
+    @NonNull
+    static ByteBuffer map(@NonNull final Uri uri, @NonNull final Context context)
+            throws IOException {
+        final ParcelFileDescriptor fileDescriptor =
+                context.getContentResolver().openFileDescriptor(uri, "r");
+        if (fileDescriptor == null) {
+            throw new IOException("Could not open file descriptor for " + uri);
+        }
+        try {
+            return map(new FileInputStream(fileDescriptor.getFileDescriptor()).getChannel());
+        } finally {
+            fileDescriptor.close();
+        }
+    }
+
+    private static ByteBuffer map(@NonNull final FileChannel channel) throws IOException {
+        // The mapping stays valid after the channel was closed
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    PdfStructureReader(@NonNull final ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    @NonNull
+    private PdfStructure read() {
+        final List<PdfPage> pages = readPages();
+        final List<Size> pageSizes = new ArrayList<>(pages.size());
+        for (final PdfPage page : pages) {
+            pageSizes.add(page.getSize());
+        }
+        final int pageCount = mPageTreeCount > 0 ? mPageTreeCount : pages.size();
+        final boolean encrypted = isEncrypted();
+        // Strings of encrypted pdfs can't be read without decrypting them
+        final String producer = encrypted ? null : readProducer();
+        return new PdfStructure(pageCount, pageSizes, encrypted, producer);
+    }
+
+    /**
+     * Reads the page tree, recovering the cross-references if they are damaged.
+     */
+    @NonNull
+    List<PdfPage> readPages() {
+        if (mPages != null) {
+            return mPages;
+        }
+        if (PdfObjectParser.indexOf(mBuffer, HEADER, 0,
+                Math.min(HEADER_SEARCH_LENGTH, mBuffer.limit())) < 0) {
+            throw new PdfStructureException("Missing pdf header");
+        }
+        try {
+            readXrefChain();
+            mPages = readPageTree();
+            return mPages;
+        } catch (final PdfStructureException e) {
+            LOG.warn("Damaged pdf, recovering the cross-references", e);
+        }
+        reconstructXref();
+        mPages = readPageTree();
+        return mPages;
+    }
+
+    @NonNull
+    ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    boolean isEncrypted() {
+        return mTrailer.get("Encrypt") != null;
+    }
+
+    @NonNull
+    private List<PdfPage> readPageTree() {
+        final Map<String, Object> catalog = getDictionary(mTrailer.get("Root"));
+        if (catalog == null) {
+            throw new PdfStructureException("Missing document catalog");
+        }
+        final Object pagesRoot = catalog.get("Pages");
+        final Map<String, Object> pages = getDictionary(pagesRoot);
+        if (pages == null) {
+            throw new PdfStructureException("Missing page tree");
+        }
+        final List<PdfPage> pageList = new ArrayList<>();
+        readPages(pagesRoot, null, 0, null, pageList, new HashSet<Object>(), 0);
+        final Object count = resolve(pages.get("Count"));
+        mPageTreeCount = count instanceof Number ? ((Number) count).intValue() : 0;
+        return pageList;
+    }
+
+    private void readPages(@Nullable final Object node, @Nullable final float[] inheritedMediaBox,
+            final int inheritedRotation, @Nullable final Map<String, Object> inheritedResources,
+            @NonNull final List<PdfPage> pages, @NonNull final Set<Object> visited,
+            final int depth) {
+        if (depth > MAX_PAGE_TREE_DEPTH) {
+            throw new PdfStructureException("Page tree too deep");
+        }
+        if (node instanceof PdfObjectParser.Ref && !visited.add(node)) {
+            throw new PdfStructureException("Page tree contains a cycle at " + node);
+        }
+        final Map<String, Object> dictionary = getDictionary(node);
+        if (dictionary == null) {
+            throw new PdfStructureException("Page tree node is not a dictionary: " + node);
+        }
+        final Object mediaBoxArray = resolve(dictionary.get("MediaBox"));
+        final float[] mediaBox = mediaBoxArray != null ? getRectangle(mediaBoxArray)
+                : inheritedMediaBox;
+        final Object rotate = resolve(dictionary.get("Rotate"));
+        final int rotation = rotate instanceof Number ? ((Number) rotate).intValue()
+                : inheritedRotation;
+        Map<String, Object> resources = getDictionary(dictionary.get("Resources"));
+        if (resources == null) {
+            resources = inheritedResources;
+        }
+        final Object kids = resolve(dictionary.get("Kids"));
+        if (kids instanceof List) {
+            for (final Object kid : (List<?>) kids) {
+                readPages(kid, mediaBox, rotation, resources, pages, visited, depth + 1);
+            }
+        } else {
+            if (mediaBox == null) {
+                throw new PdfStructureException("Missing media box of page " + pages.size());
+            }
+            pages.add(new PdfPage(dictionary, mediaBox, rotation, resources));
+        }
+    }
+
+    @NonNull
+    private float[] getRectangle(@NonNull final Object array) {
+        if (!(array instanceof List) || ((List<?>) array).size() != 4) {
+            throw new PdfStructureException("Invalid rectangle: " + array);
+        }
+        final float[] rectangle = new float[4];
+        for (int i = 0; i < 4; i++) {
+            rectangle[i] = getFloat(((List<?>) array).get(i));
+        }
+        return rectangle;
+    }
+
+    private float getFloat(@Nullable final Object object) {
+        final Object number = resolve(object);
+        if (!(number instanceof Number)) {
+            throw new PdfStructureException("Not a number: " + number);
+        }
+        return ((Number) number).floatValue();
+    }
+
+    @Nullable
+    private String readProducer() {
+        final Map<String, Object> info = getDictionary(mTrailer.get("Info"));
+        if (info == null) {
+            return null;
+        }
+        final Object producer = resolve(info.get("Producer"));
+        if (!(producer instanceof byte[])) {
+            return null;
+        }
+        return decodeTextString((byte[]) producer);
+    }
+
+    @NonNull
+    private static String decodeTextString(@NonNull final byte[] string) {
+        if (string.length >= 2 && (string[0] & 0xff) == 0xfe && (string[1] & 0xff) == 0xff) {
+            return new String(string, 2, string.length - 2, Charset.forName("UTF-16BE"));
+        }
+        if (string.length >= 3 && (string[0] & 0xff) == 0xef && (string[1] & 0xff) == 0xbb
+                && (string[2] & 0xff) == 0xbf) {
+            return new String(string, 3, string.length - 3, Charset.forName("UTF-8"));
+        }
+        // PdfDocEncoding matches Latin-1 for all practically used characters
+        return new String(string, Charset.forName("ISO-8859-1"));
+    }
+
+    private void readXrefChain() {
+        int offset = findStartXref();
+        final Set<Integer> visitedOffsets = new HashSet<>();
+        while (offset >= 0 && visitedOffsets.add(offset)) {
+            final Map<String, Object> trailer = readXrefSection(offset);
+            if (mTrailer == null) {
+                mTrailer = new HashMap<>(trailer);
+            } else {
+                // Older trailers may contain entries missing from updates
+                for (final Map.Entry<String, Object> entry : trailer.entrySet()) {
+                    if (!mTrailer.containsKey(entry.getKey())) {
+                        mTrailer.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            final Object xrefStream = trailer.get("XRefStm");
+            if (xrefStream instanceof Long && visitedOffsets.add(((Long) xrefStream).intValue())) {
+                // Hybrid files list compressed objects in an additional xref stream
+                readXrefSection(((Long) xrefStream).intValue());
+            }
+            final Object previous = trailer.get("Prev");
+            offset = previous instanceof Long ? ((Long) previous).intValue() : -1;
+        }
+        if (mTrailer == null) {
+            throw new PdfStructureException("Missing trailer");
+        }
+    }
+
+    private int findStartXref() {
+        final int limit = mBuffer.limit();
+        final int startXref = PdfObjectParser.lastIndexOf(mBuffer, STARTXREF,
+                limit - STARTXREF_SEARCH_LENGTH, limit);
+        if (startXref < 0) {
+            throw new PdfStructureException("Missing startxref");
+        }
+        final PdfObjectParser parser = new PdfObjectParser(mBuffer, this);
+        parser.setPosition(startXref + STARTXREF.length);
+        final Object offset = parser.readObject();
+        if (!(offset instanceof Long)) {
+            throw new PdfStructureException("Invalid startxref: " + offset);
+        }
+        return ((Long) offset).intValue();
+    }
+
+    @NonNull
+    private Map<String, Object> readXrefSection(final int offset) {
+        final PdfObjectParser parser = new PdfObjectParser(mBuffer, this);
+        parser.setPosition(offset);
+        if (parser.readKeyword("xref")) {
+            return readXrefTable(parser);
+        }
+        return readXrefStream(parser, offset);
+    }
+
+    @NonNull
+    private Map<String, Object> readXrefTable(@NonNull final PdfObjectParser parser) {
+        while (!parser.readKeyword("trailer")) {
+            final int firstNumber = getInt(parser.readObject());
+            final int count = getInt(parser.readObject());
+            for (int i = 0; i < count; i++) {
+                final int offset = getInt(parser.readObject());
+                final int generation = getInt(parser.readObject());
+                final boolean inUse;
+                if (parser.readKeyword("n")) {
+                    inUse = true;
+                } else if (parser.readKeyword("f")) {
+                    inUse = false;
+                } else {
+                    throw new PdfStructureException(
+                            "Invalid xref entry at " + parser.getPosition());
+                }
+                addXrefEntry(firstNumber + i, new XrefEntry(
+                        inUse ? UNCOMPRESSED_OBJECT : FREE_OBJECT, offset, generation));
+            }
+        }
+        final Object trailer = parser.readObject();
+        if (!(trailer instanceof Map)) {
+            throw new PdfStructureException("Invalid trailer at " + parser.getPosition());
+        }
+        @SuppressWarnings("unchecked") final Map<String, Object> dictionary =
+                (Map<String, Object>) trailer;
+        return dictionary;
+    }
+
+    @NonNull
+    private Map<String, Object> readXrefStream(@NonNull final PdfObjectParser parser,
+            final int offset) {
+        final int objectNumber = getInt(parser.readObject());
+        parser.setPosition(offset);
+        final Object object = parser.readIndirectObject(offset, objectNumber);
+        if (!(object instanceof PdfObjectParser.Stream)) {
+            throw new PdfStructureException("No xref at " + offset);
+        }
+        final PdfObjectParser.Stream stream = (PdfObjectParser.Stream) object;
+        if (!"XRef".equals(stream.dictionary.get("Type"))) {
+            throw new PdfStructureException("No xref stream at " + offset);
+        }
+        final Object widthsArray = stream.dictionary.get("W");
+        if (!(widthsArray instanceof List) || ((List<?>) widthsArray).size() != 3) {
+            throw new PdfStructureException("Invalid xref stream field widths");
+        }
+        final int[] widths = new int[3];
+        for (int i = 0; i < 3; i++) {
+            widths[i] = getInt(((List<?>) widthsArray).get(i));
+            if (widths[i] < 0 || widths[i] > 8) {
+                throw new PdfStructureException("Invalid xref stream field width: " + widths[i]);
+            }
+        }
+        final List<?> index;
+        final Object indexArray = stream.dictionary.get("Index");
+        if (indexArray instanceof List) {
+            index = (List<?>) indexArray;
+        } else {
+            final List<Object> defaultIndex = new ArrayList<>();
+            defaultIndex.add(0L);
+            defaultIndex.add(stream.dictionary.get("Size"));
+            index = defaultIndex;
+        }
+        final byte[] data = decodeStream(stream);
+        final int entryLength = widths[0] + widths[1] + widths[2];
+        int position = 0;
+        for (int i = 0; i + 1 < index.size(); i += 2) {
+            final int firstNumber = getInt(index.get(i));
+            final int count = getInt(index.get(i + 1));
+            for (int j = 0; j < count && position + entryLength <= data.length; j++) {
+                // The type defaults to uncompressed objects when its field is omitted
+                final int type = widths[0] == 0 ? UNCOMPRESSED_OBJECT
+                        : readField(data, position, widths[0]);
+                final int field2 = readField(data, position + widths[0], widths[1]);
+                final int field3 = readField(data, position + widths[0] + widths[1], widths[2]);
+                addXrefEntry(firstNumber + j, new XrefEntry(type, field2, field3));
+                position += entryLength;
+            }
+        }
+        return stream.dictionary;
+    }
+
+    private static int readField(@NonNull final byte[] data, final int offset, final int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = value << 8 | data[offset + i] & 0xff;
+        }
+        return (int) value;
+    }
+
+    private void addXrefEntry(final int objectNumber, @NonNull final XrefEntry entry) {
+        // Sections are read from the newest to the oldest update
+        if (!mXref.containsKey(objectNumber)) {
+            mXref.put(objectNumber, entry);
+        }
+    }
+
+    private void reconstructXref() {
+        mXref.clear();
+        mObjects.clear();
+        mObjectStreams.clear();
+        mTrailer = null;
+        scanObjects();
+
+        final List<Integer> objectNumbers = new ArrayList<>(mXref.keySet());
+        Map<String, Object> xrefStreamTrailer = null;
+        Integer catalogNumber = null;
+        for (final Integer objectNumber : objectNumbers) {
+            final Object object;
+            try {
+                object = getObject(objectNumber);
+            } catch (final PdfStructureException e) {
+                continue;
+            }
+            if (object instanceof PdfObjectParser.Stream) {
+                final Map<String, Object> dictionary = ((PdfObjectParser.Stream) object).dictionary;
+                if ("ObjStm".equals(dictionary.get("Type"))) {
+                    addCompressedObjects(objectNumber);
+                } else if ("XRef".equals(dictionary.get("Type"))
+                        && dictionary.get("Root") != null) {
+                    xrefStreamTrailer = dictionary;
+                }
+            } else if (isCatalog(object)) {
+                catalogNumber = objectNumber;
+            }
+        }
+        mTrailer = readLastTrailer();
+        if (mTrailer == null) {
+            mTrailer = xrefStreamTrailer;
+        }
+        if (mTrailer == null) {
+            if (catalogNumber == null) {
+                catalogNumber = findCompressedCatalog();
+            }
+            if (catalogNumber == null) {
+                throw new PdfStructureException("Could not find the document catalog");
+            }
+            mTrailer = new HashMap<>();
+            mTrailer.put("Root", new PdfObjectParser.Ref(catalogNumber, 0));
+        }
+    }
+
+    private void scanObjects() {
+        final int limit = mBuffer.limit();
+        int offset = PdfObjectParser.indexOf(mBuffer, OBJ, 0, limit);
+        while (offset >= 0) {
+            if (offset + OBJ.length == limit
+                    || !PdfObjectParser.isRegular(mBuffer.get(offset + OBJ.length))) {
+                final int objectStart = findObjectStart(offset);
+                if (objectStart >= 0) {
+                    final PdfObjectParser parser = new PdfObjectParser(mBuffer, this);
+                    parser.setPosition(objectStart);
+                    final int objectNumber = getInt(parser.readObject());
+                    // Later objects belong to newer updates
+                    mXref.put(objectNumber, new XrefEntry(UNCOMPRESSED_OBJECT, objectStart, 0));
+                }
+            }
+            offset = PdfObjectParser.indexOf(mBuffer, OBJ, offset + OBJ.length, limit);
+        }
+    }
+
+    /**
+     * @return the offset of the object number before "gen obj" or -1, if the "obj" at the offset
+     * is not an object header
+     */
+    private int findObjectStart(final int objOffset) {
+        int position = skipWhitespaceBackwards(objOffset - 1);
+        if (position == objOffset - 1) {
+            return -1;
+        }
+        final int generationEnd = position;
+        position = skipDigitsBackwards(position);
+        if (position == generationEnd) {
+            return -1;
+        }
+        final int numberEnd = skipWhitespaceBackwards(position);
+        if (numberEnd == position) {
+            return -1;
+        }
+        position = skipDigitsBackwards(numberEnd);
+        if (position == numberEnd
+                || position >= 0 && PdfObjectParser.isRegular(mBuffer.get(position))) {
+            return -1;
+        }
+        return position + 1;
+    }
+
+    private int skipWhitespaceBackwards(final int from) {
+        int position = from;
+        while (position >= 0 && PdfObjectParser.isWhitespace(mBuffer.get(position))) {
+            position--;
+        }
+        return position;
+    }
+
+    private int skipDigitsBackwards(final int from) {
+        int position = from;
+        while (position >= 0 && PdfObjectParser.isDigit(mBuffer.get(position))) {
+            position--;
+        }
+        return position;
+    }
+
+    private void addCompressedObjects(final int objectStreamNumber) {
+        final ObjectStream objectStream;
+        try {
+            objectStream = getObjectStream(objectStreamNumber);
+        } catch (final PdfStructureException e) {
+            return;
+        }
+        for (int i = 0; i < objectStream.objectNumbers.length; i++) {
+            addXrefEntry(objectStream.objectNumbers[i],
+                    new XrefEntry(COMPRESSED_OBJECT, objectStreamNumber, i));
+        }
+    }
+
+    @Nullable
+    private Map<String, Object> readLastTrailer() {
+        int offset = PdfObjectParser.lastIndexOf(mBuffer, TRAILER, 0, mBuffer.limit());
+        while (offset >= 0) {
+            try {
+                final PdfObjectParser parser = new PdfObjectParser(mBuffer, this);
+                parser.setPosition(offset + TRAILER.length);
+                final Object trailer = parser.readObject();
+                if (trailer instanceof Map && ((Map<?, ?>) trailer).get("Root") != null) {
+                    @SuppressWarnings("unchecked") final Map<String, Object> dictionary =
+                            (Map<String, Object>) trailer;
+                    return dictionary;
+                }
+            } catch (final PdfStructureException ignored) {
+                // Try the previous trailer
+            }
+            offset = PdfObjectParser.lastIndexOf(mBuffer, TRAILER, 0, offset);
+        }
+        return null;
+    }
+
+    @Nullable
+    private Integer findCompressedCatalog() {
+        for (final Map.Entry<Integer, XrefEntry> entry : mXref.entrySet()) {
+            if (entry.getValue().type != COMPRESSED_OBJECT) {
+                continue;
+            }
+            try {
+                if (isCatalog(getObject(entry.getKey()))) {
+                    return entry.getKey();
+                }
+            } catch (final PdfStructureException ignored) {
+                // Keep looking
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCatalog(@Nullable final Object object) {
+        return object instanceof Map && "Catalog".equals(((Map<?, ?>) object).get("Type"));
+    }
+
+    @Override
+    public int resolveLength(@Nullable final Object length) {
+        try {
+            final Object resolved = resolve(length);
+            return resolved instanceof Number ? ((Number) resolved).intValue() : -1;
+        } catch (final PdfStructureException e) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    Map<String, Object> getDictionary(@Nullable final Object object) {
+        final Object resolved = resolve(object);
+        if (resolved instanceof Map) {
+            @SuppressWarnings("unchecked") final Map<String, Object> dictionary =
+                    (Map<String, Object>) resolved;
+            return dictionary;
+        }
+        if (resolved instanceof PdfObjectParser.Stream) {
+            return ((PdfObjectParser.Stream) resolved).dictionary;
+        }
+        return null;
+    }
+
+    @Nullable
+    Object resolve(@Nullable final Object object) {
+        Object resolved = object;
+        for (int i = 0; resolved instanceof PdfObjectParser.Ref; i++) {
+            if (i == MAX_REFERENCE_CHAIN) {
+                throw new PdfStructureException("Reference chain too long at " + object);
+            }
+            resolved = getObject(((PdfObjectParser.Ref) resolved).number);
+        }
+        return resolved;
+    }
+
+    @Nullable
+    private Object getObject(final int objectNumber) {
+        if (mObjects.containsKey(objectNumber)) {
+            return mObjects.get(objectNumber);
+        }
+        final XrefEntry entry = mXref.get(objectNumber);
+        if (entry == null || entry.type == FREE_OBJECT) {
+            // References to missing objects are references to null
+            return null;
+        }
+        if (!mLoadingObjects.add(objectNumber)) {
+            throw new PdfStructureException("Object " + objectNumber + " references itself");
+        }
+        final Object object;
+        try {
+            if (entry.type == UNCOMPRESSED_OBJECT) {
+                object = new PdfObjectParser(mBuffer, this).readIndirectObject(entry.field2,
+                        objectNumber);
+            } else if (entry.type == COMPRESSED_OBJECT) {
+                object = getObjectStream(entry.field2).readObject(entry.field3);
+            } else {
+                object = null;
+            }
+        } finally {
+            mLoadingObjects.remove(objectNumber);
+        }
+        mObjects.put(objectNumber, object);
+        return object;
+    }
+
+    @NonNull
+    private ObjectStream getObjectStream(final int objectNumber) {
+        ObjectStream objectStream = mObjectStreams.get(objectNumber);
+        if (objectStream != null) {
+            return objectStream;
+        }
+        final Object object = getObject(objectNumber);
+        if (!(object instanceof PdfObjectParser.Stream)) {
+            throw new PdfStructureException("Object stream " + objectNumber + " not found");
+        }
+        final PdfObjectParser.Stream stream = (PdfObjectParser.Stream) object;
+        final int count = getInt(resolve(stream.dictionary.get("N")));
+        final int first = getInt(resolve(stream.dictionary.get("First")));
+        if (count < 0 || first < 0) {
+            throw new PdfStructureException("Invalid object stream " + objectNumber);
+        }
+        final PdfObjectParser parser = new PdfObjectParser(ByteBuffer.wrap(decodeStream(stream)),
+                this);
+        final int[] objectNumbers = new int[count];
+        final int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            objectNumbers[i] = getInt(parser.readObject());
+            offsets[i] = first + getInt(parser.readObject());
+        }
+        objectStream = new ObjectStream(parser, objectNumbers, offsets);
+        mObjectStreams.put(objectNumber, objectStream);
+        return objectStream;
+    }
+
+    @NonNull
+    byte[] decodeStream(@NonNull final PdfObjectParser.Stream stream) {
+        final byte[] data = new byte[stream.dataLength];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = mBuffer.get(stream.dataOffset + i);
+        }
+        Object filter = resolve(stream.dictionary.get("Filter"));
+        Object parameters = resolve(stream.dictionary.get("DecodeParms"));
+        if (filter instanceof List) {
+            final List<?> filters = (List<?>) filter;
+            if (filters.size() > 1) {
+                throw new PdfStructureException("Unsupported filters: " + filters);
+            }
+            filter = filters.isEmpty() ? null : filters.get(0);
+            parameters = parameters instanceof List && !((List<?>) parameters).isEmpty()
+                    ? resolve(((List<?>) parameters).get(0)) : null;
+        }
+        if (filter == null) {
+            return data;
+        }
+        if (!"FlateDecode".equals(filter) && !"Fl".equals(filter)) {
+            throw new PdfStructureException("Unsupported filter: " + filter);
+        }
+        final byte[] inflated = inflate(data);
+        if (parameters instanceof Map) {
+            @SuppressWarnings("unchecked") final Map<String, Object> parameterDictionary =
+                    (Map<String, Object>) parameters;
+            return applyPredictor(inflated, parameterDictionary);
+        }
+        return inflated;
+    }
+
+    @NonNull
+    private static byte[] inflate(@NonNull final byte[] data) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                final int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    // Truncated streams are used as far as they go
+                    break;
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } catch (final DataFormatException e) {
+            throw new PdfStructureException("Could not inflate stream", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @NonNull
+    private byte[] applyPredictor(@NonNull final byte[] data,
+            @NonNull final Map<String, Object> parameters) {
+        final int predictor = getInt(parameters.get("Predictor"), 1);
+        if (predictor == 1) {
+            return data;
+        }
+        if (predictor < 10) {
+            throw new PdfStructureException("Unsupported predictor: " + predictor);
+        }
+        final int colors = getInt(parameters.get("Colors"), 1);
+        final int bitsPerComponent = getInt(parameters.get("BitsPerComponent"), 8);
+        final int columns = getInt(parameters.get("Columns"), 1);
+        final int bytesPerPixel = Math.max(1, colors * bitsPerComponent / 8);
+        final int rowLength = (columns * colors * bitsPerComponent + 7) / 8;
+        final int rowCount = data.length / (rowLength + 1);
+        final byte[] output = new byte[rowCount * rowLength];
+        for (int row = 0; row < rowCount; row++) {
+            final int input = row * (rowLength + 1);
+            final int current = row * rowLength;
+            final int previous = current - rowLength;
+            final int type = data[input];
+            for (int i = 0; i < rowLength; i++) {
+                final int raw = data[input + 1 + i] & 0xff;
+                final int left = i >= bytesPerPixel ? output[current + i - bytesPerPixel] & 0xff
+                        : 0;
+                final int up = row > 0 ? output[previous + i] & 0xff : 0;
+                final int upLeft = row > 0 && i >= bytesPerPixel
+                        ? output[previous + i - bytesPerPixel] & 0xff : 0;
+                final int value;
+                switch (type) {
+                    case 0:
+                        value = raw;
+                        break;
+                    case 1:
+                        value = raw + left;
+                        break;
+                    case 2:
+                        value = raw + up;
+                        break;
+                    case 3:
+                        value = raw + (left + up) / 2;
+                        break;
+                    case 4:
+                        value = raw + paeth(left, up, upLeft);
+                        break;
+                    default:
+                        throw new PdfStructureException("Invalid png predictor row type: " + type);
+                }
+                output[current + i] = (byte) value;
+            }
+        }
+        return output;
+    }
+
+    private static int paeth(final int left, final int up, final int upLeft) {
+        final int estimate = left + up - upLeft;
+        final int distanceLeft = Math.abs(estimate - left);
+        final int distanceUp = Math.abs(estimate - up);
+        final int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    private int getInt(@Nullable final Object object, final int defaultValue) {
+        final Object resolved = resolve(object);
+        return resolved instanceof Number ? ((Number) resolved).intValue() : defaultValue;
+    }
+
+    private static int getInt(@Nullable final Object object) {
+        if (!(object instanceof Long)) {
+            throw new PdfStructureException("Not an integer: " + object);
+        }
+        return ((Long) object).intValue();
+    }
+
+    private static final class XrefEntry {
+
+        final int type;
+        final int field2;
+        final int field3;
+
+        XrefEntry(final int type, final int field2, final int field3) {
+            this.type = type;
+            this.field2 = field2;
+            this.field3 = field3;
+        }
+    }
+
+    private static final class ObjectStream {
+
+        final PdfObjectParser parser;
+        final int[] objectNumbers;
+        final int[] offsets;
+
+        ObjectStream(@NonNull final PdfObjectParser parser, @NonNull final int[] objectNumbers,
+                @NonNull final int[] offsets) {
+            this.parser = parser;
+            this.objectNumbers = objectNumbers;
+            this.offsets = offsets;
+        }
+
+        @Nullable
+        Object readObject(final int index) {
+            if (index < 0 || index >= offsets.length) {
+                throw new PdfStructureException("Invalid object stream index: " + index);
+            }
+            parser.setPosition(offsets[index]);
+            return parser.readObject();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+
+import net.gini.android.vision.document.PdfDocument;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.tiles.TileSource;
+import net.gini.android.vision.internal.util.Size;
+
+import java.io.IOException;
+
+/**
+ * Renders the tiles of a pdf's first page with clipped {@link android.graphics.pdf.PdfRenderer}
+ * renderings.
+ *
+ * @exclude
+ */
+@RequiresApi(21)
+public final class PdfTileSource implements TileSource {
+
+    // Pdf sizes are in points, 1/72 inch. Renders the full resolution at 300 dpi.
+    private static final float FULL_RESOLUTION_SCALE = 300f / 72f;
+
+    private final PdfSession mSession;
+    private Size mPageSize;
+    private boolean mClosed;
+
+    /**
+     * @return a tile source for the pdf or null, if pdfs can't be rendered on this device
+     */
+    @Nullable
+    public static TileSource fromDocument(@NonNull final PdfDocument document,
+            @NonNull final Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return null;
+        }
+        return new PdfTileSource(PdfSession.acquire(document.getUri(), context));
+    }
+
+    private PdfTileSource(@NonNull final PdfSession session) {
+        mSession = session;
+    }
+
+    @Override
+    public void open() throws IOException {
+        final Size pageSize = mSession.getPageSize(0);
+        if (pageSize == null) {
+            throw new IOException("Could not read the pdf");
+        }
+        mPageSize = pageSize;
+    }
+
+    @Override
+    public int getWidth() {
+        return (int) (mPageSize.width * FULL_RESOLUTION_SCALE);
+    }
+
+    @Override
+    public int getHeight() {
+        return (int) (mPageSize.height * FULL_RESOLUTION_SCALE);
+    }
+
+    @Override
+    public void decodeTile(@NonNull final Rect region, final int sampleSize,
+            @NonNull final Bitmap tile) throws IOException {
+        final Rect sampledRegion = new Rect(region.left / sampleSize, region.top / sampleSize,
+                region.right / sampleSize, region.bottom / sampleSize);
+        if (!mSession.renderRegion(0, FULL_RESOLUTION_SCALE / sampleSize, sampledRegion,
+                tile)) {
+            throw new IOException("Could not render region " + region);
+        }
+    }
+
+    @NonNull
+    @Override
+    public TaskType getTaskType() {
+        return TaskType.RENDER_PDF_TILE;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mSession.release();
+    }
+}
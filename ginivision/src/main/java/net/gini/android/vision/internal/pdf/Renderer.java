@@ -4,6 +4,8 @@ import android.graphics.Bitmap;
 import android.support.annotation.NonNull;
 
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
 import net.gini.android.vision.internal.util.Size;
 
 /**
@@ -11,9 +13,26 @@ import net.gini.android.vision.internal.util.Size;
  */
 public interface Renderer {
     void toBitmap(@NonNull final Size targetSize,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final AsyncCallback<Bitmap> asyncCallback);
 
-    void getPageCount(@NonNull final AsyncCallback<Integer> asyncCallback);
+    void getPageCount(@NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Integer> asyncCallback);
 
     int getPageCount();
+
+    /**
+     * Renders the page into a bitmap from the pool. The caller must release the bitmap to the
+     * pool when it isn't shown anymore. If the token is cancelled the callback is not invoked and
+     * a bitmap rendered nevertheless is released to the pool.
+     */
+    void renderPage(final int pageIndex, @NonNull final Size targetSize,
+            @NonNull final BitmapPool bitmapPool, @NonNull final Priority priority,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Bitmap> asyncCallback);
+
+    /**
+     * Releases the pdf. The renderer can't be used afterwards.
+     */
+    void close();
 }
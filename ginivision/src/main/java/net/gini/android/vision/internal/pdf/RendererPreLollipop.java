@@ -1,30 +1,84 @@
 package net.gini.android.vision.internal.pdf;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.net.Uri;
 import android.support.annotation.NonNull;
 
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
 import net.gini.android.vision.internal.util.Size;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
 /**
+ * Pdfs can't be rendered before Lollipop, only their page count is read with the
+ * {@link PdfStructureReader}.
+ *
  * @exclude
  */
 class RendererPreLollipop implements Renderer {
 
+    private static final Logger LOG = LoggerFactory.getLogger(RendererPreLollipop.class);
+
+    private final Uri mUri;
+    private final Context mContext;
+    private int mPageCount = -1;
+
+    RendererPreLollipop(@NonNull final Uri uri, @NonNull final Context context) {
+        mUri = uri;
+        mContext = context.getApplicationContext();
+    }
+
     @Override
     public void toBitmap(@NonNull final Size targetSize,
+            @NonNull final CancellationToken cancellationToken,
             @NonNull final AsyncCallback<Bitmap> asyncCallback) {
         asyncCallback.onSuccess(null);
     }
 
     @Override
-    public void getPageCount(@NonNull final AsyncCallback<Integer> asyncCallback) {
-        asyncCallback.onSuccess(0);
+    public void getPageCount(@NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Integer> asyncCallback) {
+        TaskScheduler.getInstance().submit(TaskType.COUNT_PDF_PAGES, Priority.LOW,
+                cancellationToken, new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return getPageCount();
+                    }
+                }, asyncCallback);
     }
 
     @Override
-    public int getPageCount() {
-        return 0;
+    public synchronized int getPageCount() {
+        if (mPageCount >= 0) {
+            return mPageCount;
+        }
+        try {
+            mPageCount = PdfStructureReader.read(mUri, mContext).getPageCount();
+        } catch (final IOException | PdfStructureException e) {
+            LOG.error("Could not read the page count of {}", mUri, e);
+            mPageCount = 0;
+        }
+        return mPageCount;
     }
 
+    @Override
+    public void renderPage(final int pageIndex, @NonNull final Size targetSize,
+            @NonNull final BitmapPool bitmapPool, @NonNull final Priority priority,
+            @NonNull final CancellationToken cancellationToken,
+            @NonNull final AsyncCallback<Bitmap> asyncCallback) {
+        asyncCallback.onSuccess(null);
+    }
+
+    @Override
+    public void close() {
+    }
 }
@@ -0,0 +1,385 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ *     Finds the pages of a pdf which consist of a single jpeg covering the whole page, like the
+ *     pages of scanned documents, and extracts the jpegs without decoding them.
+ * </p>
+ * <p>
+ *     A page qualifies if its content stream draws only one image XObject, the image is stored
+ *     with the DCTDecode filter in a color space Android can decode and it covers the page. Text
+ *     is allowed only if it is invisible, which is how scanners add recognized text.
+ * </p>
+ *
+ * @exclude
+ */
+public final class ScannedPdfExtractor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScannedPdfExtractor.class);
+
+    private static final float MIN_PAGE_COVERAGE = 0.95f;
+    private static final float MAX_IMAGE_OVERHANG = 1.05f;
+    private static final float MAX_ROTATION_ERROR_DEGREES = 1f;
+    private static final int INVISIBLE_TEXT_RENDER_MODE = 3;
+
+    private static final Set<String> NON_PAINTING_OPERATORS = new HashSet<>(Arrays.asList(
+            // Graphics state
+            "w", "J", "j", "M", "d", "ri", "i", "gs",
+            // Color
+            "CS", "cs", "SC", "SCN", "sc", "scn", "G", "g", "RG", "rg", "K", "k",
+            // Paths which are only used for clipping
+            "m", "l", "c", "v", "y", "h", "re", "n", "W", "W*",
+            // Text objects and state
+            "BT", "ET", "Tc", "Tw", "Tz", "TL", "Tf", "Ts", "Td", "TD", "Tm", "T*",
+            // Marked content
+            "BMC", "BDC", "EMC", "MP", "DP"));
+    private static final Set<String> TEXT_SHOWING_OPERATORS = new HashSet<>(Arrays.asList(
+            "Tj", "TJ", "'", "\""));
+
+    private final PdfStructureReader mReader;
+
+    /**
+     * Extracts the jpegs of the pdf's scanned pages.
+     *
+     * @return the jpeg of each page or null for pages which are not a single jpeg
+     * @throws IOException           if the file could not be opened or mapped
+     * @throws PdfStructureException if the file is not a pdf or is damaged beyond recovery
+     */
+    @NonNull
+    public static List<PdfPageImage> extract(@NonNull final Uri uri,
+            @NonNull final Context context) throws IOException {
+        return extract(PdfStructureReader.map(uri, context));
+    }
+
+    /**
+     * Extracts the jpegs of the pdf's scanned pages.
+     *
+     * @return the jpeg of each page or null for pages which are not a single jpeg
+     * @throws PdfStructureException if the buffer does not contain a pdf or it is damaged beyond
+     *                               recovery
+     */
+    @NonNull
+    public static List<PdfPageImage> extract(@NonNull final ByteBuffer buffer) {
+        return new ScannedPdfExtractor(new PdfStructureReader(buffer)).extract();
+    }
+
+    private ScannedPdfExtractor(@NonNull final PdfStructureReader reader) {
+        mReader = reader;
+    }
+
+    @NonNull
+    private List<PdfPageImage> extract() {
+        final List<PdfPage> pages = mReader.readPages();
+        if (mReader.isEncrypted()) {
+            // Embedded jpegs are encrypted, too
+            return Collections.nCopies(pages.size(), (PdfPageImage) null);
+        }
+        final List<PdfPageImage> images = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            PdfPageImage image = null;
+            try {
+                image = extractImage(i, pages.get(i));
+            } catch (final PdfStructureException e) {
+                LOG.debug("Could not analyse page {}", i, e);
+            }
+            images.add(image);
+        }
+        return images;
+    }
+
+    @Nullable
+    private PdfPageImage extractImage(final int pageIndex, @NonNull final PdfPage page) {
+        final Map<String, Object> xObjects = page.resources != null
+                ? mReader.getDictionary(page.resources.get("XObject")) : null;
+        if (xObjects == null) {
+            return null;
+        }
+        final DrawnImage drawnImage = findDrawnImage(readContent(page));
+        if (drawnImage == null) {
+            return null;
+        }
+        final Object xObject = mReader.resolve(xObjects.get(drawnImage.name));
+        if (!(xObject instanceof PdfObjectParser.Stream)) {
+            return null;
+        }
+        final PdfObjectParser.Stream image = (PdfObjectParser.Stream) xObject;
+        if (!isDecodableJpeg(image.dictionary)) {
+            return null;
+        }
+        if (!coversPage(drawnImage.matrix, page.mediaBox)) {
+            LOG.debug("Image of page {} doesn't cover the page", pageIndex);
+            return null;
+        }
+        final int rotation = getRotation(drawnImage.matrix, page.rotation);
+        if (rotation < 0) {
+            LOG.debug("Image of page {} is skewed or mirrored", pageIndex);
+            return null;
+        }
+        final ByteBuffer jpeg = mReader.getBuffer().duplicate();
+        jpeg.limit(image.dataOffset + image.dataLength);
+        jpeg.position(image.dataOffset);
+        if (jpeg.remaining() < 2 || (jpeg.get(jpeg.position()) & 0xff) != 0xff
+                || (jpeg.get(jpeg.position() + 1) & 0xff) != 0xd8) {
+            LOG.debug("Image of page {} is not a jpeg", pageIndex);
+            return null;
+        }
+        return new PdfPageImage(pageIndex, getInt(image.dictionary.get("Width")),
+                getInt(image.dictionary.get("Height")), rotation, jpeg.slice());
+    }
+
+    @NonNull
+    private byte[] readContent(@NonNull final PdfPage page) {
+        final Object contents = mReader.resolve(page.dictionary.get("Contents"));
+        final List<?> streams = contents instanceof List ? (List<?>) contents
+                : Collections.singletonList(contents);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (final Object stream : streams) {
+            final Object resolved = mReader.resolve(stream);
+            if (!(resolved instanceof PdfObjectParser.Stream)) {
+                continue;
+            }
+            final byte[] data = mReader.decodeStream((PdfObjectParser.Stream) resolved);
+            content.write(data, 0, data.length);
+            // Content streams are split at token boundaries
+            content.write('\n');
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * @return the only image drawn by the content stream and its transformation or null, if
+     * the content draws something else or more than one image
+     */
+    @Nullable
+    private static DrawnImage findDrawnImage(@NonNull final byte[] content) {
+        final PdfObjectParser parser = PdfObjectParser.forContentStream(content);
+        final List<Object> operands = new ArrayList<>();
+        final Deque<GraphicsState> stateStack = new ArrayDeque<>();
+        GraphicsState state = new GraphicsState();
+        DrawnImage drawnImage = null;
+        while (!parser.isAtEnd()) {
+            final Object token = parser.readObject();
+            if (!(token instanceof PdfObjectParser.Operator)) {
+                operands.add(token);
+                continue;
+            }
+            final String operator = ((PdfObjectParser.Operator) token).name;
+            if ("q".equals(operator)) {
+                stateStack.push(state);
+                state = new GraphicsState(state);
+            } else if ("Q".equals(operator)) {
+                if (!stateStack.isEmpty()) {
+                    state = stateStack.pop();
+                }
+            } else if ("cm".equals(operator)) {
+                state.concatenate(getMatrix(operands));
+            } else if ("Tr".equals(operator)) {
+                state.textRenderMode = operands.isEmpty() ? 0 : getInt(operands.get(0));
+            } else if ("Do".equals(operator)) {
+                if (drawnImage != null || operands.isEmpty()
+                        || !(operands.get(0) instanceof String)) {
+                    return null;
+                }
+                drawnImage = new DrawnImage((String) operands.get(0), state.matrix.clone());
+            } else if (TEXT_SHOWING_OPERATORS.contains(operator)) {
+                if (state.textRenderMode != INVISIBLE_TEXT_RENDER_MODE) {
+                    return null;
+                }
+            } else if (!NON_PAINTING_OPERATORS.contains(operator)) {
+                // Painted paths, shadings, inline images and unknown operators
+                return null;
+            }
+            operands.clear();
+        }
+        return drawnImage;
+    }
+
+    private boolean isDecodableJpeg(@NonNull final Map<String, Object> image) {
+        if (!"Image".equals(image.get("Subtype"))
+                || Boolean.TRUE.equals(mReader.resolve(image.get("ImageMask")))
+                || image.get("SMask") != null || image.get("Mask") != null
+                || image.get("Decode") != null) {
+            return false;
+        }
+        Object filter = mReader.resolve(image.get("Filter"));
+        if (filter instanceof List && ((List<?>) filter).size() == 1) {
+            filter = mReader.resolve(((List<?>) filter).get(0));
+        }
+        if (!"DCTDecode".equals(filter) && !"DCT".equals(filter)) {
+            return false;
+        }
+        return isDecodableColorSpace(mReader.resolve(image.get("ColorSpace")));
+    }
+
+    private boolean isDecodableColorSpace(@Nullable final Object colorSpace) {
+        if ("DeviceRGB".equals(colorSpace) || "DeviceGray".equals(colorSpace)) {
+            return true;
+        }
+        if (!(colorSpace instanceof List) || ((List<?>) colorSpace).size() != 2) {
+            // Cmyk jpegs are not supported by Android's decoders
+            return false;
+        }
+        final List<?> array = (List<?>) colorSpace;
+        final Object family = array.get(0);
+        if ("CalRGB".equals(family) || "CalGray".equals(family)) {
+            return true;
+        }
+        if ("ICCBased".equals(family)) {
+            final Map<String, Object> profile = mReader.getDictionary(array.get(1));
+            final Object components = profile != null ? mReader.resolve(profile.get("N")) : null;
+            return components instanceof Long
+                    && ((Long) components == 1 || (Long) components == 3);
+        }
+        return false;
+    }
+
+    /**
+     * Checks that the unit square of the image space transformed by the matrix covers the page
+     * and doesn't reach far beyond it.
+     */
+    private static boolean coversPage(@NonNull final float[] matrix,
+            @NonNull final float[] mediaBox) {
+        final float[] xs = {matrix[4], matrix[0] + matrix[4], matrix[2] + matrix[4],
+                matrix[0] + matrix[2] + matrix[4]};
+        final float[] ys = {matrix[5], matrix[1] + matrix[5], matrix[3] + matrix[5],
+                matrix[1] + matrix[3] + matrix[5]};
+        final float imageLeft = min(xs);
+        final float imageRight = max(xs);
+        final float imageBottom = min(ys);
+        final float imageTop = max(ys);
+        final float pageLeft = Math.min(mediaBox[0], mediaBox[2]);
+        final float pageRight = Math.max(mediaBox[0], mediaBox[2]);
+        final float pageBottom = Math.min(mediaBox[1], mediaBox[3]);
+        final float pageTop = Math.max(mediaBox[1], mediaBox[3]);
+
+        final float pageArea = (pageRight - pageLeft) * (pageTop - pageBottom);
+        final float imageArea = (imageRight - imageLeft) * (imageTop - imageBottom);
+        final float coveredArea = Math.max(0, Math.min(imageRight, pageRight)
+                - Math.max(imageLeft, pageLeft))
+                * Math.max(0, Math.min(imageTop, pageTop) - Math.max(imageBottom, pageBottom));
+        return pageArea > 0
+                && coveredArea >= pageArea * MIN_PAGE_COVERAGE
+                && imageArea <= pageArea * MAX_IMAGE_OVERHANG;
+    }
+
+    /**
+     * @return the clockwise rotation in degrees of the image on the displayed page or -1, if it
+     * is not rotated by a multiple of 90 degrees or it is mirrored
+     */
+    private static int getRotation(@NonNull final float[] matrix, final int pageRotation) {
+        final float determinant = matrix[0] * matrix[3] - matrix[1] * matrix[2];
+        if (determinant <= 0) {
+            return -1;
+        }
+        // The image's x axis in user space, which has its y axis pointing up
+        final double degrees = Math.toDegrees(Math.atan2(-matrix[1], matrix[0]));
+        final long quarterTurns = Math.round(degrees / 90);
+        if (Math.abs(degrees - quarterTurns * 90) > MAX_ROTATION_ERROR_DEGREES) {
+            return -1;
+        }
+        return (int) (((quarterTurns * 90 + pageRotation) % 360 + 360) % 360);
+    }
+
+    @NonNull
+    private static float[] getMatrix(@NonNull final List<Object> operands) {
+        if (operands.size() != 6) {
+            throw new PdfStructureException("Invalid matrix: " + operands);
+        }
+        final float[] matrix = new float[6];
+        for (int i = 0; i < 6; i++) {
+            if (!(operands.get(i) instanceof Number)) {
+                throw new PdfStructureException("Invalid matrix: " + operands);
+            }
+            matrix[i] = ((Number) operands.get(i)).floatValue();
+        }
+        return matrix;
+    }
+
+    private static int getInt(@Nullable final Object object) {
+        if (!(object instanceof Number)) {
+            throw new PdfStructureException("Not a number: " + object);
+        }
+        return ((Number) object).intValue();
+    }
+
+    private static float min(@NonNull final float[] values) {
+        float min = values[0];
+        for (final float value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private static float max(@NonNull final float[] values) {
+        float max = values[0];
+        for (final float value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static final class GraphicsState {
+
+        final float[] matrix;
+        int textRenderMode;
+
+        GraphicsState() {
+            matrix = new float[]{1, 0, 0, 1, 0, 0};
+        }
+
+        GraphicsState(@NonNull final GraphicsState other) {
+            matrix = other.matrix.clone();
+            textRenderMode = other.textRenderMode;
+        }
+
+        /**
+         * Applies the transformation before the current transformation, like the cm operator.
+         */
+        void concatenate(@NonNull final float[] m) {
+            final float a = m[0] * matrix[0] + m[1] * matrix[2];
+            final float b = m[0] * matrix[1] + m[1] * matrix[3];
+            final float c = m[2] * matrix[0] + m[3] * matrix[2];
+            final float d = m[2] * matrix[1] + m[3] * matrix[3];
+            final float e = m[4] * matrix[0] + m[5] * matrix[2] + matrix[4];
+            final float f = m[4] * matrix[1] + m[5] * matrix[3] + matrix[5];
+            matrix[0] = a;
+            matrix[1] = b;
+            matrix[2] = c;
+            matrix[3] = d;
+            matrix[4] = e;
+            matrix[5] = f;
+        }
+    }
+
+    private static final class DrawnImage {
+
+        final String name;
+        final float[] matrix;
+
+        DrawnImage(@NonNull final String name, @NonNull final float[] matrix) {
+            this.name = name;
+            this.matrix = matrix;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.gini.android.vision.internal.pdf;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Shares one session per key and closes it once it wasn't used for the idle timeout.
+ * </p>
+ * <p>
+ *     Sessions are reference counted. When the last reference is released, closing is scheduled
+ *     after the idle timeout and acquiring the session again before cancels it.
+ * </p>
+ *
+ * @param <K> the key identifying a session
+ * @param <S> the session
+ * @exclude
+ */
+final class SessionRegistry<K, S> {
+
+    private final Map<K, Entry> mEntries = new HashMap<>();
+    private final Closer<S> mCloser;
+    private final DelayedExecutor mDelayedExecutor;
+    private final long mIdleTimeoutMs;
+
+    /**
+     * @param closer          closes sessions which are not used anymore
+     * @param delayedExecutor runs the closing after the idle timeout
+     */
+    SessionRegistry(@NonNull final Closer<S> closer,
+            @NonNull final DelayedExecutor delayedExecutor, final long idleTimeoutMs) {
+        mCloser = closer;
+        mDelayedExecutor = delayedExecutor;
+        mIdleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Returns the open session for the key or opens a new one with the factory. Each call must be
+     * balanced with a call to {@link #release(Object, Object)}.
+     */
+    @NonNull
+    synchronized S acquire(@NonNull final K key, @NonNull final Factory<K, S> factory) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, factory.create(key));
+            mEntries.put(key, entry);
+        }
+        entry.mReferenceCount++;
+        mDelayedExecutor.removeCallbacks(entry);
+        return entry.mSession;
+    }
+
+    /**
+     * Releases a reference to the session. Sessions which were closed already are ignored.
+     */
+    synchronized void release(@NonNull final K key, @NonNull final S session) {
+        final Entry entry = mEntries.get(key);
+        if (entry == null || entry.mSession != session || entry.mReferenceCount == 0) {
+            return;
+        }
+        entry.mReferenceCount--;
+        if (entry.mReferenceCount == 0) {
+            mDelayedExecutor.postDelayed(entry, mIdleTimeoutMs);
+        }
+    }
+
+    private void closeIfUnused(@NonNull final Entry entry) {
+        synchronized (this) {
+            if (entry.mReferenceCount > 0 || mEntries.get(entry.mKey) != entry) {
+                return;
+            }
+            mEntries.remove(entry.mKey);
+        }
+        mCloser.close(entry.mSession);
+    }
+
+    private final class Entry implements Runnable {
+
+        private final K mKey;
+        private final S mSession;
+        private int mReferenceCount;
+
+        Entry(@NonNull final K key, @NonNull final S session) {
+            mKey = key;
+            mSession = session;
+        }
+
+        @Override
+        public void run() {
+            closeIfUnused(this);
+        }
+    }
+
+    interface Factory<K, S> {
+
+        @NonNull
+        S create(@NonNull K key);
+    }
+
+    interface Closer<S> {
+
+        void close(@NonNull S session);
+    }
+
+    /**
+     * Runs tasks after a delay, like a {@link android.os.Handler}.
+     */
+    interface DelayedExecutor {
+
+        void postDelayed(@NonNull Runnable runnable, long delayMs);
+
+        void removeCallbacks(@NonNull Runnable runnable);
+    }
+}
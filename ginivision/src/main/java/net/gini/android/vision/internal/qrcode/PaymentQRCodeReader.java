@@ -4,6 +4,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import net.gini.android.vision.internal.camera.api.PreviewBufferPool;
 import net.gini.android.vision.internal.util.Size;
 
 import java.util.List;
@@ -83,6 +84,20 @@ public class PaymentQRCodeReader {
         mDetector.detect(image, imageSize, rotation);
     }
 
+    /**
+     * Reads the first supported QRCode payment data from a pooled preview buffer. The buffer is
+     * handed back to the pool once it isn't needed anymore.
+     *
+     * @param image a preview buffer received from the buffer pool
+     * @param imageSize size of the image
+     * @param rotation rotation to be applied to the image for correct orientation
+     * @param bufferPool the pool the image buffer belongs to
+     */
+    public void readFromImage(@NonNull final byte[] image, @NonNull final Size imageSize,
+            final int rotation, @NonNull final PreviewBufferPool bufferPool) {
+        mDetector.detect(image, imageSize, rotation, bufferPool);
+    }
+
     /**
      * Release all resources. Detection not possible after this has been called.
      */
@@ -0,0 +1,158 @@
+package net.gini.android.vision.internal.qrcode;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import net.gini.android.vision.internal.util.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decides which preview frames are sent to QRCode detection.
+ * <p>
+ * The sampling interval follows the average detection latency, so images are not queued faster
+ * than they can be processed. When no QRCode was detected for a while or the same QRCodes were
+ * detected for a while the interval is doubled step by step. A change in the scene (detected by
+ * comparing a coarse luma grid of consecutive NV21 images) or detecting different QRCodes resets
+ * the interval.
+ */
+class QRCodeDetectionGovernor {
+
+    @VisibleForTesting
+    static final long IDLE_BACKOFF_AFTER_MS = 2000;
+    @VisibleForTesting
+    static final long STABLE_BACKOFF_AFTER_MS = 1500;
+    @VisibleForTesting
+    static final long BACKOFF_STEP_MS = 100;
+    @VisibleForTesting
+    static final long MAX_INTERVAL_MS = 1000;
+    @VisibleForTesting
+    static final int SCENE_CHANGE_THRESHOLD = 16;
+
+    private static final int MAX_BACKOFF_LEVEL = 4;
+    private static final float LATENCY_SMOOTHING = 0.3f;
+    private static final int SIGNATURE_GRID_SIZE = 8;
+
+    private final int[] mSignature = new int[SIGNATURE_GRID_SIZE * SIGNATURE_GRID_SIZE];
+    private boolean mHasSignature;
+    private float mAverageLatencyMs = -1;
+    private int mBackoffLevel;
+    private long mLastSampleMs;
+    private boolean mHasSampled;
+    private long mLastChangeMs;
+    private List<String> mLastQRCodes = Collections.emptyList();
+
+    QRCodeDetectionGovernor(final long nowMs) {
+        mLastChangeMs = nowMs;
+    }
+
+    /**
+     * Called for every preview image.
+     *
+     * @param nowMs     current time in milliseconds
+     * @param image     an NV21 image
+     * @param imageSize size of the image
+     * @return {@code true}, if the image should be sent to detection
+     */
+    synchronized boolean shouldSample(final long nowMs, @NonNull final byte[] image,
+            @NonNull final Size imageSize) {
+        if (updateSignature(image, imageSize)) {
+            onChange(nowMs);
+        }
+        updateBackoffLevel(nowMs);
+        if (mHasSampled && nowMs - mLastSampleMs < getSamplingIntervalMs()) {
+            return false;
+        }
+        mHasSampled = true;
+        mLastSampleMs = nowMs;
+        return true;
+    }
+
+    /**
+     * Called after detection finished on a sampled image.
+     *
+     * @param latencyMs time spent detecting QRCodes
+     * @param qrCodes   the detected QRCodes
+     * @param nowMs     current time in milliseconds
+     */
+    synchronized void onDetectionFinished(final long latencyMs,
+            @NonNull final List<String> qrCodes, final long nowMs) {
+        if (mAverageLatencyMs < 0) {
+            mAverageLatencyMs = latencyMs;
+        } else {
+            mAverageLatencyMs += LATENCY_SMOOTHING * (latencyMs - mAverageLatencyMs);
+        }
+        if (!qrCodes.isEmpty() && !qrCodes.equals(mLastQRCodes)) {
+            onChange(nowMs);
+        }
+        if (!qrCodes.equals(mLastQRCodes)) {
+            mLastQRCodes = new ArrayList<>(qrCodes);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized long getSamplingIntervalMs() {
+        final long latencyMs = Math.max(0, Math.round(mAverageLatencyMs));
+        if (mBackoffLevel == 0) {
+            return Math.min(latencyMs, MAX_INTERVAL_MS);
+        }
+        final long backoffMs = Math.max(latencyMs, BACKOFF_STEP_MS) << mBackoffLevel;
+        return Math.min(backoffMs, MAX_INTERVAL_MS);
+    }
+
+    @VisibleForTesting
+    synchronized int getBackoffLevel() {
+        return mBackoffLevel;
+    }
+
+    private void onChange(final long nowMs) {
+        mLastChangeMs = nowMs;
+        mBackoffLevel = 0;
+        // Sample the next image regardless of the interval
+        mHasSampled = false;
+    }
+
+    private void updateBackoffLevel(final long nowMs) {
+        final long backoffAfterMs = mLastQRCodes.isEmpty() ? IDLE_BACKOFF_AFTER_MS
+                : STABLE_BACKOFF_AFTER_MS;
+        final long unchangedMs = nowMs - mLastChangeMs;
+        if (unchangedMs < backoffAfterMs) {
+            mBackoffLevel = 0;
+        } else {
+            mBackoffLevel = (int) Math.min(MAX_BACKOFF_LEVEL,
+                    1 + (unchangedMs - backoffAfterMs) / backoffAfterMs);
+        }
+    }
+
+    /**
+     * Samples the luma plane on a coarse grid and compares it to the previous samples.
+     *
+     * @return {@code true}, if the scene changed
+     */
+    private boolean updateSignature(@NonNull final byte[] image, @NonNull final Size imageSize) {
+        final int width = imageSize.width;
+        final int height = imageSize.height;
+        if (width <= 0 || height <= 0 || image.length < width * height) {
+            return false;
+        }
+        long differenceSum = 0;
+        int i = 0;
+        for (int gridY = 0; gridY < SIGNATURE_GRID_SIZE; gridY++) {
+            final int y = (2 * gridY + 1) * height / (2 * SIGNATURE_GRID_SIZE);
+            for (int gridX = 0; gridX < SIGNATURE_GRID_SIZE; gridX++) {
+                final int x = (2 * gridX + 1) * width / (2 * SIGNATURE_GRID_SIZE);
+                final int luma = image[y * width + x] & 0xFF;
+                differenceSum += Math.abs(luma - mSignature[i]);
+                mSignature[i] = luma;
+                i++;
+            }
+        }
+        if (!mHasSignature) {
+            mHasSignature = true;
+            return false;
+        }
+        return differenceSum / mSignature.length >= SCENE_CHANGE_THRESHOLD;
+    }
+}
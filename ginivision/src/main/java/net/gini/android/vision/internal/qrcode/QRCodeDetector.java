@@ -3,6 +3,7 @@ package net.gini.android.vision.internal.qrcode;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import net.gini.android.vision.internal.camera.api.PreviewBufferPool;
 import net.gini.android.vision.internal.util.Size;
 
 import java.util.List;
@@ -20,6 +21,13 @@ interface QRCodeDetector {
 
     void detect(@NonNull byte[] image, @NonNull Size imageSize, int rotation);
 
+    /**
+     * Same as {@link #detect(byte[], Size, int)}, but hands the image back to the buffer pool
+     * once detection finished or the image was dropped in favour of a newer one.
+     */
+    void detect(@NonNull byte[] image, @NonNull Size imageSize, int rotation,
+            @Nullable PreviewBufferPool bufferPool);
+
     void release();
 
     void setListener(@Nullable Listener listener);
@@ -3,12 +3,15 @@ package net.gini.android.vision.internal.qrcode;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 
+import net.gini.android.vision.internal.camera.api.PreviewBufferPool;
 import net.gini.android.vision.internal.camera.api.UIExecutor;
 import net.gini.android.vision.internal.util.Size;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Alpar Szotyori on 11.12.2017.
@@ -25,24 +28,40 @@ class QRCodeDetectorHandler extends Handler {
     static final int DETECT_QRCODE = 1;
     private final QRCodeDetectorTask mQRCodeDetectorTask;
     private final UIExecutor mUIExecutor;
+    private final QRCodeDetectionGovernor mGovernor;
     private QRCodeDetector.Listener mListener;
 
     QRCodeDetectorHandler(final Looper looper,
-            final QRCodeDetectorTask qrCodeDetectorTask) {
+            final QRCodeDetectorTask qrCodeDetectorTask,
+            final QRCodeDetectionGovernor governor) {
         super(looper);
         mQRCodeDetectorTask = qrCodeDetectorTask;
+        mGovernor = governor;
         mUIExecutor = new UIExecutor();
     }
 
     @Override
     public void handleMessage(final Message msg) {
         if (msg.what == DETECT_QRCODE) {
+            final ImageData imageData = (ImageData) msg.obj;
             if (mListener == null) {
+                imageData.drop();
                 return;
             }
-            final ImageData imageData = (ImageData) msg.obj;
-            final List<String> qrCodes = mQRCodeDetectorTask.detect(imageData.image,
-                    imageData.imageSize, imageData.rotation);
+            if (!imageData.claim()) {
+                // Image was dropped in favour of a newer one
+                return;
+            }
+            final long startMs = SystemClock.elapsedRealtime();
+            final List<String> qrCodes;
+            try {
+                qrCodes = mQRCodeDetectorTask.detect(imageData.image,
+                        imageData.imageSize, imageData.rotation);
+            } finally {
+                imageData.recycle();
+            }
+            final long nowMs = SystemClock.elapsedRealtime();
+            mGovernor.onDetectionFinished(nowMs - startMs, qrCodes, nowMs);
             if (!qrCodes.isEmpty()) {
                 mUIExecutor.runOnUiThread(new Runnable() {
                     @Override
@@ -66,15 +85,51 @@ class QRCodeDetectorHandler extends Handler {
 
     static class ImageData {
 
+        private static final int PENDING = 0;
+        private static final int CLAIMED = 1;
+        private static final int DROPPED = 2;
+
         final byte[] image;
         final Size imageSize;
         final int rotation;
+        private final PreviewBufferPool mBufferPool;
+        private final AtomicInteger mState = new AtomicInteger(PENDING);
 
         ImageData(final byte[] image,
-                final Size imageSize, final int rotation) {
+                final Size imageSize, final int rotation,
+                @Nullable final PreviewBufferPool bufferPool) {
             this.image = image;
             this.imageSize = imageSize;
             this.rotation = rotation;
+            mBufferPool = bufferPool;
+        }
+
+        /**
+         * Marks the image as being processed.
+         *
+         * @return {@code false}, if the image was already dropped
+         */
+        boolean claim() {
+            return mState.compareAndSet(PENDING, CLAIMED);
+        }
+
+        /**
+         * Hands the image back to the buffer pool as a dropped frame, if it wasn't claimed for
+         * processing.
+         */
+        void drop() {
+            if (mState.compareAndSet(PENDING, DROPPED) && mBufferPool != null) {
+                mBufferPool.drop(image);
+            }
+        }
+
+        /**
+         * Hands a claimed image back to the buffer pool.
+         */
+        void recycle() {
+            if (mBufferPool != null) {
+                mBufferPool.recycle(image);
+            }
         }
     }
 }
@@ -5,12 +5,15 @@ import static net.gini.android.vision.internal.qrcode.QRCodeDetectorHandler.DETE
 import android.os.HandlerThread;
 import android.os.Message;
 import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import net.gini.android.vision.internal.camera.api.PreviewBufferPool;
 import net.gini.android.vision.internal.util.Size;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by Alpar Szotyori on 08.12.2017.
@@ -25,31 +28,59 @@ class QRCodeDetectorImpl implements QRCodeDetector {
 
     private final QRCodeDetectorHandler mHandler;
     private final HandlerThread mHandlerThread;
+    private final QRCodeDetectionGovernor mGovernor;
+    private final AtomicReference<QRCodeDetectorHandler.ImageData> mPendingImageData =
+            new AtomicReference<>();
     private Listener mListener;
 
     QRCodeDetectorImpl(@NonNull final QRCodeDetectorTask qrCodeDetectorTask) {
         mHandlerThread = new HandlerThread("QRCodeDetectorThread",
                 Process.THREAD_PRIORITY_BACKGROUND);
         mHandlerThread.start();
-        mHandler = new QRCodeDetectorHandler(mHandlerThread.getLooper(), qrCodeDetectorTask);
+        mGovernor = new QRCodeDetectionGovernor(SystemClock.elapsedRealtime());
+        mHandler = new QRCodeDetectorHandler(mHandlerThread.getLooper(), qrCodeDetectorTask,
+                mGovernor);
     }
 
     @Override
     public void detect(@NonNull final byte[] image, @NonNull final Size imageSize,
             final int rotation) {
+        detect(image, imageSize, rotation, null);
+    }
+
+    @Override
+    public void detect(@NonNull final byte[] image, @NonNull final Size imageSize,
+            final int rotation, @Nullable final PreviewBufferPool bufferPool) {
+        final QRCodeDetectorHandler.ImageData imageData =
+                new QRCodeDetectorHandler.ImageData(image, imageSize, rotation, bufferPool);
         // If there is no listener, we don't process the image to avoid unnecessary computation
         if (mListener == null) {
+            imageData.drop();
+            return;
+        }
+        if (!mGovernor.shouldSample(SystemClock.elapsedRealtime(), image, imageSize)) {
+            imageData.drop();
             return;
         }
         mHandler.removeMessages(DETECT_QRCODE);
-        final Message message = mHandler.obtainMessage(DETECT_QRCODE,
-                new QRCodeDetectorHandler.ImageData(image, imageSize, rotation));
+        replacePendingImage(imageData);
+        final Message message = mHandler.obtainMessage(DETECT_QRCODE, imageData);
         mHandler.sendMessageAtFrontOfQueue(message);
     }
 
+    private void replacePendingImage(@Nullable final QRCodeDetectorHandler.ImageData newImageData) {
+        final QRCodeDetectorHandler.ImageData pendingImageData =
+                mPendingImageData.getAndSet(newImageData);
+        if (pendingImageData != null) {
+            // Has no effect, if detection already started on the pending image
+            pendingImageData.drop();
+        }
+    }
+
     @Override
     public void release() {
         mHandler.removeMessages(DETECT_QRCODE);
+        replacePendingImage(null);
         mHandler.release();
         mHandlerThread.quit();
     }
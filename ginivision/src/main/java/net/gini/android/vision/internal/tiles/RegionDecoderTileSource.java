@@ -0,0 +1,88 @@
+package net.gini.android.vision.internal.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.document.DocumentPayload;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the tiles of a jpeg or png document with a {@link BitmapRegionDecoder}.
+ *
+ * @exclude
+ */
+public final class RegionDecoderTileSource implements TileSource {
+
+    private final DocumentPayload mPayload;
+    private BitmapRegionDecoder mDecoder;
+    private boolean mClosed;
+
+    public RegionDecoderTileSource(@NonNull final DocumentPayload payload) {
+        mPayload = payload;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (mClosed) {
+            throw new IOException("Tile source was closed");
+        }
+        final InputStream inputStream = mPayload.openInputStream();
+        try {
+            mDecoder = BitmapRegionDecoder.newInstance(inputStream, false);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return mDecoder.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mDecoder.getHeight();
+    }
+
+    @Override
+    public void decodeTile(@NonNull final Rect region, final int sampleSize,
+            @NonNull final Bitmap tile) throws IOException {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            options.inBitmap = tile;
+        }
+        // Fails with an IllegalStateException after the decoder was recycled
+        final Bitmap bitmap = mDecoder.decodeRegion(region, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode region " + region);
+        }
+        if (bitmap != tile) {
+            new Canvas(tile).drawBitmap(bitmap, 0, 0, null);
+            bitmap.recycle();
+        }
+    }
+
+    @NonNull
+    @Override
+    public TaskType getTaskType() {
+        return TaskType.DECODE_TILE;
+    }
+
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+        if (mDecoder != null) {
+            mDecoder.recycle();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.gini.android.vision.internal.tiles;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycles the equally sized bitmaps tiles are decoded into. Bitmaps which don't fit into the
+ * pool are recycled.
+ */
+final class TileBitmapPool {
+
+    private final int mTileSize;
+    private final int mMaxSize;
+    private final List<Bitmap> mBitmaps = new ArrayList<>();
+
+    TileBitmapPool(final int tileSize, final int maxSize) {
+        mTileSize = tileSize;
+        mMaxSize = maxSize;
+    }
+
+    @NonNull
+    synchronized Bitmap acquire() {
+        if (!mBitmaps.isEmpty()) {
+            return mBitmaps.remove(mBitmaps.size() - 1);
+        }
+        // Pdf pages can only be rendered into ARGB_8888 bitmaps
+        return Bitmap.createBitmap(mTileSize, mTileSize, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * The bitmap must not be used anymore by the caller.
+     */
+    synchronized void release(@NonNull final Bitmap bitmap) {
+        if (bitmap.isRecycled() || mBitmaps.contains(bitmap)) {
+            return;
+        }
+        if (mBitmaps.size() < mMaxSize) {
+            mBitmaps.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    synchronized void clear() {
+        for (final Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+    }
+}
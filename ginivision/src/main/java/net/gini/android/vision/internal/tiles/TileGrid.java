@@ -0,0 +1,81 @@
+package net.gini.android.vision.internal.tiles;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+
+/**
+ * Divides a full resolution image into the regions of the tiles for a sample size.
+ */
+final class TileGrid {
+
+    private final int mImageWidth;
+    private final int mImageHeight;
+    private final int mSampleSize;
+    private final int mTileRegionSize;
+
+    /**
+     * @param screenPixelsPerImagePixel how large an image pixel is shown on the screen
+     * @return the largest power of two sample size which doesn't drop pixels shown on the screen
+     */
+    static int calculateSampleSize(final float screenPixelsPerImagePixel) {
+        int sampleSize = 1;
+        while (sampleSize * 2 * screenPixelsPerImagePixel <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    TileGrid(final int imageWidth, final int imageHeight, final int sampleSize,
+            final int tileSize) {
+        mImageWidth = imageWidth;
+        mImageHeight = imageHeight;
+        mSampleSize = sampleSize;
+        mTileRegionSize = tileSize * sampleSize;
+    }
+
+    int getSampleSize() {
+        return mSampleSize;
+    }
+
+    int getColumnCount() {
+        return (mImageWidth + mTileRegionSize - 1) / mTileRegionSize;
+    }
+
+    int getRowCount() {
+        return (mImageHeight + mTileRegionSize - 1) / mTileRegionSize;
+    }
+
+    /**
+     * @return the column containing the image x coordinate, clamped to the grid
+     */
+    int getColumn(final float x) {
+        return clamp((int) (x / mTileRegionSize), getColumnCount());
+    }
+
+    /**
+     * @return the row containing the image y coordinate, clamped to the grid
+     */
+    int getRow(final float y) {
+        return clamp((int) (y / mTileRegionSize), getRowCount());
+    }
+
+    /**
+     * Sets the region of the image covered by the tile. Tiles at the right and bottom edges may
+     * cover a smaller region.
+     */
+    void getRegion(final int column, final int row, @NonNull final Rect region) {
+        final int left = column * mTileRegionSize;
+        final int top = row * mTileRegionSize;
+        region.set(left, top, Math.min(left + mTileRegionSize, mImageWidth),
+                Math.min(top + mTileRegionSize, mImageHeight));
+    }
+
+    @NonNull
+    String getKey(final int column, final int row) {
+        return mSampleSize + "/" + column + "/" + row;
+    }
+
+    private static int clamp(final int index, final int count) {
+        return Math.max(0, Math.min(index, count - 1));
+    }
+}
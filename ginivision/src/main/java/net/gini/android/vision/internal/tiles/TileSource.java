@@ -0,0 +1,55 @@
+package net.gini.android.vision.internal.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import net.gini.android.vision.internal.async.TaskType;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ *     A full resolution image which is decoded in tiles by the {@link TiledImageLayer}.
+ * </p>
+ * <p>
+ *     The image must have the same aspect ratio as the preview it is drawn over.
+ * </p>
+ *
+ * @exclude
+ */
+public interface TileSource {
+
+    /**
+     * Opens the image. Called once before the other methods, except {@link #close()}.
+     */
+    @WorkerThread
+    void open() throws IOException;
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Decodes the region of the full resolution image into the top left corner of the tile.
+     *
+     * @param region     the region in full resolution pixels
+     * @param sampleSize the region is scaled down by this power of two
+     * @param tile       the bitmap to decode into, large enough for the scaled down region
+     */
+    @WorkerThread
+    void decodeTile(@NonNull Rect region, int sampleSize, @NonNull Bitmap tile)
+            throws IOException;
+
+    /**
+     * @return the type of the tasks which open and decode the image
+     */
+    @NonNull
+    TaskType getTaskType();
+
+    /**
+     * Releases the image. May be called while a tile is being decoded.
+     */
+    void close();
+}
@@ -0,0 +1,250 @@
+package net.gini.android.vision.internal.tiles;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.util.LruCache;
+import android.view.View;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ *     Draws the visible part of a full resolution image over its downsampled preview when the
+ *     preview is zoomed in beyond its own resolution.
+ * </p>
+ * <p>
+ *     Only the tiles visible at the current zoom level are decoded, in the background and with a
+ *     sample size matching the zoom. Tiles which scrolled out of view before they were decoded
+ *     are cancelled. Decoded tiles are kept in a bounded LRU cache and their bitmaps are reused
+ *     for new tiles when they are evicted.
+ * </p>
+ *
+ * @exclude
+ */
+@UiThread
+public final class TiledImageLayer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TiledImageLayer.class);
+
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_POOLED_TILES = 8;
+    private static final int MAX_MEMORY_FRACTION = 8;
+
+    private final TileSource mTileSource;
+    private final View mView;
+    private final TaskScheduler mTaskScheduler = TaskScheduler.getInstance();
+    private final TileBitmapPool mBitmapPool = new TileBitmapPool(TILE_SIZE, MAX_POOLED_TILES);
+    private final LruCache<String, Bitmap> mTileCache = new LruCache<String, Bitmap>(
+            (int) (Runtime.getRuntime().maxMemory() / 1024 / MAX_MEMORY_FRACTION)) {
+        @Override
+        protected int sizeOf(final String key, final Bitmap bitmap) {
+            return bitmap.getByteCount() / 1024;
+        }
+
+        @Override
+        protected void entryRemoved(final boolean evicted, final String key,
+                final Bitmap oldValue, final Bitmap newValue) {
+            // Tiles are only drawn while they are in the cache
+            if (oldValue != newValue) {
+                mBitmapPool.release(oldValue);
+            }
+        }
+    };
+    private final Map<String, CancellationToken> mPendingTiles = new HashMap<>();
+    private final CancellationToken mCancellationToken = new CancellationToken();
+    private final float[] mMatrixValues = new float[9];
+    private final Rect mRegion = new Rect();
+    private final Rect mTileRect = new Rect();
+    private final RectF mScreenRect = new RectF();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private boolean mOpening;
+    private boolean mOpened;
+    private boolean mClosed;
+
+    /**
+     * @param view invalidated when tiles were decoded
+     */
+    public TiledImageLayer(@NonNull final TileSource tileSource, @NonNull final View view) {
+        mTileSource = tileSource;
+        mView = view;
+    }
+
+    /**
+     * @param imageMatrix    maps the preview to the canvas
+     * @param previewWidth   the width of the preview drawn with the image matrix
+     * @param previewHeight  the height of the preview drawn with the image matrix
+     * @param viewportWidth  the width of the visible part of the canvas
+     * @param viewportHeight the height of the visible part of the canvas
+     */
+    public void draw(@NonNull final Canvas canvas, @NonNull final Matrix imageMatrix,
+            final int previewWidth, final int previewHeight, final int viewportWidth,
+            final int viewportHeight) {
+        if (mClosed || previewWidth <= 0 || previewHeight <= 0) {
+            return;
+        }
+        imageMatrix.getValues(mMatrixValues);
+        final float previewScale = mMatrixValues[Matrix.MSCALE_X];
+        if (previewScale <= 1) {
+            // The preview is sharp enough
+            cancelPendingTilesExcept(null);
+            return;
+        }
+        if (!mOpened) {
+            open();
+            return;
+        }
+        final float translateX = mMatrixValues[Matrix.MTRANS_X];
+        final float translateY = mMatrixValues[Matrix.MTRANS_Y];
+        final float scaleX = previewScale * previewWidth / mTileSource.getWidth();
+        final float scaleY = mMatrixValues[Matrix.MSCALE_Y] * previewHeight
+                / mTileSource.getHeight();
+        final TileGrid grid = new TileGrid(mTileSource.getWidth(), mTileSource.getHeight(),
+                TileGrid.calculateSampleSize(scaleX), TILE_SIZE);
+
+        final int firstColumn = grid.getColumn(-translateX / scaleX);
+        final int lastColumn = grid.getColumn((viewportWidth - translateX) / scaleX);
+        final int firstRow = grid.getRow(-translateY / scaleY);
+        final int lastRow = grid.getRow((viewportHeight - translateY) / scaleY);
+        final Set<String> visibleTiles = new HashSet<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final String key = grid.getKey(column, row);
+                visibleTiles.add(key);
+                grid.getRegion(column, row, mRegion);
+                final Bitmap tile = mTileCache.get(key);
+                if (tile == null) {
+                    loadTile(key, new Rect(mRegion), grid.getSampleSize());
+                    continue;
+                }
+                mTileRect.set(0, 0, divideRoundingUp(mRegion.width(), grid.getSampleSize()),
+                        divideRoundingUp(mRegion.height(), grid.getSampleSize()));
+                mScreenRect.set(mRegion.left * scaleX + translateX,
+                        mRegion.top * scaleY + translateY,
+                        mRegion.right * scaleX + translateX,
+                        mRegion.bottom * scaleY + translateY);
+                canvas.drawBitmap(tile, mTileRect, mScreenRect, mPaint);
+            }
+        }
+        cancelPendingTilesExcept(visibleTiles);
+    }
+
+    /**
+     * Cancels decoding, recycles the tiles and closes the tile source.
+     */
+    public void close() {
+        mClosed = true;
+        mCancellationToken.cancel();
+        cancelPendingTilesExcept(null);
+        mTileCache.evictAll();
+        mBitmapPool.clear();
+        mTileSource.close();
+    }
+
+    private void open() {
+        if (mOpening) {
+            return;
+        }
+        mOpening = true;
+        mTaskScheduler.submit(mTileSource.getTaskType(), Priority.HIGH, mCancellationToken,
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        mTileSource.open();
+                        return null;
+                    }
+                }, new AsyncCallback<Void>() {
+                    @Override
+                    public void onSuccess(final Void result) {
+                        LOG.debug("Tile source opened: {}x{}", mTileSource.getWidth(),
+                                mTileSource.getHeight());
+                        mOpened = true;
+                        mView.invalidate();
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        // The preview is still shown
+                        LOG.error("Could not open tile source", exception);
+                    }
+                });
+    }
+
+    private void loadTile(@NonNull final String key, @NonNull final Rect region,
+            final int sampleSize) {
+        if (mPendingTiles.containsKey(key)) {
+            return;
+        }
+        final CancellationToken token = new CancellationToken();
+        mPendingTiles.put(key, token);
+        mTaskScheduler.submit(mTileSource.getTaskType(), Priority.HIGH, token,
+                new Callable<Bitmap>() {
+                    @Override
+                    public Bitmap call() throws Exception {
+                        final Bitmap tile = mBitmapPool.acquire();
+                        try {
+                            mTileSource.decodeTile(region, sampleSize, tile);
+                        } catch (final Exception e) {
+                            mBitmapPool.release(tile);
+                            throw e;
+                        }
+                        if (token.isCancelled()) {
+                            // The result would be discarded
+                            mBitmapPool.release(tile);
+                            return null;
+                        }
+                        return tile;
+                    }
+                }, new AsyncCallback<Bitmap>() {
+                    @Override
+                    public void onSuccess(final Bitmap result) {
+                        mPendingTiles.remove(key);
+                        if (result == null) {
+                            return;
+                        }
+                        mTileCache.put(key, result);
+                        mView.invalidate();
+                    }
+
+                    @Override
+                    public void onError(final Exception exception) {
+                        mPendingTiles.remove(key);
+                        LOG.error("Could not decode tile {}", key, exception);
+                    }
+                });
+    }
+
+    private void cancelPendingTilesExcept(final Set<String> keys) {
+        final Iterator<Map.Entry<String, CancellationToken>> iterator =
+                mPendingTiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, CancellationToken> entry = iterator.next();
+            if (keys == null || !keys.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static int divideRoundingUp(final int value, final int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,82 @@
+package net.gini.android.vision.internal.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+
+import com.ortiz.touch.TouchImageView;
+
+import net.gini.android.vision.internal.tiles.TileSource;
+import net.gini.android.vision.internal.tiles.TiledImageLayer;
+
+/**
+ * <p>
+ *     A {@link TouchImageView} which draws full resolution tiles over its preview bitmap when it
+ *     is zoomed in.
+ * </p>
+ * <p>
+ *     The tile source is closed when it is replaced or the view is detached from the window.
+ * </p>
+ *
+ * @exclude
+ */
+public class TiledTouchImageView extends TouchImageView {
+
+    private TiledImageLayer mTiledImageLayer;
+
+    public TiledTouchImageView(final Context context) {
+        super(context);
+    }
+
+    public TiledTouchImageView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TiledTouchImageView(final Context context, final AttributeSet attrs,
+            final int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    /**
+     * @param tileSource the full resolution image of the shown bitmap or null to show only the
+     *                   bitmap
+     */
+    public void setTileSource(@Nullable final TileSource tileSource) {
+        closeTiledImageLayer();
+        if (tileSource != null) {
+            mTiledImageLayer = new TiledImageLayer(tileSource, this);
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        super.onDraw(canvas);
+        final Drawable drawable = getDrawable();
+        if (mTiledImageLayer == null || drawable == null) {
+            return;
+        }
+        final int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mTiledImageLayer.draw(canvas, getImageMatrix(), drawable.getIntrinsicWidth(),
+                drawable.getIntrinsicHeight(),
+                getWidth() - getPaddingLeft() - getPaddingRight(),
+                getHeight() - getPaddingTop() - getPaddingBottom());
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        closeTiledImageLayer();
+    }
+
+    private void closeTiledImageLayer() {
+        if (mTiledImageLayer != null) {
+            mTiledImageLayer.close();
+            mTiledImageLayer = null; // NOPMD
+        }
+    }
+}
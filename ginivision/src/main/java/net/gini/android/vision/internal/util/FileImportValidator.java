@@ -10,12 +10,15 @@ import android.support.annotation.StringRes;
 
 import net.gini.android.vision.R;
 import net.gini.android.vision.internal.pdf.Pdf;
+import net.gini.android.vision.internal.pdf.PdfStructureException;
+import net.gini.android.vision.internal.pdf.PdfStructureReader;
 import net.gini.android.vision.util.IntentHelper;
 import net.gini.android.vision.util.UriHelper;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -104,9 +107,19 @@ public class FileImportValidator {
     }
 
     private boolean matchesPdfCriteria(final Uri fileUri) {
+        try {
+            // Reading the structure is much faster than opening a renderer
+            return PdfStructureReader.read(fileUri, mContext).getPageCount() <= 10;
+        } catch (final IOException | PdfStructureException e) {
+            LOG.warn("Could not read the pdf structure, counting pages with the renderer", e);
+        }
         final Pdf pdf = Pdf.fromUri(fileUri);
-        final int pageCount = pdf.getPageCount(mContext);
-        return pageCount <= 10;
+        try {
+            return pdf.getPageCount(mContext) <= 10;
+        } finally {
+            // The pdf stays open for a short time to be shown without opening it again
+            pdf.close();
+        }
     }
 
     private boolean matchesSizeCriteria(final Uri fileUri) {
@@ -0,0 +1,61 @@
+package net.gini.android.vision.internal.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * <p>
+ *     Box-downsamples luma planes (for example the beginning of NV21 images) for image analysis.
+ * </p>
+ *
+ * @exclude
+ */
+public final class LumaDownsampler {
+
+    /**
+     * @return the smallest integer step which downsamples the frame to at most the maximum size
+     */
+    public static int getStep(final int width, final int height, final int maxWidth,
+            final int maxHeight) {
+        return Math.max(1, Math.max(ceilDiv(width, maxWidth), ceilDiv(height, maxHeight)));
+    }
+
+    /**
+     * Averages each step x step block of the luma plane into one sample. The samples have a width
+     * of {@code width / step} and a height of {@code height / step}, incomplete blocks at the right
+     * and bottom edges are ignored.
+     *
+     * @param luma    the luma plane
+     * @param width   width of the luma plane
+     * @param height  height of the luma plane
+     * @param step    the block size, see {@link #getStep(int, int, int, int)}
+     * @param samples receives the samples row by row, must be large enough
+     */
+    public static void downsample(@NonNull final byte[] luma, final int width, final int height,
+            final int step, @NonNull final int[] samples) {
+        final int sampleWidth = width / step;
+        final int sampleHeight = height / step;
+        final int blockArea = step * step;
+        int i = 0;
+        for (int sampleY = 0; sampleY < sampleHeight; sampleY++) {
+            final int top = sampleY * step;
+            for (int sampleX = 0; sampleX < sampleWidth; sampleX++) {
+                final int left = sampleX * step;
+                int sum = 0;
+                for (int y = top; y < top + step; y++) {
+                    final int rowOffset = y * width;
+                    for (int x = left; x < left + step; x++) {
+                        sum += luma[rowOffset + x] & 0xFF;
+                    }
+                }
+                samples[i++] = sum / blockArea;
+            }
+        }
+    }
+
+    private static int ceilDiv(final int dividend, final int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private LumaDownsampler() {
+    }
+}
@@ -3,15 +3,22 @@ package net.gini.android.vision.internal.util;
 
 import android.support.annotation.NonNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 
 /**
  * @exclude
  */
 public final class StreamHelper {
 
+    private static final int BUFFER_SIZE = 8192;
+    // Some VMs reserve header words in arrays
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     /**
      * Reads the input stream to a byte array.
      *
@@ -25,14 +32,81 @@ public final class StreamHelper {
      */
     public static byte[] inputStreamToByteArray(@NonNull final InputStream inputStream)
             throws IOException {
-        final int bufferSize = 8192;
-        final ByteArrayOutputStream out = new ByteArrayOutputStream(bufferSize);
-        final byte[] buffer = new byte[bufferSize];
-        int nrRead;
-        while ((nrRead = inputStream.read(buffer)) > 0) { // NOPMD
-            out.write(buffer, 0, nrRead);
+        return inputStreamToByteArray(inputStream, -1);
+    }
+
+    /**
+     * Reads the input stream to a byte array, which is allocated with the expected size. If the
+     * expected size is correct the content is read without any additional copies.
+     *
+     * @param inputStream  an open {@link InputStream} to read from, caller is responsible for
+     *                     closing
+     * @param expectedSize the size of the content, if known, or a negative value
+     * @return byte array with input streams content
+     * @throws IOException if the input stream could not be read
+     * @exclude
+     */
+    public static byte[] inputStreamToByteArray(@NonNull final InputStream inputStream,
+            final long expectedSize) throws IOException {
+        byte[] bytes = new byte[expectedSize > 0 ? checkArraySize(expectedSize) : BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                // Check for the end before growing, the expected size is usually exact
+                final int next = inputStream.read();
+                if (next < 0) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, checkArraySize((long) bytes.length * 2));
+                bytes[length++] = (byte) next;
+            }
+            final int read = inputStream.read(bytes, length, bytes.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Reads the channel to a byte array of the expected size. Reading continues if the channel
+     * has more content and the array is truncated if it has less.
+     *
+     * @param channel      an open {@link ReadableByteChannel} to read from, caller is
+     *                     responsible for closing
+     * @param expectedSize the size of the content, like the size of a file
+     * @return byte array with the channel's content
+     * @throws IOException if the channel could not be read
+     * @exclude
+     */
+    public static byte[] channelToByteArray(@NonNull final ReadableByteChannel channel,
+            final long expectedSize) throws IOException {
+        final byte[] bytes = new byte[checkArraySize(Math.max(0, expectedSize))];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return Arrays.copyOf(bytes, buffer.position());
+            }
+        }
+        final ByteBuffer next = ByteBuffer.allocate(1);
+        if (channel.read(next) < 0) {
+            return bytes;
+        }
+        // The content grew since its size was read
+        final byte[] rest = inputStreamToByteArray(Channels.newInputStream(channel));
+        final byte[] grownBytes = Arrays.copyOf(bytes,
+                checkArraySize((long) bytes.length + 1 + rest.length));
+        grownBytes[bytes.length] = next.get(0);
+        System.arraycopy(rest, 0, grownBytes, bytes.length + 1, rest.length);
+        return grownBytes;
+    }
+
+    private static int checkArraySize(final long size) throws IOException {
+        if (size > MAX_ARRAY_SIZE) {
+            throw new IOException("Content is too large for a byte array: " + size);
         }
-        return out.toByteArray();
+        return (int) size;
     }
 
     private StreamHelper() {
@@ -3,9 +3,26 @@ package net.gini.android.vision.requirements;
 import android.hardware.Camera;
 import android.support.annotation.Nullable;
 
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
+import net.gini.android.vision.internal.camera.api.CameraCapabilitiesCache;
+
 class CameraHolder {
 
+    private final CameraCapabilitiesCache mCapabilitiesCache;
     private Camera mCamera;
+    private CameraCapabilities mCapabilities;
+
+    CameraHolder() {
+        this(null);
+    }
+
+    /**
+     * @param capabilitiesCache if not {@code null}, the camera is opened only if no capabilities
+     *                          were cached for this device build
+     */
+    CameraHolder(@Nullable final CameraCapabilitiesCache capabilitiesCache) {
+        mCapabilitiesCache = capabilitiesCache;
+    }
 
     public void closeCamera() {
         if (mCamera != null) {
@@ -15,6 +32,9 @@ class CameraHolder {
     }
 
     public boolean hasCamera() throws RuntimeException {
+        if (loadCachedCapabilities() != null) {
+            return true;
+        }
         openCamera();
         return mCamera != null;
     }
@@ -28,6 +48,32 @@ class CameraHolder {
         return null;
     }
 
+    @Nullable
+    public CameraCapabilities getCameraCapabilities() throws RuntimeException {
+        if (loadCachedCapabilities() != null) {
+            return mCapabilities;
+        }
+        final Camera.Parameters parameters = getCameraParameters();
+        if (parameters == null) {
+            return null;
+        }
+        final Integer sensorOrientation = CameraCapabilities.readBackFacingSensorOrientation();
+        mCapabilities = CameraCapabilities.fromParameters(parameters,
+                sensorOrientation != null ? sensorOrientation : 0);
+        if (mCapabilitiesCache != null && sensorOrientation != null) {
+            mCapabilitiesCache.save(mCapabilities);
+        }
+        return mCapabilities;
+    }
+
+    @Nullable
+    private CameraCapabilities loadCachedCapabilities() {
+        if (mCapabilities == null && mCapabilitiesCache != null) {
+            mCapabilities = mCapabilitiesCache.load();
+        }
+        return mCapabilities;
+    }
+
     private void openCamera() throws RuntimeException {
         if (mCamera == null) {
             mCamera = Camera.open();
@@ -1,8 +1,8 @@
 package net.gini.android.vision.requirements;
 
-import android.hardware.Camera;
 import android.support.annotation.NonNull;
 
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
 import net.gini.android.vision.internal.camera.api.SizeSelectionHelper;
 import net.gini.android.vision.internal.util.Size;
 
@@ -32,10 +32,10 @@ class CameraResolutionRequirement implements Requirement {
         String details = "";
 
         try {
-            Camera.Parameters parameters = mCameraHolder.getCameraParameters();
-            if (parameters != null) {
-                Size pictureSize = SizeSelectionHelper.getLargestSize(
-                        parameters.getSupportedPictureSizes());
+            CameraCapabilities capabilities = mCameraHolder.getCameraCapabilities();
+            if (capabilities != null) {
+                Size pictureSize = SizeSelectionHelper.getLargest(
+                        capabilities.getSupportedPictureSizes());
                 if (pictureSize == null) {
                     result = false;
                     details = "Camera has no picture resolutions";
@@ -46,8 +46,8 @@ class CameraResolutionRequirement implements Requirement {
                     return new RequirementReport(getId(), result, details);
                 }
 
-                Size previewSize = SizeSelectionHelper.getLargestSizeWithSimilarAspectRatio(
-                        parameters.getSupportedPreviewSizes(), pictureSize);
+                Size previewSize = SizeSelectionHelper.getLargestWithSimilarAspectRatio(
+                        capabilities.getSupportedPreviewSizes(), pictureSize);
                 if (previewSize == null) {
                     result = false;
                     details = String.format(Locale.US,
@@ -1,18 +1,30 @@
 package net.gini.android.vision.requirements;
 
-import android.hardware.Camera;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
 import net.gini.android.vision.internal.camera.api.SizeSelectionHelper;
 import net.gini.android.vision.internal.util.Size;
 
 class DeviceMemoryRequirement implements Requirement {
 
     private final CameraHolder mCameraHolder;
+    private final PictureResolutionPolicy mPictureResolutionPolicy;
 
     DeviceMemoryRequirement(CameraHolder cameraHolder) {
+        this(cameraHolder, PictureResolutionPolicy.largest());
+    }
+
+    /**
+     * @param cameraHolder            camera holder
+     * @param pictureResolutionPolicy the policy the camera uses to select the picture size
+     */
+    DeviceMemoryRequirement(CameraHolder cameraHolder,
+            PictureResolutionPolicy pictureResolutionPolicy) {
         mCameraHolder = cameraHolder;
+        mPictureResolutionPolicy = pictureResolutionPolicy;
     }
 
     @NonNull
@@ -28,10 +40,10 @@ class DeviceMemoryRequirement implements Requirement {
         String details = "";
 
         try {
-            Camera.Parameters parameters = mCameraHolder.getCameraParameters();
-            if (parameters != null) {
-                Size pictureSize = SizeSelectionHelper.getLargestSize(
-                        parameters.getSupportedPictureSizes());
+            CameraCapabilities capabilities = mCameraHolder.getCameraCapabilities();
+            if (capabilities != null) {
+                Size pictureSize = SizeSelectionHelper.selectPictureSize(
+                        capabilities.getSupportedPictureSizes(), mPictureResolutionPolicy);
                 if (pictureSize == null) {
                     result = false;
                     details =
@@ -5,6 +5,10 @@ import static net.gini.android.vision.internal.util.ContextHelper.isTablet;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import net.gini.android.vision.GiniVisionFeatureConfiguration;
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.camera.api.CameraCapabilitiesCache;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +24,8 @@ import java.util.List;
  * </p>
  * <p>
  *     Call {@link GiniVisionRequirements#checkRequirements(Context)} to get a report of the requirement checks.
+ *     If you configured a {@link PictureResolutionPolicy} call {@link GiniVisionRequirements#checkRequirements(Context, GiniVisionFeatureConfiguration)}
+ *     instead to check the memory needed for the configured picture resolution.
  * </p>
  * <p>
  *     On Android 6.0 and later you need to ask the user for the camera permission before you check the requirements.
@@ -37,14 +43,33 @@ public final class GiniVisionRequirements {
      * @return {@link RequirementsReport} containing information about the checks
      */
     public static RequirementsReport checkRequirements(Context context) {
+        return checkRequirements(context,
+                GiniVisionFeatureConfiguration.buildNewConfiguration().build());
+    }
+
+    /**
+     * <p>
+     *     Checks the device's hardware capabilities for the feature configuration. The memory
+     *     requirement is checked for the picture resolution selected by the configuration's
+     *     {@link PictureResolutionPolicy}.
+     * </p>
+     * @param context any {@link Context} instance
+     * @param giniVisionFeatureConfiguration the feature configuration used to launch the Gini
+     *                                       Vision Library
+     * @return {@link RequirementsReport} containing information about the checks
+     */
+    public static RequirementsReport checkRequirements(Context context,
+            GiniVisionFeatureConfiguration giniVisionFeatureConfiguration) {
         LOG.info("Checking requirements");
-        CameraHolder cameraHolder = new CameraHolder();
+        CameraHolder cameraHolder = new CameraHolder(new CameraCapabilitiesCache(context));
+        PictureResolutionPolicy pictureResolutionPolicy =
+                giniVisionFeatureConfiguration.getPictureResolutionPolicy();
 
         List<Requirement> requirements;
         if (isTablet(context)) {
-            requirements = getTabletRequirements(context, cameraHolder);
+            requirements = getTabletRequirements(context, cameraHolder, pictureResolutionPolicy);
         } else {
-            requirements = getPhoneRequirements(context, cameraHolder);
+            requirements = getPhoneRequirements(context, cameraHolder, pictureResolutionPolicy);
         }
 
         RequirementsReport requirementsReport = new RequirementsChecker(requirements)
@@ -58,26 +83,28 @@ public final class GiniVisionRequirements {
 
     @NonNull
     private static List<Requirement> getPhoneRequirements(final Context context,
-            final CameraHolder cameraHolder) {
+            final CameraHolder cameraHolder,
+            final PictureResolutionPolicy pictureResolutionPolicy) {
         return Arrays.asList(
                 new CameraPermissionRequirement(context),
                 new CameraRequirement(cameraHolder),
                 new CameraResolutionRequirement(cameraHolder),
                 new CameraFlashRequirement(cameraHolder),
                 new CameraFocusRequirement(cameraHolder),
-                new DeviceMemoryRequirement(cameraHolder)
+                new DeviceMemoryRequirement(cameraHolder, pictureResolutionPolicy)
         );
     }
 
     @NonNull
     private static List<Requirement> getTabletRequirements(final Context context,
-            final CameraHolder cameraHolder) {
+            final CameraHolder cameraHolder,
+            final PictureResolutionPolicy pictureResolutionPolicy) {
         return Arrays.asList(
                 new CameraPermissionRequirement(context),
                 new CameraRequirement(cameraHolder),
                 new CameraResolutionRequirement(cameraHolder),
                 new CameraFocusRequirement(cameraHolder),
-                new DeviceMemoryRequirement(cameraHolder)
+                new DeviceMemoryRequirement(cameraHolder, pictureResolutionPolicy)
         );
     }
 
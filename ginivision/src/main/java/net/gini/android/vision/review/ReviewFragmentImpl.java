@@ -9,6 +9,7 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,30 +18,39 @@ import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.ProgressBar;
 
-import com.ortiz.touch.TouchImageView;
-
 import net.gini.android.vision.Document;
 import net.gini.android.vision.GiniVisionError;
 import net.gini.android.vision.R;
 import net.gini.android.vision.document.DocumentFactory;
 import net.gini.android.vision.document.ImageDocument;
 import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.Priority;
+import net.gini.android.vision.internal.async.TaskScheduler;
+import net.gini.android.vision.internal.async.TaskType;
+import net.gini.android.vision.internal.camera.photo.ParcelableMemoryCache;
 import net.gini.android.vision.internal.camera.photo.Photo;
 import net.gini.android.vision.internal.camera.photo.PhotoEdit;
-import net.gini.android.vision.internal.camera.photo.PhotoFactoryDocumentAsyncTask;
+import net.gini.android.vision.internal.camera.photo.PhotoFactory;
+import net.gini.android.vision.internal.document.DocumentPayload;
+import net.gini.android.vision.internal.tiles.RegionDecoderTileSource;
 import net.gini.android.vision.internal.ui.FragmentImplCallback;
+import net.gini.android.vision.internal.ui.TiledTouchImageView;
+import net.gini.android.vision.internal.util.Size;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Callable;
+
 class ReviewFragmentImpl implements ReviewFragmentInterface {
 
     private static final String PHOTO_KEY = "PHOTO_KEY";
     private static final String DOCUMENT_KEY = "DOCUMENT_KEY";
+    private static final String CURRENT_ROTATION_KEY = "CURRENT_ROTATION_KEY";
+    private static final String DOCUMENT_WAS_MODIFIED_KEY = "DOCUMENT_WAS_MODIFIED_KEY";
     private static final Logger LOG = LoggerFactory.getLogger(ReviewFragmentImpl.class);
 
-    private static final int JPEG_COMPRESSION_QUALITY_FOR_UPLOAD = 50;
-
     private static final ReviewFragmentListener NO_OP_LISTENER = new ReviewFragmentListener() {
         @Override
         public void onShouldAnalyzeDocument(@NonNull final Document document) {
@@ -65,7 +75,7 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
     };
 
     private FrameLayout mLayoutDocumentContainer;
-    private TouchImageView mImageDocument;
+    private TiledTouchImageView mImageDocument;
     @VisibleForTesting
     ImageButton mButtonRotate;
     private ImageButton mButtonNext;
@@ -78,8 +88,12 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
     private boolean mDocumentWasAnalyzed;
     private boolean mDocumentWasModified;
     private int mCurrentRotation;
+    private int mNotifiedRotation;
+    private boolean mApplyingRotation;
+    private boolean mShouldAnalyzeAfterRotation;
     private boolean mNextClicked;
     private boolean mStopped;
+    private CancellationToken mCancellationToken = new CancellationToken();
 
     ReviewFragmentImpl(@NonNull final FragmentImplCallback fragment,
             @NonNull final Document document) {
@@ -98,7 +112,7 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
     }
 
     @VisibleForTesting
-    TouchImageView getImageDocument() {
+    TiledTouchImageView getImageDocument() {
         return mImageDocument;
     }
 
@@ -118,7 +132,12 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
     }
 
     public void onCreate(@Nullable final Bundle savedInstanceState) {
-        forcePortraitOrientationOnPhones(mFragment.getActivity());
+        final Activity activity = mFragment.getActivity();
+        forcePortraitOrientationOnPhones(activity);
+        if (activity != null) {
+            ParcelableMemoryCache.getInstance().init(activity);
+            DocumentPayload.init(activity);
+        }
         if (savedInstanceState != null) {
             restoreSavedState(savedInstanceState);
         }
@@ -135,6 +154,8 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
     public void onStart() {
         mNextClicked = false;
         mStopped = false;
+        mShouldAnalyzeAfterRotation = false;
+        mCancellationToken = new CancellationToken();
         if (mPhoto == null) {
             final Activity activity = mFragment.getActivity();
             if (activity == null) {
@@ -142,9 +163,9 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
             }
             showActivityIndicatorAndDisableButtons();
             LOG.debug("Loading document data");
-            mDocument.loadData(activity, new AsyncCallback<byte[]>() {
+            mDocument.loadData(activity, mCancellationToken, new AsyncCallback<DocumentPayload>() {
                 @Override
-                public void onSuccess(final byte[] result) {
+                public void onSuccess(final DocumentPayload result) {
                     LOG.debug("Document data loaded");
                     if (mNextClicked || mStopped) {
                         return;
@@ -165,15 +186,31 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
             });
         } else {
             observeViewTree();
-            LOG.info("Should analyze document");
-            mListener.onShouldAnalyzeDocument(
-                    DocumentFactory.newDocumentFromPhotoAndDocument(mPhoto, mDocument));
+            if (mApplyingRotation || mPhoto.edit().hasPendingEdits()) {
+                // The rotation recorded before a restore or while stopped is applied first
+                mShouldAnalyzeAfterRotation = true;
+                if (!mApplyingRotation) {
+                    applyRotationToPhoto();
+                }
+            } else {
+                LOG.info("Should analyze document");
+                mListener.onShouldAnalyzeDocument(
+                        DocumentFactory.newDocumentFromPhotoAndDocument(mPhoto, mDocument));
+            }
         }
     }
 
     private void createAndCompressPhoto() {
         LOG.debug("Instantiating a Photo from the Document");
-        final PhotoFactoryDocumentAsyncTask asyncTask = new PhotoFactoryDocumentAsyncTask(
+        final ImageDocument document = mDocument;
+        final Size previewTargetSize = getPreviewTargetSize();
+        TaskScheduler.getInstance().submit(TaskType.CREATE_PHOTO, Priority.HIGH,
+                mCancellationToken, new Callable<Photo>() {
+                    @Override
+                    public Photo call() throws Exception {
+                        return PhotoFactory.newPhotoFromDocument(document, previewTargetSize);
+                    }
+                },
                 new AsyncCallback<Photo>() {
                     @Override
                     public void onSuccess(final Photo result) {
@@ -183,6 +220,7 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
                         }
                         mPhoto = result;
                         mCurrentRotation = mPhoto.getRotationForDisplay();
+                        mNotifiedRotation = mCurrentRotation;
                         applyCompressionToPhoto(new PhotoEdit.PhotoEditCallback() {
                             @Override
                             public void onDone(@NonNull final Photo photo) {
@@ -221,7 +259,19 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
                                 "An error occurred while instantiating a Photo from the ImageDocument."));
                     }
                 });
-        asyncTask.execute(mDocument);
+    }
+
+    /**
+     * The document is shown in a view filling the screen, which may not have been laid out yet.
+     */
+    @NonNull
+    private Size getPreviewTargetSize() {
+        final Activity activity = mFragment.getActivity();
+        if (activity == null) {
+            return new Size(0, 0); // Uses the default preview size
+        }
+        final DisplayMetrics displayMetrics = activity.getResources().getDisplayMetrics();
+        return new Size(displayMetrics.widthPixels, displayMetrics.heightPixels);
     }
 
     private void showActivityIndicatorAndDisableButtons() {
@@ -279,15 +329,22 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
             return;
         }
         mImageDocument.setImageBitmap(mPhoto.getBitmapPreview());
+        final DocumentPayload payload = mPhoto.getPayload();
+        mImageDocument.setTileSource(
+                payload != null ? new RegionDecoderTileSource(payload) : null);
     }
 
     void onStop() {
         mStopped = true;
+        mCancellationToken.cancel();
     }
 
     void onSaveInstanceState(final Bundle outState) {
         outState.putParcelable(PHOTO_KEY, mPhoto);
         outState.putParcelable(DOCUMENT_KEY, mDocument);
+        // The photo's pending edits are not parceled and are recorded again after a restore
+        outState.putInt(CURRENT_ROTATION_KEY, mCurrentRotation);
+        outState.putBoolean(DOCUMENT_WAS_MODIFIED_KEY, mDocumentWasModified);
     }
 
     public void onDestroy() {
@@ -315,7 +372,13 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
                     "Missing required instances for restoring saved instance state.");
         }
         if (mPhoto != null) {
-            mCurrentRotation = mPhoto.getRotationForDisplay();
+            mCurrentRotation = savedInstanceState.getInt(CURRENT_ROTATION_KEY,
+                    mPhoto.getRotationForDisplay());
+            mNotifiedRotation = mCurrentRotation;
+            mDocumentWasModified = savedInstanceState.getBoolean(DOCUMENT_WAS_MODIFIED_KEY);
+            if (mCurrentRotation % 360 != mPhoto.getRotationForDisplay()) {
+                mPhoto.edit().rotateTo(mCurrentRotation);
+            }
         }
     }
 
@@ -361,7 +424,7 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
         if (mPhoto == null) {
             return;
         }
-        rotateImageView(mPhoto.getRotationForDisplay(), false);
+        rotateImageView(mCurrentRotation, false);
     }
 
     private void onRotateClicked() {
@@ -369,27 +432,77 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
         mCurrentRotation += 90;
         rotateImageView(mCurrentRotation, true);
         mDocumentWasModified = true;
-        applyRotationToPhoto(new PhotoEdit.PhotoEditCallback() {
-            @Override
-            public void onDone(@NonNull final Photo photo) {
-                if (mStopped) {
-                    return;
-                }
-                mListener.onDocumentWasRotated(
-                        DocumentFactory.newDocumentFromPhotoAndDocument(photo, mDocument),
-                        oldRotation, mCurrentRotation);
-            }
+        if (mPhoto == null) {
+            return;
+        }
+        LOG.debug("Recording rotation of the Photo from {} to {} degrees", oldRotation,
+                mCurrentRotation);
+        mPhoto.edit().rotateTo(mCurrentRotation);
+        if (!mApplyingRotation) {
+            applyRotationToPhoto();
+        }
+    }
 
-            @Override
-            public void onFailed() {
-                if (mStopped) {
-                    return;
-                }
-                LOG.error("Failed to rotate the jpeg");
-                mListener.onError(new GiniVisionError(GiniVisionError.ErrorCode.REVIEW,
-                        "An error occurred while applying rotation to the jpeg."));
-            }
-        });
+    /**
+     * <p>
+     *     Applies the recorded rotation and informs the listener with the rotated document.
+     * </p>
+     * <p>
+     *     Only one rotation is applied at a time, so the photo's rotations can't be applied out of
+     *     order. Rotations recorded in the meantime are collapsed and applied once the running one
+     *     finished.
+     * </p>
+     */
+    private void applyRotationToPhoto() {
+        if (mPhoto == null) {
+            return;
+        }
+        mApplyingRotation = true;
+        final int rotation = mCurrentRotation;
+        LOG.debug("Applying rotation of the Photo to {} degrees", rotation);
+        // Not cancelled when stopped to know when the rotation was applied
+        mPhoto.edit()
+                .applyAsync(new PhotoEdit.PhotoEditCallback() {
+                    @Override
+                    public void onDone(@NonNull final Photo photo) {
+                        mApplyingRotation = false;
+                        if (mPhoto == null || mStopped) {
+                            return;
+                        }
+                        final int oldRotation = mNotifiedRotation;
+                        mNotifiedRotation = rotation;
+                        mListener.onDocumentWasRotated(
+                                DocumentFactory.newDocumentFromPhotoAndDocument(photo, mDocument),
+                                oldRotation, rotation);
+                        if (mPhoto.edit().hasPendingEdits()) {
+                            applyRotationToPhoto();
+                        } else {
+                            onRotationApplied();
+                        }
+                    }
+
+                    @Override
+                    public void onFailed() {
+                        mApplyingRotation = false;
+                        if (mPhoto == null || mStopped) {
+                            return;
+                        }
+                        LOG.error("Failed to rotate the jpeg");
+                        mListener.onError(new GiniVisionError(GiniVisionError.ErrorCode.REVIEW,
+                                "An error occurred while applying rotation to the jpeg."));
+                    }
+                });
+    }
+
+    private void onRotationApplied() {
+        if (mNextClicked) {
+            applyEditsAndProceedToAnalysisScreen();
+        } else if (mShouldAnalyzeAfterRotation) {
+            mShouldAnalyzeAfterRotation = false;
+            LOG.info("Should analyze document");
+            mListener.onShouldAnalyzeDocument(
+                    DocumentFactory.newDocumentFromPhotoAndDocument(mPhoto, mDocument));
+        }
     }
 
     private void onNextClicked() {
@@ -409,26 +522,34 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
             }
         } else {
             LOG.debug("Document was modified");
-            applyRotationToPhoto(new PhotoEdit.PhotoEditCallback() {
-                @Override
-                public void onDone(@NonNull final Photo photo) {
-                    if (mStopped) {
-                        return;
-                    }
-                    proceedToAnalysisScreen();
+            if (mApplyingRotation) {
+                // Proceeds once the rotation was applied
+                return;
+            }
+            applyEditsAndProceedToAnalysisScreen();
+        }
+    }
+
+    private void applyEditsAndProceedToAnalysisScreen() {
+        applyEditsToPhoto(new PhotoEdit.PhotoEditCallback() {
+            @Override
+            public void onDone(@NonNull final Photo photo) {
+                if (mStopped) {
+                    return;
                 }
+                proceedToAnalysisScreen();
+            }
 
-                @Override
-                public void onFailed() {
-                    if (mStopped) {
-                        return;
-                    }
-                    LOG.error("Failed to rotate the jpeg");
-                    mListener.onError(new GiniVisionError(GiniVisionError.ErrorCode.REVIEW,
-                            "An error occurred while applying rotation to the jpeg."));
+            @Override
+            public void onFailed() {
+                if (mStopped) {
+                    return;
                 }
-            });
-        }
+                LOG.error("Failed to rotate the jpeg");
+                mListener.onError(new GiniVisionError(GiniVisionError.ErrorCode.REVIEW,
+                        "An error occurred while applying rotation to the jpeg."));
+            }
+        });
     }
 
     private void proceedToAnalysisScreen() {
@@ -437,24 +558,26 @@ class ReviewFragmentImpl implements ReviewFragmentInterface {
                 DocumentFactory.newDocumentFromPhotoAndDocument(mPhoto, mDocument));
     }
 
-    private void applyRotationToPhoto(@NonNull final PhotoEdit.PhotoEditCallback callback) {
+    /**
+     * Materializes any pending edit.
+     */
+    private void applyEditsToPhoto(@NonNull final PhotoEdit.PhotoEditCallback callback) {
         if (mPhoto == null) {
             return;
         }
-        LOG.debug("Rotating the Photo {} degrees", mCurrentRotation);
+        LOG.debug("Applying the Photo edits with rotation {} degrees", mCurrentRotation);
         mPhoto.edit()
-                .rotateTo(mCurrentRotation)
-                .applyAsync(callback);
+                .applyAsync(mCancellationToken, callback);
     }
 
     private void applyCompressionToPhoto(@NonNull final PhotoEdit.PhotoEditCallback callback) {
         if (mPhoto == null) {
             return;
         }
-        LOG.debug("Compressing the Photo to quality {}", JPEG_COMPRESSION_QUALITY_FOR_UPLOAD);
+        LOG.debug("Compressing the Photo for upload");
         mPhoto.edit()
-                .compressBy(JPEG_COMPRESSION_QUALITY_FOR_UPLOAD)
-                .applyAsync(callback);
+                .compressForUpload()
+                .applyAsync(mCancellationToken, callback);
     }
 
     private void rotateImageView(final int degrees, final boolean animated) {
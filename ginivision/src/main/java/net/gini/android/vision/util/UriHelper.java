@@ -1,18 +1,24 @@
 package net.gini.android.vision.util;
 
+import static net.gini.android.vision.internal.util.StreamHelper.channelToByteArray;
 import static net.gini.android.vision.internal.util.StreamHelper.inputStreamToByteArray;
 
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * Helper methods for {@link android.net.Uri}.
@@ -22,6 +28,10 @@ public final class UriHelper {
     /**
      * Reads the contents of the resource pointed to by the Uri into a byte array.
      *
+     * <p> The array is allocated with the size of the file, if it is known, to avoid copying the
+     * contents while reading. Use {@link #openChannelFromUri(Uri, Context)} to upload the contents
+     * without reading them into memory.
+     *
      * @param uri     a {@link Uri} pointing to a file
      * @param context Android context
      * @return contents of the Uri
@@ -33,19 +43,89 @@ public final class UriHelper {
     public static byte[] getBytesFromUri(@NonNull final Uri uri,
             @NonNull final Context context)
             throws IOException {
+        final ParcelFileDescriptor fileDescriptor = openFileDescriptor(uri, context);
+        if (fileDescriptor != null) {
+            final FileInputStream inputStream =
+                    new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor);
+            try {
+                final long size = fileDescriptor.getStatSize();
+                if (size >= 0) {
+                    return channelToByteArray(inputStream.getChannel(), size);
+                }
+                // Pipes have no size
+                return inputStreamToByteArray(inputStream, getFileSizeHint(uri, context));
+            } finally {
+                closeQuietly(inputStream);
+            }
+        }
         InputStream inputStream = null;
         try {
             inputStream = context.getContentResolver().openInputStream(uri);
             if (inputStream == null) {
                 throw new IllegalStateException("Couldn't open input stream from intent data");
             }
-            return inputStreamToByteArray(inputStream);
+            return inputStreamToByteArray(inputStream, getFileSizeHint(uri, context));
         } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (final IOException ignored) {
-                }
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Opens a channel for reading the contents of the resource pointed to by the Uri. Use it to
+     * upload the contents without reading them into a byte array first.
+     *
+     * <p> Closing the channel releases the resource.
+     *
+     * @param uri     a {@link Uri} pointing to a file
+     * @param context Android context
+     * @return a channel positioned at the start of the contents
+     * @throws IOException           if the Uri could not be opened
+     * @throws IllegalStateException if null input stream was returned by the Context's Content
+     *                               Resolver
+     */
+    @NonNull
+    public static ReadableByteChannel openChannelFromUri(@NonNull final Uri uri,
+            @NonNull final Context context) throws IOException {
+        final ParcelFileDescriptor fileDescriptor = openFileDescriptor(uri, context);
+        if (fileDescriptor != null) {
+            // Closing the channel closes the stream, which closes the file descriptor
+            return new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor).getChannel();
+        }
+        final InputStream inputStream = context.getContentResolver().openInputStream(uri);
+        if (inputStream == null) {
+            throw new IllegalStateException("Couldn't open input stream from intent data");
+        }
+        return Channels.newChannel(inputStream);
+    }
+
+    /**
+     * @return the file descriptor or null, if the Uri's content is not available as a whole file
+     */
+    @Nullable
+    private static ParcelFileDescriptor openFileDescriptor(@NonNull final Uri uri,
+            @NonNull final Context context) {
+        try {
+            return context.getContentResolver().openFileDescriptor(uri, "r");
+        } catch (final FileNotFoundException | SecurityException
+                | UnsupportedOperationException e) {
+            // Assets and some providers can only be opened as streams
+            return null;
+        }
+    }
+
+    private static long getFileSizeHint(@NonNull final Uri uri, @NonNull final Context context) {
+        try {
+            return getFileSizeFromUri(uri, context);
+        } catch (final RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(@Nullable final InputStream inputStream) {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (final IOException ignored) {
             }
         }
     }
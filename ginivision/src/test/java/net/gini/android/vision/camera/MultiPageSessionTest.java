@@ -0,0 +1,109 @@
+package net.gini.android.vision.camera;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.gini.android.vision.document.MultiPageDocument;
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.camera.photo.PhotoEdit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class MultiPageSessionTest {
+
+    private MultiPageSession mSession;
+    private List<PhotoEdit.PhotoEditCallback> mEditCallbacks;
+
+    @Before
+    public void setUp() {
+        mSession = new MultiPageSession();
+        mEditCallbacks = new ArrayList<>();
+    }
+
+    @Test
+    public void should_waitForPendingPages_beforeFinishing() {
+        final Photo compressedFirstPage = mock(Photo.class);
+        addPage();
+        addPage();
+        @SuppressWarnings("unchecked")
+        final AsyncCallback<MultiPageDocument> callback = mock(AsyncCallback.class);
+
+        mSession.finish(callback);
+        mEditCallbacks.get(0).onDone(compressedFirstPage);
+
+        verify(callback, never()).onSuccess(any(MultiPageDocument.class));
+
+        mEditCallbacks.get(1).onFailed();
+
+        final ArgumentCaptor<MultiPageDocument> captor =
+                ArgumentCaptor.forClass(MultiPageDocument.class);
+        verify(callback).onSuccess(captor.capture());
+        assertThat(captor.getValue().getPageCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_finishImmediately_ifPagesWereProcessed() {
+        addPage();
+        mEditCallbacks.get(0).onDone(mock(Photo.class));
+        @SuppressWarnings("unchecked")
+        final AsyncCallback<MultiPageDocument> callback = mock(AsyncCallback.class);
+
+        assertThat(mSession.isProcessing()).isFalse();
+        mSession.finish(callback);
+
+        verify(callback).onSuccess(any(MultiPageDocument.class));
+    }
+
+    @Test
+    public void should_reportError_withoutPages() {
+        @SuppressWarnings("unchecked")
+        final AsyncCallback<MultiPageDocument> callback = mock(AsyncCallback.class);
+
+        mSession.finish(callback);
+
+        verify(callback).onError(any(IllegalStateException.class));
+        verify(callback, never()).onSuccess(any(MultiPageDocument.class));
+    }
+
+    @Test
+    public void should_notInvokeCallback_afterCancel() {
+        addPage();
+        @SuppressWarnings("unchecked")
+        final AsyncCallback<MultiPageDocument> callback = mock(AsyncCallback.class);
+        mSession.finish(callback);
+
+        mSession.cancel();
+        mEditCallbacks.get(0).onFailed();
+
+        verify(callback, never()).onSuccess(any(MultiPageDocument.class));
+        verify(callback, never()).onError(any(Exception.class));
+        assertThat(mSession.getPageCount()).isEqualTo(0);
+    }
+
+    private void addPage() {
+        final Photo photo = mock(Photo.class);
+        final PhotoEdit photoEdit = mock(PhotoEdit.class);
+        when(photo.edit()).thenReturn(photoEdit);
+        when(photoEdit.compressForUpload()).thenReturn(photoEdit);
+        final ArgumentCaptor<PhotoEdit.PhotoEditCallback> captor =
+                ArgumentCaptor.forClass(PhotoEdit.PhotoEditCallback.class);
+        mSession.addPage(photo);
+        verify(photoEdit).applyAsync(any(CancellationToken.class), captor.capture());
+        mEditCallbacks.add(captor.getValue());
+    }
+}
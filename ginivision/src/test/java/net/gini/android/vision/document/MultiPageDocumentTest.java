@@ -0,0 +1,62 @@
+package net.gini.android.vision.document;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import net.gini.android.vision.Document;
+import net.gini.android.vision.internal.camera.photo.Photo;
+import net.gini.android.vision.internal.document.DocumentPayload;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(JUnit4.class)
+public class MultiPageDocumentTest {
+
+    @Test
+    public void should_returnFirstPageData_asData() {
+        final byte[] firstPageData = new byte[]{1, 2, 3};
+        final MultiPageDocument document = MultiPageDocument.fromPhotos(
+                Arrays.asList(createPhoto(firstPageData), createPhoto(new byte[]{4, 5})));
+
+        assertThat(document.getData()).isEqualTo(firstPageData);
+        assertThat(document.getJpeg()).isEqualTo(firstPageData);
+    }
+
+    @Test
+    public void should_returnFirstPagePayload() {
+        final MultiPageDocument document = MultiPageDocument.fromPhotos(
+                Arrays.asList(createPhoto(new byte[]{1, 2, 3}), createPhoto(new byte[]{4, 5})));
+
+        final ImageDocument firstPage = document.getDocuments().get(0);
+        assertThat(document.getPayload()).isSameAs(firstPage.getPayload());
+        assertThat(document.getFingerprint()).isEqualTo(firstPage.getFingerprint());
+    }
+
+    @Test
+    public void should_haveMultiPageType() {
+        final MultiPageDocument document = MultiPageDocument.fromPhotos(
+                Collections.singletonList(createPhoto(new byte[]{1})));
+
+        assertThat(document.getType()).isEqualTo(Document.Type.MULTI_PAGE);
+        assertThat(document.getPageCount()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_withoutPages() {
+        MultiPageDocument.fromPhotos(Collections.<Photo>emptyList());
+    }
+
+    private static Photo createPhoto(final byte[] data) {
+        final Photo photo = mock(Photo.class);
+        when(photo.getPayload()).thenReturn(DocumentPayload.fromBytes(data));
+        when(photo.getImageFormat()).thenReturn(ImageDocument.ImageFormat.JPEG);
+        return photo;
+    }
+}
@@ -0,0 +1,245 @@
+package net.gini.android.vision.internal.async;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.AsyncCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class TaskSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private TaskScheduler mTaskScheduler;
+
+    @Before
+    public void setUp() {
+        mTaskScheduler = new TaskScheduler(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void should_deliverResult() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> result = new AtomicReference<>();
+
+        mTaskScheduler.submit(TaskType.READ_URI, Priority.NORMAL, new CancellationToken(),
+                callable("data"), new TestCallback<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        result.set(value);
+                        latch.countDown();
+                    }
+                });
+
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(result.get()).isEqualTo("data");
+    }
+
+    @Test
+    public void should_deliverException_ofFailedTask() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final IllegalStateException exception = new IllegalStateException("failed");
+
+        mTaskScheduler.submit(TaskType.EDIT_PHOTO, Priority.NORMAL, new CancellationToken(),
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        throw exception;
+                    }
+                }, new TestCallback<String>() {
+                    @Override
+                    public void onError(final Exception value) {
+                        error.set(value);
+                        latch.countDown();
+                    }
+                });
+
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(error.get()).isSameAs(exception);
+    }
+
+    @Test
+    public void should_skipTask_ifCancelled_beforeItStarted() throws Exception {
+        final CountDownLatch release = blockRenderPool();
+        final AtomicBoolean ran = new AtomicBoolean();
+        final AtomicBoolean delivered = new AtomicBoolean();
+        final CancellationToken token = new CancellationToken();
+
+        mTaskScheduler.submit(TaskType.COUNT_PDF_PAGES, Priority.NORMAL, token,
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        ran.set(true);
+                        return "count";
+                    }
+                }, new TestCallback<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        delivered.set(true);
+                    }
+                });
+        token.cancel();
+        release.countDown();
+        awaitRenderPool();
+
+        assertThat(ran.get()).isFalse();
+        assertThat(delivered.get()).isFalse();
+    }
+
+    @Test
+    public void should_discardResult_ifCancelled_whileRunning() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean delivered = new AtomicBoolean();
+        final CancellationToken token = new CancellationToken();
+
+        mTaskScheduler.submit(TaskType.RENDER_PDF, Priority.NORMAL, token,
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        started.countDown();
+                        release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        return "bitmap";
+                    }
+                }, new TestCallback<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        delivered.set(true);
+                    }
+                });
+        assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        token.cancel();
+        release.countDown();
+        awaitRenderPool();
+
+        assertThat(delivered.get()).isFalse();
+    }
+
+    @Test
+    public void should_startWaitingTasks_byPriority() throws Exception {
+        final CountDownLatch release = blockRenderPool();
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        submitRecordingTask(Priority.LOW, "low", order);
+        submitRecordingTask(Priority.NORMAL, "normal 1", order);
+        submitRecordingTask(Priority.HIGH, "high", order);
+        submitRecordingTask(Priority.NORMAL, "normal 2", order);
+        release.countDown();
+        awaitRenderPool();
+
+        assertThat(order).containsExactly("high", "normal 1", "normal 2", "low").inOrder();
+    }
+
+    @Test
+    public void should_recordStatistics_perTaskType() throws Exception {
+        final CountDownLatch release = blockRenderPool();
+        final long blockedMillis = 50;
+        final CountDownLatch latch = new CountDownLatch(1);
+        mTaskScheduler.submit(TaskType.COUNT_PDF_PAGES, Priority.NORMAL, new CancellationToken(),
+                callable("count"), new TestCallback<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        latch.countDown();
+                    }
+                });
+        Thread.sleep(blockedMillis);
+        release.countDown();
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+        final TaskStatistics renderStatistics = mTaskScheduler.getStatistics(
+                TaskType.RENDER_PDF);
+        final TaskStatistics countStatistics = mTaskScheduler.getStatistics(
+                TaskType.COUNT_PDF_PAGES);
+        assertThat(renderStatistics.getCount()).isEqualTo(1);
+        assertThat(renderStatistics.getMaxRunMillis()).isAtLeast(blockedMillis);
+        assertThat(countStatistics.getCount()).isEqualTo(1);
+        assertThat(countStatistics.getMaxQueueWaitMillis()).isAtLeast(blockedMillis);
+        assertThat(mTaskScheduler.getStatistics(TaskType.READ_URI).getCount()).isEqualTo(0);
+    }
+
+    /**
+     * Occupies the single thread of the render pool until the returned latch is released.
+     */
+    private CountDownLatch blockRenderPool() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mTaskScheduler.submit(TaskType.RENDER_PDF, Priority.HIGH, new CancellationToken(),
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        started.countDown();
+                        release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        return "blocking";
+                    }
+                }, new TestCallback<String>());
+        assertThat(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    /**
+     * Waits for the tasks submitted to the render pool before, as the pool runs them in order.
+     */
+    private void awaitRenderPool() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mTaskScheduler.submit(TaskType.COUNT_PDF_PAGES, Priority.LOW, new CancellationToken(),
+                callable("done"), new TestCallback<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        latch.countDown();
+                    }
+                });
+        assertThat(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void submitRecordingTask(final Priority priority, final String name,
+            final List<String> order) {
+        mTaskScheduler.submit(TaskType.COUNT_PDF_PAGES, priority, new CancellationToken(),
+                new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        order.add(name);
+                        return name;
+                    }
+                }, new TestCallback<String>());
+    }
+
+    private static Callable<String> callable(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return result;
+            }
+        };
+    }
+
+    private static class TestCallback<T> implements AsyncCallback<T> {
+
+        @Override
+        public void onSuccess(final T result) {
+        }
+
+        @Override
+        public void onError(final Exception exception) {
+        }
+    }
+}
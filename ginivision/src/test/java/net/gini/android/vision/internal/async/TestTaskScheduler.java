@@ -0,0 +1,22 @@
+package net.gini.android.vision.internal.async;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Creates task schedulers for tests outside of this package.
+ */
+public final class TestTaskScheduler {
+
+    /**
+     * @param callbackExecutor delivers the results of the tasks instead of the main thread
+     */
+    @NonNull
+    public static TaskScheduler create(@NonNull final Executor callbackExecutor) {
+        return new TaskScheduler(callbackExecutor);
+    }
+
+    private TestTaskScheduler() {
+    }
+}
@@ -0,0 +1,114 @@
+package net.gini.android.vision.internal.autocapture;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static net.gini.android.vision.internal.autocapture.AutoCaptureTrigger.DEFAULT_MAX_MOTION;
+import static net.gini.android.vision.internal.autocapture.AutoCaptureTrigger.DEFAULT_MIN_SHARPNESS;
+import static net.gini.android.vision.internal.autocapture.AutoCaptureTrigger.DEFAULT_STEADY_DURATION_MS;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AutoCaptureTriggerTest {
+
+    private static final float SHARP = DEFAULT_MIN_SHARPNESS * 2;
+    private static final float STEADY = DEFAULT_MAX_MOTION / 2;
+    private static final long FRAME_MS = 50;
+
+    @Test
+    public void should_notTrigger_whenDisarmed() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+
+        assertThat(feedFrames(trigger, SHARP, STEADY, 0, 40)).isEqualTo(-1);
+    }
+
+    @Test
+    public void should_trigger_afterSteadyDuration() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+        trigger.arm();
+
+        final long triggeredAtMs = feedFrames(trigger, SHARP, STEADY, 0, 40);
+
+        assertThat(triggeredAtMs).isAtLeast(DEFAULT_STEADY_DURATION_MS);
+        assertThat(triggeredAtMs).isLessThan(DEFAULT_STEADY_DURATION_MS + FRAME_MS);
+    }
+
+    @Test
+    public void should_disarm_afterTriggering() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+        trigger.arm();
+
+        final long triggeredAtMs = feedFrames(trigger, SHARP, STEADY, 0, 40);
+
+        assertThat(trigger.isArmed()).isFalse();
+        assertThat(feedFrames(trigger, SHARP, STEADY, triggeredAtMs + FRAME_MS, 40))
+                .isEqualTo(-1);
+    }
+
+    @Test
+    public void should_restartSteadyDuration_whenMoving() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+        trigger.arm();
+
+        assertThat(feedFrames(trigger, SHARP, STEADY, 0, 5)).isEqualTo(-1);
+        assertThat(trigger.onFrameScored(SHARP, DEFAULT_MAX_MOTION * 2, 5 * FRAME_MS)).isFalse();
+        final long triggeredAtMs = feedFrames(trigger, SHARP, STEADY, 6 * FRAME_MS, 40);
+
+        assertThat(triggeredAtMs).isAtLeast(6 * FRAME_MS + DEFAULT_STEADY_DURATION_MS);
+    }
+
+    @Test
+    public void should_notTrigger_forBlurredFrames() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+        trigger.arm();
+
+        assertThat(feedFrames(trigger, DEFAULT_MIN_SHARPNESS / 2, STEADY, 0, 40)).isEqualTo(-1);
+    }
+
+    @Test
+    public void should_notTrigger_forFrames_lessSharpThanRecentPeak() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger();
+        trigger.arm();
+
+        // A very sharp frame while moving sets the peak
+        assertThat(trigger.onFrameScored(SHARP * 4, DEFAULT_MAX_MOTION * 2, 0)).isFalse();
+        // Steady but less sharp frames are not taken until the peak decayed
+        final long triggeredAtMs = feedFrames(trigger, SHARP, STEADY, FRAME_MS, 200);
+
+        assertThat(triggeredAtMs).isGreaterThan(FRAME_MS + DEFAULT_STEADY_DURATION_MS);
+    }
+
+    @Test
+    public void should_trigger_withCustomThresholds() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger(10, 1, 0);
+        trigger.arm();
+
+        assertThat(trigger.onFrameScored(9, 0, 0)).isFalse();
+        assertThat(trigger.onFrameScored(12, 2, FRAME_MS)).isFalse();
+        assertThat(trigger.onFrameScored(12, 0.5f, 2 * FRAME_MS)).isTrue();
+    }
+
+    @Test
+    public void should_notTrigger_forUnknownMotion() {
+        final AutoCaptureTrigger trigger = new AutoCaptureTrigger(10, 1, 0);
+        trigger.arm();
+
+        assertThat(trigger.onFrameScored(12, FrameScorer.UNKNOWN_MOTION, 0)).isFalse();
+    }
+
+    /**
+     * @return the time of the frame which triggered or -1
+     */
+    private long feedFrames(final AutoCaptureTrigger trigger, final float sharpness,
+            final float motion, final long startMs, final int frameCount) {
+        for (int i = 0; i < frameCount; i++) {
+            final long nowMs = startMs + i * FRAME_MS;
+            if (trigger.onFrameScored(sharpness, motion, nowMs)) {
+                return nowMs;
+            }
+        }
+        return -1;
+    }
+}
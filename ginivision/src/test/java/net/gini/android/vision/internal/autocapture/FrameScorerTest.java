@@ -0,0 +1,145 @@
+package net.gini.android.vision.internal.autocapture;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FrameScorerTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void should_scoreSharpFrame_higherThanBlurredFrame() {
+        final FrameScorer frameScorer = new FrameScorer();
+        final byte[] sharp = createTextLikeFrame(WIDTH, HEIGHT, 0);
+
+        frameScorer.score(sharp, WIDTH, HEIGHT);
+        final float sharpSharpness = frameScorer.getSharpness();
+        frameScorer.score(blur(sharp, WIDTH, HEIGHT, 6), WIDTH, HEIGHT);
+        final float blurredSharpness = frameScorer.getSharpness();
+
+        assertThat(sharpSharpness).isGreaterThan(blurredSharpness * 4);
+    }
+
+    @Test
+    public void should_scoreUniformFrame_withZeroSharpness() {
+        final FrameScorer frameScorer = new FrameScorer();
+        final byte[] uniform = new byte[WIDTH * HEIGHT];
+
+        frameScorer.score(uniform, WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getSharpness()).isEqualTo(0f);
+    }
+
+    @Test
+    public void should_reportUnknownMotion_forFirstFrame() {
+        final FrameScorer frameScorer = new FrameScorer();
+
+        frameScorer.score(createTextLikeFrame(WIDTH, HEIGHT, 0), WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getMotion()).isEqualTo(FrameScorer.UNKNOWN_MOTION);
+    }
+
+    @Test
+    public void should_reportNoMotion_forIdenticalFrames() {
+        final FrameScorer frameScorer = new FrameScorer();
+        final byte[] frame = createTextLikeFrame(WIDTH, HEIGHT, 0);
+
+        frameScorer.score(frame, WIDTH, HEIGHT);
+        frameScorer.score(frame, WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getMotion()).isEqualTo(0f);
+    }
+
+    @Test
+    public void should_reportMotion_forShiftedFrames() {
+        final FrameScorer frameScorer = new FrameScorer();
+
+        frameScorer.score(createTextLikeFrame(WIDTH, HEIGHT, 0), WIDTH, HEIGHT);
+        frameScorer.score(createTextLikeFrame(WIDTH, HEIGHT, 20), WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getMotion()).isGreaterThan(AutoCaptureTrigger.DEFAULT_MAX_MOTION);
+    }
+
+    @Test
+    public void should_reportUnknownMotion_whenFrameSizeChanges() {
+        final FrameScorer frameScorer = new FrameScorer();
+
+        frameScorer.score(createTextLikeFrame(WIDTH, HEIGHT, 0), WIDTH, HEIGHT);
+        frameScorer.score(createTextLikeFrame(320, 240, 0), 320, 240);
+
+        assertThat(frameScorer.getMotion()).isEqualTo(FrameScorer.UNKNOWN_MOTION);
+    }
+
+    @Test
+    public void should_reportUnknownMotion_afterReset() {
+        final FrameScorer frameScorer = new FrameScorer();
+        final byte[] frame = createTextLikeFrame(WIDTH, HEIGHT, 0);
+
+        frameScorer.score(frame, WIDTH, HEIGHT);
+        frameScorer.reset();
+        frameScorer.score(frame, WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getMotion()).isEqualTo(FrameScorer.UNKNOWN_MOTION);
+    }
+
+    @Test
+    public void should_acceptNV21Images() {
+        final FrameScorer frameScorer = new FrameScorer();
+        final byte[] luma = createTextLikeFrame(WIDTH, HEIGHT, 0);
+        final byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        System.arraycopy(luma, 0, nv21, 0, luma.length);
+
+        frameScorer.score(luma, WIDTH, HEIGHT);
+        final float lumaSharpness = frameScorer.getSharpness();
+        frameScorer.score(nv21, WIDTH, HEIGHT);
+
+        assertThat(frameScorer.getSharpness()).isEqualTo(lumaSharpness);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_ifLumaPlaneIsTooSmall() {
+        new FrameScorer().score(new byte[10], WIDTH, HEIGHT);
+    }
+
+    /**
+     * Dark "text lines" of short strokes on a bright background, shifted horizontally by the
+     * offset.
+     */
+    static byte[] createTextLikeFrame(final int width, final int height, final int offset) {
+        final byte[] frame = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int shiftedX = x + offset;
+                final boolean line = (y / 12) % 2 == 0;
+                final boolean stroke = (shiftedX / 6) % 3 != 0 && ((shiftedX * 7 + y) / 24) % 5 != 0;
+                frame[y * width + x] = (byte) (line && stroke ? 30 : 220);
+            }
+        }
+        return frame;
+    }
+
+    static byte[] blur(final byte[] frame, final int width, final int height, final int radius) {
+        final byte[] blurred = new byte[frame.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        final int sx = Math.min(width - 1, Math.max(0, x + dx));
+                        final int sy = Math.min(height - 1, Math.max(0, y + dy));
+                        sum += frame[sy * width + sx] & 0xFF;
+                        count++;
+                    }
+                }
+                blurred[y * width + x] = (byte) (sum / count);
+            }
+        }
+        return blurred;
+    }
+}
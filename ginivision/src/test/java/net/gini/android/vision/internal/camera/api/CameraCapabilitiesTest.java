@@ -0,0 +1,92 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(JUnit4.class)
+public class CameraCapabilitiesTest {
+
+    private static final String FINGERPRINT = "vendor/device/device:7.0/NRD90M/1:user/release-keys";
+
+    @Test
+    public void should_decodeEncodedCapabilities() {
+        final CameraCapabilities capabilities = createCapabilities();
+
+        final CameraCapabilities decoded = CameraCapabilities.decode(
+                capabilities.encode(1, FINGERPRINT), 1, FINGERPRINT);
+
+        assertThat(decoded).isNotNull();
+        assertThat(decoded.getSupportedPictureSizes()).containsExactly(new Size(4032, 3024),
+                new Size(1920, 1080)).inOrder();
+        assertThat(decoded.getSupportedPreviewSizes()).containsExactly(
+                new Size(1440, 1080)).inOrder();
+        assertThat(decoded.getSupportedFocusModes()).containsExactly("auto",
+                "continuous-picture").inOrder();
+        assertThat(decoded.getSupportedFlashModes()).containsExactly("off", "on").inOrder();
+        assertThat(decoded.getSensorOrientation()).isEqualTo(90);
+    }
+
+    @Test
+    public void should_decodeCapabilities_withoutSizesAndModes() {
+        final CameraCapabilities capabilities = new CameraCapabilities(
+                Collections.<Size>emptyList(), Collections.<Size>emptyList(),
+                Collections.<String>emptyList(), Collections.<String>emptyList(), 270);
+
+        final CameraCapabilities decoded = CameraCapabilities.decode(
+                capabilities.encode(1, FINGERPRINT), 1, FINGERPRINT);
+
+        assertThat(decoded).isNotNull();
+        assertThat(decoded.getSupportedPictureSizes()).isEmpty();
+        assertThat(decoded.getSupportedPreviewSizes()).isEmpty();
+        assertThat(decoded.getSupportedFocusModes()).isEmpty();
+        assertThat(decoded.getSupportedFlashModes()).isEmpty();
+        assertThat(decoded.getSensorOrientation()).isEqualTo(270);
+    }
+
+    @Test
+    public void should_notDecode_ifVersionDiffers() {
+        final String encoded = createCapabilities().encode(1, FINGERPRINT);
+
+        assertThat(CameraCapabilities.decode(encoded, 2, FINGERPRINT)).isNull();
+    }
+
+    @Test
+    public void should_notDecode_ifFingerprintDiffers() {
+        final String encoded = createCapabilities().encode(1, FINGERPRINT);
+
+        assertThat(CameraCapabilities.decode(encoded, 1, "other/fingerprint")).isNull();
+    }
+
+    @Test
+    public void should_notDecode_malformedCapabilities() {
+        assertThat(CameraCapabilities.decode(null, 1, FINGERPRINT)).isNull();
+        assertThat(CameraCapabilities.decode("", 1, FINGERPRINT)).isNull();
+        assertThat(CameraCapabilities.decode(
+                "1\n" + FINGERPRINT + "\n4032x\n1440x1080\nauto\non\n90", 1,
+                FINGERPRINT)).isNull();
+    }
+
+    @Test
+    public void should_reportSupportedModes() {
+        final CameraCapabilities capabilities = createCapabilities();
+
+        assertThat(capabilities.isFocusModeSupported("auto")).isTrue();
+        assertThat(capabilities.isFocusModeSupported("macro")).isFalse();
+        assertThat(capabilities.isFlashModeSupported("on")).isTrue();
+        assertThat(capabilities.isFlashModeSupported("torch")).isFalse();
+    }
+
+    private CameraCapabilities createCapabilities() {
+        return new CameraCapabilities(Arrays.asList(new Size(4032, 3024), new Size(1920, 1080)),
+                Collections.singletonList(new Size(1440, 1080)),
+                Arrays.asList("auto", "continuous-picture"), Arrays.asList("off", "on"), 90);
+    }
+}
@@ -0,0 +1,109 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Executor;
+
+@RunWith(JUnit4.class)
+public class PreviewBufferPoolTest {
+
+    private static final int BUFFER_COUNT = 3;
+    private static final int BUFFER_SIZE = 16;
+
+    private PreviewBufferPool mPool;
+
+    @Before
+    public void setUp() {
+        mPool = new PreviewBufferPool(BUFFER_COUNT, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        });
+        mPool.allocate(BUFFER_SIZE);
+    }
+
+    @Test
+    public void should_countAcquiredBuffers_asInUse() {
+        final byte[] buffer = mPool.acquire();
+
+        assertThat(buffer).isNotNull();
+        assertThat(buffer.length).isEqualTo(BUFFER_SIZE);
+        assertThat(mPool.getBuffersInUse()).isEqualTo(1);
+        assertThat(mPool.getDroppedFrames()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_freeBuffer_whenRecycled() {
+        final byte[] buffer = mPool.acquire();
+
+        mPool.recycle(buffer);
+
+        assertThat(mPool.getBuffersInUse()).isEqualTo(0);
+        assertThat(mPool.getDroppedFrames()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_freeBuffer_andCountDroppedFrame_whenDropped() {
+        final byte[] buffer = mPool.acquire();
+
+        mPool.drop(buffer);
+
+        assertThat(mPool.getBuffersInUse()).isEqualTo(0);
+        assertThat(mPool.getDroppedFrames()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_dropFrame_whenAllBuffersAreInUse() {
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            assertThat(mPool.acquire()).isNotNull();
+        }
+
+        final byte[] buffer = mPool.acquire();
+
+        assertThat(buffer).isNull();
+        assertThat(mPool.getBuffersInUse()).isEqualTo(BUFFER_COUNT);
+        assertThat(mPool.getDroppedFrames()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_reuseRecycledBuffer_afterPoolWasUsedUp() {
+        final byte[] first = mPool.acquire();
+        mPool.acquire();
+        mPool.acquire();
+        assertThat(mPool.acquire()).isNull();
+
+        mPool.recycle(first);
+
+        assertThat(mPool.acquire()).isSameAs(first);
+        assertThat(mPool.getBuffersInUse()).isEqualTo(BUFFER_COUNT);
+        assertThat(mPool.getDroppedFrames()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_ignoreBuffer_recycledTwice() {
+        final byte[] buffer = mPool.acquire();
+        mPool.acquire();
+
+        mPool.recycle(buffer);
+        mPool.recycle(buffer);
+
+        assertThat(mPool.getBuffersInUse()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_ignoreBuffer_ofPreviousAllocation() {
+        final byte[] buffer = mPool.acquire();
+
+        mPool.allocate(2 * BUFFER_SIZE);
+        mPool.recycle(buffer);
+
+        assertThat(mPool.getBuffersInUse()).isEqualTo(0);
+        assertThat(mPool.acquire().length).isEqualTo(2 * BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,87 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class SizeSelectionHelper_SelectPictureSizeTest {
+
+    // 20MP 4:3, 16MP 16:9, 12MP 4:3, 8MP 4:3, 8.3MP 16:9, 2MP 16:9
+    private static final List<Size> PICTURE_SIZES = Arrays.asList(
+            new Size(5184, 3888), new Size(5312, 2988), new Size(4000, 3000),
+            new Size(3264, 2448), new Size(3840, 2160), new Size(1920, 1080));
+
+    @Test
+    public void should_selectLargest_byDefault() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.largest())).isEqualTo(new Size(5184, 3888));
+    }
+
+    @Test
+    public void should_selectLargest_inMegapixelRange() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.megapixelRange(8, 13))).isEqualTo(new Size(4000, 3000));
+    }
+
+    @Test
+    public void should_selectSmallestAboveMegapixelRange_ifNoneInRange() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.megapixelRange(3, 5))).isEqualTo(new Size(3264, 2448));
+    }
+
+    @Test
+    public void should_selectLargest_ifAllBelowMegapixelRange() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.megapixelRange(30, 40))).isEqualTo(new Size(5184, 3888));
+    }
+
+    @Test
+    public void should_selectLargest_withinMemoryBudget() {
+        // 3840x2160 ARGB needs ~32MB, 4000x3000 needs ~46MB
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.memoryBudget(40 * 1024 * 1024))).isEqualTo(
+                new Size(3840, 2160));
+    }
+
+    @Test
+    public void should_selectSmallest_ifNoneWithinMemoryBudget() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.memoryBudget(1024))).isEqualTo(new Size(1920, 1080));
+    }
+
+    @Test
+    public void should_selectSmallestWithMinMegapixels_andSensorAspectRatio() {
+        // 3264x2448 has slightly less than 8MP but is advertised as 8MP
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.minMegapixels(8))).isEqualTo(new Size(3264, 2448));
+    }
+
+    @Test
+    public void should_selectLargest_ifNoneWithMinMegapixels() {
+        assertThat(SizeSelectionHelper.selectPictureSize(PICTURE_SIZES,
+                PictureResolutionPolicy.minMegapixels(24))).isEqualTo(new Size(5184, 3888));
+    }
+
+    @Test
+    public void should_selectNothing_ifNoSizes() {
+        assertThat(SizeSelectionHelper.selectPictureSize(Collections.<Size>emptyList(),
+                PictureResolutionPolicy.minMegapixels(8))).isNull();
+        assertThat(SizeSelectionHelper.selectPictureSize(Collections.<Size>emptyList(),
+                PictureResolutionPolicy.memoryBudget(1024))).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_forInvalidMegapixelRange() {
+        PictureResolutionPolicy.megapixelRange(13, 8);
+    }
+}
@@ -0,0 +1,52 @@
+package net.gini.android.vision.internal.camera.api;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+@RunWith(JUnit4.class)
+public class YuvConverterTest {
+
+    @Test
+    public void should_calculateNV21Size() {
+        assertThat(YuvConverter.getNV21Size(640, 480)).isEqualTo(640 * 480 * 3 / 2);
+    }
+
+    @Test
+    public void should_convertPlanarImage() {
+        // 4x2 image with tightly packed planes (I420 layout)
+        final ByteBuffer y = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        final ByteBuffer u = ByteBuffer.wrap(new byte[]{10, 11});
+        final ByteBuffer v = ByteBuffer.wrap(new byte[]{20, 21});
+        final byte[] nv21 = new byte[YuvConverter.getNV21Size(4, 2)];
+
+        YuvConverter.toNV21(y, 4, u, v, 2, 1, 4, 2, nv21);
+
+        assertThat(nv21).isEqualTo(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 20, 10, 21, 11});
+    }
+
+    @Test
+    public void should_convertSemiPlanarImage_withRowPadding() {
+        // 4x2 image with a padded luma row stride and interleaved chroma planes (NV12 layout)
+        final ByteBuffer y = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 0, 0, 5, 6, 7, 8});
+        final ByteBuffer uv = ByteBuffer.wrap(new byte[]{10, 20, 11, 21});
+        final ByteBuffer u = uv.duplicate();
+        final ByteBuffer v = ((ByteBuffer) uv.duplicate().position(1)).slice();
+        final byte[] nv21 = new byte[YuvConverter.getNV21Size(4, 2)];
+
+        YuvConverter.toNV21(y, 6, u, v, 4, 2, 4, 2, nv21);
+
+        assertThat(nv21).isEqualTo(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 20, 10, 21, 11});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throwException_whenOutputIsTooSmall() {
+        final ByteBuffer plane = ByteBuffer.wrap(new byte[8]);
+
+        YuvConverter.toNV21(plane, 4, plane, plane, 2, 1, 4, 2, new byte[8]);
+    }
+}
@@ -0,0 +1,69 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class ArgbToNv21ConverterTest {
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+    private static final int RED = 0xFFFF0000;
+
+    @Test
+    public void should_convertGrays_toLumaWithNeutralChroma() {
+        final ArgbToNv21Converter converter = new ArgbToNv21Converter(2, 2);
+
+        converter.writeStrip(new int[]{WHITE, BLACK, BLACK, WHITE}, 0, 2);
+
+        assertThat(toInts(converter.getNv21())).isEqualTo(new int[]{255, 0, 0, 255, 128, 128});
+    }
+
+    @Test
+    public void should_convertRed() {
+        final ArgbToNv21Converter converter = new ArgbToNv21Converter(2, 2);
+
+        converter.writeStrip(new int[]{RED, RED, RED, RED}, 0, 2);
+
+        // V then U
+        assertThat(toInts(converter.getNv21())).isEqualTo(new int[]{76, 76, 76, 76, 255, 85});
+    }
+
+    @Test
+    public void should_combineStrips() {
+        final int[] image = new int[3 * 5];
+        for (int i = 0; i < image.length; i++) {
+            final int gray = i * 16;
+            image[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+        }
+        final ArgbToNv21Converter whole = new ArgbToNv21Converter(3, 5);
+        whole.writeStrip(image, 0, 5);
+
+        final ArgbToNv21Converter strips = new ArgbToNv21Converter(3, 5);
+        strips.writeStrip(Arrays.copyOfRange(image, 0, 6), 0, 2);
+        strips.writeStrip(Arrays.copyOfRange(image, 6, 12), 2, 2);
+        strips.writeStrip(Arrays.copyOfRange(image, 12, 15), 4, 1);
+
+        assertThat(strips.getNv21()).isEqualTo(whole.getNv21());
+        assertThat(strips.getNv21().length).isEqualTo(3 * 5 + 2 * 2 * 3);
+        assertThat(strips.getNv21()[4] & 0xFF).isEqualTo(64);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_rejectStrips_startingAtOddRow() {
+        new ArgbToNv21Converter(2, 4).writeStrip(new int[4], 1, 2);
+    }
+
+    private static int[] toInts(final byte[] bytes) {
+        final int[] ints = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            ints[i] = bytes[i] & 0xFF;
+        }
+        return ints;
+    }
+}
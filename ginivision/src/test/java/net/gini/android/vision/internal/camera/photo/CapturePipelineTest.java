@@ -0,0 +1,202 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import net.gini.android.vision.internal.AsyncCallback;
+import net.gini.android.vision.internal.async.CancellationToken;
+import net.gini.android.vision.internal.async.TestTaskScheduler;
+import net.gini.android.vision.internal.documentdetection.Quad;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class CapturePipelineTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final byte[] JPEG = new byte[]{1, 2, 3};
+
+    private FakeStages mStages;
+    private CapturePipeline mCapturePipeline;
+    private CancellationToken mCancellationToken;
+    private CountDownLatch mDelivered;
+    private final AtomicReference<Photo> mDeliveredPhoto = new AtomicReference<>();
+    private final AtomicReference<Exception> mDeliveredException = new AtomicReference<>();
+
+    @Before
+    public void setUp() {
+        mStages = new FakeStages();
+        mCapturePipeline = new CapturePipeline(TestTaskScheduler.create(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        }), mStages);
+        mCancellationToken = new CancellationToken();
+        mDelivered = new CountDownLatch(1);
+    }
+
+    @Test
+    public void should_createPhoto_beforeDecodingPreview() throws Exception {
+        process();
+
+        assertThat(mDelivered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mStages.getEvents()).containsExactly("create", "decode").inOrder();
+        assertThat(mDeliveredPhoto.get()).isSameAs(mStages.mPhoto);
+        assertThat(mDeliveredException.get()).isNull();
+    }
+
+    @Test
+    public void should_passCaptureParameters_toCreatePhoto() throws Exception {
+        final Quad quad = new Quad(new float[]{0, 0, 1, 0, 1, 1, 0, 1});
+
+        mCapturePipeline.process(JPEG, 90, "portrait", "phone", quad, mCancellationToken,
+                new DeliveringCallback());
+
+        assertThat(mDelivered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mStages.mJpeg).isSameAs(JPEG);
+        assertThat(mStages.mOrientation).isEqualTo(90);
+        assertThat(mStages.mDocumentQuad).isSameAs(quad);
+    }
+
+    @Test
+    public void should_reportError_andSkipPreview_whenCreatingPhotoFails() throws Exception {
+        final RuntimeException exception = new RuntimeException("create failed");
+        mStages.mCreateException = exception;
+
+        process();
+
+        assertThat(mDelivered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mDeliveredException.get()).isSameAs(exception);
+        assertThat(mDeliveredPhoto.get()).isNull();
+        assertThat(mStages.getEvents()).containsExactly("create");
+    }
+
+    @Test
+    public void should_reportError_andDiscardPhoto_whenDecodingPreviewFails() throws Exception {
+        final RuntimeException exception = new RuntimeException("decode failed");
+        mStages.mDecodeException = exception;
+
+        process();
+
+        assertThat(mDelivered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mDeliveredException.get()).isSameAs(exception);
+        assertThat(mStages.getEvents()).containsExactly("create", "decode", "discard")
+                .inOrder();
+    }
+
+    @Test
+    public void should_skipPreview_andDiscardPhoto_whenCancelledBetweenStages()
+            throws Exception {
+        mStages.mCancelAfterCreate = mCancellationToken;
+
+        process();
+
+        assertThat(mStages.mDiscarded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mStages.getEvents()).containsExactly("create", "discard").inOrder();
+        assertThat(mDelivered.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_discardPhoto_whenCancelledWhileDecodingPreview() throws Exception {
+        mStages.mCancelAfterDecode = mCancellationToken;
+
+        process();
+
+        assertThat(mStages.mDiscarded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(mStages.getEvents()).containsExactly("create", "decode", "discard")
+                .inOrder();
+        assertThat(mDelivered.getCount()).isEqualTo(1);
+    }
+
+    private void process() {
+        mCapturePipeline.process(JPEG, 0, "portrait", "phone", null, mCancellationToken,
+                new DeliveringCallback());
+    }
+
+    private class DeliveringCallback implements AsyncCallback<Photo> {
+
+        @Override
+        public void onSuccess(final Photo result) {
+            mDeliveredPhoto.set(result);
+            mDelivered.countDown();
+        }
+
+        @Override
+        public void onError(final Exception exception) {
+            mDeliveredException.set(exception);
+            mDelivered.countDown();
+        }
+    }
+
+    private static class FakeStages implements CapturePipeline.Stages {
+
+        final Photo mPhoto = mock(Photo.class);
+        final CountDownLatch mDiscarded = new CountDownLatch(1);
+        private final List<String> mEvents = Collections.synchronizedList(
+                new ArrayList<String>());
+        volatile RuntimeException mCreateException;
+        volatile RuntimeException mDecodeException;
+        volatile CancellationToken mCancelAfterCreate;
+        volatile CancellationToken mCancelAfterDecode;
+        volatile byte[] mJpeg;
+        volatile int mOrientation;
+        volatile Quad mDocumentQuad;
+
+        @NonNull
+        @Override
+        public Photo createPhoto(@NonNull final byte[] jpeg, final int orientation,
+                @NonNull final String deviceOrientation, @NonNull final String deviceType,
+                @Nullable final Quad documentQuad) {
+            mEvents.add("create");
+            mJpeg = jpeg;
+            mOrientation = orientation;
+            mDocumentQuad = documentQuad;
+            if (mCreateException != null) {
+                throw mCreateException;
+            }
+            if (mCancelAfterCreate != null) {
+                mCancelAfterCreate.cancel();
+            }
+            return mPhoto;
+        }
+
+        @Override
+        public void decodePreview(@NonNull final Photo photo) {
+            mEvents.add("decode");
+            if (mDecodeException != null) {
+                throw mDecodeException;
+            }
+            if (mCancelAfterDecode != null) {
+                mCancelAfterDecode.cancel();
+            }
+        }
+
+        @Override
+        public void discard(@NonNull final Photo photo) {
+            mEvents.add("discard");
+            mDiscarded.countDown();
+        }
+
+        List<String> getEvents() {
+            synchronized (mEvents) {
+                return new ArrayList<>(mEvents);
+            }
+        }
+    }
+}
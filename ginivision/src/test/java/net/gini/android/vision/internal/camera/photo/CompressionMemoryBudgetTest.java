@@ -0,0 +1,68 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompressionMemoryBudgetTest {
+
+    private static final int WIDTH = 4160;
+    private static final int HEIGHT = 3120;
+    private static final int JPEG_LENGTH = 3 * 1024 * 1024;
+    private static final long FREE_BYTES = 100 * 1024 * 1024;
+
+    private CompressionMemoryBudget mBudget;
+
+    @Before
+    public void setUp() {
+        mBudget = new CompressionMemoryBudget(new CompressionMemoryBudget.FreeMemory() {
+            @Override
+            public long getFreeBytes() {
+                return FREE_BYTES;
+            }
+        });
+    }
+
+    @Test
+    public void should_planWithMemory_notReservedByOtherPlans() {
+        final CompressionPlan first = reservePlan();
+        final CompressionPlan second = reservePlan();
+
+        assertThat(first.getMode()).isEqualTo(CompressionPlan.Mode.FULL_ARGB_8888);
+        assertThat(second.getMode()).isEqualTo(CompressionPlan.Mode.FULL_RGB_565);
+        assertThat(first.getPeakBytes() + second.getPeakBytes()).isAtMost(FREE_BYTES);
+        assertThat(mBudget.getReservedBytes()).isEqualTo(
+                first.getPeakBytes() + second.getPeakBytes());
+    }
+
+    @Test
+    public void should_decodeInStrips_whenBudgetIsUsedUp() {
+        reservePlan();
+        reservePlan();
+
+        assertThat(reservePlan().getMode()).isEqualTo(CompressionPlan.Mode.STRIPS);
+    }
+
+    @Test
+    public void should_returnReservedBytes_onRelease() {
+        final CompressionPlan first = reservePlan();
+        final CompressionPlan second = reservePlan();
+
+        mBudget.release(first);
+        mBudget.release(second);
+
+        assertThat(mBudget.getReservedBytes()).isEqualTo(0);
+        assertThat(reservePlan().getMode()).isEqualTo(CompressionPlan.Mode.FULL_ARGB_8888);
+    }
+
+    private CompressionPlan reservePlan() {
+        return mBudget.reservePlan(WIDTH, HEIGHT, JPEG_LENGTH,
+                PictureResolutionPolicy.largest());
+    }
+}
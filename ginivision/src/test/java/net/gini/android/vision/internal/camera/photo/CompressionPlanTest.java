@@ -0,0 +1,96 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.PictureResolutionPolicy;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompressionPlanTest {
+
+    private static final int WIDTH = 4160;
+    private static final int HEIGHT = 3120;
+    private static final int JPEG_LENGTH = 3 * 1024 * 1024;
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void should_decodeFullImage_asArgb8888_ifItFits() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 256 * MB,
+                PictureResolutionPolicy.largest());
+
+        assertThat(plan.getMode()).isEqualTo(CompressionPlan.Mode.FULL_ARGB_8888);
+        assertThat(plan.getSampleSize()).isEqualTo(1);
+        assertThat(plan.getWidth()).isEqualTo(WIDTH);
+        assertThat(plan.getHeight()).isEqualTo(HEIGHT);
+        assertThat(plan.getPeakBytes()).isEqualTo((long) WIDTH * HEIGHT * 4 + JPEG_LENGTH);
+    }
+
+    @Test
+    public void should_decodeFullImage_asRgb565_ifArgb8888_doesNotFit() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 48 * MB,
+                PictureResolutionPolicy.largest());
+
+        assertThat(plan.getMode()).isEqualTo(CompressionPlan.Mode.FULL_RGB_565);
+        assertThat(plan.getPeakBytes()).isEqualTo((long) WIDTH * HEIGHT * 2 + JPEG_LENGTH);
+    }
+
+    @Test
+    public void should_decodeInStrips_ifFullImage_doesNotFit() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 32 * MB,
+                PictureResolutionPolicy.largest());
+
+        assertThat(plan.getMode()).isEqualTo(CompressionPlan.Mode.STRIPS);
+        assertThat(plan.getSampleSize()).isEqualTo(1);
+        assertThat(plan.getStripHeight() % 2).isEqualTo(0);
+        assertThat(plan.getStripHeight()).isLessThan(HEIGHT);
+        assertThat(plan.getPeakBytes()).isLessThan((long) WIDTH * HEIGHT * 2 + JPEG_LENGTH);
+    }
+
+    @Test
+    public void should_notDownsample_withLargestPolicy() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 8 * MB,
+                PictureResolutionPolicy.largest());
+
+        assertThat(plan.getSampleSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_downsample_withinMemoryBudget() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 256 * MB,
+                PictureResolutionPolicy.memoryBudget(16 * MB));
+
+        assertThat(plan.getSampleSize()).isEqualTo(2);
+        assertThat(plan.getWidth()).isEqualTo(WIDTH / 2);
+        assertThat(plan.getHeight()).isEqualTo(HEIGHT / 2);
+        assertThat(plan.getMode()).isEqualTo(CompressionPlan.Mode.FULL_ARGB_8888);
+    }
+
+    @Test
+    public void should_downsample_toMegapixelRange() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 256 * MB,
+                PictureResolutionPolicy.megapixelRange(0.5f, 1f));
+
+        assertThat(plan.getSampleSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_notDownsample_belowMinMegapixels() {
+        final CompressionPlan plan = CompressionPlan.create(WIDTH, HEIGHT, JPEG_LENGTH, 256 * MB,
+                PictureResolutionPolicy.minMegapixels(8f));
+
+        assertThat(plan.getSampleSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_roundDownsampledSize_up() {
+        final CompressionPlan plan = CompressionPlan.create(4001, 3001, JPEG_LENGTH, 256 * MB,
+                PictureResolutionPolicy.memoryBudget(16 * MB));
+
+        assertThat(plan.getSampleSize()).isEqualTo(2);
+        assertThat(plan.getWidth()).isEqualTo(2001);
+        assertThat(plan.getHeight()).isEqualTo(1501);
+    }
+}
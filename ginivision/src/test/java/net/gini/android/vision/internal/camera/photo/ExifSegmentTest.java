@@ -0,0 +1,206 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+@RunWith(JUnit4.class)
+public class ExifSegmentTest {
+
+    private static final byte[] SOI = bytes(0xFF, 0xD8);
+    private static final byte[] APP0 = bytes(0xFF, 0xE0, 0x00, 0x07, 'J', 'F', 'I', 'F', 0x00);
+    private static final byte[] DQT = bytes(0xFF, 0xDB, 0x00, 0x04, 0x01, 0x02);
+    private static final byte[] SCAN = bytes(0xFF, 0xDA, 0x00, 0x04, 0x03, 0x04,
+            // Entropy coded data containing an escaped 0xFF and an APP1 lookalike
+            0x12, 0xFF, 0x00, 0x34, 0xFF, 0xE1, 0x00, 0x02, 0xFF, 0xD9);
+
+    @Test
+    public void should_insertSegment_afterJfifSegment() {
+        final byte[] jpeg = concat(SOI, APP0, DQT, SCAN);
+
+        final byte[] rewritten = createExif(ByteOrder.BIG_ENDIAN).writeToJpeg(jpeg);
+
+        final int segmentStart = SOI.length + APP0.length;
+        assertThat(Arrays.copyOfRange(rewritten, 0, segmentStart)).isEqualTo(
+                concat(SOI, APP0));
+        assertThat(rewritten[segmentStart] & 0xFF).isEqualTo(0xFF);
+        assertThat(rewritten[segmentStart + 1] & 0xFF).isEqualTo(0xE1);
+        assertThat(endsWith(rewritten, concat(DQT, SCAN))).isTrue();
+    }
+
+    @Test
+    public void should_replaceExistingSegment() {
+        final byte[] jpeg = createExif(ByteOrder.BIG_ENDIAN).writeToJpeg(
+                concat(SOI, APP0, DQT, SCAN));
+        final Exif exif = Exif.builder()
+                .setUserComment("ContentId=other")
+                .setOrientationFromDegrees(180)
+                .build();
+
+        final byte[] rewritten = exif.writeToJpeg(jpeg);
+
+        final ExifReader reader = ExifReader.forJpeg(rewritten);
+        assertThat(reader.getUserComment()).isEqualTo("ContentId=other");
+        assertThat(reader.getOrientationAsDegrees()).isEqualTo(180);
+        assertThat(reader.getRequiredTags().make).isNull();
+        assertThat(endsWith(rewritten, concat(DQT, SCAN))).isTrue();
+        assertThat(rewritten.length).isEqualTo(
+                jpeg.length - segmentLength(jpeg) + segmentLength(rewritten));
+    }
+
+    @Test
+    public void should_readWrittenTags_inBigEndian() {
+        assertRoundTrip(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test
+    public void should_readWrittenTags_inLittleEndian() {
+        assertRoundTrip(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void should_readTags_fromLittleEndianSegment() {
+        final byte[] tiff = bytes(
+                'I', 'I', 42, 0, 8, 0, 0, 0,
+                // IFD0 with Make, Orientation and the Exif IFD pointer
+                3, 0,
+                0x0F, 0x01, 2, 0, 8, 0, 0, 0, 50, 0, 0, 0,
+                0x12, 0x01, 3, 0, 1, 0, 0, 0, 8, 0, 0, 0,
+                0x69, 0x87, 4, 0, 1, 0, 0, 0, 58, 0, 0, 0,
+                0, 0, 0, 0,
+                // Make value at 50
+                'L', 'e', 'n', 'o', 'v', 'o', 0, 0,
+                // Exif IFD at 58 with ISO
+                1, 0,
+                0x27, (byte) 0x88, 3, 0, 1, 0, 0, 0, 100, 0, 0, 0,
+                0, 0, 0, 0);
+        final byte[] jpeg = concat(SOI, app1(tiff), DQT, SCAN);
+
+        final ExifReader reader = ExifReader.forJpeg(jpeg);
+
+        final Exif.RequiredTags requiredTags = reader.getRequiredTags();
+        assertThat(requiredTags.byteOrder).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+        assertThat(requiredTags.make.getStringValues()).asList().containsExactly("Lenovo");
+        assertThat(requiredTags.iso.getIntValue()).isEqualTo(100);
+        assertThat(reader.getOrientationAsDegrees()).isEqualTo(270);
+    }
+
+    @Test
+    public void should_throwException_ifMetadata_wasMissing() {
+        ExifReaderException exception = null;
+        try {
+            ExifReader.forJpeg(concat(SOI, APP0, DQT, SCAN));
+        } catch (final ExifReaderException e) {
+            exception = e;
+        }
+        assertThat(exception).isNotNull();
+        assertThat(exception.getMessage()).isEqualTo("No jpeg metadata found");
+    }
+
+    @Test
+    public void should_returnEmptyRequiredTags_ifMetadata_wasMissing() {
+        final Exif.RequiredTags requiredTags = Exif.readRequiredTags(concat(SOI, DQT, SCAN));
+
+        assertThat(requiredTags).isEqualTo(new Exif.RequiredTags());
+    }
+
+    @Test
+    public void should_throwException_ifSegment_wasTruncated() {
+        final byte[] jpeg = concat(SOI, bytes(0xFF, 0xE1, 0x10, 0x00, 'E', 'x', 'i', 'f'));
+        ExifReaderException exception = null;
+        try {
+            ExifReader.forJpeg(jpeg);
+        } catch (final ExifReaderException e) {
+            exception = e;
+        }
+        assertThat(exception).isNotNull();
+        assertThat(exception.getMessage()).startsWith("Could not read jpeg metadata: ");
+    }
+
+    @Test(expected = ExifReaderException.class)
+    public void should_notWrite_toNonJpeg() {
+        createExif(ByteOrder.BIG_ENDIAN).writeToJpeg(new byte[]{0, 2, 3, 1});
+    }
+
+    private static void assertRoundTrip(final ByteOrder byteOrder) {
+        final Exif.RequiredTags requiredTags = createRequiredTags(byteOrder);
+        final byte[] jpeg = Exif.builder()
+                .setRequiredTags(requiredTags)
+                .setUserComment("ContentId=abc,RotDeltaDeg=90")
+                .setOrientationFromDegrees(90)
+                .build()
+                .writeToJpeg(concat(SOI, APP0, DQT, SCAN));
+
+        final ExifReader reader = ExifReader.forJpeg(jpeg);
+
+        assertThat(reader.getRequiredTags()).isEqualTo(requiredTags);
+        assertThat(reader.getRequiredTags().byteOrder).isEqualTo(byteOrder);
+        assertThat(reader.getUserComment()).isEqualTo("ContentId=abc,RotDeltaDeg=90");
+        assertThat(reader.getOrientationAsDegrees()).isEqualTo(90);
+        assertThat(reader.getRequiredTags().iso.getIntValue()).isEqualTo(400);
+    }
+
+    private static Exif createExif(final ByteOrder byteOrder) {
+        return Exif.builder()
+                .setRequiredTags(createRequiredTags(byteOrder))
+                .setUserComment("ContentId=abc")
+                .setOrientationFromDegrees(0)
+                .build();
+    }
+
+    private static Exif.RequiredTags createRequiredTags(final ByteOrder byteOrder) {
+        final Exif.RequiredTags requiredTags = new Exif.RequiredTags();
+        requiredTags.byteOrder = byteOrder;
+        requiredTags.make = new ExifField(Exif.TAG_MAKE, ExifField.TYPE_ASCII, 7,
+                bytes('G', 'o', 'o', 'g', 'l', 'e', 0), byteOrder);
+        // Fits into the entry
+        requiredTags.model = new ExifField(Exif.TAG_MODEL, ExifField.TYPE_ASCII, 3,
+                bytes('P', '2', 0), byteOrder);
+        requiredTags.iso = ExifField.forShort(Exif.TAG_ISO, 400, byteOrder);
+        final byte[] exposure = new byte[8];
+        ExifField.writeInt(exposure, 0, 1, byteOrder);
+        ExifField.writeInt(exposure, 4, 60, byteOrder);
+        requiredTags.exposure = new ExifField(Exif.TAG_EXPOSURE_TIME, ExifField.TYPE_RATIONAL, 1,
+                exposure, byteOrder);
+        requiredTags.flash = ExifField.forShort(Exif.TAG_FLASH, 16, byteOrder);
+        return requiredTags;
+    }
+
+    private static int segmentLength(final byte[] jpeg) {
+        final int start = SOI.length + APP0.length;
+        return 2 + (((jpeg[start + 2] & 0xFF) << 8) | (jpeg[start + 3] & 0xFF));
+    }
+
+    private static byte[] app1(final byte[] tiff) {
+        final int length = 2 + 6 + tiff.length;
+        return concat(bytes(0xFF, 0xE1, length >> 8, length & 0xFF, 'E', 'x', 'i', 'f', 0, 0),
+                tiff);
+    }
+
+    private static boolean endsWith(final byte[] array, final byte[] suffix) {
+        return Arrays.equals(Arrays.copyOfRange(array, array.length - suffix.length,
+                array.length), suffix);
+    }
+
+    private static byte[] concat(final byte[]... arrays) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (final byte[] array : arrays) {
+            outputStream.write(array, 0, array.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] bytes(final int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,77 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JpegSizePredictorTest {
+
+    private static final int[] QUALITIES = new int[]{10, 50, 90};
+    private static final long[] PROXY_SIZES = new long[]{10000, 30000, 80000};
+
+    @Test
+    public void should_scaleProxySizes_byPixelRatio() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 16);
+
+        assertThat(predictor.predict(50)).isEqualTo(480000);
+    }
+
+    @Test
+    public void should_interpolateBetweenTrials() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 1);
+
+        assertThat(predictor.predict(30)).isEqualTo(20000);
+        assertThat(predictor.predict(80)).isEqualTo(67500);
+    }
+
+    @Test
+    public void should_clampQualities_outsideTrials() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 1);
+
+        assertThat(predictor.predict(5)).isEqualTo(10000);
+        assertThat(predictor.predict(100)).isEqualTo(80000);
+    }
+
+    @Test
+    public void should_findHighestQuality_fittingSize() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 2);
+
+        assertThat(predictor.getHighestQualityFitting(60000)).isEqualTo(50);
+        assertThat(predictor.getHighestQualityFitting(62500)).isEqualTo(51);
+        assertThat(predictor.getHighestQualityFitting(1000000)).isEqualTo(90);
+    }
+
+    @Test
+    public void should_returnLowestQuality_ifNothingFits() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 2);
+
+        assertThat(predictor.getHighestQualityFitting(1000)).isEqualTo(10);
+    }
+
+    @Test
+    public void should_useActualSize_afterCalibration() {
+        final JpegSizePredictor predictor = new JpegSizePredictor(QUALITIES, PROXY_SIZES, 16);
+
+        predictor.calibrate(50, 600000);
+
+        assertThat(predictor.predict(50)).isEqualTo(600000);
+        assertThat(predictor.predict(10)).isEqualTo(200000);
+    }
+
+    @Test
+    public void should_distributeTrialQualities() {
+        assertThat(JpegSizePredictor.getTrialQualities(10, 60, 6)).isEqualTo(
+                new int[]{10, 20, 30, 40, 50, 60});
+        assertThat(JpegSizePredictor.getTrialQualities(10, 12, 6)).isEqualTo(
+                new int[]{10, 11, 12});
+        assertThat(JpegSizePredictor.getTrialQualities(10, 5, 6)).isEqualTo(new int[]{5});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_rejectDescendingQualities() {
+        new JpegSizePredictor(new int[]{50, 10}, new long[]{2, 1}, 1);
+    }
+}
@@ -0,0 +1,46 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PreviewSamplingTest {
+
+    @Test
+    public void should_keepPreview_largerThanFittedImage() {
+        // Fitted into the screen the image is scaled to 0.3125
+        assertThat(PreviewSampling.getSampleSize(4608, 3456, new Size(1080, 1920))).isEqualTo(2);
+    }
+
+    @Test
+    public void should_compareLongAndShortSides() {
+        assertThat(PreviewSampling.getSampleSize(3456, 4608, new Size(1920, 1080))).isEqualTo(
+                PreviewSampling.getSampleSize(4608, 3456, new Size(1920, 1080)));
+    }
+
+    @Test
+    public void should_downsampleMore_forSmallTargets() {
+        assertThat(PreviewSampling.getSampleSize(4608, 3456, new Size(400, 300))).isEqualTo(8);
+    }
+
+    @Test
+    public void should_notDownsample_imagesSmallerThanTarget() {
+        assertThat(PreviewSampling.getSampleSize(1600, 1200, new Size(1920, 1080))).isEqualTo(1);
+    }
+
+    @Test
+    public void should_useDefaultTargetSize_ifTargetIsEmpty() {
+        assertThat(PreviewSampling.getSampleSize(4608, 3456, new Size(0, 0))).isEqualTo(
+                PreviewSampling.getSampleSize(4608, 3456, PreviewSampling.DEFAULT_TARGET_SIZE));
+    }
+
+    @Test
+    public void should_notDownsample_emptyImages() {
+        assertThat(PreviewSampling.getSampleSize(0, 0, new Size(1920, 1080))).isEqualTo(1);
+    }
+}
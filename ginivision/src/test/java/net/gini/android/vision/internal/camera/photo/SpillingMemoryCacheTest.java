@@ -0,0 +1,184 @@
+package net.gini.android.vision.internal.camera.photo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(JUnit4.class)
+public class SpillingMemoryCacheTest {
+
+    private static final long MAX_BYTES = 100;
+    private static final long MAX_AGE_MILLIS = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mSpillDirectory;
+    private final List<Runnable> mPendingSpills = new ArrayList<>();
+    private final Executor mDeferredExecutor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            mPendingSpills.add(command);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mSpillDirectory = mTemporaryFolder.newFolder();
+    }
+
+    @Test
+    public void should_accountBytesHeld() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+
+        cache.putByteArray("a", new byte[30]);
+        cache.putByteArray("b", new byte[40]);
+        cache.remove("a", mSpillDirectory);
+
+        assertThat(cache.getBytesHeld()).isEqualTo(40);
+        assertThat(cache.getLiveCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_spillLeastRecentlyUsed_whenMaxBytesExceeded() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+        final byte[] first = bytes(60, 1);
+
+        cache.putByteArray("a", first);
+        cache.putByteArray("b", bytes(60, 2));
+        runPendingSpills();
+
+        assertThat(cache.getBytesHeld()).isEqualTo(60);
+        assertThat(cache.getEvictedCount()).isEqualTo(1);
+        assertThat(cache.getLiveCount()).isEqualTo(2);
+        assertThat(new File(mSpillDirectory, "a").exists()).isTrue();
+        assertThat(cache.getByteArray("a", mSpillDirectory)).isEqualTo(first);
+    }
+
+    @Test
+    public void should_keepEntryReadable_whileSpilling() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+        final byte[] first = bytes(60, 1);
+
+        cache.putByteArray("a", first);
+        cache.putByteArray("b", bytes(60, 2));
+
+        assertThat(cache.getByteArray("a", null)).isEqualTo(first);
+    }
+
+    @Test
+    public void should_resolveSpilledEntry_withNewCache() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+        final byte[] first = bytes(60, 1);
+        cache.putByteArray("a", first);
+        cache.putByteArray("b", bytes(60, 2));
+        runPendingSpills();
+
+        // As after a process restart
+        final SpillingMemoryCache newCache = createCache(MAX_AGE_MILLIS);
+
+        assertThat(newCache.getByteArray("a", mSpillDirectory)).isEqualTo(first);
+    }
+
+    @Test
+    public void should_deleteSpilledFile_whenRemoved() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+        cache.putByteArray("a", bytes(60, 1));
+        cache.putByteArray("b", bytes(60, 2));
+        runPendingSpills();
+
+        cache.remove("a", mSpillDirectory);
+
+        assertThat(new File(mSpillDirectory, "a").exists()).isFalse();
+        assertThat(cache.getByteArray("a", mSpillDirectory)).isNull();
+        assertThat(cache.getLiveCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_notLeaveFile_whenRemovedWhileSpilling() {
+        final SpillingMemoryCache cache = createCache(MAX_AGE_MILLIS);
+        cache.putByteArray("a", bytes(60, 1));
+        cache.putByteArray("b", bytes(60, 2));
+
+        cache.remove("a", mSpillDirectory);
+        runPendingSpills();
+
+        assertThat(new File(mSpillDirectory, "a").exists()).isFalse();
+        assertThat(cache.getBytesHeld()).isEqualTo(60);
+    }
+
+    @Test
+    public void should_spillStaleEntries_andCountThemAsLeaked() throws Exception {
+        final SpillingMemoryCache cache = createCache(1);
+        cache.putByteArray("a", bytes(10, 1));
+        Thread.sleep(10);
+
+        cache.putByteArray("b", bytes(10, 2));
+        runPendingSpills();
+
+        assertThat(cache.getStaleCount()).isEqualTo(1);
+        assertThat(cache.getEvictedCount()).isEqualTo(0);
+        assertThat(cache.getBytesHeld()).isEqualTo(10);
+        assertThat(new File(mSpillDirectory, "a").exists()).isTrue();
+    }
+
+    @Test
+    public void should_spillStaleEntries_whenReading() throws Exception {
+        final SpillingMemoryCache cache = createCache(1);
+        cache.putByteArray("a", bytes(10, 1));
+        Thread.sleep(10);
+
+        assertThat(cache.getByteArray("b", mSpillDirectory)).isNull();
+        runPendingSpills();
+
+        assertThat(cache.getStaleCount()).isEqualTo(1);
+        assertThat(cache.getBytesHeld()).isEqualTo(0);
+        assertThat(cache.getByteArray("a", mSpillDirectory)).isEqualTo(bytes(10, 1));
+    }
+
+    @Test
+    public void should_keepEntriesInMemory_withoutSpillDirectory() {
+        final SpillingMemoryCache cache = new SpillingMemoryCache(MAX_BYTES, MAX_AGE_MILLIS,
+                mDeferredExecutor);
+
+        cache.putByteArray("a", bytes(60, 1));
+        cache.putByteArray("b", bytes(60, 2));
+        cache.putByteArray("c", bytes(10, 3));
+
+        assertThat(mPendingSpills).isEmpty();
+        assertThat(cache.getBytesHeld()).isEqualTo(130);
+        assertThat(cache.getSpillFailedCount()).isEqualTo(2);
+    }
+
+    private SpillingMemoryCache createCache(final long maxAgeMillis) {
+        final SpillingMemoryCache cache = new SpillingMemoryCache(MAX_BYTES, maxAgeMillis,
+                mDeferredExecutor);
+        cache.setSpillDirectory(mSpillDirectory);
+        return cache;
+    }
+
+    private void runPendingSpills() {
+        for (final Runnable spill : mPendingSpills) {
+            spill.run();
+        }
+        mPendingSpills.clear();
+    }
+
+    private static byte[] bytes(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+}
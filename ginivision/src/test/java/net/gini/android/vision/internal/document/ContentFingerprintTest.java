@@ -0,0 +1,41 @@
+package net.gini.android.vision.internal.document;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.Charset;
+
+@RunWith(JUnit4.class)
+public class ContentFingerprintTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void should_printHash_asHex() {
+        final ContentFingerprint fingerprint = ContentFingerprint.of("abc".getBytes(US_ASCII));
+
+        assertThat(fingerprint.toString()).isEqualTo("900150983cd24fb0d6963f7d28e17f72");
+    }
+
+    @Test
+    public void should_computeSameFingerprint_incrementally() {
+        final byte[] bytes = "content fingerprint".getBytes(US_ASCII);
+        final ContentFingerprint.Hasher hasher = new ContentFingerprint.Hasher();
+
+        hasher.update(bytes, 0, 7);
+        hasher.update(bytes, 7, bytes.length - 7);
+
+        assertThat(hasher.finish()).isEqualTo(ContentFingerprint.of(bytes));
+    }
+
+    @Test
+    public void should_differ_forDifferentContent() {
+        final ContentFingerprint first = ContentFingerprint.of(new byte[]{1, 2, 3});
+        final ContentFingerprint second = ContentFingerprint.of(new byte[]{1, 2, 4});
+
+        assertThat(first).isNotEqualTo(second);
+    }
+}
@@ -0,0 +1,180 @@
+package net.gini.android.vision.internal.document;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+@RunWith(JUnit4.class)
+public class DocumentPayloadTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mPayloadDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mPayloadDirectory = mTemporaryFolder.newFolder();
+        DocumentPayload.setPayloadDirectory(mPayloadDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        DocumentPayload.setPayloadDirectory(null);
+    }
+
+    @Test
+    public void should_writeBytes_toFileInPayloadDirectory() {
+        final byte[] bytes = bytes(1000);
+
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes);
+
+        assertThat(payload.getFile()).isNotNull();
+        assertThat(payload.getFile().getParentFile()).isEqualTo(mPayloadDirectory);
+        assertThat(payload.getLength()).isEqualTo(1000);
+        assertThat(payload.toByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    public void should_copyStream_toFile() throws Exception {
+        final byte[] bytes = bytes(20000);
+
+        final DocumentPayload payload = DocumentPayload.fromStream(
+                new ByteArrayInputStream(bytes));
+
+        assertThat(payload.getFile()).isNotNull();
+        assertThat(payload.toByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    public void should_mapFile_readOnly() throws Exception {
+        final byte[] bytes = bytes(1000);
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes);
+
+        final ByteBuffer buffer = payload.map();
+
+        assertThat(buffer.isReadOnly()).isTrue();
+        assertThat(buffer.remaining()).isEqualTo(1000);
+        assertThat(buffer.get(999)).isEqualTo(bytes[999]);
+    }
+
+    @Test
+    public void should_writeContent_toOutputStream() throws Exception {
+        final byte[] bytes = bytes(1000);
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        payload.writeTo(outputStream);
+
+        assertThat(outputStream.toByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    public void should_keepContentInMemory_withoutPayloadDirectory() throws Exception {
+        DocumentPayload.setPayloadDirectory(null);
+        final byte[] bytes = bytes(1000);
+
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes);
+        final DocumentPayload streamedPayload = DocumentPayload.fromStream(
+                new ByteArrayInputStream(bytes));
+
+        assertThat(payload.getFile()).isNull();
+        assertThat(payload.toByteArray()).isEqualTo(bytes);
+        assertThat(payload.map().get(999)).isEqualTo(bytes[999]);
+        assertThat(streamedPayload.getFile()).isNull();
+        assertThat(streamedPayload).isEqualTo(payload);
+    }
+
+    @Test
+    public void should_createNewFile_forEachPayload() {
+        final DocumentPayload first = DocumentPayload.fromBytes(bytes(10));
+        final DocumentPayload second = DocumentPayload.fromBytes(bytes(10));
+
+        assertThat(first.getFile()).isNotEqualTo(second.getFile());
+        assertThat(first.toByteArray()).isEqualTo(bytes(10));
+    }
+
+    @Test
+    public void should_computeSameFingerprint_forBytesAndStream() throws Exception {
+        final byte[] bytes = bytes(20000);
+
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes);
+        final DocumentPayload streamedPayload = DocumentPayload.fromStream(
+                new ByteArrayInputStream(bytes));
+
+        assertThat(streamedPayload.getFingerprint()).isEqualTo(payload.getFingerprint());
+        assertThat(payload.getFingerprint()).isEqualTo(ContentFingerprint.of(bytes));
+    }
+
+    @Test
+    public void should_beEqual_ifContentIsEqual() {
+        final DocumentPayload filePayload = DocumentPayload.fromBytes(bytes(10));
+        DocumentPayload.setPayloadDirectory(null);
+        final DocumentPayload memoryPayload = DocumentPayload.fromBytes(bytes(10));
+        final DocumentPayload otherPayload = DocumentPayload.fromBytes(bytes(11));
+
+        assertThat(filePayload).isEqualTo(memoryPayload);
+        assertThat(filePayload.hashCode()).isEqualTo(memoryPayload.hashCode());
+        assertThat(filePayload).isNotEqualTo(otherPayload);
+    }
+
+    @Test
+    public void should_notPrintContent() {
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes(1000));
+
+        assertThat(payload.toString()).contains(payload.getFingerprint().toString());
+        assertThat(payload.toString().length()).isLessThan(200);
+    }
+
+    @Test
+    public void should_deleteOldFiles_ofPreviousProcesses() throws Exception {
+        final File oldFile = new File(mPayloadDirectory, "old");
+        assertThat(oldFile.createNewFile()).isTrue();
+        assertThat(oldFile.setLastModified(System.currentTimeMillis() - 60 * 60 * 1000)).isTrue();
+        final DocumentPayload newPayload = DocumentPayload.fromBytes(bytes(10));
+
+        DocumentPayload.deleteUnreferencedFilesOlderThan(mPayloadDirectory, 60 * 1000);
+
+        assertThat(oldFile.exists()).isFalse();
+        assertThat(newPayload.getFile().exists()).isTrue();
+    }
+
+    @Test
+    public void should_keepOldFiles_ofLivePayloads() {
+        final DocumentPayload oldPayload = DocumentPayload.fromBytes(bytes(10));
+        assertThat(oldPayload.getFile().setLastModified(
+                System.currentTimeMillis() - 60 * 60 * 1000)).isTrue();
+
+        DocumentPayload.deleteUnreferencedFilesOlderThan(mPayloadDirectory, 60 * 1000);
+
+        assertThat(oldPayload.getFile().exists()).isTrue();
+    }
+
+    @Test
+    public void should_deleteFile_whenDeleted() {
+        final DocumentPayload payload = DocumentPayload.fromBytes(bytes(10));
+
+        payload.delete();
+
+        assertThat(payload.getFile().exists()).isFalse();
+    }
+
+    private static byte[] bytes(final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,124 @@
+package net.gini.android.vision.internal.documentdetection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class QuadDetectorTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final float TOLERANCE = 0.02f;
+
+    @Test
+    public void should_detectDocument() {
+        final float[] corners = {100, 60, 540, 60, 540, 420, 100, 420};
+        final byte[] frame = createFrame(corners);
+
+        final Quad quad = new QuadDetector().detect(frame, WIDTH, HEIGHT);
+
+        assertCorners(quad, corners);
+    }
+
+    @Test
+    public void should_detectRotatedDocument() {
+        final float[] corners = {150, 80, 500, 120, 465, 430, 110, 385};
+        final byte[] frame = createFrame(corners);
+
+        final Quad quad = new QuadDetector().detect(frame, WIDTH, HEIGHT);
+
+        assertCorners(quad, corners);
+    }
+
+    @Test
+    public void should_detectDocument_inSubsequentFrames() {
+        final QuadDetector detector = new QuadDetector();
+        final float[] firstCorners = {100, 60, 540, 60, 540, 420, 100, 420};
+        final float[] secondCorners = {150, 80, 500, 120, 465, 430, 110, 385};
+
+        detector.detect(createFrame(firstCorners), WIDTH, HEIGHT);
+        final Quad quad = detector.detect(createFrame(secondCorners), WIDTH, HEIGHT);
+
+        assertCorners(quad, secondCorners);
+    }
+
+    @Test
+    public void should_notDetect_inBlankFrame() {
+        final byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        fillBackground(frame);
+
+        assertThat(new QuadDetector().detect(frame, WIDTH, HEIGHT)).isNull();
+    }
+
+    @Test
+    public void should_notDetect_smallDocument() {
+        final float[] corners = {280, 200, 360, 200, 360, 280, 280, 280};
+        final byte[] frame = createFrame(corners);
+
+        assertThat(new QuadDetector().detect(frame, WIDTH, HEIGHT)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_ifLumaPlaneTooSmall() {
+        new QuadDetector().detect(new byte[WIDTH], WIDTH, HEIGHT);
+    }
+
+    private static void assertCorners(final Quad quad, final float[] expected) {
+        assertThat(quad).isNotNull();
+        for (int corner = 0; corner < 4; corner++) {
+            assertThat(quad.getX(corner)).isWithin(TOLERANCE).of(expected[corner * 2] / WIDTH);
+            assertThat(quad.getY(corner)).isWithin(TOLERANCE).of(
+                    expected[corner * 2 + 1] / HEIGHT);
+        }
+    }
+
+    /**
+     * Creates an NV21 frame showing a bright document with dark text lines on a darker, noisy
+     * background.
+     */
+    private static byte[] createFrame(final float[] corners) {
+        final byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        fillBackground(frame);
+        final float centerX = (corners[0] + corners[2] + corners[4] + corners[6]) / 4;
+        final float centerY = (corners[1] + corners[3] + corners[5] + corners[7]) / 4;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (!isInside(corners, x, y)) {
+                    continue;
+                }
+                final boolean text = Math.abs(x - centerX) < 0.25f * WIDTH / 2
+                        && (y % 16) < 3 && Math.abs(y - centerY) < 0.3f * HEIGHT / 2;
+                frame[y * WIDTH + x] = (byte) (text ? 70 : 210);
+            }
+        }
+        return frame;
+    }
+
+    private static void fillBackground(final byte[] frame) {
+        final Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                frame[y * WIDTH + x] = (byte) (50 + x / 32 + random.nextInt(8));
+            }
+        }
+    }
+
+    private static boolean isInside(final float[] corners, final float x, final float y) {
+        for (int corner = 0; corner < 4; corner++) {
+            final int next = (corner + 1) % 4;
+            final float cross = (corners[next * 2] - corners[corner * 2])
+                    * (y - corners[corner * 2 + 1])
+                    - (corners[next * 2 + 1] - corners[corner * 2 + 1])
+                    * (x - corners[corner * 2]);
+            if (cross < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PdfPageKeyTest {
+
+    private static final String URI = "content://documents/1";
+
+    @Test
+    public void should_describePage_withUriIndexAndSize() {
+        final PdfPageKey key = new PdfPageKey(URI, 2, new Size(300, 400));
+
+        assertThat(key.toString()).isEqualTo("content://documents/1#2@300x400");
+    }
+
+    @Test
+    public void should_beEqual_forSamePageAndSize() {
+        final PdfPageKey key = new PdfPageKey(URI, 2, new Size(300, 400));
+        final PdfPageKey sameKey = new PdfPageKey(URI, 2, new Size(300, 400));
+
+        assertThat(key).isEqualTo(sameKey);
+        assertThat(key.hashCode()).isEqualTo(sameKey.hashCode());
+    }
+
+    @Test
+    public void should_differ_forOtherPageOrSize() {
+        final PdfPageKey key = new PdfPageKey(URI, 2, new Size(300, 400));
+
+        assertThat(key).isNotEqualTo(new PdfPageKey(URI, 3, new Size(300, 400)));
+        assertThat(key).isNotEqualTo(new PdfPageKey(URI, 2, new Size(600, 800)));
+        assertThat(key).isNotEqualTo(new PdfPageKey("content://documents/2", 2,
+                new Size(300, 400)));
+    }
+
+    @Test
+    public void should_matchPages_ofSamePdf() {
+        final PdfPageKey key = new PdfPageKey(URI, 0, new Size(300, 400));
+
+        assertThat(key.isPageOf(URI)).isTrue();
+    }
+
+    @Test
+    public void should_notMatchPages_ofPdfWithLongerUri() {
+        assertThat(new PdfPageKey("content://documents/10", 0, new Size(300, 400))
+                .isPageOf(URI)).isFalse();
+        // Would match when comparing the key's string by the prefix "content://documents/1#"
+        assertThat(new PdfPageKey(URI + "#fragment", 0, new Size(300, 400))
+                .isPageOf(URI)).isFalse();
+    }
+}
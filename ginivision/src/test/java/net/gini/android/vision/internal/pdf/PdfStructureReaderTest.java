@@ -0,0 +1,170 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+@RunWith(JUnit4.class)
+public class PdfStructureReaderTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void should_readPageTree_fromXrefTable() {
+        final PdfStructure structure = PdfStructureReader.read(createThreePagePdf().toBuffer());
+
+        assertThat(structure.getPageCount()).isEqualTo(3);
+        assertThat(structure.getPageSizes()).containsExactly(new Size(595, 842),
+                new Size(842, 595), new Size(612, 792)).inOrder();
+        assertThat(structure.isEncrypted()).isFalse();
+        assertThat(structure.getProducer()).isEqualTo("Test Producer");
+    }
+
+    @Test
+    public void should_readCompressedObjects_fromXrefStream() {
+        final PdfStructure structure = PdfStructureReader.read(createCompressedPdf());
+
+        assertThat(structure.getPageCount()).isEqualTo(2);
+        assertThat(structure.getPageSizes()).containsExactly(new Size(595, 842),
+                new Size(595, 842)).inOrder();
+        assertThat(structure.getProducer()).isEqualTo("Ünïcode");
+    }
+
+    @Test
+    public void should_useNewestObjects_ofIncrementalUpdates() {
+        final TestPdf pdf = createThreePagePdf();
+        final int firstXref = pdf.getLastXrefOffset();
+        pdf.addObject(2, "<< /Type /Pages /Kids [3 0 R 4 0 R 5 0 R 8 0 R] /Count 4 "
+                + "/MediaBox [0 0 595 842] >>");
+        pdf.addObject(8, "<< /Type /Page /Parent 2 0 R >>");
+        pdf.writeXrefUpdate("/Size 9 /Root 1 0 R /Prev " + firstXref, 2, 8);
+
+        final PdfStructure structure = PdfStructureReader.read(pdf.toBuffer());
+
+        assertThat(structure.getPageCount()).isEqualTo(4);
+        assertThat(structure.getPageSizes()).hasSize(4);
+        assertThat(structure.getProducer()).isEqualTo("Test Producer");
+    }
+
+    @Test
+    public void should_recoverObjects_whenXrefIsDamaged() {
+        final TestPdf pdf = createThreePagePdf();
+        pdf.write("%%EOF\nstartxref\n12\n%%EOF\n");
+
+        final PdfStructure structure = PdfStructureReader.read(pdf.toBuffer());
+
+        assertThat(structure.getPageCount()).isEqualTo(3);
+        assertThat(structure.getProducer()).isEqualTo("Test Producer");
+    }
+
+    @Test
+    public void should_detectEncryption() {
+        final TestPdf pdf = new TestPdf();
+        pdf.addObject(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        pdf.addObject(2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        pdf.addObject(3, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] >>");
+        pdf.addObject(4, "<< /Producer (§$%&) >>");
+        pdf.addObject(5, "<< /Filter /Standard /V 2 /R 3 /O <00> /U <00> /P -4 >>");
+        pdf.writeXrefTable("/Size 6 /Root 1 0 R /Info 4 0 R /Encrypt 5 0 R");
+
+        final PdfStructure structure = PdfStructureReader.read(pdf.toBuffer());
+
+        assertThat(structure.getPageCount()).isEqualTo(1);
+        assertThat(structure.isEncrypted()).isTrue();
+        assertThat(structure.getProducer()).isNull();
+    }
+
+    @Test(expected = PdfStructureException.class)
+    public void should_throw_whenNotAPdf() {
+        PdfStructureReader.read(ByteBuffer.wrap("GIF89a".getBytes(ASCII)));
+    }
+
+    @Test(expected = PdfStructureException.class)
+    public void should_throw_whenPageTreeIsMissing() {
+        final TestPdf pdf = new TestPdf();
+        pdf.addObject(1, "<< /Type /Catalog >>");
+        pdf.writeXrefTable("/Size 2 /Root 1 0 R");
+
+        PdfStructureReader.read(pdf.toBuffer());
+    }
+
+    private static TestPdf createThreePagePdf() {
+        final TestPdf pdf = new TestPdf();
+        pdf.addObject(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        pdf.addObject(2, "<< /Type /Pages /Kids [3 0 R 4 0 R 5 0 R] /Count 3 "
+                + "/MediaBox [0 0 595 842] >>");
+        pdf.addObject(3, "<< /Type /Page /Parent 2 0 R /Contents 6 0 R >>");
+        pdf.addObject(4, "<< /Type /Page /Parent 2 0 R /Rotate 90 >>");
+        pdf.addObject(5, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612.0 792] >>");
+        pdf.addObject(6, "<< /Length 8 >>\nstream\nendobj!!\nendstream");
+        pdf.addObject(7, "<< /Producer (Test\\040Producer) >>");
+        pdf.writeXrefTable("/Size 8 /Root 1 0 R /Info 7 0 R");
+        return pdf;
+    }
+
+    private static ByteBuffer createCompressedPdf() {
+        final String[] objects = {
+                "<< /Type /Catalog /Pages 2 0 R >>",
+                "<< /Type /Pages /Kids [3 0 R 4 0 R] /Count 2 /MediaBox [0 0 595 842] >>",
+                "<< /Type /Page /Parent 2 0 R >>",
+                "<< /Type /Page /Parent 2 0 R >>",
+                "<< /Producer <FEFF00DC006E00EF0063006F00640065> >>"
+        };
+        final int[] objectNumbers = {1, 2, 3, 4, 6};
+        final StringBuilder header = new StringBuilder();
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < objects.length; i++) {
+            header.append(objectNumbers[i]).append(' ').append(body.length()).append(' ');
+            body.append(objects[i]).append('\n');
+        }
+        final byte[] objectStream = TestPdf.deflate((header.toString() + body).getBytes(ASCII));
+
+        final TestPdf pdf = new TestPdf();
+        pdf.addStream(5, "/Type /ObjStm /N 5 /First " + header.length()
+                + " /Filter /FlateDecode /Length 8 0 R", objectStream);
+        pdf.addObject(8, String.valueOf(objectStream.length));
+        final int xrefOffset = pdf.getOffset();
+
+        final ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        final byte[] previousRow = new byte[4];
+        for (int number = 0; number <= 9; number++) {
+            final byte[] row;
+            if (number == 0) {
+                row = new byte[]{0, 0, 0, (byte) 255};
+            } else if (number == 5 || number == 8) {
+                row = new byte[]{1, (byte) (pdf.getObjectOffset(number) >> 8),
+                        (byte) pdf.getObjectOffset(number), 0};
+            } else if (number == 9) {
+                row = new byte[]{1, (byte) (xrefOffset >> 8), (byte) xrefOffset, 0};
+            } else if (number == 7) {
+                row = new byte[]{0, 0, 0, 0};
+            } else {
+                int index = 0;
+                while (objectNumbers[index] != number) {
+                    index++;
+                }
+                row = new byte[]{2, 0, 5, (byte) index};
+            }
+            // Png up predictor
+            rows.write(2);
+            for (int i = 0; i < row.length; i++) {
+                rows.write(row[i] - previousRow[i]);
+            }
+            System.arraycopy(row, 0, previousRow, 0, row.length);
+        }
+        final byte[] xrefStream = TestPdf.deflate(rows.toByteArray());
+        pdf.addStream(9, "/Type /XRef /Size 10 /W [1 2 1] /Root 1 0 R /Info 6 0 R "
+                + "/Filter [/FlateDecode] /DecodeParms [<< /Predictor 12 /Columns 4 >>] "
+                + "/Length " + xrefStream.length, xrefStream);
+        pdf.write("startxref\n" + xrefOffset + "\n%%EOF\n");
+        return pdf.toBuffer();
+    }
+}
@@ -0,0 +1,125 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class ScannedPdfExtractorTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] JPEG = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 0,
+            0x10, 'J', 'F', 'I', 'F', 0, '\r', '\n', 'e', 'n', 'd', (byte) 0xff, (byte) 0xd9};
+    private static final String RGB_IMAGE = "/Type /XObject /Subtype /Image /Width 2480 "
+            + "/Height 3508 /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode";
+
+    @Test
+    public void should_extractJpegBytes_ofScannedPage() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 595 0 0 842 0 0 cm /Im0 Do Q").toBuffer());
+
+        assertThat(images).hasSize(1);
+        final PdfPageImage image = images.get(0);
+        assertThat(image.getJpeg()).isEqualTo(JPEG);
+        assertThat(image.getWidth()).isEqualTo(2480);
+        assertThat(image.getHeight()).isEqualTo(3508);
+        assertThat(image.getRotation()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_allowInvisibleText_ofRecognizedScans() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 595.3 0 0 841.9 0 0 cm /Im0 Do Q\n"
+                        + "BT 3 Tr /F1 12 Tf 72 700 Td (Rechnung) Tj [(Betrag)] TJ ET")
+                .toBuffer());
+
+        assertThat(images.get(0)).isNotNull();
+    }
+
+    @Test
+    public void should_returnNull_forVisibleText() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 595 0 0 842 0 0 cm /Im0 Do Q\n"
+                        + "BT /F1 12 Tf 72 700 Td (Rechnung) Tj ET").toBuffer());
+
+        assertThat(images.get(0)).isNull();
+    }
+
+    @Test
+    public void should_returnNull_forImagesNotCoveringThePage() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 200 0 0 100 50 700 cm /Im0 Do Q").toBuffer());
+
+        assertThat(images.get(0)).isNull();
+    }
+
+    @Test
+    public void should_returnNull_forPaintedPaths() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 595 0 0 842 0 0 cm /Im0 Do Q 0 0 100 100 re f").toBuffer());
+
+        assertThat(images.get(0)).isNull();
+    }
+
+    @Test
+    public void should_returnNull_forCmykJpegs() {
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE.replace("DeviceRGB", "DeviceCMYK"), "q 595 0 0 842 0 0 cm /Im0 Do Q")
+                .toBuffer());
+
+        assertThat(images.get(0)).isNull();
+    }
+
+    @Test
+    public void should_returnRotation_ofRotatedImages() {
+        // The image's x axis points down the page
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(createSinglePagePdf(
+                RGB_IMAGE, "q 0 -842 595 0 0 842 cm /Im0 Do Q").toBuffer());
+
+        assertThat(images.get(0).getRotation()).isEqualTo(90);
+    }
+
+    @Test
+    public void should_extractOnlyScannedPages_ofMixedPdfs() {
+        final TestPdf pdf = new TestPdf();
+        pdf.addObject(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        pdf.addObject(2, "<< /Type /Pages /Kids [3 0 R 4 0 R] /Count 2 /MediaBox [0 0 595 842] "
+                + "/Resources << /XObject << /Im0 5 0 R >> >> >>");
+        pdf.addObject(3, "<< /Type /Page /Parent 2 0 R /Contents 6 0 R >>");
+        pdf.addObject(4, "<< /Type /Page /Parent 2 0 R /Contents 7 0 R >>");
+        pdf.addStream(5, RGB_IMAGE.replace("/DeviceRGB", "[/ICCBased 8 0 R]") + " /Length "
+                + JPEG.length, JPEG);
+        final byte[] scannedContent = TestPdf.deflate(
+                "q 595 0 0 842 0 0 cm /Im0 Do Q".getBytes(ASCII));
+        pdf.addStream(6, "/Filter /FlateDecode /Length " + scannedContent.length,
+                scannedContent);
+        final byte[] textContent = "BT /F1 12 Tf (Text) Tj ET".getBytes(ASCII);
+        pdf.addStream(7, "/Length " + textContent.length, textContent);
+        pdf.addStream(8, "/N 3 /Length 0", new byte[0]);
+        pdf.writeXrefTable("/Size 9 /Root 1 0 R");
+
+        final List<PdfPageImage> images = ScannedPdfExtractor.extract(pdf.toBuffer());
+
+        assertThat(images).hasSize(2);
+        assertThat(images.get(0).getJpeg()).isEqualTo(JPEG);
+        assertThat(images.get(1)).isNull();
+    }
+
+    private static TestPdf createSinglePagePdf(final String image, final String content) {
+        final TestPdf pdf = new TestPdf();
+        pdf.addObject(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        pdf.addObject(2, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        pdf.addObject(3, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+                + "/Resources << /XObject << /Im0 4 0 R >> >> /Contents 5 0 R >>");
+        pdf.addStream(4, image + " /Length " + JPEG.length, JPEG);
+        final byte[] contentBytes = content.getBytes(ASCII);
+        pdf.addStream(5, "/Length " + contentBytes.length, contentBytes);
+        pdf.writeXrefTable("/Size 6 /Root 1 0 R");
+        return pdf;
+    }
+}
@@ -0,0 +1,148 @@
+package net.gini.android.vision.internal.pdf;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class SessionRegistryTest {
+
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    private final List<Session> mClosedSessions = new ArrayList<>();
+    private final List<Runnable> mDelayedRunnables = new ArrayList<>();
+    private SessionRegistry<String, Session> mRegistry;
+    private int mCreatedSessions;
+
+    @Before
+    public void setUp() {
+        mRegistry = new SessionRegistry<>(new SessionRegistry.Closer<Session>() {
+            @Override
+            public void close(@NonNull final Session session) {
+                mClosedSessions.add(session);
+            }
+        }, new SessionRegistry.DelayedExecutor() {
+            @Override
+            public void postDelayed(@NonNull final Runnable runnable, final long delayMs) {
+                assertThat(delayMs).isEqualTo(IDLE_TIMEOUT_MS);
+                mDelayedRunnables.add(runnable);
+            }
+
+            @Override
+            public void removeCallbacks(@NonNull final Runnable runnable) {
+                mDelayedRunnables.remove(runnable);
+            }
+        }, IDLE_TIMEOUT_MS);
+    }
+
+    @Test
+    public void should_shareSession_perKey() {
+        final Session first = acquire("a");
+        final Session second = acquire("a");
+        final Session other = acquire("b");
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        assertThat(mCreatedSessions).isEqualTo(2);
+    }
+
+    @Test
+    public void should_notClose_beforeLastRelease() {
+        final Session session = acquire("a");
+        acquire("a");
+
+        mRegistry.release("a", session);
+        runIdleTimeout();
+
+        assertThat(mClosedSessions).isEmpty();
+    }
+
+    @Test
+    public void should_closeAfterIdleTimeout_afterLastRelease() {
+        final Session session = acquire("a");
+        acquire("a");
+        mRegistry.release("a", session);
+        mRegistry.release("a", session);
+
+        assertThat(mClosedSessions).isEmpty();
+        runIdleTimeout();
+
+        assertThat(mClosedSessions).containsExactly(session);
+    }
+
+    @Test
+    public void should_notClose_whenAcquiredAgain_beforeIdleTimeout() {
+        final Session session = acquire("a");
+        mRegistry.release("a", session);
+
+        assertThat(acquire("a")).isSameAs(session);
+        runIdleTimeout();
+
+        assertThat(mClosedSessions).isEmpty();
+    }
+
+    @Test
+    public void should_openNewSession_afterClosing() {
+        final Session session = acquire("a");
+        mRegistry.release("a", session);
+        runIdleTimeout();
+
+        final Session newSession = acquire("a");
+
+        assertThat(newSession).isNotSameAs(session);
+        assertThat(mCreatedSessions).isEqualTo(2);
+    }
+
+    @Test
+    public void should_ignoreRelease_ofClosedSession() {
+        final Session session = acquire("a");
+        mRegistry.release("a", session);
+        runIdleTimeout();
+        final Session newSession = acquire("a");
+
+        mRegistry.release("a", session);
+        runIdleTimeout();
+
+        assertThat(mClosedSessions).containsExactly(session);
+        assertThat(acquire("a")).isSameAs(newSession);
+    }
+
+    @Test
+    public void should_ignoreUnbalancedRelease() {
+        final Session session = acquire("a");
+        mRegistry.release("a", session);
+        mRegistry.release("a", session);
+
+        assertThat(mDelayedRunnables).hasSize(1);
+    }
+
+    private Session acquire(final String key) {
+        return mRegistry.acquire(key, new SessionRegistry.Factory<String, Session>() {
+            @NonNull
+            @Override
+            public Session create(@NonNull final String key) {
+                mCreatedSessions++;
+                return new Session();
+            }
+        });
+    }
+
+    private void runIdleTimeout() {
+        final List<Runnable> runnables = new ArrayList<>(mDelayedRunnables);
+        mDelayedRunnables.clear();
+        for (final Runnable runnable : runnables) {
+            runnable.run();
+        }
+    }
+
+    private static class Session {
+    }
+}
@@ -0,0 +1,106 @@
+package net.gini.android.vision.internal.pdf;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes pdfs with the given objects for tests and keeps track of the object offsets.
+ */
+class TestPdf {
+
+    private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+    private final Map<Integer, Integer> mObjectOffsets = new TreeMap<>();
+    private int mLastXrefOffset;
+
+    static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    TestPdf() {
+        write("%PDF-1.7\n%âãÏÓ\n");
+    }
+
+    void addObject(final int number, final String body) {
+        mObjectOffsets.put(number, getOffset());
+        write(number + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    void addStream(final int number, final String dictionary, final byte[] data) {
+        mObjectOffsets.put(number, getOffset());
+        write(number + " 0 obj\n<< " + dictionary + " >>\nstream\n");
+        mOutput.write(data, 0, data.length);
+        write("\nendstream\nendobj\n");
+    }
+
+    /**
+     * Writes an xref table with all objects added so far, numbered from 1 without gaps.
+     */
+    void writeXrefTable(final String trailer) {
+        final StringBuilder xref = new StringBuilder("xref\n0 ")
+                .append(mObjectOffsets.size() + 1).append('\n')
+                .append("0000000000 65535 f\r\n");
+        for (int number = 1; number <= mObjectOffsets.size(); number++) {
+            appendEntry(xref, number);
+        }
+        writeXref(xref, trailer);
+    }
+
+    /**
+     * Writes an xref table for an incremental update of the objects.
+     */
+    void writeXrefUpdate(final String trailer, final int... objectNumbers) {
+        final StringBuilder xref = new StringBuilder("xref\n");
+        for (final int number : objectNumbers) {
+            xref.append(number).append(" 1\n");
+            appendEntry(xref, number);
+        }
+        writeXref(xref, trailer);
+    }
+
+    private void writeXref(final StringBuilder xref, final String trailer) {
+        mLastXrefOffset = getOffset();
+        xref.append("trailer\n<< ").append(trailer).append(" >>\nstartxref\n")
+                .append(mLastXrefOffset).append("\n%%EOF\n");
+        write(xref.toString());
+    }
+
+    private void appendEntry(final StringBuilder xref, final int number) {
+        xref.append(String.format("%010d 00000 n\r\n", mObjectOffsets.get(number)));
+    }
+
+    void write(final String string) {
+        final byte[] bytes = string.getBytes(LATIN_1);
+        mOutput.write(bytes, 0, bytes.length);
+    }
+
+    int getOffset() {
+        return mOutput.size();
+    }
+
+    int getObjectOffset(final int number) {
+        return mObjectOffsets.get(number);
+    }
+
+    int getLastXrefOffset() {
+        return mLastXrefOffset;
+    }
+
+    ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(mOutput.toByteArray());
+    }
+}
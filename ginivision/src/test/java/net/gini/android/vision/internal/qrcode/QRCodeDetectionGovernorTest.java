@@ -0,0 +1,110 @@
+package net.gini.android.vision.internal.qrcode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import net.gini.android.vision.internal.util.Size;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class QRCodeDetectionGovernorTest {
+
+    private static final Size IMAGE_SIZE = new Size(64, 48);
+    private static final List<String> NO_QRCODES = Collections.emptyList();
+
+    @Test
+    public void should_sampleFirstImage() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+
+        assertThat(governor.shouldSample(0, createImage(0), IMAGE_SIZE)).isTrue();
+    }
+
+    @Test
+    public void should_notSampleFasterThanDetectionLatency() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+        governor.onDetectionFinished(80, NO_QRCODES, 80);
+
+        assertThat(governor.shouldSample(50, createImage(0), IMAGE_SIZE)).isFalse();
+        assertThat(governor.shouldSample(80, createImage(0), IMAGE_SIZE)).isTrue();
+    }
+
+    @Test
+    public void should_backOff_whenNothingWasDetected() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+        governor.onDetectionFinished(10, NO_QRCODES, 10);
+
+        final long idleMs = QRCodeDetectionGovernor.IDLE_BACKOFF_AFTER_MS;
+        governor.shouldSample(idleMs, createImage(0), IMAGE_SIZE);
+
+        assertThat(governor.getBackoffLevel()).isEqualTo(1);
+        assertThat(governor.getSamplingIntervalMs()).isEqualTo(
+                QRCodeDetectionGovernor.BACKOFF_STEP_MS << 1);
+    }
+
+    @Test
+    public void should_limitBackoffInterval() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+
+        governor.shouldSample(60000, createImage(0), IMAGE_SIZE);
+
+        assertThat(governor.getSamplingIntervalMs()).isEqualTo(
+                QRCodeDetectionGovernor.MAX_INTERVAL_MS);
+    }
+
+    @Test
+    public void should_backOff_whenSameQRCodeIsDetected() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        final List<String> qrCodes = Arrays.asList("qrcode");
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+        governor.onDetectionFinished(10, qrCodes, 10);
+        governor.shouldSample(500, createImage(0), IMAGE_SIZE);
+        governor.onDetectionFinished(10, qrCodes, 510);
+
+        governor.shouldSample(10 + QRCodeDetectionGovernor.STABLE_BACKOFF_AFTER_MS,
+                createImage(0), IMAGE_SIZE);
+
+        assertThat(governor.getBackoffLevel()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_speedUp_whenSceneChanges() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+        governor.shouldSample(10000, createImage(0), IMAGE_SIZE);
+        assertThat(governor.getBackoffLevel()).isGreaterThan(0);
+
+        final boolean sampled = governor.shouldSample(10010,
+                createImage(QRCodeDetectionGovernor.SCENE_CHANGE_THRESHOLD), IMAGE_SIZE);
+
+        assertThat(sampled).isTrue();
+        assertThat(governor.getBackoffLevel()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_speedUp_whenDifferentQRCodeIsDetected() {
+        final QRCodeDetectionGovernor governor = new QRCodeDetectionGovernor(0);
+        governor.shouldSample(0, createImage(0), IMAGE_SIZE);
+        governor.shouldSample(10000, createImage(0), IMAGE_SIZE);
+        assertThat(governor.getBackoffLevel()).isGreaterThan(0);
+
+        governor.onDetectionFinished(10, Arrays.asList("qrcode"), 10010);
+
+        assertThat(governor.shouldSample(10020, createImage(0), IMAGE_SIZE)).isTrue();
+        assertThat(governor.getBackoffLevel()).isEqualTo(0);
+    }
+
+    private static byte[] createImage(final int luma) {
+        final byte[] image = new byte[IMAGE_SIZE.width * IMAGE_SIZE.height * 3 / 2];
+        Arrays.fill(image, (byte) luma);
+        return image;
+    }
+}
@@ -0,0 +1,62 @@
+package net.gini.android.vision.internal.tiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TileGridTest {
+
+    @Test
+    public void should_useFullResolution_whenZoomedBeyondImagePixels() {
+        assertThat(TileGrid.calculateSampleSize(1f)).isEqualTo(1);
+        assertThat(TileGrid.calculateSampleSize(3f)).isEqualTo(1);
+    }
+
+    @Test
+    public void should_useLargestPowerOfTwo_whichKeepsShownPixels() {
+        assertThat(TileGrid.calculateSampleSize(0.5f)).isEqualTo(2);
+        assertThat(TileGrid.calculateSampleSize(0.4f)).isEqualTo(2);
+        assertThat(TileGrid.calculateSampleSize(0.25f)).isEqualTo(4);
+        assertThat(TileGrid.calculateSampleSize(0.2f)).isEqualTo(4);
+    }
+
+    @Test
+    public void should_coverImage_withTilesScaledBySampleSize() {
+        final TileGrid grid = new TileGrid(1000, 600, 2, 256);
+
+        assertThat(grid.getColumnCount()).isEqualTo(2);
+        assertThat(grid.getRowCount()).isEqualTo(2);
+        assertThat(grid.getColumn(511)).isEqualTo(0);
+        assertThat(grid.getColumn(512)).isEqualTo(1);
+    }
+
+    @Test
+    public void should_clampPositions_outsideImage() {
+        final TileGrid grid = new TileGrid(1000, 600, 1, 256);
+
+        assertThat(grid.getColumn(-100)).isEqualTo(0);
+        assertThat(grid.getColumn(5000)).isEqualTo(3);
+        assertThat(grid.getRow(5000)).isEqualTo(2);
+    }
+
+    @Test
+    public void should_shrinkEdgeTiles_toImageBounds() {
+        final TileGrid grid = new TileGrid(1000, 600, 1, 256);
+        final Rect region = new Rect();
+
+        grid.getRegion(3, 2, region);
+
+        assertThat(region).isEqualTo(new Rect(768, 512, 1000, 600));
+    }
+
+    @Test
+    public void should_differentiateKeys_bySampleSize() {
+        assertThat(new TileGrid(1000, 600, 1, 256).getKey(1, 1))
+                .isNotEqualTo(new TileGrid(1000, 600, 2, 256).getKey(1, 1));
+    }
+}
@@ -0,0 +1,77 @@
+package net.gini.android.vision.internal.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class StreamHelperTest {
+
+    private static final byte[] CONTENT = createContent(100000);
+
+    @Test
+    public void should_readContent_withoutExpectedSize() throws IOException {
+        assertThat(StreamHelper.inputStreamToByteArray(new ByteArrayInputStream(CONTENT)))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_readContent_withExactExpectedSize() throws IOException {
+        assertThat(StreamHelper.inputStreamToByteArray(new ByteArrayInputStream(CONTENT),
+                CONTENT.length)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_readWholeContent_whenExpectedSizeIsTooSmall() throws IOException {
+        assertThat(StreamHelper.inputStreamToByteArray(new ByteArrayInputStream(CONTENT), 10))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_truncateArray_whenExpectedSizeIsTooLarge() throws IOException {
+        assertThat(StreamHelper.inputStreamToByteArray(new ByteArrayInputStream(CONTENT),
+                CONTENT.length * 2)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_readEmptyContent() throws IOException {
+        assertThat(StreamHelper.inputStreamToByteArray(new ByteArrayInputStream(new byte[0]),
+                0)).isEmpty();
+        assertThat(StreamHelper.channelToByteArray(
+                Channels.newChannel(new ByteArrayInputStream(new byte[0])), 0)).isEmpty();
+    }
+
+    @Test
+    public void should_readChannel_withExactExpectedSize() throws IOException {
+        assertThat(StreamHelper.channelToByteArray(
+                Channels.newChannel(new ByteArrayInputStream(CONTENT)), CONTENT.length))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_readWholeChannel_whenContentGrew() throws IOException {
+        assertThat(StreamHelper.channelToByteArray(
+                Channels.newChannel(new ByteArrayInputStream(CONTENT)), 1000))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void should_readChannel_whenContentShrank() throws IOException {
+        assertThat(StreamHelper.channelToByteArray(
+                Channels.newChannel(new ByteArrayInputStream(CONTENT)), CONTENT.length + 1000))
+                .isEqualTo(CONTENT);
+    }
+
+    private static byte[] createContent(final int size) {
+        final byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+}
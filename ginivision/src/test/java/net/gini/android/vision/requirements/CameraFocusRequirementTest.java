@@ -7,6 +7,8 @@ import static org.mockito.Mockito.when;
 
 import android.hardware.Camera;
 
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -46,12 +48,14 @@ public class CameraFocusRequirementTest {
     public CameraHolder getCameraHolder(boolean isAutoFocusSupported) {
         CameraHolder cameraHolder = mock(CameraHolder.class);
         Camera.Parameters parameters = mock(Camera.Parameters.class);
-        when(cameraHolder.getCameraParameters()).thenReturn(parameters);
         when(parameters.getSupportedFocusModes()).thenReturn(
                 isAutoFocusSupported ?
                         Collections.singletonList(Camera.Parameters.FOCUS_MODE_AUTO)
                         : Collections.singletonList(Camera.Parameters.FOCUS_MODE_FIXED));
 
+        CameraCapabilities capabilities = CameraCapabilities.fromParameters(parameters, 90);
+        when(cameraHolder.getCameraCapabilities()).thenReturn(capabilities);
+
         return cameraHolder;
     }
 }
@@ -9,6 +9,8 @@ import static org.mockito.Mockito.when;
 
 import android.hardware.Camera;
 
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -71,7 +73,6 @@ public class CameraResolutionRequirementTest {
             List<Camera.Size> pictureSizes) {
         CameraHolder cameraHolder = mock(CameraHolder.class);
         Camera.Parameters parameters = mock(Camera.Parameters.class);
-        when(cameraHolder.getCameraParameters()).thenReturn(parameters);
         if (previewSizes == null) {
             Camera.Size size4to3 = createSize(1440, 1080);
             Camera.Size size16to9 = createSize(1280, 720);
@@ -84,6 +85,9 @@ public class CameraResolutionRequirementTest {
         }
         when(parameters.getSupportedPreviewSizes()).thenReturn(previewSizes);
         when(parameters.getSupportedPictureSizes()).thenReturn(pictureSizes);
+        CameraCapabilities capabilities = CameraCapabilities.fromParameters(parameters, 90);
+        when(cameraHolder.getCameraCapabilities()).thenReturn(capabilities);
+
         return cameraHolder;
     }
 }
@@ -8,10 +8,14 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.hardware.Camera;
 
+import net.gini.android.vision.PictureResolutionPolicy;
+import net.gini.android.vision.internal.camera.api.CameraCapabilities;
+
 import net.gini.android.vision.internal.util.Size;
 
 import org.junit.Test;
@@ -55,6 +59,19 @@ public class DeviceMemoryRequirementTest {
         assertThat(requirement.check().isFulfilled()).isTrue();
     }
 
+    @Test
+    public void should_checkMemory_forPictureSize_selectedByPolicy() {
+        CameraHolder cameraHolder = getCameraHolder(
+                Arrays.asList(createSize(5312, 2988), createSize(4128, 3096),
+                        createSize(1920, 1080)));
+        DeviceMemoryRequirement requirement = spy(new DeviceMemoryRequirement(cameraHolder,
+                PictureResolutionPolicy.megapixelRange(8, 13)));
+
+        requirement.check();
+
+        verify(requirement).sufficientMemoryAvailable(new Size(4128, 3096));
+    }
+
     @Test
     public void should_checkIfPictureSize_fitsIntoUnusedMemory() {
         CameraHolder cameraHolder = getCameraHolder(null);
@@ -71,13 +88,15 @@ public class DeviceMemoryRequirementTest {
     private CameraHolder getCameraHolder(List<Camera.Size> pictureSizes) {
         CameraHolder cameraHolder = mock(CameraHolder.class);
         Camera.Parameters parameters = mock(Camera.Parameters.class);
-        when(cameraHolder.getCameraParameters()).thenReturn(parameters);
         if (pictureSizes == null) {
             Camera.Size size4to3 = createSize(4128, 3096);
             Camera.Size sizeOther = createSize(4128, 2322);
             pictureSizes = Arrays.asList(size4to3, sizeOther);
         }
         when(parameters.getSupportedPictureSizes()).thenReturn(pictureSizes);
+        CameraCapabilities capabilities = CameraCapabilities.fromParameters(parameters, 90);
+        when(cameraHolder.getCameraCapabilities()).thenReturn(capabilities);
+
         return cameraHolder;
     }
 